@@ -1,12 +1,35 @@
 package kt.org.intellij.sdk.codesync.tasks
 
+import org.intellij.sdk.codesync.Constants.DOCUMENT_UPDATE_MAX_WAIT
+import org.intellij.sdk.codesync.Constants.DOCUMENT_UPDATE_QUIET_WINDOW
+
 object TaskExecutor {
-    private var taskQueue: TaskQueue = TaskQueue();
+    private var taskQueue: TaskQueue = TaskQueue(
+        DOCUMENT_UPDATE_QUIET_WINDOW.toLong(), DOCUMENT_UPDATE_MAX_WAIT.toLong()
+    );
 
     fun execute(runnable: Runnable) {
         taskQueue.addTask(runnable)
     }
 
+    /*
+    Execute the task after the quiet window, only the latest task submitted for the given key is executed.
+    */
+    fun executeCoalesced(key: String, runnable: Runnable) {
+        taskQueue.addCoalescingTask(key, runnable)
+    }
+
+    fun flushPendingTasks() {
+        taskQueue.flushPendingTasks()
+    }
+
+    /*
+    Run the coalesced tasks for the given key and the keys nested under it on the calling thread, see `TaskQueue`.
+    */
+    fun runPendingTasks(key: String) {
+        taskQueue.runPendingTasks(key)
+    }
+
     fun start() {
         taskQueue.start()
     }
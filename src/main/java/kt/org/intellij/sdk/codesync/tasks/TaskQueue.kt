@@ -1,10 +1,35 @@
 package kt.org.intellij.sdk.codesync.tasks
 
 import java.util.concurrent.BlockingQueue
+import java.util.concurrent.Executors
 import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
 
-class TaskQueue {
+/*
+Single threaded task queue.
+
+Tasks added with `addCoalescingTask` are not queued right away, instead only the latest task for a given key is kept
+and it is queued once no new task has been added for that key during `quietWindowMillis`. `maxWaitMillis` makes sure
+a key that keeps getting updates (e.g. continuous typing) is still flushed periodically.
+*/
+class TaskQueue(private val quietWindowMillis: Long = 0, private val maxWaitMillis: Long = 0) {
     private val queue: BlockingQueue<Runnable> = LinkedBlockingQueue()
+    private val pendingTasks: MutableMap<String, PendingTask> = HashMap()
+    private val scheduler: ScheduledExecutorService = Executors.newSingleThreadScheduledExecutor { runnable ->
+        val thread = Thread(runnable, "CodeSyncTaskQueueScheduler")
+        thread.isDaemon = true
+        thread
+    }
+
+    private class PendingTask(var task: Runnable, val createdAt: Long, var updatedAt: Long)
+
+    // Coalesced task waiting in the queue, the key is kept so that `runPendingTasks` can still take it out.
+    private class KeyedTask(val key: String, val task: Runnable) : Runnable {
+        override fun run() {
+            task.run()
+        }
+    }
 
     private inner class TaskExecutor : Thread() {
         override fun run() {
@@ -26,4 +51,95 @@ class TaskQueue {
     fun addTask(task: Runnable) {
         queue.add(task)
     }
+
+    /*
+    Add a task that replaces any pending task with the same key. Task is queued after the quiet window has elapsed.
+    */
+    fun addCoalescingTask(key: String, task: Runnable) {
+        if (quietWindowMillis <= 0) {
+            addTask(KeyedTask(key, task))
+            return
+        }
+
+        val now = System.currentTimeMillis()
+        synchronized(pendingTasks) {
+            val pendingTask = pendingTasks[key]
+            if (pendingTask != null) {
+                pendingTask.task = task
+                pendingTask.updatedAt = now
+                return
+            }
+            pendingTasks[key] = PendingTask(task, now, now)
+        }
+        scheduleFlush(key, quietWindowMillis)
+    }
+
+    /*
+    Queue all pending coalesced tasks right away, useful when a project is closing.
+    */
+    fun flushPendingTasks() {
+        synchronized(pendingTasks) {
+            pendingTasks.forEach { addTask(KeyedTask(it.key, it.value.task)) }
+            pendingTasks.clear()
+        }
+    }
+
+    /*
+    Run the coalesced tasks for the given key, and for the keys nested under it (e.g. files of a directory), on the
+    calling thread right away. Tasks already queued for those keys are taken out of the queue and run as well.
+
+    Used before a change that the pending tasks must not run after, e.g. the rename or delete of their file.
+    */
+    fun runPendingTasks(key: String) {
+        val isMatch = { taskKey: String -> taskKey == key || taskKey.startsWith("$key/") }
+        val tasks = mutableListOf<Runnable>()
+        synchronized(pendingTasks) {
+            // Queued tasks were added before the pending ones, so they run first.
+            queue.filter { it is KeyedTask && isMatch(it.key) }.forEach {
+                if (queue.remove(it)) {
+                    tasks.add(it)
+                }
+            }
+            val iterator = pendingTasks.entries.iterator()
+            while (iterator.hasNext()) {
+                val entry = iterator.next()
+                if (isMatch(entry.key)) {
+                    tasks.add(entry.value.task)
+                    iterator.remove()
+                }
+            }
+        }
+        tasks.forEach { it.run() }
+    }
+
+    fun getPendingTaskCount(): Int {
+        synchronized(pendingTasks) {
+            return pendingTasks.size
+        }
+    }
+
+    private fun scheduleFlush(key: String, delayMillis: Long) {
+        scheduler.schedule({ flush(key) }, delayMillis, TimeUnit.MILLISECONDS)
+    }
+
+    private fun flush(key: String) {
+        // Queued while holding the lock, so `runPendingTasks` finds the task either pending or queued.
+        synchronized(pendingTasks) {
+            val pendingTask = pendingTasks[key] ?: return
+            val now = System.currentTimeMillis()
+            val quietFor = now - pendingTask.updatedAt
+            val waitingFor = now - pendingTask.createdAt
+
+            if (quietFor < quietWindowMillis && (maxWaitMillis <= 0 || waitingFor < maxWaitMillis)) {
+                var delay = quietWindowMillis - quietFor
+                if (maxWaitMillis > 0) {
+                    delay = minOf(delay, maxWaitMillis - waitingFor)
+                }
+                scheduleFlush(key, delay)
+                return
+            }
+            pendingTasks.remove(key)
+            addTask(KeyedTask(key, pendingTask.task))
+        }
+    }
 }
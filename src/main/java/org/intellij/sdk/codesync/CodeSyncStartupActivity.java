@@ -12,16 +12,19 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.openapi.vfs.newvfs.BulkFileListener;
 import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
 import kt.org.intellij.sdk.codesync.tasks.TaskExecutor;
 import org.intellij.sdk.codesync.alerts.ActivityAlerts;
 import org.intellij.sdk.codesync.codeSyncSetup.CodeSyncSetup;
 import org.intellij.sdk.codesync.database.migrations.MigrateRepo;
 import org.intellij.sdk.codesync.database.migrations.MigrationManager;
 import org.intellij.sdk.codesync.exceptions.common.FileNotInModuleError;
+import org.intellij.sdk.codesync.files.IgnoreFileCache;
 import org.intellij.sdk.codesync.state.RepoStatus;
 import org.intellij.sdk.codesync.state.StateUtils;
 import org.intellij.sdk.codesync.utils.CommonUtils;
 import org.intellij.sdk.codesync.utils.FileUtils;
+import org.intellij.sdk.codesync.utils.GitHeadResolver;
 import org.intellij.sdk.codesync.utils.ProjectUtils;
 import org.jetbrains.annotations.NotNull;
 
@@ -40,6 +43,10 @@ public class CodeSyncStartupActivity implements StartupActivity {
     public void runActivity(@NotNull Project project) {
         // Create system directories required by the plugin.
         createSystemDirectories();
+
+        // Recover the diff journal from an unclean shutdown and import diffs left by the earlier plugin versions.
+        HandleBuffer.recoverDiffJournal();
+
         String repoDirPath = ProjectUtils.getRepoPath(project);
         CodeSyncLogger.info("[Startup Activity]: Repo dir path: " + repoDirPath);
 
@@ -101,6 +108,11 @@ public class CodeSyncStartupActivity implements StartupActivity {
                 }
 
                 for (VFileEvent event : events) {
+                    // Refresh cached branch/commit if git metadata (e.g. .git/HEAD) was changed.
+                    GitHeadResolver.getInstance().handleFileChange(event.getPath());
+                    // Re-read ignore rules if an ignore file was changed.
+                    IgnoreFileCache.getInstance().handleFileChange(event.getPath());
+
                     VirtualFile virtualFile = event.getFile();
 
                     if (virtualFile == null) {
@@ -134,10 +146,12 @@ public class CodeSyncStartupActivity implements StartupActivity {
                         return;
                     }
                     if (eventString.startsWith(FILE_DELETE_EVENT)) {
+                        flushDocumentUpdates(repoPath, event.getPath());
                         FileDeleteHandler(event, repoPath);
                         return;
                     }
                     if (eventString.startsWith(FILE_RENAME_EVENT)) {
+                        flushDocumentUpdates(repoPath, ((VFilePropertyChangeEvent) event).getOldPath());
                         try {
                             FileRenameHandler(event, repoPath);
                         } catch (IOException e) {
@@ -23,6 +23,7 @@ public final class Constants {
     public static final String USER_HOME = System.getProperty("user.home");
     public static final String CODESYNC_ROOT = Paths.get(USER_HOME, CODESYNC_DIR_NAME).toString();
     public static final String DIFFS_REPO = Paths.get(CODESYNC_ROOT, ".diffs", ".intellij").toString();
+    public static final String DIFFS_JOURNAL_DIR = Paths.get(DIFFS_REPO, ".journal").toString();
     public static final String LOCKS_FILE_DIR = Paths.get(CODESYNC_ROOT, ".locks").toString();
     public static final String PROJECT_LOCK_FILE = Paths.get(LOCKS_FILE_DIR, "project_locks.yml").toString();
     public static final String POPULATE_BUFFER_LOCK_FILE = Paths.get(LOCKS_FILE_DIR, "populate_buffer_locks.yml").toString();
@@ -46,10 +47,48 @@ public final class Constants {
     public static final Integer DELAY_BETWEEN_BUFFER_TASKS = 5000;
     public static final Integer DELAY_BETWEEN_ACTIVITY_ALERT_TASKS = 10 * 60 * 1000; // 10 minutes wait.
     public static final Integer DELAY_BETWEEN_BUFFER_TASKS_IN_SECONDS = 5;
+    // Delay between a diff being written and the buffer being processed, lets the diffs written together be batched.
+    public static final Integer BUFFER_SIGNAL_BATCH_DELAY = 200;
+    // Buffer is fully processed at least this often when idle, in case a change to the journal on the disk is missed.
+    public static final Integer BUFFER_IDLE_POLL_DELAY = 60 * 1000; // 1000 is for ms
+    // Document changes of the same file within this window are coalesced into a single update.
+    public static final Integer DOCUMENT_UPDATE_QUIET_WINDOW = 300;
+    // Upper bound on how long a continuously edited file can wait before its update is processed.
+    public static final Integer DOCUMENT_UPDATE_MAX_WAIT = 2000;
+    public static final long SHADOW_CACHE_BYTE_BUDGET = 32 * 1024 * 1024; // 32 MB
+    public static final long SHADOW_CACHE_FLUSH_DELAY = 2000;
+    // Size after which a new diff journal segment is started.
+    public static final long DIFF_JOURNAL_SEGMENT_SIZE = 4 * 1024 * 1024; // 4 MB
 
     //Database queries and strings
     public static final String DATABASE_PATH = Paths.get(CODESYNC_ROOT, "codesync-v1.db").toString();
     public static final String CONNECTION_STRING = "jdbc:sqlite:" + DATABASE_PATH;
+    // Maximum number of prepared statements kept open on the database connection.
+    public static final int SQLITE_STATEMENT_CACHE_SIZE = 100;
+    // How long a query waits for a lock held by another connection before failing with SQLITE_BUSY.
+    public static final int SQLITE_BUSY_TIMEOUT = 5 * 1000; // 1000 is for ms
+    // Number of times a statement is run again if it still fails with SQLITE_BUSY after the busy timeout.
+    public static final int SQLITE_BUSY_RETRIES = 3;
+    // Pause before running a statement again, multiplied by the attempt number.
+    public static final int SQLITE_BUSY_RETRY_DELAY = 100; // in ms
+    // Maximum number of read-only connections, reads beyond that wait for one of them to be free.
+    public static final int SQLITE_READER_POOL_SIZE = 4;
+    // How often the database is checked for commits of other processes, so in-process caches do not serve stale data.
+    public static final int SQLITE_EXTERNAL_CHANGE_CHECK_INTERVAL = 1000; // 1000 is for ms
+    // Number of rows ANALYZE samples per index, keeps it fast on large tables.
+    public static final int SQLITE_ANALYSIS_LIMIT = 1000;
+    // Number of rows loaded at once after which the query planner statistics of a table are refreshed.
+    public static final int SQLITE_ANALYZE_THRESHOLD = 1000;
+    // Maximum number of lookups kept by each in-process entity cache.
+    public static final int ENTITY_CACHE_SIZE = 10000;
+    // Lowest limit on the number of parameters of a single statement across SQLite versions.
+    public static final int SQLITE_MAX_VARIABLES = 999;
+    // Changes to repo files are saved at most this long after they are made.
+    public static final int REPO_FILE_FLUSH_DELAY = 1000; // 1000 is for ms
+    // Number of queued changes to repo files after which they are saved right away.
+    public static final int REPO_FILE_FLUSH_SIZE = 500;
+    // Number of queued changes to repo files after which the thread making a change saves them itself.
+    public static final int REPO_FILE_MAX_PENDING_WRITES = 10 * REPO_FILE_FLUSH_SIZE;
 
     public static final String DEFAULT_TIMEZONE = ZoneId.systemDefault().getId();
     public static final String DATE_TIME_FORMAT = "yyyy-MM-dd HH:mm:ss.SSS z";
@@ -70,8 +109,34 @@ public final class Constants {
 
     public static final String REGEX_REPLACE_LEADING_ESCAPED_EXCLAMATION = "/^\\!/";
     public static final Integer DIFFS_PER_ITERATION = 50;
+    // Number of repos whose diffs are processed and sent in parallel.
+    public static final Integer MAX_CONCURRENT_REPO_BATCHES = 4;
 
     public static final String WEBSOCKET_ENDPOINT = configuration.getCodeSyncWebsocketURL();
+    // Number of diff batches that can be sent over a websocket connection before their acks are received.
+    public static final Integer DIFF_BATCHES_WINDOW_SIZE = 4;
+    // Diffs of a batch not acknowledged within this time are considered failed and retried later.
+    public static final Integer DIFF_ACK_TIMEOUT = 60 * 1000; // 1000 is for ms
+    // Websocket sessions are pinged at this interval, a session is considered dead if pongs of
+    // `WEBSOCKET_MISSED_HEARTBEATS` consecutive pings are not received.
+    public static final Integer WEBSOCKET_HEARTBEAT_INTERVAL = 30 * 1000; // 1000 is for ms
+    public static final Integer WEBSOCKET_MISSED_HEARTBEATS = 2;
+    // Connection attempt fails if the server does not answer the auth request in this time.
+    public static final Integer WEBSOCKET_AUTH_TIMEOUT = 30 * 1000; // 1000 is for ms
+
+    // Consecutive failed calls after which the server is considered unreachable, see `ConnectivityMonitor`.
+    public static final Integer CONNECTIVITY_FAILURE_THRESHOLD = 3;
+    // Delay before the server is probed again once it is unreachable, doubled after each failed probe.
+    public static final Integer CONNECTIVITY_INITIAL_PROBE_DELAY = 5 * 1000; // 1000 is for ms
+    public static final Integer CONNECTIVITY_MAX_PROBE_DELAY = 5 * 60 * 1000; // 1000 is for ms
+
+    // Limits of the pooled connections of the HTTP client, see `ClientUtils.getHttpClient`.
+    public static final Integer HTTP_POOL_MAX_CONNECTIONS = 20;
+    public static final Integer HTTP_POOL_MAX_CONNECTIONS_PER_ROUTE = 10;
+    // Pooled connections idle for longer than this are closed.
+    public static final Integer HTTP_CONNECTION_MAX_IDLE_TIME = 30 * 1000; // 1000 is for ms
+    // Pooled connections are never reused after this time, e.g. to pick up DNS changes.
+    public static final Integer HTTP_CONNECTION_TIME_TO_LIVE = 5 * 60 * 1000; // 1000 is for ms
 
     public static final String API_ENDPOINT = String.format("%s/v1", CODESYNC_HOST);
     public static final String API_INIT = String.format("%s/init?source=%s&v=%s", API_ENDPOINT, DIFF_SOURCE, PLUGIN_VERSION);
@@ -105,7 +170,12 @@ public final class Constants {
     public static final String CONNECTION_ERROR_MESSAGE = "Error => Server is not available. Please try again in a moment";
 
     public static final Integer FILE_SIZE_AS_COPY = 100;  // 100 bytes;
-    public static final double SEQUENCE_MATCHER_RATIO = 0.8; // 80% match ratio.
+    public static final double RENAME_SIMILARITY_RATIO = 0.5; // 50% of the distinct lines should be common.
+    public static final double RENAME_SIZE_RATIO = 0.5; // Smaller file should be at least half the size of the larger one.
+    public static final long RENAME_DETECTION_TIME_BUDGET = 2000; // 2 seconds per scan for similarity checks.
+    // Coarsest modified time resolution of the file systems, e.g. FAT. Files modified this close to a scan may change
+    // again without their modified time changing, so their state is not saved.
+    public static final long FILE_MODIFIED_TIME_GRANULARITY = 2 * 1000; // 1000 is for ms
 
     public static final Integer DIFF_SIZE_LIMIT = 15 * 1000 * 1000;
 
@@ -125,7 +195,16 @@ public final class Constants {
     public static final String S3_FILE_UPLOAD_LOCK_KEY = "s3_file_upload";
 
     public static final Integer S3_UPLOAD_TIMEOUT = 5 * 60 * 1000; // 1000 is for ms
+    // Number of files uploaded to S3 in parallel, kept within the keep-alive cache of `HttpURLConnection`
+    // (`http.maxConnections`, 5 by default) so that connections to S3 are reused.
+    public static final Integer S3_UPLOAD_CONCURRENCY = 5;
+    public static final Integer S3_UPLOAD_MAX_ATTEMPTS = 3;
+    public static final Integer S3_UPLOAD_RETRY_BASE_DELAY = 1000; // 1000 is for ms
     public static final Integer S3_UPLOAD_RETRY_AFTER = 5 * 60 * 1000; // 1000 is for ms
+    // Files are given up on after failing in this many upload runs.
+    public static final Integer S3_UPLOAD_MAX_RUN_COUNT = 10;
+    // Number of files claimed from the S3 upload queue at a time, each claim is held for `S3_UPLOAD_TIMEOUT`.
+    public static final Integer S3_UPLOAD_CLAIM_BATCH_SIZE = 50;
 
     public static final class PlatformIdentifier {
         private PlatformIdentifier() {
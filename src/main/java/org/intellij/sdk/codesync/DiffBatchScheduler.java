@@ -0,0 +1,89 @@
+package org.intellij.sdk.codesync;
+
+import org.intellij.sdk.codesync.files.DiffFile;
+
+import java.util.*;
+
+/*
+    Picks the diffs to send in a `handleBuffer` call, repos are scheduled using deficit round-robin so that a repo
+    with a large backlog does not starve the others.
+
+    Repos with pending diffs form a round, at most `maxRepos` repos from the head of the round get a turn in a call
+    and are then moved to the end of the round. On its turn, a quantum (in diff size) is added to the deficit of
+    the repo and diffs are taken from the head of its queue as long as their size fits in the deficit. Diffs of a
+    repo are always taken in the given order, so ordering of the diffs of a file is preserved.
+*/
+public class DiffBatchScheduler {
+    private final int maxRepos;
+    private final int maxDiffsPerBatch;
+    private final long maxBatchSize;
+    private final long quantum;
+
+    private final Map<String, Long> deficits = new HashMap<>();
+    private final LinkedHashSet<String> round = new LinkedHashSet<>();
+
+    public DiffBatchScheduler(int maxRepos, int maxDiffsPerBatch, long maxBatchSize, long quantum) {
+        this.maxRepos = maxRepos;
+        this.maxDiffsPerBatch = maxDiffsPerBatch;
+        this.maxBatchSize = maxBatchSize;
+        this.quantum = quantum;
+    }
+
+    /*
+    @param  diffsByRepo  pending diffs of each repo, in the order they were written.
+    @return  batches of the diffs to send keyed by the repo path.
+    */
+    public synchronized Map<String, List<DiffFile>> schedule(Map<String, List<DiffFile>> diffsByRepo) {
+        // Repos without pending diffs leave the round and lose their deficit, new repos join at the end.
+        this.round.retainAll(diffsByRepo.keySet());
+        this.deficits.keySet().retainAll(diffsByRepo.keySet());
+        this.round.addAll(diffsByRepo.keySet());
+
+        Map<String, List<DiffFile>> batches = new LinkedHashMap<>();
+        List<String> servedRepos = new ArrayList<>();
+        for (String repoPath: this.round) {
+            if (servedRepos.size() >= this.maxRepos) {
+                break;
+            }
+            servedRepos.add(repoPath);
+
+            List<DiffFile> diffFiles = diffsByRepo.get(repoPath);
+            List<DiffFile> batch = new ArrayList<>();
+            long deficit = this.deficits.getOrDefault(repoPath, 0L) + this.quantum;
+            long batchSize = 0;
+            boolean isBlocked = false;
+
+            for (DiffFile diffFile: diffFiles) {
+                long cost = getCost(diffFile);
+                if (batch.size() >= this.maxDiffsPerBatch || (!batch.isEmpty() && batchSize + cost > this.maxBatchSize)) {
+                    break;
+                }
+                if (cost > deficit) {
+                    // Head of the queue waits for the next turn, deficit is kept so that it fits eventually.
+                    isBlocked = true;
+                    break;
+                }
+                batch.add(diffFile);
+                batchSize += cost;
+                deficit -= cost;
+            }
+
+            if (batch.size() == diffFiles.size()) {
+                this.deficits.put(repoPath, 0L);
+            } else {
+                this.deficits.put(repoPath, isBlocked ? deficit : Math.min(deficit, this.quantum));
+            }
+            if (!batch.isEmpty()) {
+                batches.put(repoPath, batch);
+            }
+        }
+
+        this.round.removeAll(servedRepos);
+        this.round.addAll(servedRepos);
+        return batches;
+    }
+
+    private static long getCost(DiffFile diffFile) {
+        return Math.max(1, diffFile.getDiffSize());
+    }
+}
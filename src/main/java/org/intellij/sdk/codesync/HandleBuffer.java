@@ -4,6 +4,7 @@ package org.intellij.sdk.codesync;
 import com.intellij.openapi.project.Project;
 import kotlin.Pair;
 import org.intellij.sdk.codesync.clients.CodeSyncClient;
+import org.intellij.sdk.codesync.clients.ConnectivityMonitor;
 import org.intellij.sdk.codesync.clients.CodeSyncWebSocketClient;
 import org.intellij.sdk.codesync.database.migrations.MigrateRepo;
 import org.intellij.sdk.codesync.database.models.Repo;
@@ -12,11 +13,11 @@ import org.intellij.sdk.codesync.database.models.RepoFile;
 import org.intellij.sdk.codesync.database.models.User;
 import org.intellij.sdk.codesync.exceptions.*;
 import org.intellij.sdk.codesync.exceptions.database.RepoBranchNotFound;
-import org.intellij.sdk.codesync.exceptions.database.RepoFileNotFound;
 import org.intellij.sdk.codesync.exceptions.database.UserNotFound;
 import org.intellij.sdk.codesync.files.*;
 import org.intellij.sdk.codesync.repoManagers.DeletedRepoManager;
 import org.intellij.sdk.codesync.repoManagers.OriginalsRepoManager;
+import org.intellij.sdk.codesync.repoManagers.ShadowCache;
 import org.intellij.sdk.codesync.repoManagers.ShadowRepoManager;
 import org.intellij.sdk.codesync.state.PluginState;
 import org.intellij.sdk.codesync.state.StateUtils;
@@ -31,6 +32,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static org.intellij.sdk.codesync.Constants.*;
 
@@ -39,12 +41,27 @@ public class HandleBuffer {
     /**
      * Returns a list of diff files available in the buffer.
      *
-     * @param  path  an absolute path of the director containing diff files.
-     * @param  diffFileExtension the extension of the diff files.
+     * @param  repoMap  repos keyed by their path.
      * @return the list of diff files available in the buffer.
      */
-    private static final Set<String> diffFilesBeingProcessed = new HashSet<>();
-    private static final Set<String> diffReposToIgnore = new HashSet<>();
+    // Accessed from the threads processing the repos and from the websocket callbacks.
+    private static final Set<String> diffFilesBeingProcessed = ConcurrentHashMap.newKeySet();
+    private static final Set<String> diffReposToIgnore = ConcurrentHashMap.newKeySet();
+    // Access tokens of the users that uploaded new files in the current iteration, see `disconnectStaleSessions`.
+    private static final Set<String> accessTokensWithNewFiles = ConcurrentHashMap.newKeySet();
+    private static final DiffBatchScheduler diffBatchScheduler = new DiffBatchScheduler(
+        MAX_CONCURRENT_REPO_BATCHES, DIFFS_PER_ITERATION, DIFF_SIZE_LIMIT, DIFF_SIZE_LIMIT
+    );
+    private static final ExecutorService repoBatchExecutor = Executors.newFixedThreadPool(
+        MAX_CONCURRENT_REPO_BATCHES,
+        runnable -> {
+            Thread thread = new Thread(runnable, "CodeSync-RepoDiffs");
+            thread.setDaemon(true);
+            return thread;
+        }
+    );
+    private static final Object bufferSignal = new Object();
+    private static long bufferSignalCount = 0;
 
     public static void clearReposToIgnore() {
         diffReposToIgnore.clear();
@@ -55,20 +72,20 @@ public class HandleBuffer {
         if (MigrateRepo.getInstance().getReposBeingMigrated().contains(diffFile.repoPath)) {
             CodeSyncLogger.info(String.format(
                 "Skipping diff file: %s, repo: %s is being migrated.",
-                diffFile.originalDiffFile.getPath(),
+                diffFile.path,
                 diffFile.repoPath
             ));
             return true;
         }
         if (diffReposToIgnore.contains(diffFile.repoPath)) {
-            CodeSyncLogger.info(String.format("Ignoring diff file '%s'.%n", diffFile.originalDiffFile.getPath()));
+            CodeSyncLogger.info(String.format("Ignoring diff file '%s'.%n", diffFile.path));
             return true;
         }
 
         if (!diffFile.isValid()) {
             CodeSyncLogger.info(
                     String.format("Skipping invalid diff file: %s, Diff: %s",
-                        diffFile.originalDiffFile.getPath(), diffFile.contents
+                        diffFile.path, diffFile.contents
                     )
             );
             diffFile.delete();
@@ -124,7 +141,7 @@ public class HandleBuffer {
                 CommonUtils.getStackTrace(e)
             ));
         } catch (RepoBranchNotFound e) {
-            if (FileUtils.isStaleFile(diffFile.originalDiffFile)){
+            if (diffFile.isStale()){
                 if (PricingAlerts.getPlanLimitReached()){
                     CodeSyncLogger.error(
                         String.format(
@@ -162,49 +179,136 @@ public class HandleBuffer {
         return false;
     }
 
-    public static  DiffFile[] getDiffFiles(String path, String diffFileExtension, Map<String, Repo> repoMap)  {
-        File diffFilesDirectory = new File(path);
+    public static DiffFile[] getDiffFiles(Map<String, Repo> repoMap)  {
+        List<DiffJournal.Record> records;
+        try {
+            records = DiffJournal.getInstance().read();
+        } catch (IOException e) {
+            CodeSyncLogger.error(String.format("Error while reading the diff journal. Error: %s", CommonUtils.getStackTrace(e)));
+            return new DiffFile[0];
+        }
+        return records.stream()
+            .map(DiffFile::new)
+            .filter(diffFile -> !shouldSkipDiffFile(diffFile, repoMap))
+            .toArray(DiffFile[]::new);
+    }
 
-        File[] files = diffFilesDirectory.listFiles(
-            (dir, name) -> name.toLowerCase().endsWith(diffFileExtension.toLowerCase())
-        );
-        if (files != null)  {
-            return Arrays.stream(files)
-                .map(DiffFile::new)
-                .filter(diffFile -> !shouldSkipDiffFile(diffFile, repoMap))
-                .toArray(DiffFile[]::new);
+    /*
+    Wake up the buffer handlers, called whenever a diff is added to the buffer.
+    */
+    public static void notifyDiffsAvailable() {
+        synchronized (bufferSignal) {
+            bufferSignalCount++;
+            bufferSignal.notifyAll();
         }
-        return new DiffFile[0];
     }
 
-    private static void bufferHandler(final Timer timer, Project project) {
-        timer.schedule(new TimerTask() {
-            public void run() {
-                try {
-                    HandleBuffer.handleBuffer(project);
-                } catch (Exception e) {
-                    CodeSyncLogger.error(String.format(
-                        "HandleBuffer exited with error: %s", CommonUtils.getStackTrace(e)
-                    ));
-                    if(e.getMessage().contains("Connection failed")){
-                        CodeSyncLogger.critical(CONNECTION_ERROR_MESSAGE);
-                    }
+    /*
+    Wait until a diff is added to the buffer or the timeout is reached.
+
+    @param  signalCount  signal count seen by the caller, signals sent since then are not missed.
+    @return  true if woken up by a signal, false on timeout.
+    */
+    private static boolean waitForDiffs(long signalCount, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (bufferSignal) {
+            while (bufferSignalCount == signalCount) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                bufferSignal.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    private static long getBufferSignalCount() {
+        synchronized (bufferSignal) {
+            return bufferSignalCount;
+        }
+    }
+
+    private static boolean hasBufferedDiffs() {
+        try {
+            return DiffJournal.getInstance().hasPendingRecords();
+        } catch (IOException e) {
+            CodeSyncLogger.error(String.format("Error while reading the diff journal. Error: %s", CommonUtils.getStackTrace(e)));
+            return true;
+        }
+    }
+
+    /*
+    Process the buffer whenever diffs are added to it.
+
+    New diffs (see `notifyDiffsAvailable`) are processed right away after a short delay to batch diffs written
+    together, diffs that could not be processed yet are retried after `DELAY_BETWEEN_BUFFER_TASKS`. If the buffer is
+    empty the handler only checks every `DELAY_BETWEEN_BUFFER_TASKS` whether the journal changed on the disk, this
+    picks up the diffs written by other IDEs. The buffer is still fully processed every `BUFFER_IDLE_POLL_DELAY`, in
+    case the check missed a change.
+    */
+    private static void bufferHandler(Project project) {
+        long signalCount = getBufferSignalCount();
+        boolean isIdle = false;
+        long lastHandledAt = 0;
+
+        while (!project.isDisposed()) {
+            boolean isSignaled;
+            try {
+                isSignaled = waitForDiffs(signalCount, DELAY_BETWEEN_BUFFER_TASKS);
+                if (isSignaled) {
+                    Thread.sleep(BUFFER_SIGNAL_BATCH_DELAY);
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            signalCount = getBufferSignalCount();
 
-                bufferHandler(timer, project);
+            if (
+                isIdle && !isSignaled && !DiffJournal.getInstance().isChangedOnDisk() &&
+                System.currentTimeMillis() - lastHandledAt < BUFFER_IDLE_POLL_DELAY
+            ) {
+                continue;
             }
-        }, DELAY_BETWEEN_BUFFER_TASKS);
+            lastHandledAt = System.currentTimeMillis();
+
+            try {
+                HandleBuffer.handleBuffer(project);
+            } catch (Exception e) {
+                CodeSyncLogger.error(String.format(
+                    "HandleBuffer exited with error: %s", CommonUtils.getStackTrace(e)
+                ));
+                if(e.getMessage() != null && e.getMessage().contains("Connection failed")){
+                    CodeSyncLogger.critical(CONNECTION_ERROR_MESSAGE);
+                }
+            }
+
+            isIdle = !hasBufferedDiffs();
+        }
+    }
+
+    public static void recoverDiffJournal() {
+        try {
+            long discardedBytes = DiffJournal.getInstance().recover(DIFFS_REPO);
+            if (discardedBytes > 0) {
+                CodeSyncLogger.warning(String.format(
+                    "Discarded %d bytes of incomplete records from the diff journal.", discardedBytes
+                ));
+            }
+        } catch (IOException e) {
+            CodeSyncLogger.error(String.format("Error while recovering the diff journal. Error: %s", CommonUtils.getStackTrace(e)));
+        }
     }
 
     public static void scheduleBufferHandler(Project project) {
-        Timer timer = new Timer(true);
-        bufferHandler(timer, project);
+        Thread thread = new Thread(() -> bufferHandler(project), "CodeSync-HandleBuffer");
+        thread.setDaemon(true);
+        thread.start();
     }
 
     public static void handleBuffer(Project project) {
         Map<String, Repo> repoMap = new HashMap<>();
-        HashSet<String> newFiles = new HashSet<>();
-        int diffsSize = 0;
 
         boolean canRunDaemon = ProjectUtils.canRunDaemon(
             LockFileType.HANDLE_BUFFER_LOCK,
@@ -222,8 +326,12 @@ public class HandleBuffer {
             return;
         }
 
-        CodeSyncClient codeSyncClient = new CodeSyncClient();
-        if (!codeSyncClient.isServerUp()) {
+        // Nothing to do, skip the database queries.
+        if (!hasBufferedDiffs()) {
+            return;
+        }
+
+        if (!ConnectivityMonitor.getInstance().isServerReachable()) {
             diffFilesBeingProcessed.clear();
             return;
         }
@@ -241,282 +349,161 @@ public class HandleBuffer {
             return;
         }
 
-        // Get the list of diffs and shuffle, shuffling is needed to make sure all repos get a chance for processing.
-        DiffFile[] diffFiles = getDiffFiles(DIFFS_REPO, ".yml", repoMap);
-        List<DiffFile> diffFilesList = Arrays.asList(diffFiles);
-        Collections.shuffle(diffFilesList);
-        diffFilesList.toArray(diffFiles);
-
-        ArrayList<Pair<Integer, DiffFile>> diffsToSend = new ArrayList<>();
-
-        // We only process one repo per handleBuffer call.
-        Repo currentRepo = null;
-
+        DiffFile[] diffFiles = getDiffFiles(repoMap);
         if (diffFiles.length == 0) {
             return;
         }
 
-        CodeSyncClient client = new CodeSyncClient();
-
-        diffFiles = Arrays.copyOfRange(
-            diffFiles, 0, diffFiles.length >= DIFFS_PER_ITERATION ? DIFFS_PER_ITERATION : diffFiles.length
-        );
-
-        CodeSyncLogger.logConsoleMessage(String.format("Processing %d diff files.", diffFiles.length));
-        for (final DiffFile diffFile : diffFiles) {
-            if (currentRepo == null) {
-                try {
-                    currentRepo = Repo.getTable().find(diffFile.repoPath);
-                } catch (SQLException e) {
-                    CodeSyncLogger.error(
-                        String.format("Error while fetching repo from the database: %s", CommonUtils.getStackTrace(e))
-                    );
-                    continue;
-                }
-            }
-
-            if (!currentRepo.getPath().equals(diffFile.repoPath)) {
-                // We only process one repo per handleBuffer call.
+        // Group the diffs by repo, diffs are already in the order they were written.
+        Map<String, List<DiffFile>> diffsByRepo = new LinkedHashMap<>();
+        Set<String> filesBeingProcessed = new HashSet<>();
+        for (DiffFile diffFile : diffFiles) {
+            String fileKey = getFileKey(diffFile);
+            if (diffFilesBeingProcessed.contains(diffFile.path)) {
+                filesBeingProcessed.add(fileKey);
                 continue;
             }
-
-            if (diffFilesBeingProcessed.contains(diffFile.originalDiffFile.getPath())) {
-                System.out.printf("Skipping diff file: %s.\n", diffFile.originalDiffFile.getPath());
-                // Skip this file.
+            // Diffs of a file must be sent in order, so wait until the earlier diffs of the file are processed.
+            if (filesBeingProcessed.contains(fileKey)) {
                 continue;
             }
-
-            if(diffFile.diff != null)
-                diffsSize += diffFile.diff.length();
-
-            if(diffsSize > DIFF_SIZE_LIMIT){
-                CodeSyncLogger.info("Limit reached for diff batch size, remaining diffs will be processed in next request.");
-                break;
-            }
-
-            diffFilesBeingProcessed.add(diffFile.originalDiffFile.getPath());
-
             if (!repoMap.containsKey(diffFile.repoPath)) {
                 CodeSyncLogger.error(String.format("Repo `%s` is in buffer but not in configFile.yml.\n", diffFile.repoPath));
-                diffFilesBeingProcessed.remove(diffFile.originalDiffFile.getPath());
-                continue;
-            }
-
-            Repo repo = repoMap.get(diffFile.repoPath);
-            User user;
-            try {
-                user = repo.getUser();
-            } catch (SQLException e) {
-                CodeSyncLogger.error(
-                    String.format("Error while fetching user from the database: %s", CommonUtils.getStackTrace(e))
-                );
-                diffFilesBeingProcessed.remove(diffFile.originalDiffFile.getPath());
-                continue;
-            } catch (UserNotFound e) {
-                CodeSyncLogger.error(String.format("User not found in the database: %s", CommonUtils.getStackTrace(e)));
-                diffFilesBeingProcessed.remove(diffFile.originalDiffFile.getPath());
-                continue;
-            }
-
-            String accessToken = user.getAccessToken();
-
-            if (accessToken == null) {
-                CodeSyncLogger.critical(String.format(
-                        "Access token for user '%s' not present so skipping diff file '%s'.",
-                        user.getEmail(), diffFile.originalDiffFile.getPath()
-                    ), user.getEmail()
-                );
-                diffFilesBeingProcessed.remove(diffFile.originalDiffFile.getPath());
-                diffReposToIgnore.add(diffFile.repoPath);
-                continue;
-            } else {
-                diffReposToIgnore.remove(diffFile.repoPath);
-            }
-
-            if (FileUtils.shouldIgnoreFile(diffFile.fileRelativePath, diffFile.repoPath)) {
-                diffFile.delete();
-                diffFilesBeingProcessed.remove(diffFile.originalDiffFile.getPath());
-                continue;
-            }
-            RepoBranch repoBranch;
-            try {
-                repoBranch = repo.getBranch(diffFile.branch);
-            } catch (SQLException e) {
-                CodeSyncLogger.error(
-                    String.format("Error while fetching branch from the database: %s", CommonUtils.getStackTrace(e))
-                );
-                diffFilesBeingProcessed.remove(diffFile.originalDiffFile.getPath());
-                continue;
-            } catch (RepoBranchNotFound e) {
-                // this should never happen as we are already skipping/deleting diff files that satisfy above conditions
-                // inside `getDiffFiles`. Adding a log here to make sure that this is the case.
-                CodeSyncLogger.warning(
-                    String.format(
-                        "[HandleBuffer] Branch: `%s` is not synced for Repo `%s`.",
-                        diffFile.branch,
-                        diffFile.repoPath
-                    )
-                );
-                diffFilesBeingProcessed.remove(diffFile.originalDiffFile.getPath());
                 continue;
             }
+            diffsByRepo.computeIfAbsent(diffFile.repoPath, repoPath -> new ArrayList<>()).add(diffFile);
+        }
 
-            if (diffFile.isNewFile) {
-                newFiles.add(diffFile.fileRelativePath);
-                boolean isSuccess = handleNewFile(client, accessToken, diffFile, repo, repoBranch);
-                if (isSuccess) {
-                    diffFile.delete();
-                    // We also need to disconnect existing connections here,
-                    // otherwise the server cache causes an error and file updates end in error until the IDE restarts.
-                    client.getWebSocketClient(accessToken).disconnect();
-                    diffFilesBeingProcessed.remove(diffFile.originalDiffFile.getPath());
-                    continue;
-                }
-            }
-
-            if (newFiles.contains(diffFile.fileRelativePath)) {
-                // Skip the changes diffs if relevant file was uploaded in the same iteration, wait for next iteration
-                diffFilesBeingProcessed.remove(diffFile.originalDiffFile.getPath());
-                continue;
-            }
+        Map<String, List<DiffFile>> batches = diffBatchScheduler.schedule(diffsByRepo);
+        if (batches.isEmpty()) {
+            return;
+        }
 
-            if (diffFile.isRename) {
-                if (newFiles.contains(diffFile.oldRelativePath)) {
-                    // If old_rel_path uploaded in the same iteration, wait for next iteration
-                    diffFilesBeingProcessed.remove(diffFile.originalDiffFile.getPath());
-                    continue;
-                }
-                RepoFile repoFile;
+        CodeSyncLogger.logConsoleMessage(String.format(
+            "Processing %d diff files of %d repos.",
+            batches.values().stream().mapToInt(List::size).sum(), batches.size()
+        ));
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Map.Entry<String, List<DiffFile>> batch : batches.entrySet()) {
+            tasks.add(() -> {
+                handleRepoDiffs(repoMap.get(batch.getKey()), batch.getValue());
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : repoBatchExecutor.invokeAll(tasks)) {
                 try {
-                    repoFile = repoBranch.getFile(diffFile.oldRelativePath);
-                } catch (SQLException e) {
-                    CodeSyncLogger.error(
-                        String.format("Error while fetching file from the database: %s", CommonUtils.getStackTrace(e))
-                    );
-                    diffFilesBeingProcessed.remove(diffFile.originalDiffFile.getPath());
-                    continue;
-                } catch (RepoFileNotFound e) {
-                    CodeSyncLogger.warning(String.format(
-                        "File: `%s` not found in the database for repo `%s` branch `%s`.",
-                        diffFile.oldRelativePath, diffFile.repoPath, diffFile.branch
-                    ));
-                    diffFilesBeingProcessed.remove(diffFile.originalDiffFile.getPath());
-                    diffFile.delete();
-                    continue;
-                }
-
-                Integer oldFileId = repoFile.getServerFileId();
-                if (oldFileId == null) {
-                    CodeSyncLogger.warning(String.format("old_file: %s was not synced for rename of %s/%s.\n",
-                            diffFile.oldRelativePath, diffFile.repoPath, diffFile.fileRelativePath
+                    future.get();
+                } catch (ExecutionException e) {
+                    CodeSyncLogger.error(String.format(
+                        "Error while processing the diffs of a repo: %s", CommonUtils.getStackTrace(e.getCause())
                     ));
-                    diffFile.delete();
-                    diffFilesBeingProcessed.remove(diffFile.originalDiffFile.getPath());
-                    continue;
-                }
-
-                boolean isSuccess = handleFileRename(repoBranch, diffFile, oldFileId);
-                if (!isSuccess) {
-                    CodeSyncLogger.warning(String.format("Diff file '%s' could not be processed.\n", diffFile.originalDiffFile.getPath()));
-                    diffFilesBeingProcessed.remove(diffFile.originalDiffFile.getPath());
-                    // Skip this iteration
-                    continue;
                 }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        disconnectStaleSessions();
+    }
 
-            if (!diffFile.isBinary && !diffFile.isDeleted && diffFile.isEmptyDiff()) {
-                CodeSyncLogger.warning(String.format("Empty diff found in file: %s. Removing...\n", diffFile.fileRelativePath));
-                diffFilesBeingProcessed.remove(diffFile.originalDiffFile.getPath());
-                // Delete empty diff files.
-                diffFile.delete();
-                continue;
-            }
-
-            RepoFile repoFile;
-            try {
-                repoFile = repoBranch.getFile(diffFile.fileRelativePath);
-            } catch (SQLException e) {
-                CodeSyncLogger.error(
-                    String.format("Error while fetching file from the database: %s", CommonUtils.getStackTrace(e))
-                );
-                diffFilesBeingProcessed.remove(diffFile.originalDiffFile.getPath());
-                continue;
-            } catch (RepoFileNotFound e) {
-                if (diffFile.isDeleted) {
-                    ShadowRepoManager shadowRepoManager = new ShadowRepoManager(diffFile.repoPath, diffFile.branch);
-                    cleanUpDeletedDiff(
-                        repoBranch, diffFile,
-                        shadowRepoManager.getFilePath(diffFile.fileRelativePath)
-                    );
-                    diffFile.delete();
-                    diffFilesBeingProcessed.remove(diffFile.originalDiffFile.getPath());
-                    continue;
-                }
-                if (diffFile.isRename) {
-                    forceUploadNullFile(client, accessToken, diffFile, repo, repoBranch);
-                    diffFilesBeingProcessed.remove(diffFile.originalDiffFile.getPath());
-                    continue;
-                }
-                Path filePath = Paths.get(diffFile.repoPath, diffFile.fileRelativePath);
-
-                // Delete the diff file if actual file whose updates are in the diff file is now non-existent.
-                if (!filePath.toFile().exists()) {
-                    diffFile.delete();
-                } else {
-                    // If file exists, then we need to upload this file to the server.
-                    forceUploadNullFile(client, accessToken, diffFile, repo, repoBranch);
-                }
-
-                diffFilesBeingProcessed.remove(diffFile.originalDiffFile.getPath());
-                continue;
-
-            }
+    /*
+    Drop the sessions of the users that uploaded new files in this iteration, otherwise the server cache causes an
+    error and file updates end in error until the IDE restarts.
 
-            if (diffFile.isDeleted) {
-                diffFile.setDiff(
-                    getDiffOfDeletedFile(repoBranch, diffFile)
-                );
-            }
-            diffsToSend.add(new Pair<>(repoFile.getServerFileId(), diffFile));
+    Sessions are shared by the batches of all the repos of a user, so this is done once all of them are processed.
+    */
+    private static void disconnectStaleSessions() {
+        CodeSyncClient client = new CodeSyncClient();
+        for (String accessToken : new ArrayList<>(accessTokensWithNewFiles)) {
+            accessTokensWithNewFiles.remove(accessToken);
+            client.getWebSocketClient(accessToken).disconnect();
         }
+    }
 
-        if (diffsToSend.isEmpty()) {
-            return;
-        }
+    /*
+    Key identifying the file a diff belongs to.
+    */
+    private static String getFileKey(DiffFile diffFile) {
+        return String.format("%s:%s:%s", diffFile.repoPath, diffFile.branch, diffFile.fileRelativePath);
+    }
 
-        if (!currentRepo.isActive()) {
-            CodeSyncLogger.info("Repo is disconnected so, skipping the diffs.");
-            return;
-        }
+    /*
+    Process a batch of the diffs of a single repo and send the resulting diffs to the server.
 
-        // Send Diffs in a single request.
-        User user;
+    Batches of different repos are processed concurrently, see `handleBuffer`.
+    */
+    private static void handleRepoDiffs(Repo repo, List<DiffFile> diffFiles) {
+        RepoDiffContext context;
         try {
-            user = currentRepo.getUser();
+            context = RepoDiffContext.resolve(repo, diffFiles);
         } catch (SQLException e) {
             CodeSyncLogger.error(
-                String.format("Error while fetching user from the database: %s", CommonUtils.getStackTrace(e))
+                String.format("Error while fetching diff information from the database: %s", CommonUtils.getStackTrace(e))
             );
             return;
         } catch (UserNotFound e) {
             CodeSyncLogger.warning(String.format(
                     "User with id '%s' not present in the database so skipping diffs for repo '%s'.",
-                    currentRepo.getUserId(), currentRepo
+                    repo.getUserId(), repo
                 )
             );
             return;
         }
+
+        HashSet<String> newFiles = new HashSet<>();
+        // Files having a diff that is left in the buffer, later diffs of these files are not sent to keep the order.
+        Set<String> blockedFiles = new HashSet<>();
+        ArrayList<Pair<Integer, DiffFile>> diffsToSend = new ArrayList<>();
+        CodeSyncClient client = new CodeSyncClient();
+
+        for (final DiffFile diffFile : diffFiles) {
+            if (blockedFiles.contains(diffFile.fileRelativePath)) {
+                continue;
+            }
+            Pair<Integer, DiffFile> diffToSend = prepareDiff(client, context, diffFile, newFiles);
+            if (diffToSend != null) {
+                diffsToSend.add(diffToSend);
+            } else if (!diffFile.isRemoved()) {
+                blockedFiles.add(diffFile.fileRelativePath);
+            }
+        }
+
+        if (!diffsToSend.isEmpty()) {
+            sendDiffs(client, context, diffsToSend);
+        }
+    }
+
+    /*
+    Send the prepared diffs of a repo to the server in a single request, diffs are removed from the buffer once the
+    server acknowledges them.
+    */
+    private static void sendDiffs(CodeSyncClient client, RepoDiffContext context, ArrayList<Pair<Integer, DiffFile>> diffsToSend) {
+        Repo repo = context.getRepo();
+        Runnable releaseDiffs = () -> diffsToSend.forEach(diff -> diffFilesBeingProcessed.remove(diff.getSecond().path));
+
+        if (!repo.isActive()) {
+            CodeSyncLogger.info("Repo is disconnected so, skipping the diffs.");
+            releaseDiffs.run();
+            return;
+        }
+
+        User user = context.getUser();
         if (user.getAccessToken() ==  null) {
             CodeSyncLogger.warning(String.format(
                     "Access token for user '%s' not present so skipping diffs for repo '%s'.",
-                    user.getEmail(), currentRepo
+                    user.getEmail(), repo
                 )
             );
+            releaseDiffs.run();
             return;
         } else {
-            diffReposToIgnore.remove(currentRepo.getPath());
+            diffReposToIgnore.remove(repo.getPath());
         }
 
+        // Diffs are removed through their own journal records, the server only reports their paths.
+        Map<String, DiffFile> diffFilesByPath = new HashMap<>();
+        diffsToSend.forEach(diff -> diffFilesByPath.put(diff.getSecond().path, diff.getSecond()));
+
         CodeSyncWebSocketClient codeSyncWebSocketClient = client.getWebSocketClient(user.getAccessToken());
         codeSyncWebSocketClient.connect(isConnected -> {
             if (isConnected) {
@@ -527,20 +514,173 @@ public class HandleBuffer {
                             CodeSyncLogger.error("Error while sending the diff files to the server.", user.getEmail());
                             return;
                         }
-                        DiffFile.delete(diffFilePath);
+                        DiffFile diffFile = diffFilesByPath.get(diffFilePath);
+                        if (diffFile != null) {
+                            diffFile.delete();
+                        }
+                        // Window has room for another batch, process the remaining diffs without waiting.
+                        notifyDiffsAvailable();
                     });
                 } catch (WebSocketConnectionError error) {
-                    diffFilesBeingProcessed.clear();
+                    releaseDiffs.run();
                     CodeSyncLogger.critical(String.format("Connection error while sending diff to the server at %s.\n", WEBSOCKET_ENDPOINT), user.getEmail());
                 }
             } else {
-                diffFilesBeingProcessed.clear();
+                releaseDiffs.run();
                 CodeSyncLogger.error(String.format("Failed to connect to websocket endpoint: %s.\n", WEBSOCKET_ENDPOINT), user.getEmail());
             }
         });
     }
 
-    public static boolean handleNewFile(CodeSyncClient client, String accessToken, DiffFile diffFile, Repo repo, RepoBranch repoBranch) {
+    /*
+    Handle the given diff, e.g. upload the file of a new file diff or rename the shadow file of a rename diff.
+
+    @return  file id and the diff if the diff needs to be sent to the server, `null` otherwise. Diff is either
+        removed from the buffer or left for the next iteration in the latter case.
+    */
+    private static Pair<Integer, DiffFile> prepareDiff(CodeSyncClient client, RepoDiffContext context, DiffFile diffFile, Set<String> newFiles) {
+        diffFilesBeingProcessed.add(diffFile.path);
+
+        User user = context.getUser();
+        String accessToken = user.getAccessToken();
+
+        if (accessToken == null) {
+            CodeSyncLogger.critical(String.format(
+                    "Access token for user '%s' not present so skipping diff file '%s'.",
+                    user.getEmail(), diffFile.path
+                ), user.getEmail()
+            );
+            diffFilesBeingProcessed.remove(diffFile.path);
+            diffReposToIgnore.add(diffFile.repoPath);
+            return null;
+        } else {
+            diffReposToIgnore.remove(diffFile.repoPath);
+        }
+
+        if (FileUtils.shouldIgnoreFile(diffFile.fileRelativePath, diffFile.repoPath)) {
+            diffFile.delete();
+            diffFilesBeingProcessed.remove(diffFile.path);
+            return null;
+        }
+        RepoBranch repoBranch = context.getBranch(diffFile.branch);
+        if (repoBranch == null) {
+            // this should never happen as we are already skipping/deleting diff files that satisfy above conditions
+            // inside `getDiffFiles`. Adding a log here to make sure that this is the case.
+            CodeSyncLogger.warning(
+                String.format(
+                    "[HandleBuffer] Branch: `%s` is not synced for Repo `%s`.",
+                    diffFile.branch,
+                    diffFile.repoPath
+                )
+            );
+            diffFilesBeingProcessed.remove(diffFile.path);
+            return null;
+        }
+
+        if (diffFile.isNewFile) {
+            newFiles.add(diffFile.fileRelativePath);
+            boolean isSuccess = handleNewFile(client, context, diffFile, repoBranch);
+            if (isSuccess) {
+                diffFile.delete();
+                // Session is shared by the other repo batches, it is dropped once the iteration completes.
+                accessTokensWithNewFiles.add(accessToken);
+                diffFilesBeingProcessed.remove(diffFile.path);
+                return null;
+            }
+        }
+
+        if (newFiles.contains(diffFile.fileRelativePath)) {
+            // Skip the changes diffs if relevant file was uploaded in the same iteration, wait for next iteration
+            diffFilesBeingProcessed.remove(diffFile.path);
+            return null;
+        }
+
+        if (diffFile.isRename) {
+            if (newFiles.contains(diffFile.oldRelativePath)) {
+                // If old_rel_path uploaded in the same iteration, wait for next iteration
+                diffFilesBeingProcessed.remove(diffFile.path);
+                return null;
+            }
+            RepoFile repoFile = context.getFile(diffFile.branch, diffFile.oldRelativePath);
+            if (repoFile == null) {
+                CodeSyncLogger.warning(String.format(
+                    "File: `%s` not found in the database for repo `%s` branch `%s`.",
+                    diffFile.oldRelativePath, diffFile.repoPath, diffFile.branch
+                ));
+                diffFilesBeingProcessed.remove(diffFile.path);
+                diffFile.delete();
+                return null;
+            }
+
+            Integer oldFileId = repoFile.getServerFileId();
+            if (oldFileId == null) {
+                CodeSyncLogger.warning(String.format("old_file: %s was not synced for rename of %s/%s.\n",
+                        diffFile.oldRelativePath, diffFile.repoPath, diffFile.fileRelativePath
+                ));
+                diffFile.delete();
+                diffFilesBeingProcessed.remove(diffFile.path);
+                return null;
+            }
+
+            boolean isSuccess = handleFileRename(context, repoBranch, diffFile, oldFileId);
+            if (!isSuccess) {
+                CodeSyncLogger.warning(String.format("Diff file '%s' could not be processed.\n", diffFile.path));
+                diffFilesBeingProcessed.remove(diffFile.path);
+                // Skip this iteration
+                return null;
+            }
+        }
+
+        if (!diffFile.isBinary && !diffFile.isDeleted && diffFile.isEmptyDiff()) {
+            CodeSyncLogger.warning(String.format("Empty diff found in file: %s. Removing...\n", diffFile.fileRelativePath));
+            diffFilesBeingProcessed.remove(diffFile.path);
+            // Delete empty diff files.
+            diffFile.delete();
+            return null;
+        }
+
+        RepoFile repoFile = context.getFile(diffFile.branch, diffFile.fileRelativePath);
+        if (repoFile == null) {
+            if (diffFile.isDeleted) {
+                ShadowRepoManager shadowRepoManager = new ShadowRepoManager(diffFile.repoPath, diffFile.branch);
+                cleanUpDeletedDiff(
+                    context, repoBranch, diffFile,
+                    shadowRepoManager.getFilePath(diffFile.fileRelativePath)
+                );
+                diffFile.delete();
+                diffFilesBeingProcessed.remove(diffFile.path);
+                return null;
+            }
+            if (diffFile.isRename) {
+                forceUploadNullFile(client, context, diffFile, repoBranch);
+                diffFilesBeingProcessed.remove(diffFile.path);
+                return null;
+            }
+            Path filePath = Paths.get(diffFile.repoPath, diffFile.fileRelativePath);
+
+            // Delete the diff file if actual file whose updates are in the diff file is now non-existent.
+            if (!filePath.toFile().exists()) {
+                diffFile.delete();
+            } else {
+                // If file exists, then we need to upload this file to the server.
+                forceUploadNullFile(client, context, diffFile, repoBranch);
+            }
+
+            diffFilesBeingProcessed.remove(diffFile.path);
+            return null;
+
+        }
+
+        if (diffFile.isDeleted) {
+            diffFile.setDiff(
+                getDiffOfDeletedFile(context, repoBranch, diffFile)
+            );
+        }
+        return new Pair<>(repoFile.getServerFileId(), diffFile);
+    }
+
+    public static boolean handleNewFile(CodeSyncClient client, RepoDiffContext context, DiffFile diffFile, RepoBranch repoBranch) {
+        Repo repo = context.getRepo();
         String branchName = GitUtils.getBranchName(repo.getPath());
         OriginalsRepoManager originalsRepoManager = new OriginalsRepoManager(repo.getPath(), branchName);
 
@@ -561,8 +701,8 @@ public class HandleBuffer {
 
         CodeSyncLogger.info(String.format("Uploading new file: %s", diffFile.fileRelativePath));
         try {
-            Integer fileId = client.uploadFile(accessToken, repo, diffFile, originalsFile);
-            repoBranch.updateFileId(diffFile.fileRelativePath, fileId);
+            Integer fileId = client.uploadFile(context.getUser().getAccessToken(), repo, diffFile, originalsFile);
+            context.updateFileId(repoBranch, diffFile.fileRelativePath, fileId);
         } catch (FileInfoError error) {
             CodeSyncLogger.error(
                 String.format("Error while getting file information. \n%s", CommonUtils.getStackTrace(error))
@@ -596,12 +736,12 @@ public class HandleBuffer {
         return true;
     }
 
-    public static boolean handleFileRename(RepoBranch repoBranch, DiffFile diffFile, Integer oldFileId) {
+    public static boolean handleFileRename(RepoDiffContext context, RepoBranch repoBranch, DiffFile diffFile, Integer oldFileId) {
         ShadowRepoManager shadowRepoManager = new ShadowRepoManager(diffFile.repoPath, diffFile.branch);
         shadowRepoManager.renameFile(diffFile.oldRelativePath, diffFile.fileRelativePath);
 
         try {
-            repoBranch.updateFileId(diffFile.fileRelativePath, oldFileId);
+            context.updateFileId(repoBranch, diffFile.fileRelativePath, oldFileId);
             return true;
         } catch (SQLException e) {
             CodeSyncLogger.error(
@@ -611,7 +751,7 @@ public class HandleBuffer {
         }
     }
 
-    public static String getDiffOfDeletedFile(RepoBranch repoBranch, DiffFile diffFile ) {
+    public static String getDiffOfDeletedFile(RepoDiffContext context, RepoBranch repoBranch, DiffFile diffFile) {
         ShadowRepoManager shadowRepoManager = new ShadowRepoManager(diffFile.repoPath, diffFile.branch);
         Path shadowPath = shadowRepoManager.getFilePath(diffFile.fileRelativePath);
 
@@ -619,13 +759,13 @@ public class HandleBuffer {
         String diff = "";
 
         if (!shadowFile.exists()) {
-            cleanUpDeletedDiff(repoBranch, diffFile, shadowPath);
+            cleanUpDeletedDiff(context, repoBranch, diffFile, shadowPath);
             return diff;
         }
         try {
             Map<String, Object> fileInfo = FileUtils.getFileInfo(shadowPath.toString());
             if ((Boolean) fileInfo.get("isBinary")) {
-                cleanUpDeletedDiff(repoBranch, diffFile, shadowPath);
+                cleanUpDeletedDiff(context, repoBranch, diffFile, shadowPath);
                 return diff;
             }
         } catch (FileInfoError error) {
@@ -633,14 +773,14 @@ public class HandleBuffer {
                 String.format("Error while getting file information. \nError: %s", CommonUtils.getStackTrace(error))
             );
         }
-        String shadowText = FileUtils.readFileToString(shadowPath.toFile());
+        String shadowText = ShadowCache.getInstance().read(shadowPath);
         diff = CommonUtils.computeDiff(shadowText, "");
-        cleanUpDeletedDiff(repoBranch, diffFile, shadowPath);
+        cleanUpDeletedDiff(context, repoBranch, diffFile, shadowPath);
 
         return diff;
     }
 
-    public static void cleanUpDeletedDiff (RepoBranch repoBranch, DiffFile diffFile, Path shadowPath) {
+    public static void cleanUpDeletedDiff(RepoDiffContext context, RepoBranch repoBranch, DiffFile diffFile, Path shadowPath) {
         OriginalsRepoManager originalsRepoManager = new OriginalsRepoManager(diffFile.repoPath, diffFile.branch);
         DeletedRepoManager deletedRepoManager = new DeletedRepoManager(diffFile.repoPath, diffFile.branch);
 
@@ -654,11 +794,12 @@ public class HandleBuffer {
         if (deletedFile.exists()) {
             deletedFile.delete();
         }
+        ShadowCache.getInstance().invalidate(shadowPath);
         if (shadowFile.exists()) {
             shadowFile.delete();
         }
         try {
-            repoBranch.removeFile(diffFile.fileRelativePath);
+            context.removeFile(repoBranch, diffFile.fileRelativePath);
         } catch (SQLException e) {
             CodeSyncLogger.error(
                 String.format("Error while removing file id in the database. Error: %s", CommonUtils.getStackTrace(e))
@@ -666,7 +807,7 @@ public class HandleBuffer {
         }
     }
 
-    public static boolean forceUploadNullFile(CodeSyncClient client, String accessToken, DiffFile diffFile, Repo repo, RepoBranch repoBranch) {
+    public static boolean forceUploadNullFile(CodeSyncClient client, RepoDiffContext context, DiffFile diffFile, RepoBranch repoBranch) {
         OriginalsRepoManager originalsRepoManager = new OriginalsRepoManager(diffFile.repoPath, diffFile.branch);
         File originalsFile = originalsRepoManager.getFilePath(diffFile.fileRelativePath).toFile();
 
@@ -675,6 +816,6 @@ public class HandleBuffer {
             Path filePath = Paths.get(diffFile.repoPath, diffFile.fileRelativePath);
             originalsRepoManager.copyFiles(new String[]{filePath.toString()});
         }
-        return handleNewFile(client, accessToken, diffFile, repo, repoBranch);
+        return handleNewFile(client, context, diffFile, repoBranch);
     }
 }
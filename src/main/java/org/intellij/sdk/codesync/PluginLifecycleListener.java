@@ -0,0 +1,33 @@
+package org.intellij.sdk.codesync;
+
+import com.intellij.ide.AppLifecycleListener;
+import com.intellij.ide.plugins.DynamicPluginListener;
+import com.intellij.ide.plugins.IdeaPluginDescriptor;
+import org.intellij.sdk.codesync.clients.ClientUtils;
+import org.intellij.sdk.codesync.database.RepoFileWriteQueue;
+import org.jetbrains.annotations.NotNull;
+
+/*
+    Release the application wide resources of the plugin when the IDE is closed or the plugin is unloaded.
+*/
+public class PluginLifecycleListener implements AppLifecycleListener, DynamicPluginListener {
+    private static final String PLUGIN_ID = "com.codesync";
+
+    @Override
+    public void appWillBeClosed(boolean isRestart) {
+        releaseResources();
+    }
+
+    @Override
+    public void beforePluginUnload(@NotNull IdeaPluginDescriptor pluginDescriptor, boolean isUpdate) {
+        if (PLUGIN_ID.equals(pluginDescriptor.getPluginId().getIdString())) {
+            releaseResources();
+        }
+    }
+
+    private static void releaseResources() {
+        RepoFileWriteQueue.getInstance().shutdown();
+        CodeSyncLogger.debug(String.format("HTTP connection pool on close: %s", ClientUtils.getPoolStats()));
+        ClientUtils.closeHttpClient();
+    }
+}
@@ -1,11 +1,11 @@
 package org.intellij.sdk.codesync;
 
 import com.intellij.openapi.project.Project;
-import org.apache.commons.text.similarity.*;
-import org.intellij.sdk.codesync.clients.CodeSyncClient;
+import org.intellij.sdk.codesync.clients.ConnectivityMonitor;
 import org.intellij.sdk.codesync.codeSyncSetup.CodeSyncSetup;
 import org.intellij.sdk.codesync.codeSyncSetup.S3FilesUploader;
 import org.intellij.sdk.codesync.database.migrations.MigrateRepo;
+import org.intellij.sdk.codesync.database.models.FileState;
 import org.intellij.sdk.codesync.database.models.Repo;
 import org.intellij.sdk.codesync.database.models.RepoBranch;
 import org.intellij.sdk.codesync.database.models.RepoFile;
@@ -25,8 +25,11 @@ import org.intellij.sdk.codesync.utils.*;
 import static org.intellij.sdk.codesync.Constants.*;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.regex.Pattern;
@@ -68,9 +71,17 @@ public class PopulateBuffer {
     Date repoModifiedAt = null;
     Map<String, Date> repoLastSyncedAtMap = new HashMap<>();
 
-    String[] filePaths, relativeFilePaths;
+    String[] relativeFilePaths;
     Map<String, Map<String, Object>> fileInfoMap = new HashMap<>();
 
+    // Persisted state of the files as of the last scan, and the files whose state changed since then.
+    Map<String, FileState> fileStates;
+    Map<String, FileState> changedFiles = new LinkedHashMap<>();
+    // Time the scan of the repo tree started at, see `saveFileStates`.
+    long scannedAt;
+    // Built on the first rename check of the scan, see `checkForRename`.
+    RenameDetector renameDetector = null;
+
     public PopulateBuffer(String repoPath, String branchName) throws SQLException, RepoNotFound, RepoBranchNotFound {
         this.repoPath = repoPath;
         this.branchName = branchName;
@@ -84,23 +95,37 @@ public class PopulateBuffer {
             this.repoFiles.put(repoFile.getPath(), repoFile);
         }
 
-        this.filePaths = FileUtils.listFiles(repoPath);
-        this.relativeFilePaths = Arrays.stream(this.filePaths)
-                .map(filePath -> filePath.replace(this.repoPath, ""))
-                .map(filePath -> filePath.replaceFirst(Pattern.quote(String.valueOf(File.separatorChar)), ""))
-                .toArray(String[]::new);
+        // Collect relative paths and file info in a single pass over the (pruned) repo tree.
+        // Files whose size and modified time match the persisted file state are unchanged and skipped right away.
+        this.fileStates = FileState.getTable().findAll(this.repoBranch.getId());
+        this.scannedAt = System.currentTimeMillis();
+        List<String> relativeFilePaths = new ArrayList<>();
+        FileUtils.walkFiles(repoPath, filePath -> {
+            String relativeFilePath = filePath.toString()
+                .replace(this.repoPath, "")
+                .replaceFirst(Pattern.quote(String.valueOf(File.separatorChar)), "");
+            relativeFilePaths.add(relativeFilePath);
 
-        for (String relativeFilePath: this.relativeFilePaths) {
-            Path filePath = Paths.get(repoPath, relativeFilePath);
             try {
+                BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+                FileState fileState = this.fileStates.get(relativeFilePath);
+                long size = attributes.size(), modifiedAt = attributes.lastModifiedTime().toMillis();
+                if (fileState != null && fileState.hasSameMetadata(size, modifiedAt)) {
+                    return;
+                }
+                this.changedFiles.put(
+                    relativeFilePath,
+                    new FileState(relativeFilePath, this.repoBranch.getId(), size, modifiedAt, null, null)
+                );
                 this.fileInfoMap.put(relativeFilePath, FileUtils.getFileInfo(filePath.toString()));
-            } catch (FileInfoError error) {
+            } catch (IOException | FileInfoError error) {
                 // Log the message and continue.
                 CodeSyncLogger.error(String.format(
                     "Error while getting the file info for %s, Error: %s", filePath, CommonUtils.getStackTrace(error)
                 ));
             }
-        }
+        });
+        this.relativeFilePaths = relativeFilePaths.toArray(new String[0]);
     }
 
     private static void populateBufferDaemon(final Timer timer, Project project) {
@@ -160,8 +185,7 @@ public class PopulateBuffer {
 
     public static Map<String, String> detectBranchChange() {
         Map<String, String> reposToUpdate = new HashMap<>();
-        CodeSyncClient codeSyncClient = new CodeSyncClient();
-        if (!codeSyncClient.isServerUp()) {
+        if (!ConnectivityMonitor.getInstance().isServerReachable()) {
             return reposToUpdate;
         }
 
@@ -281,11 +305,13 @@ public class PopulateBuffer {
             Map<String, Object> diffs = new HashMap<>();
 
             PopulateBuffer populateBuffer = null;
+            boolean hasCheckedFileUpdates = false;
             try {
                 populateBuffer = new PopulateBuffer(repoPath, branchName);
                 if (populateBuffer.repo.isActive()) {
                     if (populateBuffer.isModifiedSinceLastSync()) {
                         diffsForFileUpdates = populateBuffer.getDiffsForFileUpdates();
+                        hasCheckedFileUpdates = true;
                     }
                     diffsForDeletedFiles = populateBuffer.getDiffsOfDeletedFiles();
                 }
@@ -304,6 +330,11 @@ public class PopulateBuffer {
 
             // Finally add diffs to .diff directory
             populateBufferWithDiffs(diffs, populateBuffer);
+
+            // States are only saved once the diffs are written, otherwise changes lost in between are never picked.
+            if (hasCheckedFileUpdates) {
+                populateBuffer.saveFileStates();
+            }
         }
     }
 
@@ -327,12 +358,12 @@ public class PopulateBuffer {
 
             if (diffData.containsKey("created_at")) {
                 String createdAt = (String) diffData.get("created_at");
-                DiffUtils.writeDiffToYml(
+                DiffUtils.appendDiffToJournal(
                         populateBuffer.repoPath, populateBuffer.branchName, relativeFilePath, diff,
                         isNewFile, isDeleted, isRename, false, createdAt
                 );
             } else {
-                DiffUtils.writeDiffToYml(
+                DiffUtils.appendDiffToJournal(
                         populateBuffer.repoPath, populateBuffer.branchName, relativeFilePath, diff,
                         isNewFile, isDeleted, isRename, false
                 );
@@ -375,13 +406,29 @@ public class PopulateBuffer {
     public Map<String, Object> getDiffsForFileUpdates() {
         Map<String, Object> diffs = new HashMap<>();
 
-        for (String relativeFilePath: this.relativeFilePaths) {
+        // Only the files whose metadata changed since the last scan need to be looked at.
+        for (FileState changedFile: this.changedFiles.values()) {
+            String relativeFilePath = changedFile.getPath();
             Path filePath = Paths.get(this.repoPath, relativeFilePath);
             String previousFileContent = "", diff = "", currentFileContent;
             boolean isRename = false;
             boolean isBinary = FileUtils.isBinaryFile(filePath.toFile());
             File shadowFile = this.shadowRepoManager.getFilePath(relativeFilePath).toFile();
 
+            changedFile.setBinary(isBinary);
+            changedFile.setContentHash(FileUtils.computeHash(filePath.toFile()));
+
+            // File was touched but its content is the same as in the last scan, nothing to do.
+            FileState fileState = this.fileStates.get(relativeFilePath);
+            if (
+                fileState != null &&
+                changedFile.getContentHash() != null &&
+                changedFile.getContentHash().equals(fileState.getContentHash()) &&
+                shadowFile.exists()
+            ) {
+                continue;
+            }
+
             // If file reference is present in the configFile, then we simply need to check if it was updated.
             // We only track changes to non-binary files, hence the check in here.
             if (this.repoFiles.containsKey(relativeFilePath) && !isBinary) {
@@ -393,29 +440,21 @@ public class PopulateBuffer {
                     // We need to check if shadow file was updated after file was written to disk.
                     // Because daemon should only pick changes once thi condition satisfies
 
-                    try {
-                        Map<String, Object> shadowFileInfo = FileUtils.getFileInfo(shadowFile.getPath());
-                        Date fileModifiedTime = CodeSyncDateUtils.parseDate((String) fileInfo.get("modifiedTime"));
-                        Date shadowFileModifiedTime = CodeSyncDateUtils.parseDate((String) shadowFileInfo.get("modifiedTime"));
-
-                        // If shadow file was modified after the file was written to disk, then, skip the change.
-                        if (
-                                shadowFileModifiedTime != null &&
-                                fileModifiedTime != null &&
-                                shadowFileModifiedTime.after(fileModifiedTime)
-                        ) {
-                            continue;
-                        }
-                    } catch (FileInfoError error) {
-                        // Log the message and continue.
-                        CodeSyncLogger.error(String.format(
-                            "Error while getting the file info for shadow file %s, Error: %s",
-                            shadowFile.getPath(),
-                            CommonUtils.getStackTrace(error)
-                        ));
+                    // Shadow modified time also accounts for the writes not yet flushed to the disk by the shadow cache.
+                    Date fileModifiedTime = CodeSyncDateUtils.parseDate((String) fileInfo.get("modifiedTime"));
+                    Date shadowFileModifiedTime = CodeSyncDateUtils.parseDate(
+                        CodeSyncDateUtils.formatDate(new Date(this.shadowRepoManager.getLastModified(relativeFilePath)))
+                    );
+
+                    // If shadow file was modified after the file was written to disk, then, skip the change.
+                    if (
+                            shadowFileModifiedTime != null &&
+                            fileModifiedTime != null &&
+                            shadowFileModifiedTime.after(fileModifiedTime)
+                    ) {
                         continue;
                     }
-                    previousFileContent = FileUtils.readFileToString(shadowFile);
+                    previousFileContent = this.shadowRepoManager.readFile(relativeFilePath);
                 } else {
                     if (fileInfo != null && (Long) fileInfo.get("size") > FILE_SIZE_AS_COPY) {
                         previousFileContent = FileUtils.readFileToString(filePath.toFile());
@@ -479,22 +518,47 @@ public class PopulateBuffer {
         return diffs;
     }
 
+    /*
+    Persist the state of the changed files so that these are skipped in the next scan unless changed again, called
+    once the diffs of `getDiffsForFileUpdates` are written to the buffer.
+
+    Files modified within `FILE_MODIFIED_TIME_GRANULARITY` of the scan may have been changed again after they were read
+    without their modified time changing, their state is not saved so that they are checked again in the next scan.
+    */
+    void saveFileStates() {
+        List<FileState> fileStatesToSave = new ArrayList<>();
+        for (FileState fileState: this.changedFiles.values()) {
+            if (fileState.getModifiedAt() < this.scannedAt - FILE_MODIFIED_TIME_GRANULARITY) {
+                fileStatesToSave.add(fileState);
+            }
+        }
+        try {
+            FileState.getTable().bulkUpsert(fileStatesToSave);
+            fileStatesToSave.forEach(fileState -> this.fileStates.put(fileState.getPath(), fileState));
+            this.changedFiles.clear();
+        } catch (SQLException e) {
+            CodeSyncLogger.error(String.format(
+                "Error while saving the file states for repo '%s', Error: %s", this.repoPath, CommonUtils.getStackTrace(e)
+            ));
+        }
+    }
+
     /*
     Check if the given file is a result of file-rename or not.
 
+    Matching is done by `RenameDetector` which is shared by all the rename checks of a scan, so the orphaned
+    shadow files are only listed and read once.
+
     returns true if this file is a result of a rename, false otherwise.
     */
     public Map<String, Object> checkForRename(String filePath) {
-        int matchingFilesCount = 0;
-        String matchingFilePath = "";
         Map<String, Object> renameResult = new HashMap<>();
+        renameResult.put("isRename", false);
+        renameResult.put("shadowFilePath", "");
 
         String fileContents = FileUtils.readFileToString(filePath);
 
         if (fileContents == null || fileContents.isEmpty()) {
-            renameResult.put("isRename", false);
-            renameResult.put("shadowFilePath", matchingFilePath);
-
             if(fileContents == null){
                 CodeSyncLogger.error(String.format("File content was returned as null for file: %s", filePath));
             }
@@ -502,38 +566,17 @@ public class PopulateBuffer {
             return renameResult;
         }
 
-        String[] shadowFilePaths = FileUtils.listFiles(this.shadowRepoManager.getBaseRepoBranchDir());
-        // Filter out binary files.
-        shadowFilePaths = Arrays.stream(shadowFilePaths)
-                .filter(path -> !FileUtils.isBinaryFile(path))
-                .toArray(String[]::new);
-
-        for (String shadowFilePath: shadowFilePaths) {
-            String relativeFilePath = this.shadowRepoManager.getRelativeFilePath(shadowFilePath);
-
-            if (Paths.get(this.repoPath, relativeFilePath).toFile().exists()) {
-                // Skip the shadow files that have corresponding files in the project repo.
-                continue;
-            }
-
-            String shadowContent = FileUtils.readFileToString(shadowFilePath);
-            Double similarityRatio = compare(fileContents, shadowContent);
-
-            if (similarityRatio > SEQUENCE_MATCHER_RATIO) {
-                matchingFilesCount += 1;
-                matchingFilePath = shadowFilePath;
-            }
+        if (this.renameDetector == null) {
+            this.renameDetector = new RenameDetector(this.repoPath, this.shadowRepoManager);
+        }
+        String oldRelativePath = this.renameDetector.findRenamedFrom(fileContents);
+        if (oldRelativePath != null) {
+            renameResult.put("isRename", true);
+            renameResult.put("shadowFilePath", this.shadowRepoManager.getFilePath(oldRelativePath).toString());
         }
-        renameResult.put("isRename", matchingFilesCount == 1);
-        renameResult.put("shadowFilePath", matchingFilePath);
         return renameResult;
     }
 
-    public static Double compare(String first, String second) {
-        JaroWinklerSimilarity jaroWinklerSimilarity = new JaroWinklerSimilarity();
-        return jaroWinklerSimilarity.apply(first, second);
-    }
-
     public Map<String, Object> getDiffsOfDeletedFiles() throws SQLException {
         Map<String, Object> diffs = new HashMap<>();
 
@@ -556,12 +599,21 @@ public class PopulateBuffer {
             diffContentMap.put("diff", null);  // Diff will be computed later while handling buffer.
 
             diffs.put(relativeFilePath, diffContentMap);
+            // Make sure the copy in .deleted repo has the latest contents.
+            this.shadowRepoManager.flush(relativeFilePath);
             this.deletedRepoManager.copyFiles(
                     new String[]{this.shadowRepoManager.getFilePath(relativeFilePath).toString()},
                     this.shadowRepoManager.getBaseRepoBranchDir()
             );
         }
 
+        // Files that no longer exist should not have a state.
+        List<String> removedFilePaths = this.fileStates.keySet().stream()
+                .filter(relativeFilePath -> !relativeFilePaths.contains(relativeFilePath))
+                .collect(Collectors.toList());
+        FileState.getTable().delete(this.repoBranch.getId(), removedFilePaths);
+        removedFilePaths.forEach(this.fileStates::remove);
+
         return diffs;
     }
 }
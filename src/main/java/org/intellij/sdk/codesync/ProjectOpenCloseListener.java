@@ -4,9 +4,13 @@ package org.intellij.sdk.codesync;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectManagerListener;
 import com.intellij.serviceContainer.AlreadyDisposedException;
+import kt.org.intellij.sdk.codesync.tasks.TaskExecutor;
+import org.intellij.sdk.codesync.database.EntityCache;
 import org.intellij.sdk.codesync.database.SQLiteConnection;
 import org.intellij.sdk.codesync.locks.CodeSyncLock;
+import org.intellij.sdk.codesync.repoManagers.ShadowCache;
 import org.intellij.sdk.codesync.utils.CommonUtils;
+import org.intellij.sdk.codesync.utils.GitHeadResolver;
 import org.jetbrains.annotations.NotNull;
 
 import java.sql.SQLException;
@@ -30,6 +34,14 @@ public class ProjectOpenCloseListener implements ProjectManagerListener {
 
   public void disposeProjectListeners(Project project) {
     CodeSyncLogger.info("Running project close listener for project: " + project.getName());
+
+    // Do not hold back document updates that are still waiting for their quiet window.
+    TaskExecutor.INSTANCE.flushPendingTasks();
+    // Persist shadow file contents that are still only in memory.
+    ShadowCache.getInstance().flushAll();
+    CodeSyncLogger.debug(GitHeadResolver.getInstance().getStats());
+    CodeSyncLogger.debug(String.format("Entity cache stats: %s.", EntityCache.getStats()));
+
     try{
       SQLiteConnection.getInstance().disconnect();
     } catch (SQLException e){
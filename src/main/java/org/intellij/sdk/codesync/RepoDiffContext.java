@@ -0,0 +1,101 @@
+package org.intellij.sdk.codesync;
+
+import org.intellij.sdk.codesync.database.models.Repo;
+import org.intellij.sdk.codesync.database.models.RepoBranch;
+import org.intellij.sdk.codesync.database.models.RepoFile;
+import org.intellij.sdk.codesync.database.models.User;
+import org.intellij.sdk.codesync.database.tables.RepoBranchTable;
+import org.intellij.sdk.codesync.database.tables.RepoFileTable;
+import org.intellij.sdk.codesync.exceptions.database.UserNotFound;
+import org.intellij.sdk.codesync.files.DiffFile;
+
+import java.sql.SQLException;
+import java.util.*;
+
+/*
+    Database records needed to process a batch of the diffs of a repo, resolved with a few queries before the batch is
+    processed instead of a few queries per diff.
+
+    The user is resolved once, all the branches with a single query and the files of each branch with a single query.
+    Files uploaded, renamed or removed while the batch is processed are recorded here as well, so later diffs of the
+    batch see them.
+*/
+public class RepoDiffContext {
+    private final Repo repo;
+    private final User user;
+    private final Map<String, RepoBranch> branches = new HashMap<>();
+    // Files keyed by the branch name and then by the relative file path.
+    private final Map<String, Map<String, RepoFile>> files = new HashMap<>();
+
+    private RepoDiffContext(Repo repo, User user) {
+        this.repo = repo;
+        this.user = user;
+    }
+
+    /*
+    Resolve the user, branches and files the given diffs of the repo refer to.
+    */
+    public static RepoDiffContext resolve(Repo repo, List<DiffFile> diffFiles) throws SQLException, UserNotFound {
+        RepoDiffContext context = new RepoDiffContext(repo, repo.getUser());
+
+        Map<String, Set<String>> pathsByBranch = new HashMap<>();
+        for (DiffFile diffFile : diffFiles) {
+            Set<String> paths = pathsByBranch.computeIfAbsent(diffFile.branch, branch -> new HashSet<>());
+            paths.add(diffFile.fileRelativePath);
+            if (diffFile.isRename) {
+                paths.add(diffFile.oldRelativePath);
+            }
+        }
+
+        for (RepoBranch repoBranch : RepoBranchTable.getInstance().findAll(repo.getId(), new ArrayList<>(pathsByBranch.keySet()))) {
+            context.branches.put(repoBranch.getName(), repoBranch);
+            Map<String, RepoFile> branchFiles = context.files.computeIfAbsent(repoBranch.getName(), name -> new HashMap<>());
+            for (RepoFile repoFile : RepoFileTable.getInstance().findAll(repoBranch.getId(), pathsByBranch.get(repoBranch.getName()))) {
+                branchFiles.put(repoFile.getPath(), repoFile);
+            }
+        }
+        return context;
+    }
+
+    public Repo getRepo() {
+        return repo;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    /*
+    @return  the branch with the given name, `null` if the branch is not synced.
+    */
+    public RepoBranch getBranch(String branchName) {
+        return branches.get(branchName);
+    }
+
+    /*
+    @return  the file of the given branch, `null` if the file is not synced.
+    */
+    public RepoFile getFile(String branchName, String relativeFilePath) {
+        return files.getOrDefault(branchName, Collections.emptyMap()).get(relativeFilePath);
+    }
+
+    /*
+    Save the server file id of a file of the given branch, both here and in the database through `RepoFileWriteQueue`.
+    */
+    public void updateFileId(RepoBranch repoBranch, String relativeFilePath, Integer serverFileId) throws SQLException {
+        repoBranch.updateFileId(relativeFilePath, serverFileId);
+        files.computeIfAbsent(repoBranch.getName(), name -> new HashMap<>())
+            .put(relativeFilePath, new RepoFile(relativeFilePath, repoBranch.getId(), serverFileId));
+    }
+
+    /*
+    Remove a file of the given branch, both here and from the database through `RepoFileWriteQueue`.
+    */
+    public void removeFile(RepoBranch repoBranch, String relativeFilePath) throws SQLException {
+        repoBranch.removeFile(relativeFilePath);
+        Map<String, RepoFile> branchFiles = files.get(repoBranch.getName());
+        if (branchFiles != null) {
+            branchFiles.remove(relativeFilePath);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.event.DocumentEvent;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
 import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
@@ -35,7 +36,7 @@ public class Utils {
             return true;
         }
         try {
-            Repo repo = Repo.getTable().find(repoPath);
+            Repo repo = Repo.getTable().findByPath(repoPath);
             return repo == null || !repo.isActive();
         } catch (SQLException error) {
             CodeSyncLogger.error(
@@ -70,7 +71,7 @@ public class Utils {
         ShadowRepoManager shadowRepoManager = new ShadowRepoManager(repoPath, branchName);
         shadowRepoManager.copyFiles(new String[] {filePath});
 
-        DiffUtils.writeDiffToYml(repoPath, branchName, relativeFilePath, "", true,
+        DiffUtils.appendDiffToJournal(repoPath, branchName, relativeFilePath, "", true,
                 false, false, false
         );
         CodeSyncLogger.logConsoleMessage(String.format("FileCreated: %s", filePath));
@@ -98,12 +99,14 @@ public class Utils {
         DeletedRepoManager deletedRepoManager = new DeletedRepoManager(repoPath, branchName);
         ShadowRepoManager shadowRepoManager = new ShadowRepoManager(repoPath, branchName);
 
+        // Make sure the copy in .deleted repo has the latest contents.
+        shadowRepoManager.flush(relativeFilePath);
         deletedRepoManager.copyFiles(
                 new String[]{shadowRepoManager.getFilePath(relativeFilePath).toString()},
                 shadowRepoManager.getBaseRepoBranchDir()
         );
 
-        DiffUtils.writeDiffToYml(repoPath, branchName, relativeFilePath, "", false,
+        DiffUtils.appendDiffToJournal(repoPath, branchName, relativeFilePath, "", false,
                 true, false, false);
         CodeSyncLogger.logConsoleMessage(String.format("FileDeleted: %s", filePath));
     }
@@ -113,6 +116,7 @@ public class Utils {
         DeletedRepoManager deletedRepoManager = new DeletedRepoManager(repoPath, branch);
         ShadowRepoManager shadowRepoManager = new ShadowRepoManager(repoPath, branch);
         Path shadowDirectoryPath = shadowRepoManager.getFilePath(relativeDirPath);
+        shadowRepoManager.flush(relativeDirPath);
 
         try {
             Stream<Path> files = Files.walk(shadowDirectoryPath).filter(Files::isRegularFile);
@@ -140,7 +144,7 @@ public class Utils {
                         shadowRepoManager.getBaseRepoBranchDir()
                 );
 
-                DiffUtils.writeDiffToYml(repoPath, branch, relativeFilePath, "", false,
+                DiffUtils.appendDiffToJournal(repoPath, branch, relativeFilePath, "", false,
                         true, false, false);
                 System.out.printf("FileDeleted: %s%n", filePath);
             });
@@ -200,7 +204,7 @@ public class Utils {
         JSONObject diff = new JSONObject();
         diff.put("old_rel_path", oldRelativeFilePath);
         diff.put("new_rel_path", newRelativeFilePath);
-        DiffUtils.writeDiffToYml(repoPath, branch, newRelativeFilePath, diff.toJSONString(),
+        DiffUtils.appendDiffToJournal(repoPath, branch, newRelativeFilePath, diff.toJSONString(),
                 false, false, true, false);
     }
 
@@ -226,7 +230,7 @@ public class Utils {
                 diff.put("new_abs_path", newFilePath);
                 diff.put("old_rel_path", oldRelativePath);
                 diff.put("new_rel_path", newRelativePath);
-                DiffUtils.writeDiffToYml(
+                DiffUtils.appendDiffToJournal(
                         repoPath, branch, newRelativePath, diff.toJSONString(),
                         false, false, true, false
                 );
@@ -253,20 +257,43 @@ public class Utils {
             return;
         }
 
-        String fileContents = document.getText();
-        if (fileContents.contains(MAGIC_STRING)) {
+        // Immutable snapshot is cheap to take, actual string is only materialized when the coalesced task runs.
+        CharSequence fileContents = document.getImmutableCharSequence();
+        if (StringUtil.contains(fileContents, MAGIC_STRING)) {
             // Skip the events that contain the MAGIC_STRING as those are duplicate events.
             return;
         }
-        TaskExecutor.INSTANCE.execute(() -> handleDocumentUpdates(file, repoPath, fileContents));
+        // Only the latest snapshot of a file is processed when several edits happen in quick succession.
+        // Path is taken now, the file may be renamed before the task runs.
+        String path = file.getPath();
+        TaskExecutor.INSTANCE.executeCoalesced(
+            getDocumentUpdateKey(repoPath, path),
+            () -> handleDocumentUpdates(path, repoPath, fileContents.toString())
+        );
     }
 
-    public static void handleDocumentUpdates(VirtualFile file, String repoPath, String currentText) {
-        if (file == null) {
+    private static String getDocumentUpdateKey(String repoPath, String path) {
+        return String.format("%s:%s", repoPath, path);
+    }
+
+    /*
+    Process the pending document updates of the given file, or of the files under the given directory, right away.
+
+    Called before a rename or delete of the path is handled, so that the diffs of the updates are written before the
+    diffs of the rename or delete, and against the shadow file of the path the updates were made at.
+
+    @param  path  path of the file as given by the VFS, i.e. with `/` as the separator.
+    */
+    public static void flushDocumentUpdates(String repoPath, String path) {
+        TaskExecutor.INSTANCE.runPendingTasks(getDocumentUpdateKey(repoPath, path));
+    }
+
+    public static void handleDocumentUpdates(String path, String repoPath, String currentText) {
+        if (path == null) {
             CodeSyncLogger.error("Skipping the update event, file is null.");
             return;
         }
-        String filePath = Paths.get(file.getPath()).toString();
+        String filePath = Paths.get(path).toString();
 
         if (repoPath == null) {
             CodeSyncLogger.error("Skipping the update event, repoPath is null.");
@@ -298,8 +325,8 @@ public class Utils {
             shadowRepoManager.copyFiles(new String[] {filePath});
         }
 
-        // Read shadow file
-        String shadowText = FileUtils.readFileToString(shadowPath.toFile());
+        // Read shadow file, contents are served from memory for files edited recently.
+        String shadowText = shadowRepoManager.readFile(relativeFilePath);
         if (shadowText == null) {
             CodeSyncLogger.error("Skipping the event, shadow file could not be read.");
             return;
@@ -311,22 +338,14 @@ public class Utils {
             return;
         }
 
-        // Update shadow file
-        try {
-            FileWriter myWriter = new FileWriter(shadowPath.toFile());
-            myWriter.write(currentText);
-            myWriter.close();
-        } catch (IOException e) {
-            CodeSyncLogger.error(
-                String.format("Error updating the shadow file. Error: %s", CommonUtils.getStackTrace(e))
-            );
-        }
+        // Update shadow file, contents are written to the disk in the background.
+        shadowRepoManager.writeFile(relativeFilePath, currentText);
         diff_match_patch dmp = new diff_match_patch();
         LinkedList<diff_match_patch.Patch> patches = dmp.patch_make(shadowText, currentText);
 
         // Create text representation of patches objects
         String diffs = dmp.patch_toText(patches);
-        DiffUtils.writeDiffToYml(repoPath, branch, relativeFilePath, diffs, false,
+        DiffUtils.appendDiffToJournal(repoPath, branch, relativeFilePath, diffs, false,
                 false, false, false);
     }
 }
@@ -1,6 +1,7 @@
 package org.intellij.sdk.codesync.clients;
 
 import io.netty.channel.ConnectTimeoutException;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
@@ -8,7 +9,12 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPatch;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.intellij.sdk.codesync.CodeSyncLogger;
 import org.intellij.sdk.codesync.exceptions.InvalidJsonError;
 import org.intellij.sdk.codesync.exceptions.RequestError;
 import org.intellij.sdk.codesync.exceptions.response.StatusCodeError;
@@ -18,9 +24,15 @@ import org.json.simple.JSONObject;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import static org.intellij.sdk.codesync.Constants.*;
 
 
 public class ClientUtils {
+    private static PoolingHttpClientConnectionManager connectionManager;
+    private static CloseableHttpClient httpClient;
+
     /*
     We will be using default timeout of 120 seconds for the following operations.
         1. `setSocketTimeout` will set timeout for http request.
@@ -39,6 +51,75 @@ public class ClientUtils {
         return HttpClientBuilder.create().setDefaultRequestConfig(requestConfig);
     }
 
+    /*
+    Process wide HTTP client, connections to the CodeSync server are pooled and kept alive between the requests
+    instead of paying for a TCP and TLS handshake on every request.
+
+    Idle and expired connections are evicted by a background thread of the client, see `closeHttpClient`.
+    */
+    public static synchronized CloseableHttpClient getHttpClient() {
+        if (httpClient == null) {
+            connectionManager = new PoolingHttpClientConnectionManager(HTTP_CONNECTION_TIME_TO_LIVE, TimeUnit.MILLISECONDS);
+            connectionManager.setMaxTotal(HTTP_POOL_MAX_CONNECTIONS);
+            connectionManager.setDefaultMaxPerRoute(HTTP_POOL_MAX_CONNECTIONS_PER_ROUTE);
+            httpClient = getHttpClientBuilder()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(ClientUtils::getKeepAliveDuration)
+                .evictExpiredConnections()
+                .evictIdleConnections(HTTP_CONNECTION_MAX_IDLE_TIME, TimeUnit.MILLISECONDS)
+                .build();
+        }
+        return httpClient;
+    }
+
+    /*
+    Use the keep alive duration sent by the server, capped to the max idle time since idle connections are evicted
+    after that anyway.
+    */
+    private static long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+        long keepAliveDuration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+        if (keepAliveDuration <= 0) {
+            return HTTP_CONNECTION_MAX_IDLE_TIME;
+        }
+        return Math.min(keepAliveDuration, HTTP_CONNECTION_MAX_IDLE_TIME);
+    }
+
+    /*
+    Statistics of the connection pool, e.g. leased and available connections. `null` if no request is made yet.
+    */
+    public static synchronized PoolStats getPoolStats() {
+        return connectionManager == null ? null : connectionManager.getTotalStats();
+    }
+
+    /*
+    Close the pooled connections, a new client is created if a request is made afterwards.
+    */
+    public static synchronized void closeHttpClient() {
+        if (httpClient == null) {
+            return;
+        }
+        try {
+            httpClient.close();
+        } catch (IOException error) {
+            CodeSyncLogger.logConsoleMessage(
+                String.format("Error while closing the HTTP client: %s", CommonUtils.getStackTrace(error))
+            );
+        }
+        httpClient = null;
+        connectionManager = null;
+    }
+
+    /*
+    Report the outcome of a request to the connectivity monitor, server errors mean the server is not usable.
+    */
+    private static void recordConnectivity(JSONResponse jsonResponse) {
+        if (jsonResponse.getStatusCode() >= 500) {
+            ConnectivityMonitor.getInstance().recordFailure();
+        } else {
+            ConnectivityMonitor.getInstance().recordSuccess();
+        }
+    }
+
     private static StringEntity getStringEntityFromJSONObject(JSONObject payload) throws InvalidJsonError {
         try {
             return new StringEntity(payload.toJSONString());
@@ -94,22 +175,21 @@ public class ClientUtils {
     }
 
     public static JSONResponse sendGet(String url, String accessToken) throws RequestError, InvalidJsonError, StatusCodeError {
-        try (CloseableHttpClient httpClient = getHttpClientBuilder().build()) {
-            // Build HTTP GET request instance.
-            HttpGet httpGet = getHttpGet(url, accessToken);
-
-            try (CloseableHttpResponse httpResponse = httpClient.execute(httpGet)) {
-                JSONResponse jsonResponse = JSONResponse.from(httpResponse);
-
-                // Raise Client or Server Error to be handled by the calling code.
-                jsonResponse.raiseForStatus();
-                return jsonResponse;
-            } catch (SocketTimeoutException | ConnectTimeoutException error) {
-                throw new RequestError("Request to CodeSync server timed out.");
-            } catch (IOException error) {
-                throw new RequestError("Could not make a successful request to CodeSync server.");
-            }
+        // Build HTTP GET request instance.
+        HttpGet httpGet = getHttpGet(url, accessToken);
+
+        try (CloseableHttpResponse httpResponse = getHttpClient().execute(httpGet)) {
+            JSONResponse jsonResponse = JSONResponse.from(httpResponse);
+            recordConnectivity(jsonResponse);
+
+            // Raise Client or Server Error to be handled by the calling code.
+            jsonResponse.raiseForStatus();
+            return jsonResponse;
+        } catch (SocketTimeoutException | ConnectTimeoutException error) {
+            ConnectivityMonitor.getInstance().recordFailure();
+            throw new RequestError("Request to CodeSync server timed out.");
         } catch (IOException error) {
+            ConnectivityMonitor.getInstance().recordFailure();
             throw new RequestError(
                 String.format(
                     "Could not make a successful request to CodeSync server. Error: %s%n",
@@ -124,22 +204,21 @@ public class ClientUtils {
     }
 
     public static JSONResponse sendPost(String url, JSONObject payload, String accessToken) throws RequestError, InvalidJsonError, StatusCodeError {
-        try (CloseableHttpClient httpClient = getHttpClientBuilder().build()) {
-            // Build HTTP POST request instance.
-            HttpPost httpPost = getHttpPost(url, payload, accessToken);
-
-            try (CloseableHttpResponse httpResponse = httpClient.execute(httpPost)) {
-                JSONResponse jsonResponse = JSONResponse.from(httpResponse);
-
-                // Raise Client or Server Error to be handled by the calling code.
-                jsonResponse.raiseForStatus();
-                return jsonResponse;
-            } catch (SocketTimeoutException | ConnectTimeoutException error) {
-                throw new RequestError("Request to CodeSync server timed out.");
-            } catch (IOException error) {
-                throw new RequestError("Could not make a successful request to CodeSync server.");
-            }
+        // Build HTTP POST request instance.
+        HttpPost httpPost = getHttpPost(url, payload, accessToken);
+
+        try (CloseableHttpResponse httpResponse = getHttpClient().execute(httpPost)) {
+            JSONResponse jsonResponse = JSONResponse.from(httpResponse);
+            recordConnectivity(jsonResponse);
+
+            // Raise Client or Server Error to be handled by the calling code.
+            jsonResponse.raiseForStatus();
+            return jsonResponse;
+        } catch (SocketTimeoutException | ConnectTimeoutException error) {
+            ConnectivityMonitor.getInstance().recordFailure();
+            throw new RequestError("Request to CodeSync server timed out.");
         } catch (IOException error) {
+            ConnectivityMonitor.getInstance().recordFailure();
             throw new RequestError(
                 String.format(
                     "Could not make a successful request to CodeSync server. Error: %s%n",
@@ -158,22 +237,21 @@ public class ClientUtils {
     }
 
     public static JSONResponse sendPatch(String url, JSONObject payload, String accessToken) throws RequestError, InvalidJsonError, StatusCodeError {
-        try (CloseableHttpClient httpClient = getHttpClientBuilder().build()) {
-            // Build HTTP PATCH request instance.
-            HttpPatch httpPatch = getHttpPatch(url, payload, accessToken);
-
-            try (CloseableHttpResponse httpResponse = httpClient.execute(httpPatch)) {
-                JSONResponse jsonResponse = JSONResponse.from(httpResponse);
-
-                // Raise Client or Server Error to be handled by the calling code.
-                jsonResponse.raiseForStatus();
-                return jsonResponse;
-            } catch (SocketTimeoutException | ConnectTimeoutException error) {
-                throw new RequestError("Request to CodeSync server timed out.");
-            } catch (IOException error) {
-                throw new RequestError("Could not make a successful request to CodeSync server.");
-            }
+        // Build HTTP PATCH request instance.
+        HttpPatch httpPatch = getHttpPatch(url, payload, accessToken);
+
+        try (CloseableHttpResponse httpResponse = getHttpClient().execute(httpPatch)) {
+            JSONResponse jsonResponse = JSONResponse.from(httpResponse);
+            recordConnectivity(jsonResponse);
+
+            // Raise Client or Server Error to be handled by the calling code.
+            jsonResponse.raiseForStatus();
+            return jsonResponse;
+        } catch (SocketTimeoutException | ConnectTimeoutException error) {
+            ConnectivityMonitor.getInstance().recordFailure();
+            throw new RequestError("Request to CodeSync server timed out.");
         } catch (IOException error) {
+            ConnectivityMonitor.getInstance().recordFailure();
             throw new RequestError(
                 String.format(
                     "Could not make a successful request to CodeSync server. Error: %s%n",
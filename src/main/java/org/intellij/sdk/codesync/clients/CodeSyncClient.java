@@ -4,7 +4,6 @@ import kotlin.Pair;
 
 import org.intellij.sdk.codesync.CodeSyncLogger;
 import org.intellij.sdk.codesync.codeSyncSetup.S3FileUploader;
-import org.intellij.sdk.codesync.codeSyncSetup.S3FilesUploader;
 import org.intellij.sdk.codesync.database.models.Repo;
 import org.intellij.sdk.codesync.database.models.User;
 import org.intellij.sdk.codesync.exceptions.*;
@@ -22,16 +21,17 @@ import org.intellij.sdk.codesync.alerts.PricingAlerts;
 import org.json.simple.JSONObject;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.net.HttpURLConnection;
 
 
 public class CodeSyncClient {
     final String filesURL = FILES_API_ENDPOINT;
-    static Map<String, CodeSyncWebSocketClient> codeSyncWebSocketClients = new HashMap<>();
+    static Map<String, CodeSyncWebSocketClient> codeSyncWebSocketClients = new ConcurrentHashMap<>();
 
     public CodeSyncClient() {
 
@@ -102,13 +102,9 @@ public class CodeSyncClient {
     }
 
     public CodeSyncWebSocketClient getWebSocketClient(String token) {
-        if (codeSyncWebSocketClients.containsKey(token)) {
-            return codeSyncWebSocketClients.get(token);
-        } else {
-            CodeSyncWebSocketClient codeSyncWebSocketClient = new CodeSyncWebSocketClient(token, WEBSOCKET_ENDPOINT);
-            codeSyncWebSocketClients.put(token, codeSyncWebSocketClient);
-            return codeSyncWebSocketClient;
-        }
+        return codeSyncWebSocketClients.computeIfAbsent(
+            token, key -> new CodeSyncWebSocketClient(key, WEBSOCKET_ENDPOINT)
+        );
     }
 
     public Integer uploadFile(String accessToken, Repo repo, DiffFile diffFile, File originalsFile) throws FileInfoError, InvalidJsonError, RequestError, InvalidUsage {
@@ -203,23 +199,21 @@ public class CodeSyncClient {
             if (fileSize > 0) {
                 Map<String, Object> filePathAndURLs = new HashMap<>();
                 filePathAndURLs.put(diffFile.fileRelativePath, preSignedURLData);
-                S3FileUploader s3FileUploader = new S3FileUploader(repo.getPath(), diffFile.branch, filePathAndURLs);
-                s3FileUploader.saveURLs();
+                S3FileUploader.enqueue(repo.getPath(), diffFile.branch, filePathAndURLs);
 
                 // Trigger the task to upload the file to S3.
                 CodeSyncLogger.info(String.format(
                     "[S3_FILE_UPLOAD]: Processing file: %s",
-                    s3FileUploader.getQueueFilePath()
+                    diffFile.fileRelativePath
                 ));
-                S3FilesUploader.registerFileBeingProcessed(s3FileUploader.getQueueFilePath());
-                s3FileUploader.triggerAsyncTask(StateUtils.getGlobalState().project);
+                new S3FileUploader().triggerAsyncTask(StateUtils.getGlobalState().project);
             }
         } catch (ClassCastException error) {
             CodeSyncLogger.logConsoleMessage("Could not upload the file.");
             // this would probably mean that `url` is empty, and we can skip aws upload.
-        } catch (InvalidYmlFileError | FileNotFoundException error) {
+        } catch (SQLException error) {
             CodeSyncLogger.critical(
-                String.format("Error creating S3 upload queue file. Error: %s", CommonUtils.getStackTrace(error))
+                String.format("Error adding file to the S3 upload queue. Error: %s", CommonUtils.getStackTrace(error))
             );
         }
 
@@ -10,6 +10,12 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.http.client.utils.URIBuilder;
 import org.intellij.sdk.codesync.alerts.PricingAlerts;
@@ -19,21 +25,58 @@ import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
 import org.json.simple.JSONArray;
 
-import static org.intellij.sdk.codesync.Constants.IDE_NAME;
+import static org.intellij.sdk.codesync.Constants.*;
 
 
 public class CodeSyncWebSocketClient {
     URI uri;
-    WebSocketClientEndpoint webSocketClientEndpoint;
-    boolean isConnected = false;
+    // Read by the websocket and scheduler threads without holding the lock.
+    volatile WebSocketClientEndpoint webSocketClientEndpoint;
+    volatile boolean isConnected = false;
+    volatile boolean isConnecting = false;
+    final List<ConnectionHandler> pendingConnectionHandlers = new ArrayList<>();
     String token;
 
+    // Diff batches sent to the server whose acks are not received yet, keyed by the request id.
+    final Map<Long, PendingBatch> pendingBatches = new ConcurrentHashMap<>();
+    // Request id of the pending batch of each diff, keyed by `diff_file_path`.
+    final Map<String, Long> pendingDiffs = new ConcurrentHashMap<>();
+    final AtomicLong lastRequestId = new AtomicLong();
+    // Limits the number of batches in flight.
+    final Semaphore window;
+    final long ackTimeout;
+    final long heartbeatInterval;
+    long authTimeout = WEBSOCKET_AUTH_TIMEOUT;
+    ScheduledFuture<?> heartbeat;
+
+    // Handles ack timeouts and heartbeats of all the clients.
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+        runnable -> {
+            Thread thread = new Thread(runnable, "CodeSync-WebSocket");
+            thread.setDaemon(true);
+            return thread;
+        }
+    );
+
     boolean isConnected(){
-        return isConnected && this.webSocketClientEndpoint.userSession != null;
+        return isConnected && this.webSocketClientEndpoint.isOpen() && !this.isHeartbeatMissed(this.webSocketClientEndpoint);
     }
 
     public CodeSyncWebSocketClient(String token, String uri) {
+        this(token, uri, DIFF_BATCHES_WINDOW_SIZE, DIFF_ACK_TIMEOUT, WEBSOCKET_HEARTBEAT_INTERVAL);
+    }
+
+    /*
+    @param  windowSize  number of diff batches that can be in flight at a time.
+    @param  ackTimeout  time in milliseconds after which the session of a batch with unacknowledged diffs is closed,
+        failing those diffs.
+    @param  heartbeatInterval  time in milliseconds between the pings sent to check that the session is alive.
+    */
+    public CodeSyncWebSocketClient(String token, String uri, int windowSize, long ackTimeout, long heartbeatInterval) {
         this.token = token;
+        this.window = new Semaphore(windowSize);
+        this.ackTimeout = ackTimeout;
+        this.heartbeatInterval = heartbeatInterval;
         try {
             this.uri = new URIBuilder(uri).addParameter("token", token).addParameter("source", IDE_NAME).build();
         } catch (URISyntaxException e) {
@@ -49,24 +92,141 @@ public class CodeSyncWebSocketClient {
             return;
         }
 
-        if (!this.isConnected()) {
-            this.webSocketClientEndpoint = new WebSocketClientEndpoint(this.uri);
-            this.authenticate(isAuthenticated -> {
-                this.isConnected = isAuthenticated;
-                connectionHandler.handleConnected(isAuthenticated);
-            });
-        } else {
+        boolean isConnected;
+        synchronized (this) {
+            isConnected = this.isConnected();
+            if (!isConnected) {
+                // Repos of the same user are processed concurrently, they share a single connection attempt.
+                this.pendingConnectionHandlers.add(connectionHandler);
+                if (this.isConnecting) {
+                    return;
+                }
+                this.isConnecting = true;
+                this.webSocketClientEndpoint = new WebSocketClientEndpoint(this.uri);
+            }
+        }
+
+        if (isConnected) {
             try {
                 connectionHandler.handleConnected(true);
             } catch (NullPointerException e)  {
                 this.isConnected = false;
                 throw e;
             }
+            return;
+        }
+
+        WebSocketClientEndpoint webSocketClientEndpoint = this.webSocketClientEndpoint;
+        // Set once the attempt succeeds or fails, so the waiting handlers are notified exactly once.
+        AtomicBoolean isSettled = new AtomicBoolean(false);
+        // Server may never answer the auth request, the attempt fails after `authTimeout` in that case.
+        ScheduledFuture<?> authTimeout = scheduler.schedule(() -> {
+            if (isSettled.compareAndSet(false, true)) {
+                CodeSyncLogger.logConsoleMessage("Websocket authentication timed out, closing the session.");
+                ConnectivityMonitor.getInstance().recordFailure();
+                this.notifyConnectionHandlers(false);
+                webSocketClientEndpoint.close();
+            }
+        }, this.authTimeout, TimeUnit.MILLISECONDS);
+
+        webSocketClientEndpoint.setCloseHandler(() -> {
+            if (isSettled.compareAndSet(false, true)) {
+                // Session closed before it was authenticated, the attempt failed.
+                authTimeout.cancel(false);
+                this.notifyConnectionHandlers(false);
+                return;
+            }
+            // Acks of the batches sent over a closed connection never arrive.
+            this.expirePendingBatches(webSocketClientEndpoint);
+        });
+        try {
+            this.authenticate(isAuthenticated -> {
+                if (!isSettled.compareAndSet(false, true)) {
+                    return;
+                }
+                authTimeout.cancel(false);
+                // Server responded, token may still be invalid but the server is reachable.
+                ConnectivityMonitor.getInstance().recordSuccess();
+                if (isAuthenticated) {
+                    // A single handler dispatches the acks of all the batches sent over this connection.
+                    webSocketClientEndpoint.setMessageHandler(this::handleDiffsResponse);
+                    this.startHeartbeat(webSocketClientEndpoint);
+                }
+                this.isConnected = isAuthenticated;
+                this.notifyConnectionHandlers(isAuthenticated);
+            });
+        } catch (RuntimeException e) {
+            if (isSettled.compareAndSet(false, true)) {
+                authTimeout.cancel(false);
+                ConnectivityMonitor.getInstance().recordFailure();
+                this.notifyConnectionHandlers(false);
+            }
+            throw e;
         }
     }
 
+    /*
+    Notify the handlers waiting for the current connection attempt.
+    */
+    private void notifyConnectionHandlers(boolean isConnected) {
+        List<ConnectionHandler> connectionHandlers;
+        synchronized (this) {
+            connectionHandlers = new ArrayList<>(this.pendingConnectionHandlers);
+            this.pendingConnectionHandlers.clear();
+            this.isConnecting = false;
+        }
+        for (ConnectionHandler connectionHandler: connectionHandlers) {
+            connectionHandler.handleConnected(isConnected);
+        }
+    }
+
+    /*
+    Drop the current session, the next `connect` call opens a new one.
+
+    Calls made before the next `connect` are no-ops, so a batch reconnects at most once. Batches sent over the
+    session may still be waiting for their acks, so the session is closed once those are received or timed out.
+    */
     public void disconnect () {
-        this.isConnected = false;
+        WebSocketClientEndpoint webSocketClientEndpoint;
+        synchronized (this) {
+            if (!this.isConnected) {
+                return;
+            }
+            this.isConnected = false;
+            webSocketClientEndpoint = this.webSocketClientEndpoint;
+        }
+        scheduler.schedule(
+            webSocketClientEndpoint::close, this.pendingBatches.isEmpty() ? 0 : this.ackTimeout, TimeUnit.MILLISECONDS
+        );
+    }
+
+    private synchronized void startHeartbeat(WebSocketClientEndpoint webSocketClientEndpoint) {
+        if (this.heartbeat != null) {
+            this.heartbeat.cancel(false);
+        }
+        this.heartbeat = scheduler.scheduleAtFixedRate(
+            () -> this.sendHeartbeat(webSocketClientEndpoint),
+            this.heartbeatInterval, this.heartbeatInterval, TimeUnit.MILLISECONDS
+        );
+    }
+
+    private void sendHeartbeat(WebSocketClientEndpoint webSocketClientEndpoint) {
+        if (this.webSocketClientEndpoint != webSocketClientEndpoint || !webSocketClientEndpoint.isOpen()) {
+            return;
+        }
+        if (this.isHeartbeatMissed(webSocketClientEndpoint)) {
+            // Session is dead even though it was not closed, close it so that the pending batches fail right away.
+            CodeSyncLogger.logConsoleMessage("Websocket heartbeat missed, closing the session.");
+            ConnectivityMonitor.getInstance().recordFailure();
+            webSocketClientEndpoint.close();
+            return;
+        }
+        webSocketClientEndpoint.sendPing();
+    }
+
+    private boolean isHeartbeatMissed(WebSocketClientEndpoint webSocketClientEndpoint) {
+        long timeSinceLastPong = System.currentTimeMillis() - webSocketClientEndpoint.getLastPongAt();
+        return timeSinceLastPong > this.heartbeatInterval * WEBSOCKET_MISSED_HEARTBEATS;
     }
 
     public void authenticate(AuthenticationHandler authenticationHandler) {
@@ -107,66 +267,18 @@ public class CodeSyncWebSocketClient {
     }
 
     public void sendDiff(DiffFile diffFile, Integer fileId, DataTransmissionHandler dataTransmissionHandler) throws WebSocketConnectionError {
-        if (!this.isConnected()) {
-            throw new WebSocketConnectionError(
-                String.format("Failed to connect to the websocket endpoint at '%s'.}", this.uri.toString())
-            );
-        }
-        System.out.printf("Sending Diff: %s.\n", diffFile.originalDiffFile.getPath());
-
-        JSONObject diff = new JSONObject();
-        diff.put("file_id", fileId);
-        diff.put("diff", diffFile.diff);
-        diff.put("is_deleted", diffFile.isDeleted);
-        diff.put("is_rename", diffFile.isRename);
-        diff.put("is_binary", diffFile.isBinary);
-        diff.put("created_at", CodeSyncDateUtils.formatDate(diffFile.createdAt));
-        diff.put("path", diffFile.fileRelativePath);
-        diff.put("diff_file_path", diffFile.originalDiffFile.getPath());
-
-        JSONArray diffs = new JSONArray();
-        diffs.add(diff);
-
-        JSONObject payload = new JSONObject();
-        payload.put("diffs", diffs);
-
-        this.webSocketClientEndpoint.setMessageHandler(message -> {
-            if (message.isEmpty()) {
-                CodeSyncLogger.error("Got empty response while sending diffs");
-                dataTransmissionHandler.dataTransferStatusCallback(false, null);
-            }
-
-            JSONObject response;
-            try {
-                response = (JSONObject) JSONValue.parseWithException(message);
-                Long statusCode = (Long) response.get("status");
-                String diffFilePath = (String) response.get("diff_file_path");
-                if (statusCode != 200) {
-                    CodeSyncLogger.critical(String.format("Diff upload failed with error: %s.", response.get("error")));
-                }
-                dataTransmissionHandler.dataTransferStatusCallback(statusCode == 200, diffFilePath);
-            } catch (org.json.simple.parser.ParseException error) {
-                CodeSyncLogger.critical(
-                    String.format(
-                        "Invalid JSON from server while sending diff file.: %s",
-                        CommonUtils.getStackTrace(error)
-                    )
-                );
-                dataTransmissionHandler.dataTransferStatusCallback(false, null);
-            } catch (ClassCastException error) {
-                CodeSyncLogger.critical(
-                    String.format(
-                        "Invalid JSON data  from server caused cast exception: %s",
-                        CommonUtils.getStackTrace(error)
-                    )
-                );
-                dataTransmissionHandler.dataTransferStatusCallback(false, null);
-            }
-        });
-
-        this.webSocketClientEndpoint.sendMessage(payload.toJSONString());
+        ArrayList<Pair<Integer, DiffFile>> diffsToSend = new ArrayList<>();
+        diffsToSend.add(new Pair<>(fileId, diffFile));
+        this.sendDiffs(diffsToSend, dataTransmissionHandler);
     }
 
+    /*
+    Send the diffs to the server in a single request.
+
+    Call returns once the request is sent, `dataTransmissionHandler` is called for each diff when its ack is received
+    or the ack times out. If `DIFF_BATCHES_WINDOW_SIZE` batches are already waiting for their acks then the call blocks
+    until one of them completes.
+    */
     public void sendDiffs(ArrayList<Pair<Integer, DiffFile>> diffsToSend, DataTransmissionHandler dataTransmissionHandler) throws WebSocketConnectionError {
         if (!this.isConnected()) {
             throw new WebSocketConnectionError(
@@ -174,6 +286,7 @@ public class CodeSyncWebSocketClient {
             );
         }
         JSONArray diffs = new JSONArray();
+        Set<String> diffFilePaths = ConcurrentHashMap.newKeySet();
 
         for (Pair<Integer, DiffFile> diffFileEntry : diffsToSend) {
             Integer fileId = diffFileEntry.getFirst();
@@ -181,61 +294,211 @@ public class CodeSyncWebSocketClient {
 
             JSONObject diff = new JSONObject();
             diff.put("file_id", fileId);
-            diff.put("diff", diffFile.diff);
+            diff.put("diff", diffFile.getDiff());
             diff.put("is_deleted", diffFile.isDeleted);
             diff.put("is_rename", diffFile.isRename);
             diff.put("is_binary", diffFile.isBinary);
             diff.put("created_at", CodeSyncDateUtils.formatDate(diffFile.createdAt));
             diff.put("path", diffFile.fileRelativePath);
             diff.put("commit_hash", diffFile.commitHash);
-            diff.put("diff_file_path", diffFile.originalDiffFile.getPath());
+            diff.put("diff_file_path", diffFile.path);
 
             diffs.add(diff);
+            diffFilePaths.add(diffFile.path);
         }
 
+        long requestId = this.lastRequestId.incrementAndGet();
         JSONObject payload = new JSONObject();
+        payload.put("request_id", requestId);
         payload.put("diffs", diffs);
 
-        this.webSocketClientEndpoint.setMessageHandler(message -> {
-            if (message.isEmpty()) {
-                CodeSyncLogger.error("Got empty response while sending diffs");
-                dataTransmissionHandler.dataTransferStatusCallback(false, null);
+        try {
+            if (!this.window.tryAcquire(this.ackTimeout, TimeUnit.MILLISECONDS)) {
+                throw new WebSocketConnectionError(
+                    String.format("Timed out waiting for the acks of the diffs sent to '%s'.", this.uri.toString())
+                );
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WebSocketConnectionError("Interrupted while waiting for the acks of the diffs.");
+        }
 
-            JSONObject response;
-            try {
-                response = (JSONObject) JSONValue.parseWithException(message);
-                Long statusCode = (Long) response.get("status");
-                String diffFilePath = (String) response.get("diff_file_path");
-                if (statusCode != 200) {
-                    if (statusCode == Constants.ErrorCodes.PAYMENT_REQUIRED) {
-                        CodeSyncLogger.error("Failed sending diff, Repo-Size Limit has been reached.");
-                        PricingAlerts.setPlanLimitReached();
-                    } else {
-                        CodeSyncLogger.critical(String.format("Diff upload failed with error: %s.", response.get("error")));
-                    }
+        WebSocketClientEndpoint webSocketClientEndpoint = this.webSocketClientEndpoint;
+        PendingBatch pendingBatch = new PendingBatch(
+            requestId, diffFilePaths, dataTransmissionHandler, webSocketClientEndpoint
+        );
+        this.pendingBatches.put(requestId, pendingBatch);
+        for (String diffFilePath: diffFilePaths) {
+            this.pendingDiffs.put(diffFilePath, requestId);
+        }
+        pendingBatch.timeout = scheduler.schedule(
+            () -> this.handleAckTimeout(requestId), this.ackTimeout, TimeUnit.MILLISECONDS
+        );
+
+        try {
+            webSocketClientEndpoint.sendMessage(payload.toJSONString());
+        } catch (RuntimeException e) {
+            // Caller handles the diffs of the batch on connection errors, so the handler is not called for them.
+            if (this.removeBatch(requestId) != null) {
+                diffFilePaths.forEach(this.pendingDiffs::remove);
+            }
+            throw new WebSocketConnectionError(
+                String.format("Failed to send the diffs to '%s'. Error: %s", this.uri.toString(), e.getMessage())
+            );
+        }
+    }
+
+    /*
+    Number of diff batches waiting for their acks.
+    */
+    public int getPendingBatchCount() {
+        return this.pendingBatches.size();
+    }
+
+    void handleDiffsResponse(String message) {
+        if (message.isEmpty()) {
+            CodeSyncLogger.error("Got empty response while sending diffs");
+            return;
+        }
+
+        JSONObject response;
+        try {
+            response = (JSONObject) JSONValue.parseWithException(message);
+            Long statusCode = (Long) response.get("status");
+            String diffFilePath = (String) response.get("diff_file_path");
+            Long requestId = (Long) response.get("request_id");
+            if (statusCode != 200) {
+                if (statusCode == Constants.ErrorCodes.PAYMENT_REQUIRED) {
+                    CodeSyncLogger.error("Failed sending diff, Repo-Size Limit has been reached.");
+                    PricingAlerts.setPlanLimitReached();
+                } else {
+                    CodeSyncLogger.critical(String.format("Diff upload failed with error: %s.", response.get("error")));
                 }
-                dataTransmissionHandler.dataTransferStatusCallback(statusCode == 200, diffFilePath);
-            } catch (org.json.simple.parser.ParseException error) {
-                CodeSyncLogger.critical(
-                    String.format(
-                        "Invalid JSON from server while sending diff file. Error: %s",
-                        CommonUtils.getStackTrace(error)
-                    )
-                );
-                dataTransmissionHandler.dataTransferStatusCallback(false, null);
-            } catch (ClassCastException error) {
-                CodeSyncLogger.critical(
-                    String.format(
-                        "Invalid JSON data  from server caused cast exception: %s",
-                        CommonUtils.getStackTrace(error)
-                    )
-                );
-                dataTransmissionHandler.dataTransferStatusCallback(false, null);
             }
-        });
 
-        this.webSocketClientEndpoint.sendMessage(payload.toJSONString());
+            if (diffFilePath == null) {
+                // Response is for the whole batch, the request id is needed to know which one.
+                if (requestId != null && statusCode != 200) {
+                    this.expireBatch(requestId);
+                }
+                return;
+            }
+            if (requestId == null) {
+                requestId = this.pendingDiffs.get(diffFilePath);
+            }
+            if (requestId != null) {
+                this.ackDiff(requestId, diffFilePath, statusCode == 200);
+            }
+        } catch (org.json.simple.parser.ParseException error) {
+            CodeSyncLogger.critical(
+                String.format(
+                    "Invalid JSON from server while sending diff file. Error: %s",
+                    CommonUtils.getStackTrace(error)
+                )
+            );
+        } catch (ClassCastException error) {
+            CodeSyncLogger.critical(
+                String.format(
+                    "Invalid JSON data  from server caused cast exception: %s",
+                    CommonUtils.getStackTrace(error)
+                )
+            );
+        }
+    }
+
+    private void ackDiff(long requestId, String diffFilePath, boolean successfullyTransferred) {
+        PendingBatch pendingBatch = this.pendingBatches.get(requestId);
+        // Batches are only failed once their session is closed, so no ack arrives after its diff is failed.
+        if (pendingBatch == null || !pendingBatch.diffFilePaths.remove(diffFilePath)) {
+            return;
+        }
+        this.pendingDiffs.remove(diffFilePath, requestId);
+        pendingBatch.dataTransmissionHandler.dataTransferStatusCallback(successfullyTransferred, diffFilePath);
+        if (pendingBatch.diffFilePaths.isEmpty()) {
+            this.removeBatch(requestId);
+        }
+    }
+
+    /*
+    Close the session of a batch whose acks are not received in time.
+
+    Diffs of the batch are not failed right away, the server may still apply them and ack them late, and a failed diff
+    is sent again. They are failed once the session is closed, after which no ack can arrive for them.
+    */
+    private void handleAckTimeout(long requestId) {
+        PendingBatch pendingBatch = this.pendingBatches.get(requestId);
+        if (pendingBatch == null) {
+            return;
+        }
+        WebSocketClientEndpoint webSocketClientEndpoint = pendingBatch.webSocketClientEndpoint;
+        if (!webSocketClientEndpoint.isOpen()) {
+            this.expireBatch(requestId);
+            return;
+        }
+        CodeSyncLogger.logConsoleMessage("Timed out waiting for the acks of the diffs, closing the session.");
+        webSocketClientEndpoint.close();
+        // Close handler fails the batch, check again in case the session does not close in time.
+        pendingBatch.timeout = scheduler.schedule(
+            () -> this.handleAckTimeout(requestId), this.ackTimeout, TimeUnit.MILLISECONDS
+        );
+    }
+
+    /*
+    Fail the diffs of the batch whose acks are not received yet.
+    */
+    private void expireBatch(long requestId) {
+        PendingBatch pendingBatch = this.removeBatch(requestId);
+        if (pendingBatch == null) {
+            return;
+        }
+        for (String diffFilePath: new ArrayList<>(pendingBatch.diffFilePaths)) {
+            if (pendingBatch.diffFilePaths.remove(diffFilePath)) {
+                this.pendingDiffs.remove(diffFilePath, requestId);
+                pendingBatch.dataTransmissionHandler.dataTransferStatusCallback(false, diffFilePath);
+            }
+        }
+    }
+
+    /*
+    Fail the pending batches sent over the given session.
+    */
+    private void expirePendingBatches(WebSocketClientEndpoint webSocketClientEndpoint) {
+        for (PendingBatch pendingBatch: new ArrayList<>(this.pendingBatches.values())) {
+            if (pendingBatch.webSocketClientEndpoint == webSocketClientEndpoint) {
+                this.expireBatch(pendingBatch.requestId);
+            }
+        }
+    }
+
+    private PendingBatch removeBatch(long requestId) {
+        PendingBatch pendingBatch = this.pendingBatches.remove(requestId);
+        if (pendingBatch != null) {
+            if (pendingBatch.timeout != null) {
+                pendingBatch.timeout.cancel(false);
+            }
+            this.window.release();
+        }
+        return pendingBatch;
+    }
+
+    static class PendingBatch {
+        final long requestId;
+        // Diffs of the batch whose acks are not received yet.
+        final Set<String> diffFilePaths;
+        final DataTransmissionHandler dataTransmissionHandler;
+        // Session the batch was sent over, its acks can only arrive over it.
+        final WebSocketClientEndpoint webSocketClientEndpoint;
+        volatile ScheduledFuture<?> timeout;
+
+        PendingBatch(
+            long requestId, Set<String> diffFilePaths, DataTransmissionHandler dataTransmissionHandler,
+            WebSocketClientEndpoint webSocketClientEndpoint
+        ) {
+            this.requestId = requestId;
+            this.diffFilePaths = diffFilePaths;
+            this.dataTransmissionHandler = dataTransmissionHandler;
+            this.webSocketClientEndpoint = webSocketClientEndpoint;
+        }
     }
 
     public static interface AuthenticationHandler {
@@ -0,0 +1,141 @@
+package org.intellij.sdk.codesync.clients;
+
+import org.intellij.sdk.codesync.CodeSyncLogger;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+import static org.intellij.sdk.codesync.Constants.*;
+
+/*
+    Tracks the connectivity to the CodeSync server as a circuit breaker, so that background tasks do not need to call
+    the healthcheck endpoint on every cycle.
+
+    Results of the actual HTTP and websocket calls are reported via `recordSuccess` and `recordFailure`.
+        CLOSED: Server is reachable, callers go ahead without any extra request.
+        OPEN: Consecutive calls failed, callers skip their work without any network access until the next probe
+            is due.
+        HALF_OPEN: A single healthcheck probe is in flight and the other callers keep skipping. A successful probe
+            closes the circuit, a failed one opens it again and doubles the probe delay.
+*/
+public class ConnectivityMonitor {
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN,
+    }
+
+    private static ConnectivityMonitor instance;
+
+    private final BooleanSupplier probe;
+    private final LongSupplier clock;
+    private final int failureThreshold;
+    private final long initialProbeDelay;
+    private final long maxProbeDelay;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long probeDelay;
+    private long nextProbeAt = 0;
+
+    public static synchronized ConnectivityMonitor getInstance() {
+        if (instance == null) {
+            instance = new ConnectivityMonitor(
+                () -> new CodeSyncClient().isServerUp(),
+                System::currentTimeMillis,
+                CONNECTIVITY_FAILURE_THRESHOLD,
+                CONNECTIVITY_INITIAL_PROBE_DELAY,
+                CONNECTIVITY_MAX_PROBE_DELAY
+            );
+        }
+        return instance;
+    }
+
+    /*
+    @param  probe  checks if the server is up, called when the circuit is open and the next probe is due.
+    @param  failureThreshold  number of consecutive failures after which the circuit opens.
+    */
+    public ConnectivityMonitor(
+        BooleanSupplier probe, LongSupplier clock, int failureThreshold, long initialProbeDelay, long maxProbeDelay
+    ) {
+        this.probe = probe;
+        this.clock = clock;
+        this.failureThreshold = failureThreshold;
+        this.initialProbeDelay = initialProbeDelay;
+        this.maxProbeDelay = maxProbeDelay;
+        this.probeDelay = initialProbeDelay;
+    }
+
+    /*
+    Check if the background tasks should go ahead with the calls to the server.
+
+    No request is made unless the circuit is open and the next probe is due, in which case a single healthcheck
+    request is made.
+    */
+    public boolean isServerReachable() {
+        synchronized (this) {
+            if (this.state == State.CLOSED) {
+                return true;
+            }
+            if (this.state == State.HALF_OPEN || this.clock.getAsLong() < this.nextProbeAt) {
+                return false;
+            }
+            this.state = State.HALF_OPEN;
+        }
+
+        // Probe is made outside the lock, its result is usually reported by `ClientUtils` already.
+        boolean isServerUp = this.probe.getAsBoolean();
+        synchronized (this) {
+            if (this.state == State.HALF_OPEN) {
+                if (isServerUp) {
+                    this.close();
+                } else {
+                    this.open(Math.min(this.probeDelay * 2, this.maxProbeDelay));
+                }
+            }
+            return isServerUp && this.state == State.CLOSED;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        this.consecutiveFailures = 0;
+        if (this.state != State.CLOSED) {
+            this.close();
+        }
+    }
+
+    public synchronized void recordFailure() {
+        switch (this.state) {
+            case CLOSED:
+                this.consecutiveFailures++;
+                if (this.consecutiveFailures >= this.failureThreshold) {
+                    CodeSyncLogger.logConsoleMessage("CodeSync server is not reachable, pausing the sync.");
+                    this.open(this.initialProbeDelay);
+                }
+                break;
+            case HALF_OPEN:
+                this.open(Math.min(this.probeDelay * 2, this.maxProbeDelay));
+                break;
+            case OPEN:
+                // Calls made before the circuit opened, nothing new to learn.
+                break;
+        }
+    }
+
+    public synchronized State getState() {
+        return this.state;
+    }
+
+    private void open(long probeDelay) {
+        this.state = State.OPEN;
+        this.probeDelay = probeDelay;
+        this.nextProbeAt = this.clock.getAsLong() + probeDelay;
+    }
+
+    private void close() {
+        CodeSyncLogger.logConsoleMessage("CodeSync server is reachable, resuming the sync.");
+        this.state = State.CLOSED;
+        this.consecutiveFailures = 0;
+        this.probeDelay = this.initialProbeDelay;
+    }
+}
@@ -5,13 +5,15 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -20,14 +22,17 @@ import java.util.List;
  * POST requests to a web server.
  * ref: https://www.codejava.net/java-se/networking/upload-files-by-sending-multipart-request-programmatically
  *
+ * Parts are only collected until {@link #finish(int)} is called, the exact length of the request body is computed
+ * then so that the request can be sent in fixed length streaming mode and files are streamed from the disk instead of
+ * being buffered in memory by {@link HttpURLConnection}.
  */
 public class MultipartUtility {
     private final String boundary;
     private static final String LINE_FEED = "\r\n";
     private HttpURLConnection httpConn;
     private String charset;
-    private OutputStream outputStream;
-    private PrintWriter writer;
+    // Parts of the request body in order, either text (as byte[]) or files to stream from the disk.
+    private final List<Object> bodyParts = new ArrayList<>();
 
     /**
      * This constructor initializes a new HTTP POST request with content type
@@ -52,9 +57,10 @@ public class MultipartUtility {
                 "multipart/form-data; boundary=" + boundary);
         httpConn.setRequestProperty("User-Agent", "CodeJava Agent");
         httpConn.setRequestProperty("Test", "Bonjour");
-        outputStream = httpConn.getOutputStream();
-        writer = new PrintWriter(new OutputStreamWriter(outputStream, charset),
-                true);
+    }
+
+    private void addText(String text) throws IOException {
+        bodyParts.add(text.getBytes(charset));
     }
 
     /**
@@ -62,15 +68,14 @@ public class MultipartUtility {
      * @param name field name
      * @param value field value
      */
-    public void addFormField(String name, String value) {
-        writer.append("--" + boundary).append(LINE_FEED);
-        writer.append("Content-Disposition: form-data; name=\"" + name + "\"")
-                .append(LINE_FEED);
-        writer.append("Content-Type: text/plain; charset=" + charset).append(
-                LINE_FEED);
-        writer.append(LINE_FEED);
-        writer.append(value).append(LINE_FEED);
-        writer.flush();
+    public void addFormField(String name, String value) throws IOException {
+        addText(
+            "--" + boundary + LINE_FEED +
+            "Content-Disposition: form-data; name=\"" + name + "\"" + LINE_FEED +
+            "Content-Type: text/plain; charset=" + charset + LINE_FEED +
+            LINE_FEED +
+            value + LINE_FEED
+        );
     }
 
     /**
@@ -82,30 +87,15 @@ public class MultipartUtility {
     public void addFilePart(String fieldName, File uploadFile)
             throws IOException {
         String fileName = uploadFile.getName();
-        writer.append("--" + boundary).append(LINE_FEED);
-        writer.append(
-                "Content-Disposition: form-data; name=\"" + fieldName
-                        + "\"; filename=\"" + fileName + "\"")
-                .append(LINE_FEED);
-        writer.append(
-                "Content-Type: "
-                        + URLConnection.guessContentTypeFromName(fileName))
-                .append(LINE_FEED);
-        writer.append("Content-Transfer-Encoding: binary").append(LINE_FEED);
-        writer.append(LINE_FEED);
-        writer.flush();
-
-        FileInputStream inputStream = new FileInputStream(uploadFile);
-        byte[] buffer = new byte[4096];
-        int bytesRead = -1;
-        while ((bytesRead = inputStream.read(buffer)) != -1) {
-            outputStream.write(buffer, 0, bytesRead);
-        }
-        outputStream.flush();
-        inputStream.close();
-
-        writer.append(LINE_FEED);
-        writer.flush();
+        addText(
+            "--" + boundary + LINE_FEED +
+            "Content-Disposition: form-data; name=\"" + fieldName + "\"; filename=\"" + fileName + "\"" + LINE_FEED +
+            "Content-Type: " + URLConnection.guessContentTypeFromName(fileName) + LINE_FEED +
+            "Content-Transfer-Encoding: binary" + LINE_FEED +
+            LINE_FEED
+        );
+        bodyParts.add(uploadFile);
+        addText(LINE_FEED);
     }
 
     /**
@@ -114,8 +104,40 @@ public class MultipartUtility {
      * @param value - value of the header field
      */
     public void addHeaderField(String name, String value) {
-        writer.append(name + ": " + value).append(LINE_FEED);
-        writer.flush();
+        httpConn.setRequestProperty(name, value);
+    }
+
+    /**
+     * Exact length of the request body in bytes.
+     */
+    long getContentLength() {
+        long contentLength = 0;
+        for (Object bodyPart : bodyParts) {
+            if (bodyPart instanceof File) {
+                contentLength += ((File) bodyPart).length();
+            } else {
+                contentLength += ((byte[]) bodyPart).length;
+            }
+        }
+        return contentLength;
+    }
+
+    private void writeBody(OutputStream outputStream) throws IOException {
+        WritableByteChannel outputChannel = Channels.newChannel(outputStream);
+        for (Object bodyPart : bodyParts) {
+            if (bodyPart instanceof File) {
+                try (FileChannel fileChannel = new FileInputStream((File) bodyPart).getChannel()) {
+                    long size = fileChannel.size();
+                    long position = 0;
+                    while (position < size) {
+                        position += fileChannel.transferTo(position, size - position, outputChannel);
+                    }
+                }
+            } else {
+                outputStream.write((byte[]) bodyPart);
+            }
+        }
+        outputStream.flush();
     }
 
     /**
@@ -127,9 +149,11 @@ public class MultipartUtility {
     public List<String> finish(int expectedStatus) throws IOException {
         List<String> response = new ArrayList<String>();
 
-        writer.append(LINE_FEED).flush();
-        writer.append("--" + boundary + "--").append(LINE_FEED);
-        writer.close();
+        addText(LINE_FEED + "--" + boundary + "--" + LINE_FEED);
+        httpConn.setFixedLengthStreamingMode(getContentLength());
+        try (OutputStream outputStream = httpConn.getOutputStream()) {
+            writeBody(outputStream);
+        }
 
         // checks server's status code first
         int status = httpConn.getResponseCode();
@@ -140,9 +164,17 @@ public class MultipartUtility {
             while ((line = reader.readLine()) != null) {
                 response.add(line);
             }
+            // Closing the fully read stream instead of disconnecting keeps the connection alive for the next request
+            // to the same host.
             reader.close();
-            httpConn.disconnect();
         } else {
+            InputStream errorStream = httpConn.getErrorStream();
+            if (errorStream != null) {
+                // Drain the error response as well, so that the connection can still be reused.
+                byte[] buffer = new byte[4096];
+                while (errorStream.read(buffer) != -1) {}
+                errorStream.close();
+            }
             throw new IOException("Server returned non-OK status: " + status);
         }
 
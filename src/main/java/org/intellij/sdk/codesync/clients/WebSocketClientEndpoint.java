@@ -2,6 +2,7 @@ package org.intellij.sdk.codesync.clients;
 
 import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 
 import jakarta.websocket.*;
 import org.intellij.sdk.codesync.CodeSyncLogger;
@@ -10,8 +11,11 @@ import org.intellij.sdk.codesync.CodeSyncLogger;
 @ClientEndpoint
 public class WebSocketClientEndpoint {
 
-    Session userSession = null;
-    private MessageHandler messageHandler;
+    volatile Session userSession = null;
+    // Time of the last pong received, or of the connection if no pong is received yet.
+    private volatile long lastPongAt;
+    private volatile MessageHandler messageHandler;
+    private volatile Runnable closeHandler;
     private URI endpointURI;
     private WebSocketContainer container;
 
@@ -40,6 +44,7 @@ public class WebSocketClientEndpoint {
     @OnOpen
     public void onOpen(Session userSession) {
         CodeSyncLogger.logConsoleMessage("opening websocket");
+        this.lastPongAt = System.currentTimeMillis();
         this.userSession = userSession;
     }
 
@@ -47,6 +52,9 @@ public class WebSocketClientEndpoint {
     public void onClose(Session userSession, CloseReason reason) {
         CodeSyncLogger.logConsoleMessage("closing websocket");
         this.userSession = null;
+        if (this.closeHandler != null) {
+            this.closeHandler.run();
+        }
     }
 
     @OnMessage
@@ -56,14 +64,56 @@ public class WebSocketClientEndpoint {
         }
     }
 
+    @OnMessage
+    public void onPong(PongMessage pongMessage) {
+        this.lastPongAt = System.currentTimeMillis();
+    }
+
     public void setMessageHandler(MessageHandler msgHandler) {
         this.messageHandler = msgHandler;
     }
 
+    public void setCloseHandler(Runnable closeHandler) {
+        this.closeHandler = closeHandler;
+    }
+
     public void sendMessage(String message) {
         this.userSession.getAsyncRemote().sendText(message);
     }
 
+    public boolean isOpen() {
+        Session userSession = this.userSession;
+        return userSession != null && userSession.isOpen();
+    }
+
+    public long getLastPongAt() {
+        return this.lastPongAt;
+    }
+
+    public void sendPing() {
+        Session userSession = this.userSession;
+        if (userSession == null) {
+            return;
+        }
+        try {
+            userSession.getAsyncRemote().sendPing(ByteBuffer.allocate(0));
+        } catch (IOException | IllegalStateException e) {
+            CodeSyncLogger.logConsoleMessage(String.format("Could not send websocket ping: %s", e.getMessage()));
+        }
+    }
+
+    public void close() {
+        Session userSession = this.userSession;
+        if (userSession == null) {
+            return;
+        }
+        try {
+            userSession.close();
+        } catch (IOException e) {
+            CodeSyncLogger.logConsoleMessage(String.format("Could not close websocket session: %s", e.getMessage()));
+        }
+    }
+
     public static interface MessageHandler {
         public void handleMessage(String message);
     }
@@ -48,7 +48,6 @@ import org.jetbrains.annotations.NotNull;
 import org.json.simple.JSONObject;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
@@ -685,25 +684,24 @@ public class CodeSyncSetup {
             fileUrls = new ObjectMapper().readValue(urls.toJSONString(), new TypeReference<Map<String, Object>>() {
             });
 
-            S3FileUploader s3FileUploader = new S3FileUploader(repoPath, branchName, fileUrls);
-            s3FileUploader.saveURLs();
+            S3FileUploader.enqueue(repoPath, branchName, fileUrls);
 
-            // Trigger the task to upload the file to S3.
+            // Trigger the task to upload the files to S3.
             CodeSyncLogger.info(String.format(
-                    "[S3_FILE_UPLOAD]: Processing file: %s",
-                    s3FileUploader.getQueueFilePath()
+                    "[S3_FILE_UPLOAD]: Processing %s files of '%s'",
+                    fileUrls.size(),
+                    repoPath
             ));
-            S3FilesUploader.registerFileBeingProcessed(s3FileUploader.getQueueFilePath());
-            s3FileUploader.triggerAsyncTask(StateUtils.getGlobalState().project);
+            new S3FileUploader().triggerAsyncTask(StateUtils.getGlobalState().project);
         } catch (ClassCastException | JsonProcessingException err) {
             CodeSyncLogger.critical(
                     String.format("Error parsing the response of /init endpoint. Error: %s", CommonUtils.getStackTrace(err)),
                     email
             );
             return false;
-        } catch (InvalidYmlFileError | FileNotFoundException error) {
+        } catch (SQLException error) {
             CodeSyncLogger.critical(
-                    String.format("Error creating S3 upload queue file. Error: %s", CommonUtils.getStackTrace(error)),
+                    String.format("Error adding files to the S3 upload queue. Error: %s", CommonUtils.getStackTrace(error)),
                     email
             );
             return false;
@@ -6,139 +6,234 @@ import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import org.intellij.sdk.codesync.CodeSyncLogger;
 import org.intellij.sdk.codesync.clients.CodeSyncClient;
-import org.intellij.sdk.codesync.exceptions.FileLockedError;
-import org.intellij.sdk.codesync.exceptions.InvalidYmlFileError;
+import org.intellij.sdk.codesync.database.enums.S3UploadStatus;
+import org.intellij.sdk.codesync.database.models.S3UploadQueueItem;
+import org.intellij.sdk.codesync.database.tables.S3UploadQueueTable;
 import org.intellij.sdk.codesync.exceptions.RequestError;
-import org.intellij.sdk.codesync.files.S3UploadQueueFile;
 import org.intellij.sdk.codesync.repoManagers.OriginalsRepoManager;
+import org.intellij.sdk.codesync.ui.progress.CodeSyncProgressIndicator;
 import org.intellij.sdk.codesync.utils.CommonUtils;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.HashMap;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.intellij.sdk.codesync.Constants.*;
+
+/*
+    Uploads the files in the S3 upload queue, see `S3UploadQueueTable`.
+
+    Items are claimed from the queue in batches of `S3_UPLOAD_CLAIM_BATCH_SIZE` and the state of each item is updated
+    as soon as its upload finishes, so an interrupted run only leaves its claimed items behind until the claim expires.
+*/
 public class S3FileUploader {
-    S3UploadQueueFile s3UploadQueueFile;
-    Integer runCount;
-    Map<String, Object> failedFilePathsAndURLs = new HashMap<>();
+    S3UploadQueueTable s3UploadQueueTable = S3UploadQueueTable.getInstance();
+    CodeSyncClient codeSyncClient = new CodeSyncClient();
 
-    final Integer maxRunCount = 10;
+    /*
+    Add the given files to the S3 upload queue.
 
-    public S3FileUploader (S3UploadQueueFile s3UploadQueueFile) {
-        this.s3UploadQueueFile = s3UploadQueueFile;
-        this.runCount = this.s3UploadQueueFile.getRunCount();
-    }
-    public S3FileUploader (String repoPath, String branch, Map<String, Object> filePathAndURLs) {
-        this.runCount = 0;
-        this.s3UploadQueueFile = new S3UploadQueueFile(repoPath, branch, filePathAndURLs, runCount);
+    @param  filePathAndURLs  map of relative file paths and their pre-signed URL data.
+    */
+    public static void enqueue(String repoPath, String branch, Map<String, Object> filePathAndURLs) throws SQLException {
+        S3UploadQueueTable.getInstance().enqueue(repoPath, branch, filePathAndURLs);
     }
 
-    public void saveURLs() throws InvalidYmlFileError, FileNotFoundException {
-        try {
-            this.s3UploadQueueFile.writeYml();
-        } catch (FileLockedError error) {
-            // This would never happen, but adding it for completeness.
-            CodeSyncLogger.error("File locked error while creating a new file for S3 file upload queue.");
+    /*
+    Upload the given items to S3, `S3_UPLOAD_CONCURRENCY` files are uploaded in parallel.
+
+    Uploaded items are removed from the queue, failed items are retried after `S3_UPLOAD_RETRY_AFTER` until they have
+    failed in `S3_UPLOAD_MAX_RUN_COUNT` runs.
+    */
+    void uploadToS3(List<S3UploadQueueItem> items, ExecutorService executorService, Runnable onItemProcessed) {
+        List<Future<?>> futures = new ArrayList<>();
+        for (S3UploadQueueItem item : items) {
+            futures.add(executorService.submit(() -> {
+                OriginalsRepoManager originalsRepoManager = new OriginalsRepoManager(item.getRepoPath(), item.getBranch());
+                boolean isUploaded = this.uploadFileWithRetries(originalsRepoManager, item.getPath(), item.getUrl());
+                this.updateItem(item, isUploaded);
+                onItemProcessed.run();
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException error) {
+                CodeSyncLogger.critical(String.format(
+                    "[S3_FILE_UPLOAD]: Error while uploading files to S3. Error %s",
+                    CommonUtils.getStackTrace(error.getCause())
+                ));
+            }
         }
     }
 
     /*
-    Pre-Process and validate yml data. return `true` of we are good to proceed, `false` otherwise.
+    Upload a single file, failed uploads are retried with exponential backoff and full jitter.
+
+    @return  `true` if the file was uploaded or does not need to be uploaded, `false` otherwise.
     */
-    public boolean isValid() {
-        if (!this.s3UploadQueueFile.hasValidFields()){
-            return false;
+    private boolean uploadFileWithRetries(OriginalsRepoManager originalsRepoManager, String filePath, Map<String, Object> url) {
+        if (url == null) {
+            // Retrying would not help, drop the file from the queue.
+            return true;
         }
+        File originalsFile = originalsRepoManager.getFilePath(filePath).toFile();
+        for (int attempt = 1; attempt <= S3_UPLOAD_MAX_ATTEMPTS; attempt++) {
+            try {
+                CodeSyncLogger.info(String.format("[S3_FILE_UPLOAD]: Uploading file '%s' to S3.", filePath));
+                this.uploadFile(originalsFile, url);
+                CodeSyncLogger.info(String.format("[S3_FILE_UPLOAD]: Uploaded file '%s' to S3.", filePath));
 
-        // Make sure to not exceed the max run count.
-        return this.runCount <= this.maxRunCount;
+                // File uploaded with success, so delete it from the originals.
+                originalsRepoManager.deleteFile(filePath);
+                return true;
+            } catch (RequestError error) {
+                if (attempt == S3_UPLOAD_MAX_ATTEMPTS) {
+                    CodeSyncLogger.critical(
+                        String.format(
+                            "[S3_FILE_UPLOAD]: Could not upload file '%s' to S3. Error %s",
+                            filePath,
+                            error.getMessage()
+                        )
+                    );
+                    return false;
+                }
+                try {
+                    Thread.sleep(getRetryDelay(attempt));
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return false;
     }
 
-    public void uploadToS3(String repoPath, String branchName, Map<String, Object> fileUrls) {
-        OriginalsRepoManager originalsRepoManager = new OriginalsRepoManager(repoPath, branchName);
-        CodeSyncClient codeSyncClient = new CodeSyncClient();
+    void uploadFile(File originalsFile, Map<String, Object> preSignedURLData) throws RequestError {
+        this.codeSyncClient.uploadToS3(originalsFile, preSignedURLData);
+    }
 
-        for (Map.Entry<String, Object> fileUrl : fileUrls.entrySet()) {
-            File originalsFile = originalsRepoManager.getFilePath(fileUrl.getKey()).toFile();
-            if (fileUrl.getValue().equals("")) {
-                // Skip if file is empty.
-                continue;
-            }
-            try {
-                CodeSyncLogger.info(String.format("[S3_FILE_UPLOAD]: Uploading file '%s' to S3.", fileUrl.getKey()));
-                codeSyncClient.uploadToS3(originalsFile, (Map<String, Object>) fileUrl.getValue());
-                CodeSyncLogger.info(String.format("[S3_FILE_UPLOAD]: Uploaded file '%s' to S3.", fileUrl.getKey()));
+    /*
+    Random delay between 0 and `S3_UPLOAD_RETRY_BASE_DELAY * 2^(attempt - 1)`, so that files failing together are not
+    retried together.
+    */
+    static long getRetryDelay(int attempt) {
+        long maxDelay = S3_UPLOAD_RETRY_BASE_DELAY * (1L << Math.min(attempt - 1, 10));
+        return ThreadLocalRandom.current().nextLong(maxDelay + 1);
+    }
 
-                // File uploaded with success, so delete it from the originals.
-                originalsRepoManager.deleteFile(originalsFile.getPath());
-            } catch (RequestError error) {
-                this.failedFilePathsAndURLs.put(fileUrl.getKey(), fileUrl.getValue());
-                CodeSyncLogger.critical(
-                    String.format(
-                        "[S3_FILE_UPLOAD]: Could not upload file '%s' to S3. Error %s",
-                        fileUrl.getKey(),
-                        error.getMessage()
-                    )
-                );
-            } catch (ClassCastException error) {
-                CodeSyncLogger.critical(
-                    String.format(
-                        "[S3_FILE_UPLOAD]: Could not process yaml content. Error %s",
-                        CommonUtils.getStackTrace(error)
-                    )
+    /*
+    Save the result of the upload of the given item to the queue.
+    */
+    private void updateItem(S3UploadQueueItem item, boolean isUploaded) {
+        try {
+            if (isUploaded) {
+                this.s3UploadQueueTable.delete(item.getId());
+                return;
+            }
+            int attempts = item.getAttempts() + 1;
+            if (attempts >= S3_UPLOAD_MAX_RUN_COUNT) {
+                CodeSyncLogger.critical(String.format(
+                    "[S3_FILE_UPLOAD]: Giving up on file '%s' after %s failed runs.", item.getPath(), attempts
+                ));
+                this.s3UploadQueueTable.update(item.getId(), attempts, System.currentTimeMillis(), S3UploadStatus.FAILED);
+            } else {
+                this.s3UploadQueueTable.update(
+                    item.getId(), attempts, System.currentTimeMillis() + S3_UPLOAD_RETRY_AFTER, S3UploadStatus.PENDING
                 );
             }
+        } catch (SQLException error) {
+            // Item is picked up again once its claim expires.
+            CodeSyncLogger.error(
+                String.format(
+                    "[S3_FILE_UPLOAD]: Error while saving the upload progress of file '%s'. Error %s",
+                    item.getPath(),
+                    CommonUtils.getStackTrace(error)
+                )
+            );
         }
     }
 
-    // Process and upload files to S3.
-    private void processFiles() {
+    private List<S3UploadQueueItem> claimDueItems() {
+        try {
+            return this.s3UploadQueueTable.claimDueItems(S3_UPLOAD_CLAIM_BATCH_SIZE);
+        } catch (SQLException error) {
+            CodeSyncLogger.error(
+                String.format(
+                    "[S3_FILE_UPLOAD]: Error while reading the S3 upload queue. Error %s",
+                    CommonUtils.getStackTrace(error)
+                )
+            );
+            return new ArrayList<>();
+        }
+    }
+
+    /*
+    Upload the given claimed items, and keep claiming and uploading due items until the queue has none left.
+
+    @param  progressIndicator  optional indicator to report the progress of the upload to.
+    */
+    void processFiles(List<S3UploadQueueItem> items, CodeSyncProgressIndicator progressIndicator) {
         CodeSyncLogger.info("[S3_FILE_UPLOAD]: Uploading S3 files.");
-        this.uploadToS3(
-            this.s3UploadQueueFile.getRepoPath(),
-            this.s3UploadQueueFile.getBranch(),
-            this.s3UploadQueueFile.getFilePathAndURLs()
-        );
-        if (!this.failedFilePathsAndURLs.isEmpty()) {
-            try {
-                this.s3UploadQueueFile.setFilePathAndURLs(this.failedFilePathsAndURLs);
-                this.s3UploadQueueFile.setRunCount(++this.runCount);
-                this.saveURLs();
-            } catch (InvalidYmlFileError | FileNotFoundException error) {
-                CodeSyncLogger.critical(
-                    String.format(
-                        "[S3_FILE_UPLOAD]: Error while saving files that could not be uploaded. Error %s",
-                        CommonUtils.getStackTrace(error)
-                    )
-                );
+        int dueCount = 0;
+        try {
+            dueCount = this.s3UploadQueueTable.countDueItems();
+        } catch (SQLException error) {
+            // Only used for the progress.
+        }
+        int totalCount = items.size() + dueCount;
+        AtomicInteger processedCount = new AtomicInteger();
+        Runnable onItemProcessed = () -> {
+            int count = processedCount.incrementAndGet();
+            if (progressIndicator != null) {
+                progressIndicator.setProgress(count, Math.max(count, totalCount), "Uploading files…");
             }
+        };
 
-            S3FilesUploader.removeFileBeingProcessed(this.getQueueFilePath());
-        } else {
-            this.s3UploadQueueFile.removeFile();
+        ExecutorService executorService = Executors.newFixedThreadPool(S3_UPLOAD_CONCURRENCY, runnable -> {
+            Thread thread = new Thread(runnable, "CodeSync-S3Upload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            while (!items.isEmpty() && !Thread.currentThread().isInterrupted()) {
+                this.uploadToS3(items, executorService, onItemProcessed);
+                items = this.claimDueItems();
+            }
+        } finally {
+            executorService.shutdownNow();
         }
     }
 
+    void processFiles(CodeSyncProgressIndicator progressIndicator) {
+        List<S3UploadQueueItem> items = this.claimDueItems();
+        if (!items.isEmpty()) {
+            this.processFiles(items, progressIndicator);
+        }
+    }
+
+    /*
+    Upload the files due in the S3 upload queue in a background task, no task is started if there are none.
+    */
     public void triggerAsyncTask(Project project) {
-        if (!this.isValid()) {
-            CodeSyncLogger.info(String.format(
-                "[S3_FILE_UPLOAD]: File '%s' is not valid. Skipping upload.",
-                this.getQueueFilePath()
-            ));
-            this.s3UploadQueueFile.removeFile();
+        List<S3UploadQueueItem> items = this.claimDueItems();
+        if (items.isEmpty()) {
             return;
         }
         ProgressManager.getInstance().run(new Task.Backgroundable(project, "CodeSync: Uploading files…") {
             @Override
             public void run(@NotNull ProgressIndicator indicator) {
-                processFiles();
+                indicator.setIndeterminate(false);
+                processFiles(items, new CodeSyncProgressIndicator(indicator));
             }
         });
     }
-
-    public String getQueueFilePath () {
-        return this.s3UploadQueueFile.getYmlFile().getPath();
-    }
 }
@@ -4,7 +4,8 @@ import org.intellij.sdk.codesync.exceptions.SQLiteDBConnectionError;
 import org.intellij.sdk.codesync.exceptions.SQLiteDataError;
 import org.intellij.sdk.codesync.utils.CommonUtils;
 
-import java.sql.*;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 
@@ -31,19 +32,22 @@ public class Database {
      */
     public static ArrayList<HashMap<String, String>> runQuery(String query) throws SQLiteDBConnectionError, SQLiteDataError{
 
-        ArrayList<HashMap<String, String>> dataSet = new ArrayList<>();
+        ArrayList<HashMap<String, String>> dataSet;
 
-        try(Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()){
-            ResultSet rs = statement.executeQuery(query);
-            ResultSetMetaData md = rs.getMetaData();
+        try {
+            dataSet = SQLiteConnection.getInstance().executeQuery(query, rs -> {
+                ArrayList<HashMap<String, String>> rows = new ArrayList<>();
+                ResultSetMetaData md = rs.getMetaData();
 
-            while (rs.next()){
-                HashMap<String, String> row = new HashMap<>();
-                for(int i = 1; i <= md.getColumnCount(); i++){
-                    row.put(md.getColumnName(i), rs.getString(i));
+                while (rs.next()){
+                    HashMap<String, String> row = new HashMap<>();
+                    for(int i = 1; i <= md.getColumnCount(); i++){
+                        row.put(md.getColumnName(i), rs.getString(i));
+                    }
+                    rows.add(row);
                 }
-                dataSet.add(row);
-            }
+                return rows;
+            });
         } catch (NullPointerException e){
             throw new SQLiteDBConnectionError(
                 String.format("SQLite Database Connection error: %s%n", CommonUtils.getStackTrace(e))
@@ -59,8 +63,8 @@ public class Database {
 
     public static void executeUpdate(String query) throws SQLiteDBConnectionError, SQLiteDataError{
 
-        try(Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()){
-            statement.executeUpdate(query);
+        try {
+            SQLiteConnection.getInstance().execute(query);
         } catch (NullPointerException e){
             throw new SQLiteDBConnectionError(
                 String.format("SQLite Database Connection error: %s%n", CommonUtils.getStackTrace(e))
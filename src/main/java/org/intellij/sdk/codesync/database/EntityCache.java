@@ -0,0 +1,124 @@
+package org.intellij.sdk.codesync.database;
+
+import org.intellij.sdk.codesync.database.tables.DBTable;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import static org.intellij.sdk.codesync.Constants.ENTITY_CACHE_SIZE;
+
+/*
+    In-process read-through cache of lookups on database tables, so that repeated lookups are memory reads.
+
+    Entries are tagged with the versions of the tables they were read from and every write to one of those tables
+    bumps its version, making all the entries read before the write stale at once. A lookup racing with a write is
+    tagged with the version from before the write, so it is never served once the write is done. Writes of other
+    processes bump the versions as well, once `SQLiteConnection.getExternalVersion` notices them.
+
+    Entities are copied on their way in and out of the cache, so callers can still change and save them.
+*/
+public class EntityCache<K, V> {
+    private static final List<EntityCache<?, ?>> caches = new CopyOnWriteArrayList<>();
+
+    public interface Loader<K, V> {
+        V load(K key) throws SQLException;
+    }
+
+    private static class Entry<V> {
+        final long version;
+        final V value;
+
+        Entry(long version, V value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+
+    private final String name;
+    private final UnaryOperator<V> copier;
+    private final DBTable[] tables;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    // Least recently used lookups are dropped once there are more than `ENTITY_CACHE_SIZE` of them.
+    private final Map<K, Entry<V>> entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+            return size() > ENTITY_CACHE_SIZE;
+        }
+    };
+
+    /*
+    @param  copier  creates a copy of a cached value, values are never `null` when this is called.
+    @param  tables  tables the cached values are read from.
+    */
+    public EntityCache(String name, UnaryOperator<V> copier, DBTable... tables) {
+        this.name = name;
+        this.copier = copier;
+        this.tables = tables;
+        caches.add(this);
+    }
+
+    private long getVersion() throws SQLException {
+        // Versions only ever go up, so the sum changes whenever any of them does.
+        long version = 0;
+        for (DBTable table : this.tables) {
+            version += table.getVersion();
+        }
+        return version;
+    }
+
+    private V copy(V value) {
+        return value == null ? null : this.copier.apply(value);
+    }
+
+    /*
+    Get the value for the given key, `loader` is only called if the value is not cached or is stale.
+    Missing entities, i.e. `null` values, are cached as well.
+    */
+    public V get(K key, Loader<K, V> loader) throws SQLException {
+        long version = this.getVersion();
+        Entry<V> entry;
+        synchronized (this.entries) {
+            entry = this.entries.get(key);
+        }
+        if (entry != null && entry.version == version) {
+            this.hitCount.incrementAndGet();
+            return this.copy(entry.value);
+        }
+
+        this.missCount.incrementAndGet();
+        V value = loader.load(key);
+        synchronized (this.entries) {
+            this.entries.put(key, new Entry<>(version, this.copy(value)));
+        }
+        return value;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /*
+    Hit and miss counts of all the caches, e.g. `repo: 120 hits, 3 misses; user: 80 hits, 1 misses`.
+    */
+    public static String getStats() {
+        return caches.stream()
+            .map(cache -> String.format("%s: %d hits, %d misses", cache.getName(), cache.getHitCount(), cache.getMissCount()))
+            .collect(Collectors.joining("; "));
+    }
+}
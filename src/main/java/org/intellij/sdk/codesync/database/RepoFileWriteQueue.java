@@ -0,0 +1,223 @@
+package org.intellij.sdk.codesync.database;
+
+import org.intellij.sdk.codesync.CodeSyncLogger;
+import org.intellij.sdk.codesync.database.tables.RepoFileTable;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.intellij.sdk.codesync.Constants.*;
+
+/*
+    Write-behind queue for the changes to files of branches made while diffs are processed.
+
+    Changes are applied to the database in a single transaction at most `REPO_FILE_FLUSH_DELAY` after the first of them
+    is queued, or as soon as `REPO_FILE_FLUSH_SIZE` of them are queued. Only the last change to a file is kept.
+
+    `RepoFileTable` lookups see queued changes before they are applied, and its direct writes apply the queued changes
+    first, so the order of changes to a file is kept.
+*/
+public class RepoFileWriteQueue {
+    private static RepoFileWriteQueue instance;
+
+    /*
+        A queued change to a file, `serverFileId` is ignored for removed files.
+    */
+    public static class PendingWrite {
+        private final Integer repoBranchId;
+        private final String path;
+        private final Integer serverFileId;
+        private final boolean removed;
+
+        private PendingWrite(Integer repoBranchId, String path, Integer serverFileId, boolean removed) {
+            this.repoBranchId = repoBranchId;
+            this.path = path;
+            this.serverFileId = serverFileId;
+            this.removed = removed;
+        }
+
+        private List<Object> getKey() {
+            return getKey(this.repoBranchId, this.path);
+        }
+
+        private static List<Object> getKey(Integer repoBranchId, String path) {
+            return Arrays.asList(repoBranchId, path);
+        }
+
+        public Integer getRepoBranchId() {
+            return repoBranchId;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public Integer getServerFileId() {
+            return serverFileId;
+        }
+
+        public boolean isRemoved() {
+            return removed;
+        }
+    }
+
+    // Keyed by branch id and file path.
+    private final Map<List<Object>, PendingWrite> pendingWrites = new LinkedHashMap<>();
+    // Only one flush runs at a time, so a flush never applies an older change after a newer one.
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor(
+        runnable -> {
+            Thread thread = new Thread(runnable, "CodeSync-RepoFileWrites");
+            thread.setDaemon(true);
+            return thread;
+        }
+    );
+    private ScheduledFuture<?> scheduledFlush;
+
+    private RepoFileWriteQueue() {}
+
+    public static synchronized RepoFileWriteQueue getInstance() {
+        if (instance == null) {
+            instance = new RepoFileWriteQueue();
+        }
+        return instance;
+    }
+
+    /*
+    Queue saving the server file id of a file of the given branch.
+    */
+    public void save(Integer repoBranchId, String path, Integer serverFileId) throws SQLException {
+        this.enqueue(new PendingWrite(repoBranchId, path, serverFileId, false));
+    }
+
+    /*
+    Queue removing a file of the given branch.
+    */
+    public void remove(Integer repoBranchId, String path) throws SQLException {
+        this.enqueue(new PendingWrite(repoBranchId, path, null, true));
+    }
+
+    private void enqueue(PendingWrite pendingWrite) throws SQLException {
+        int pendingCount;
+        synchronized (this) {
+            // Removed first so the map keeps the order of the last changes.
+            this.pendingWrites.remove(pendingWrite.getKey());
+            this.pendingWrites.put(pendingWrite.getKey(), pendingWrite);
+            pendingCount = this.pendingWrites.size();
+
+            if (pendingCount >= REPO_FILE_FLUSH_SIZE) {
+                this.scheduleFlush(0);
+            } else if (this.scheduledFlush == null) {
+                this.scheduleFlush(REPO_FILE_FLUSH_DELAY);
+            }
+        }
+
+        // Only reached if flushes keep failing or fall behind, bounds the memory held by the queue.
+        if (pendingCount >= REPO_FILE_MAX_PENDING_WRITES) {
+            this.flush();
+        }
+    }
+
+    private synchronized void scheduleFlush(long delay) {
+        if (this.scheduledFlush != null) {
+            if (this.scheduledFlush.getDelay(TimeUnit.MILLISECONDS) <= delay) {
+                return;
+            }
+            this.scheduledFlush.cancel(false);
+        }
+        this.scheduledFlush = this.flushExecutor.schedule(this::runScheduledFlush, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void runScheduledFlush() {
+        synchronized (this) {
+            this.scheduledFlush = null;
+        }
+        try {
+            this.flush();
+        } catch (SQLException e) {
+            CodeSyncLogger.error(String.format(
+                "[DATABASE] Error while saving changes to repo files, will retry. Error: %s", e.getMessage()
+            ));
+            synchronized (this) {
+                if (this.scheduledFlush == null) {
+                    this.scheduleFlush(REPO_FILE_FLUSH_DELAY);
+                }
+            }
+        }
+    }
+
+    /*
+    Apply all the queued changes to the database, changes are kept queued if this fails.
+    */
+    public void flush() throws SQLException {
+        synchronized (this.flushLock) {
+            List<PendingWrite> writes;
+            synchronized (this) {
+                if (this.pendingWrites.isEmpty()) {
+                    return;
+                }
+                writes = new ArrayList<>(this.pendingWrites.values());
+            }
+
+            RepoFileTable.getInstance().applyWrites(writes);
+
+            synchronized (this) {
+                for (PendingWrite write : writes) {
+                    // Changes queued while the flush was running are kept for the next flush.
+                    this.pendingWrites.remove(write.getKey(), write);
+                }
+            }
+        }
+    }
+
+    /*
+    Apply the queued changes and stop flushing in the background, called when the plugin is unloaded.
+    */
+    public void shutdown() {
+        try {
+            this.flush();
+        } catch (SQLException e) {
+            CodeSyncLogger.error(String.format(
+                "[DATABASE] Error while saving changes to repo files on shutdown. Error: %s", e.getMessage()
+            ));
+        }
+        this.flushExecutor.shutdownNow();
+        synchronized (RepoFileWriteQueue.class) {
+            if (instance == this) {
+                instance = null;
+            }
+        }
+    }
+
+    /*
+    @return  the queued change to the given file of the branch, `null` if there is none.
+    */
+    public synchronized PendingWrite getPendingWrite(Integer repoBranchId, String path) {
+        return this.pendingWrites.get(PendingWrite.getKey(repoBranchId, path));
+    }
+
+    /*
+    @return  the queued changes to the files of the given branch.
+    */
+    public synchronized List<PendingWrite> getPendingWrites(Integer repoBranchId) {
+        List<PendingWrite> writes = new ArrayList<>();
+        for (PendingWrite write : this.pendingWrites.values()) {
+            if (write.getRepoBranchId().equals(repoBranchId)) {
+                writes.add(write);
+            }
+        }
+        return writes;
+    }
+
+    public synchronized int getPendingCount() {
+        return this.pendingWrites.size();
+    }
+}
@@ -0,0 +1,82 @@
+package org.intellij.sdk.codesync.database;
+
+import org.intellij.sdk.codesync.database.models.Repo;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Trie of repo root paths keyed by path components, so the repo containing a path is found in as many steps as the
+    path has components instead of by comparing the path against every repo.
+
+    Paths are compared component wise like `ProjectUtils.isChild`, i.e. `/dev/repo` contains `/dev/repo/src` but not
+    `/dev/repo-2`. Repos are copied on their way in and out of the trie, so callers can still change and save them.
+*/
+public class RepoPathTrie {
+    private static class Node {
+        final Map<String, Node> children = new HashMap<>();
+        Repo repo;
+    }
+
+    private final Node root = new Node();
+
+    private static List<String> getComponents(String path) {
+        Path normalizedPath = Paths.get(path).normalize();
+        List<String> components = new ArrayList<>();
+        components.add(String.valueOf(normalizedPath.getRoot()));
+        for (Path name : normalizedPath) {
+            components.add(name.toString());
+        }
+        return components;
+    }
+
+    /*
+    Add the given repo, replacing the repo with the same path if there is one.
+    */
+    public synchronized void put(Repo repo) {
+        Node node = this.root;
+        for (String component : getComponents(repo.getPath())) {
+            node = node.children.computeIfAbsent(component, key -> new Node());
+        }
+        node.repo = repo.copy();
+    }
+
+    /*
+    @return  the repo with the given path, `null` if there is none.
+    */
+    public synchronized Repo get(String repoPath) {
+        Node node = this.root;
+        for (String component : getComponents(repoPath)) {
+            node = node.children.get(component);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.repo == null ? null : node.repo.copy();
+    }
+
+    /*
+    @return  the closest repo the given path is a subdirectory of, `null` if there is none. The repo with the path
+        itself is not considered a parent.
+    */
+    public synchronized Repo getParentRepo(String path) {
+        Repo parentRepo = null;
+        Node node = this.root;
+        List<String> components = getComponents(path);
+        // The last component is left out, so the path itself is never matched.
+        for (String component : components.subList(0, components.size() - 1)) {
+            node = node.children.get(component);
+            if (node == null) {
+                break;
+            }
+            if (node.repo != null) {
+                parentRepo = node.repo;
+            }
+        }
+        return parentRepo == null ? null : parentRepo.copy();
+    }
+}
@@ -3,21 +3,176 @@ package org.intellij.sdk.codesync.database;
 import org.intellij.sdk.codesync.CodeSyncLogger;
 import org.intellij.sdk.codesync.utils.CommonUtils;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.SQLException;
+import java.sql.*;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
-import static org.intellij.sdk.codesync.Constants.CONNECTION_STRING;
+import static org.intellij.sdk.codesync.Constants.*;
 
+/*
+    Connections to the SQLite database shared by all the projects open in the IDE.
+
+    The database uses WAL journaling, so reads never wait for a write and see the last committed data:
+    - Reads run on a pool of up to `SQLITE_READER_POOL_SIZE` read-only connections, each used by one thread at a time.
+    - Writes, including whole transactions, run one after another on a single connection owned by a dedicated writer
+      thread. Reads made by a transaction run on that connection as well, so they see the changes of the transaction.
+
+    All connections wait up to `SQLITE_BUSY_TIMEOUT` for locks held by other processes using the database, and
+    statements that can safely be run again are retried `SQLITE_BUSY_RETRIES` times if they still fail with
+    SQLITE_BUSY. Commits of other processes are tracked by `getExternalVersion`.
+*/
 public class SQLiteConnection {
+    // Primary result code of SQLite for a database locked by another connection.
+    private static final int SQLITE_BUSY = 5;
 
     private static SQLiteConnection instance;
-    private Connection connection;
+    // Bumped whenever another process may have committed to the database, kept across connections so it never goes
+    // back, see `getExternalVersion`.
+    private static final AtomicLong externalVersion = new AtomicLong();
+
+    /*
+    Read the results of a query, the result set is only valid until this returns.
+    */
+    public interface ResultSetReader<T> {
+        T read(ResultSet resultSet) throws SQLException;
+    }
+
+    /*
+    Statements run in a single transaction, see `runInTransaction`.
+    */
+    public interface TransactionBody {
+        void run() throws SQLException;
+    }
+
+    private interface DatabaseOperation<T> {
+        T run() throws SQLException;
+    }
+
+    /*
+        A JDBC connection along with its prepared statements, only one thread uses it at a time.
+    */
+    private static class PooledConnection {
+        private final Connection connection;
+
+        /*
+        Prepared statements keyed by their query, so that SQLite parses and plans each query once.
+
+        Least recently used statements are closed once there are more than `SQLITE_STATEMENT_CACHE_SIZE` of them,
+        queries with an `IN` list of varying length are the only ones that can grow the cache that far.
+        */
+        private final Map<String, PreparedStatement> statementCache = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > SQLITE_STATEMENT_CACHE_SIZE) {
+                    closeStatement(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        PooledConnection(boolean readOnly) throws SQLException {
+            Properties properties = new Properties();
+            if (!readOnly) {
+                // Take the write lock when the transaction starts, a transaction that reads first and then writes
+                // could otherwise fail with SQLITE_BUSY without waiting when another process writes in between.
+                properties.setProperty("transaction_mode", "IMMEDIATE");
+            }
+            this.connection = DriverManager.getConnection(CONNECTION_STRING, properties);
+            this.configure(readOnly);
+        }
+
+        /*
+        Tune the connection for our workload.
+
+        WAL journaling lets reads run alongside a write and turns each commit into a single append to the log, with WAL
+        `synchronous=NORMAL` is still safe against corruption and only loses the last commits on a power failure.
+        The journal mode is stored in the database file, the remaining pragmas only apply to this connection.
+        */
+        private void configure(boolean readOnly) throws SQLException {
+            try (Statement statement = this.connection.createStatement()) {
+                statement.execute(String.format("PRAGMA busy_timeout = %d;", SQLITE_BUSY_TIMEOUT));
+                statement.execute("PRAGMA temp_store = MEMORY;");
+                if (readOnly) {
+                    statement.execute("PRAGMA query_only = ON;");
+                } else {
+                    statement.execute("PRAGMA journal_mode = WAL;");
+                    statement.execute("PRAGMA synchronous = NORMAL;");
+                    statement.execute(String.format("PRAGMA analysis_limit = %d;", SQLITE_ANALYSIS_LIMIT));
+                }
+            }
+        }
+
+        PreparedStatement getPreparedStatement(String query) throws SQLException {
+            PreparedStatement statement = this.statementCache.get(query);
+            if (statement == null || statement.isClosed()) {
+                statement = this.connection.prepareStatement(query);
+                this.statementCache.put(query, statement);
+            }
+            return statement;
+        }
+
+        <T> T executeQuery(String query, ResultSetReader<T> reader, Object[] parameters) throws SQLException {
+            PreparedStatement statement = this.getPreparedStatement(query);
+            try {
+                bindParameters(statement, parameters);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return reader.read(resultSet);
+                }
+            } finally {
+                statement.clearParameters();
+            }
+        }
+
+        boolean isClosed() throws SQLException {
+            return this.connection.isClosed();
+        }
+
+        void close() {
+            this.statementCache.values().forEach(SQLiteConnection::closeStatement);
+            this.statementCache.clear();
+            try {
+                this.connection.close();
+            } catch (SQLException e) {
+                CodeSyncLogger.error(
+                    String.format(
+                        "[DATABASE_DISCONNECTION] SQL error while disconnecting SQLite database connection. Error: %s",
+                        CommonUtils.getStackTrace(e)
+                    )
+                );
+            }
+        }
+    }
+
+    private PooledConnection writer;
+    private volatile Thread writerThread;
+    private final ExecutorService writerExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "CodeSync-DatabaseWriter");
+        thread.setDaemon(true);
+        this.writerThread = thread;
+        return thread;
+    });
+    // Read-only connections are opened on demand, idle ones wait here for the next read.
+    private final BlockingQueue<PooledConnection> idleReaders = new LinkedBlockingQueue<>();
+    private final List<PooledConnection> readers = new CopyOnWriteArrayList<>();
+    private volatile boolean isClosed = false;
+    // Last `PRAGMA data_version` of the writer connection, only used on the writer thread once the connection is open.
+    private long dataVersion;
+    private volatile long lastDataVersionCheckAt = 0;
+    private final AtomicBoolean isDataVersionCheckPending = new AtomicBoolean(false);
 
     private SQLiteConnection(){
         try{
             Class.forName("org.sqlite.JDBC");
-            connection = DriverManager.getConnection(CONNECTION_STRING);
+            this.writer = new PooledConnection(false);
+            this.dataVersion = this.readDataVersion();
+            // Other processes may have committed while there was no connection to notice it.
+            externalVersion.incrementAndGet();
         } catch (ClassNotFoundException e) {
             CodeSyncLogger.critical(
                 String.format(
@@ -37,30 +192,309 @@ public class SQLiteConnection {
 
     public static synchronized SQLiteConnection getInstance() throws SQLException {
 
-        if(instance == null || instance.connection.isClosed()){
+        if(instance == null || instance.isClosed || instance.writer == null || instance.writer.isClosed()){
             instance = new SQLiteConnection();
         }
 
         return instance;
     }
 
+    /*
+    The connection used for writes. Statements run on it directly are not serialized with the other writes, so this
+    should only be used where there are no concurrent writes, e.g. in tests.
+    */
     public Connection getConnection(){
-        return connection;
+        return writer.connection;
     }
 
-    public void disconnect(){
+    private static void bindParameters(PreparedStatement statement, Object[] parameters) throws SQLException {
+        for (int i = 0; i < parameters.length; i++) {
+            statement.setObject(i + 1, parameters[i]);
+        }
+    }
+
+    private static void closeStatement(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // Nothing to do, the statement is not used anymore.
+        }
+    }
+
+    /*
+    Run the operation, running it again after a short pause if it fails with SQLITE_BUSY. Only operations that leave
+    the database unchanged when they fail can be retried.
+    */
+    private static <T> T retryIfBusy(DatabaseOperation<T> operation) throws SQLException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return operation.run();
+            } catch (SQLException e) {
+                if (e.getErrorCode() != SQLITE_BUSY || attempt >= SQLITE_BUSY_RETRIES) {
+                    throw e;
+                }
+                CodeSyncLogger.warning(String.format(
+                    "[DATABASE] Database is busy, retrying (attempt %d of %d). Error: %s",
+                    attempt + 1, SQLITE_BUSY_RETRIES, e.getMessage()
+                ));
+                try {
+                    Thread.sleep(SQLITE_BUSY_RETRY_DELAY * (attempt + 1L));
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private long readDataVersion() throws SQLException {
+        try (
+            Statement statement = this.writer.connection.createStatement();
+            ResultSet resultSet = statement.executeQuery("PRAGMA data_version;")
+        ) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        }
+    }
+
+    /*
+    Version that changes whenever another process commits to the database, so that in-process caches of the data can
+    tell it may be stale. See `DBTable.getVersion`.
+
+    `PRAGMA data_version` of a connection only changes on commits made by other connections, the readers never commit
+    so the one of the writer connection only changes on commits of other processes. It is checked on the writer thread
+    at most once every `SQLITE_EXTERNAL_CHANGE_CHECK_INTERVAL` and callers do not wait for the check, so commits of
+    other processes are seen shortly after that.
+    */
+    public long getExternalVersion() {
+        long now = System.currentTimeMillis();
+        if (
+            now - this.lastDataVersionCheckAt >= SQLITE_EXTERNAL_CHANGE_CHECK_INTERVAL &&
+            this.isDataVersionCheckPending.compareAndSet(false, true)
+        ) {
+            this.lastDataVersionCheckAt = now;
+            try {
+                this.writerExecutor.execute(this::checkDataVersion);
+            } catch (RejectedExecutionException e) {
+                this.isDataVersionCheckPending.set(false);
+            }
+        }
+        return externalVersion.get();
+    }
+
+    private void checkDataVersion() {
         try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
+            long dataVersion = this.readDataVersion();
+            if (dataVersion != this.dataVersion) {
+                this.dataVersion = dataVersion;
+                externalVersion.incrementAndGet();
             }
         } catch (SQLException e) {
-            CodeSyncLogger.error(
-                String.format(
-                    "[DATABASE_DISCONNECTION] SQL error while disconnecting SQLite database connection. Error: %s",
-                    CommonUtils.getStackTrace(e)
-                )
-            );
+            // Can not tell whether anything changed, so assume it did.
+            externalVersion.incrementAndGet();
+        } finally {
+            this.isDataVersionCheckPending.set(false);
+        }
+    }
+
+    private boolean isWriterThread() {
+        return Thread.currentThread() == this.writerThread;
+    }
+
+    /*
+    Run the operation on the writer thread and wait for it to finish, operations of the writer thread itself run
+    right away. Operations must not wait for other threads, those could be waiting for the writer thread.
+    */
+    private <T> T write(DatabaseOperation<T> operation) throws SQLException {
+        if (this.isWriterThread()) {
+            return operation.run();
+        }
+        Future<T> future;
+        try {
+            future = this.writerExecutor.submit(operation::run);
+        } catch (RejectedExecutionException e) {
+            throw new SQLException("SQLite database connection is closed.", e);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database write, the write may still be applied.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    private PooledConnection borrowReader() throws SQLException {
+        PooledConnection reader = this.idleReaders.poll();
+        if (reader != null) {
+            return reader;
+        }
+        synchronized (this.readers) {
+            if (this.readers.size() < SQLITE_READER_POOL_SIZE) {
+                reader = new PooledConnection(true);
+                this.readers.add(reader);
+                return reader;
+            }
+        }
+        try {
+            reader = this.idleReaders.poll(SQLITE_BUSY_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection.", e);
+        }
+        if (reader == null) {
+            throw new SQLException(String.format(
+                "Timed out waiting for one of the %d database connections used for reads.", SQLITE_READER_POOL_SIZE
+            ));
+        }
+        return reader;
+    }
+
+    private void releaseReader(PooledConnection reader) {
+        if (this.isClosed) {
+            reader.close();
+        } else {
+            this.idleReaders.offer(reader);
+        }
+    }
+
+    /*
+    Run a SELECT query with the given parameters and read its results with `reader`.
+    */
+    public <T> T executeQuery(String query, ResultSetReader<T> reader, Object... parameters) throws SQLException {
+        if (this.isWriterThread()) {
+            // Part of a write, e.g. a transaction that reads before it writes.
+            return this.writer.executeQuery(query, reader, parameters);
+        }
+        return retryIfBusy(() -> {
+            PooledConnection pooledConnection = this.borrowReader();
+            try {
+                return pooledConnection.executeQuery(query, reader, parameters);
+            } finally {
+                this.releaseReader(pooledConnection);
+            }
+        });
+    }
+
+    /*
+    Run an INSERT, UPDATE or DELETE query with the given parameters and return the number of affected rows.
+    */
+    public int executeUpdate(String query, Object... parameters) throws SQLException {
+        return this.write(() -> {
+            DatabaseOperation<Integer> update = () -> {
+                PreparedStatement statement = this.writer.getPreparedStatement(query);
+                try {
+                    bindParameters(statement, parameters);
+                    return statement.executeUpdate();
+                } finally {
+                    statement.clearParameters();
+                }
+            };
+            // A statement of a transaction can not be run again on its own.
+            return this.writer.connection.getAutoCommit() ? retryIfBusy(update) : update.run();
+        });
+    }
+
+    /*
+    Run the query once for each of the given parameter rows as a single batch and return the number of rows affected
+    by each run.
+    */
+    public int[] executeBatch(String query, List<Object[]> parameterRows) throws SQLException {
+        if (parameterRows.isEmpty()) {
+            return new int[0];
+        }
+        return this.write(() -> {
+            PreparedStatement statement = this.writer.getPreparedStatement(query);
+            try {
+                for (Object[] parameters : parameterRows) {
+                    bindParameters(statement, parameters);
+                    statement.addBatch();
+                }
+                return statement.executeBatch();
+            } finally {
+                statement.clearBatch();
+                statement.clearParameters();
+            }
+        });
+    }
+
+    /*
+    Run a statement without parameters that is not worth caching, e.g. to create a table or an index.
+    */
+    public void execute(String query) throws SQLException {
+        this.write(() -> {
+            try (Statement statement = this.writer.connection.createStatement()) {
+                statement.execute(query);
+            }
+            return null;
+        });
+    }
+
+    /*
+    Run the statements of `body` in a single transaction on the writer thread, the transaction is rolled back if
+    `body` fails. A transaction started inside another one becomes part of the outer transaction.
+    */
+    public void runInTransaction(TransactionBody body) throws SQLException {
+        this.write(() -> {
+            Connection connection = this.writer.connection;
+            if (!connection.getAutoCommit()) {
+                body.run();
+                return null;
+            }
+            // Nothing is changed if starting the transaction fails, so it is safe to retry.
+            retryIfBusy(() -> {
+                connection.setAutoCommit(false);
+                return null;
+            });
+            try {
+                body.run();
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            return null;
+        });
+    }
+
+    public void disconnect(){
+        this.isClosed = true;
+        PooledConnection reader;
+        while ((reader = this.idleReaders.poll()) != null) {
+            reader.close();
+        }
+        // Readers in use are closed when they are released.
+        this.readers.clear();
+
+        if (this.writer != null) {
+            try {
+                // Writes queued before this are applied first.
+                this.write(() -> {
+                    this.writer.close();
+                    return null;
+                });
+            } catch (SQLException e) {
+                CodeSyncLogger.error(
+                    String.format(
+                        "[DATABASE_DISCONNECTION] SQL error while disconnecting SQLite database connection. Error: %s",
+                        CommonUtils.getStackTrace(e)
+                    )
+                );
+            }
         }
+        this.writerExecutor.shutdown();
     }
 
 }
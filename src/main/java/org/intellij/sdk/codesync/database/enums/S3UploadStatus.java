@@ -0,0 +1,26 @@
+package org.intellij.sdk.codesync.database.enums;
+
+public enum S3UploadStatus {
+    PENDING ("Pending"),
+    IN_PROGRESS ("In Progress"),
+    FAILED ("Failed");
+
+    private final String status;
+
+    S3UploadStatus(String status) {
+        this.status = status;
+    }
+
+    @Override
+    public String toString() {
+        return status;
+    }
+    public static S3UploadStatus fromString(String text) {
+        for (S3UploadStatus s3UploadStatus : S3UploadStatus.values()) {
+            if (s3UploadStatus.status.equalsIgnoreCase(text)) {
+                return s3UploadStatus;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,102 @@
+package org.intellij.sdk.codesync.database.migrations;
+
+import org.intellij.sdk.codesync.CodeSyncLogger;
+import org.intellij.sdk.codesync.database.enums.MigrationState;
+import org.intellij.sdk.codesync.database.tables.*;
+import org.intellij.sdk.codesync.utils.CommonUtils;
+
+import java.sql.SQLException;
+
+/*
+    This class is used to add the indexes used to look up repos, branches and files to existing databases.
+
+    Duplicate rows would keep the unique indexes from being created, so they are merged into the first of them first.
+*/
+public class MigrateIndexes implements Migration {
+    // This migration has its own identifier so that adding it does not re-run the earlier migrations.
+    private static final String identifier = "1.1.0-oct-2026";
+
+    private static MigrateIndexes instance;
+    private final RepoTable repoTable;
+    private final RepoBranchTable repoBranchTable;
+    private final RepoFileTable repoFileTable;
+    private final MigrationsTable migrationsTable;
+
+    public static MigrateIndexes getInstance() {
+        if (instance == null) {
+            instance = new MigrateIndexes();
+        }
+        return instance;
+    }
+
+    private MigrateIndexes() {
+        this.repoTable = RepoTable.getInstance();
+        this.repoBranchTable = RepoBranchTable.getInstance();
+        this.repoFileTable = RepoFileTable.getInstance();
+        this.migrationsTable = MigrationsTable.getInstance();
+    }
+
+    public MigrationState checkMigrationState() throws SQLException {
+        if (!this.migrationsTable.exists()) {
+            this.migrationsTable.createTable();
+            return MigrationState.NOT_STARTED;
+        }
+        return this.migrationsTable.getMigrationState(this.repoFileTable.getTableName(), identifier);
+    }
+
+    private void setMigrationState(MigrationState migrationState) throws SQLException {
+        this.migrationsTable.setMigrationState(this.repoFileTable.getTableName(), migrationState, identifier);
+    }
+
+    private void createIndexes() throws SQLException {
+        // Order matters, merging duplicate repos can create duplicate branches and merging those duplicate files.
+        this.repoTable.createIndexes();
+        this.repoBranchTable.createIndexes();
+        this.repoFileTable.createIndexes();
+    }
+
+    private void analyze() throws SQLException {
+        this.repoTable.analyze();
+        this.repoBranchTable.analyze();
+        this.repoFileTable.analyze();
+    }
+
+    @Override
+    public void migrate() {
+        try {
+            switch (checkMigrationState()) {
+                case NOT_STARTED:
+                case ERROR:
+                // Every step can safely be repeated, so a run interrupted by an IDE shutdown is simply started again.
+                case IN_PROGRESS:
+                    CodeSyncLogger.info("[DATABASE_MIGRATION] [START] Index migration started.");
+                    setMigrationState(MigrationState.IN_PROGRESS);
+                    createIndexes();
+                    CodeSyncLogger.info("[DATABASE_MIGRATION] Indexes created.");
+                    analyze();
+                    CodeSyncLogger.info("[DATABASE_MIGRATION] Tables analyzed. Setting Migration state to DONE.");
+                    setMigrationState(MigrationState.DONE);
+                    CodeSyncLogger.info("[DATABASE_MIGRATION] [DONE] Index migration complete.");
+                    break;
+                case DONE:
+                    break;
+            }
+        } catch (SQLException e) {
+            try {
+                setMigrationState(MigrationState.ERROR);
+            } catch (SQLException ex) {
+                CodeSyncLogger.critical(String.format(
+                    "[DATABASE_MIGRATION] Error '%s' while setting migration state for error: %s",
+                    ex.getMessage(),
+                    e.getMessage()
+                ));
+            }
+            CodeSyncLogger.critical(
+                String.format(
+                    "[DATABASE_MIGRATION] SQL error while adding indexes: %s",
+                    CommonUtils.getStackTrace(e)
+                )
+            );
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.intellij.sdk.codesync.database.migrations;
+
+import org.intellij.sdk.codesync.CodeSyncLogger;
+import org.intellij.sdk.codesync.database.enums.MigrationState;
+import org.intellij.sdk.codesync.database.tables.*;
+import org.intellij.sdk.codesync.utils.CommonUtils;
+
+import java.sql.SQLException;
+
+/*
+    This class is used to create the tables added after the repo table migration, i.e. the file state and the S3
+    upload queue tables. Both fresh and existing installations get them through this migration.
+*/
+public class MigrateTables implements Migration {
+    // This migration has its own identifier so that adding it does not re-run the earlier migrations.
+    private static final String identifier = "1.2.0-oct-2026";
+
+    private static MigrateTables instance;
+    private final FileStateTable fileStateTable;
+    private final S3UploadQueueTable s3UploadQueueTable;
+    private final MigrationsTable migrationsTable;
+
+    public static MigrateTables getInstance() {
+        if (instance == null) {
+            instance = new MigrateTables();
+        }
+        return instance;
+    }
+
+    private MigrateTables() {
+        this.fileStateTable = FileStateTable.getInstance();
+        this.s3UploadQueueTable = S3UploadQueueTable.getInstance();
+        this.migrationsTable = MigrationsTable.getInstance();
+    }
+
+    public MigrationState checkMigrationState() throws SQLException {
+        if (!this.migrationsTable.exists()) {
+            this.migrationsTable.createTable();
+            return MigrationState.NOT_STARTED;
+        }
+        return this.migrationsTable.getMigrationState(this.fileStateTable.getTableName(), identifier);
+    }
+
+    private void setMigrationState(MigrationState migrationState) throws SQLException {
+        this.migrationsTable.setMigrationState(this.fileStateTable.getTableName(), migrationState, identifier);
+    }
+
+    private void createTables() throws SQLException {
+        this.fileStateTable.createTable();
+        this.s3UploadQueueTable.createTable();
+    }
+
+    @Override
+    public void migrate() {
+        try {
+            switch (checkMigrationState()) {
+                case NOT_STARTED:
+                case ERROR:
+                // Tables are only created if they do not exist, so an interrupted run is simply started again.
+                case IN_PROGRESS:
+                    CodeSyncLogger.info("[DATABASE_MIGRATION] [START] Table migration started.");
+                    setMigrationState(MigrationState.IN_PROGRESS);
+                    createTables();
+                    CodeSyncLogger.info("[DATABASE_MIGRATION] Tables created. Setting Migration state to DONE.");
+                    setMigrationState(MigrationState.DONE);
+                    CodeSyncLogger.info("[DATABASE_MIGRATION] [DONE] Table migration complete.");
+                    break;
+                case DONE:
+                    break;
+            }
+        } catch (SQLException e) {
+            try {
+                setMigrationState(MigrationState.ERROR);
+            } catch (SQLException ex) {
+                CodeSyncLogger.critical(String.format(
+                    "[DATABASE_MIGRATION] Error '%s' while setting migration state for error: %s",
+                    ex.getMessage(),
+                    e.getMessage()
+                ));
+            }
+            CodeSyncLogger.critical(
+                String.format(
+                    "[DATABASE_MIGRATION] SQL error while creating tables: %s",
+                    CommonUtils.getStackTrace(e)
+                )
+            );
+        }
+    }
+}
@@ -44,5 +44,7 @@ public class MigrationManager {
     public void runMigrations() {
         MigrateUser.getInstance().migrate();
         MigrateRepo.getInstance().migrate();
+        MigrateIndexes.getInstance().migrate();
+        MigrateTables.getInstance().migrate();
     }
 }
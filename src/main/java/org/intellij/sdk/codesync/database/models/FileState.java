@@ -0,0 +1,71 @@
+package org.intellij.sdk.codesync.database.models;
+
+import org.intellij.sdk.codesync.database.tables.FileStateTable;
+
+import java.util.Objects;
+
+/*
+    This class is model for FileState table.
+
+    FileState holds the last known state (size, modified time, content hash etc.) of a file on the disk, and is used
+    to skip unchanged files while scanning the repo for the changes not captured by the IDE.
+*/
+public class FileState extends Model {
+    private final String path;
+    private final Integer repoBranchId;
+    private Long size, modifiedAt;
+    private String contentHash;
+    private Boolean isBinary;
+
+    public FileState(String path, Integer repoBranchId, Long size, Long modifiedAt, String contentHash, Boolean isBinary) {
+        this.path = path;
+        this.repoBranchId = repoBranchId;
+        this.size = size;
+        this.modifiedAt = modifiedAt;
+        this.contentHash = contentHash;
+        this.isBinary = isBinary;
+    }
+
+    public static FileStateTable getTable() {
+        return FileStateTable.getInstance();
+    }
+
+    public String getPath() {
+        return path;
+    }
+    public Integer getRepoBranchId() {
+        return repoBranchId;
+    }
+    public Long getSize() {
+        return size;
+    }
+    public Long getModifiedAt() {
+        return modifiedAt;
+    }
+    public String getContentHash() {
+        return contentHash;
+    }
+    public Boolean isBinary() {
+        return isBinary;
+    }
+
+    /*
+    Check if the file metadata on the disk is the same as the one stored in this state.
+    */
+    public boolean hasSameMetadata(long size, long modifiedAt) {
+        return Objects.equals(this.size, size) && Objects.equals(this.modifiedAt, modifiedAt);
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+    public void setModifiedAt(Long modifiedAt) {
+        this.modifiedAt = modifiedAt;
+    }
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    public void setBinary(Boolean isBinary) {
+        this.isBinary = isBinary;
+    }
+}
@@ -80,6 +80,13 @@ public class Repo extends Model {
         return RepoTable.getInstance();
     }
 
+    /*
+    Copy of the repo with the same column values, used by the entity cache to hand out entities callers can change.
+    */
+    public Repo copy() {
+        return new Repo(this.id, this.serverRepoId, this.name, this.path, this.userId, this.state);
+    }
+
     public String getName() {
         return name;
     }
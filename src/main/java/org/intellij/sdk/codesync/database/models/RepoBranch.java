@@ -1,5 +1,6 @@
 package org.intellij.sdk.codesync.database.models;
 
+import org.intellij.sdk.codesync.database.RepoFileWriteQueue;
 import org.intellij.sdk.codesync.database.tables.RepoBranchTable;
 import org.intellij.sdk.codesync.database.tables.RepoFileTable;
 import org.intellij.sdk.codesync.exceptions.database.RepoFileNotFound;
@@ -30,6 +31,10 @@ public class RepoBranch extends Model {
         return RepoBranchTable.getInstance();
     }
 
+    public RepoBranch copy() {
+        return new RepoBranch(this.id, this.name, this.repoId);
+    }
+
     public String getName() {
         return name;
     }
@@ -103,16 +108,17 @@ public class RepoBranch extends Model {
         return false;
     }
 
+    /*
+    Save the server file id of a file of this branch, the change is saved in the background by `RepoFileWriteQueue`.
+    */
     public void updateFileId(String filePath, Integer serverFileId) throws SQLException {
-        RepoFile repoFile = new RepoFile(filePath, this.getId(), serverFileId);
-        repoFile.save();
+        RepoFileWriteQueue.getInstance().save(this.getId(), filePath, serverFileId);
     }
 
+    /*
+    Remove a file of this branch, the change is saved in the background by `RepoFileWriteQueue`.
+    */
     public void removeFile(String fileRelativePath) throws SQLException {
-        try {
-            getFile(fileRelativePath).delete();
-        } catch (RepoFileNotFound e) {
-            // Do nothing here.
-        }
+        RepoFileWriteQueue.getInstance().remove(this.getId(), fileRelativePath);
     }
 }
@@ -29,6 +29,10 @@ public class RepoFile extends Model {
         return RepoFileTable.getInstance();
     }
 
+    public RepoFile copy() {
+        return new RepoFile(this.id, this.path, this.repoBranchId, this.serverFileId);
+    }
+
     public String getPath() {
         return path;
     }
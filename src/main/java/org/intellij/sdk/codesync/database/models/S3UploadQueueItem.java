@@ -0,0 +1,63 @@
+package org.intellij.sdk.codesync.database.models;
+
+import org.intellij.sdk.codesync.database.enums.S3UploadStatus;
+import org.intellij.sdk.codesync.database.tables.S3UploadQueueTable;
+
+import java.util.Map;
+
+/*
+    This class is model for S3UploadQueue table.
+
+    Each item is a file of a repo branch waiting to be uploaded to S3 with the given pre-signed URL data.
+*/
+public class S3UploadQueueItem extends Model {
+    private final Integer id;
+    private final String repoPath, branch, path;
+    private final Map<String, Object> url;
+    private final Integer attempts;
+    private final Long nextAttemptAt;
+    private final S3UploadStatus status;
+
+    public S3UploadQueueItem(
+        Integer id, String repoPath, String branch, String path, Map<String, Object> url, Integer attempts,
+        Long nextAttemptAt, S3UploadStatus status
+    ) {
+        this.id = id;
+        this.repoPath = repoPath;
+        this.branch = branch;
+        this.path = path;
+        this.url = url;
+        this.attempts = attempts;
+        this.nextAttemptAt = nextAttemptAt;
+        this.status = status;
+    }
+
+    public static S3UploadQueueTable getTable() {
+        return S3UploadQueueTable.getInstance();
+    }
+
+    public Integer getId() {
+        return id;
+    }
+    public String getRepoPath() {
+        return repoPath;
+    }
+    public String getBranch() {
+        return branch;
+    }
+    public String getPath() {
+        return path;
+    }
+    public Map<String, Object> getUrl() {
+        return url;
+    }
+    public Integer getAttempts() {
+        return attempts;
+    }
+    public Long getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+    public S3UploadStatus getStatus() {
+        return status;
+    }
+}
@@ -41,6 +41,10 @@ public class User extends Model {
         return UserTable.getInstance();
     }
 
+    public User copy() {
+        return new User(this.id, this.email, this.accessToken, this.accessKey, this.secretKey, this.isActive);
+    }
+
     public Integer getId() {
         return id;
     }
@@ -1,7 +1,48 @@
 package org.intellij.sdk.codesync.database.queries;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Collectors;
+
 public class CommonQueries {
-    public String getTableExistsQuery(String tableName){
-        return String.format("SELECT name FROM sqlite_master WHERE type='table' AND name='%s'", tableName);
+    public String getTableExistsQuery(){
+        return "SELECT name FROM sqlite_master WHERE type='table' AND name=?";
+    }
+
+    /*
+    Placeholders for an `IN` list of the given size, e.g. `?, ?, ?`.
+    */
+    protected static String getPlaceholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    public String getAnalyzeQuery(String tableName) {
+        return String.format("ANALYZE %s;", tableName);
+    }
+
+    /*
+    Select the ids of the rows that have the same values for the given columns as a row with a smaller id.
+    Rows with a NULL in any of the columns are never duplicates, same as for a unique index.
+    */
+    protected static String getDuplicateIdsQuery(String tableName, String... columns) {
+        String notNull = Arrays.stream(columns).map(column -> column + " IS NOT NULL").collect(Collectors.joining(" AND "));
+        return String.format(
+            "SELECT id FROM %s WHERE %s AND id NOT IN (SELECT MIN(id) FROM %s WHERE %s GROUP BY %s)",
+            tableName, notNull, tableName, notNull, String.join(", ", columns)
+        );
+    }
+
+    /*
+    Select the smallest id among the rows having the same values for the given columns as the row whose id is in
+    `idReference`, i.e. the id of the row that is kept when duplicates are removed.
+    */
+    protected static String getOriginalIdQuery(String tableName, String idReference, String... columns) {
+        String join = Arrays.stream(columns)
+            .map(column -> String.format("original.%s = duplicate.%s", column, column))
+            .collect(Collectors.joining(" AND "));
+        return String.format(
+            "SELECT MIN(original.id) FROM %s AS original INNER JOIN %s AS duplicate ON %s WHERE duplicate.id = %s",
+            tableName, tableName, join, idReference
+        );
     }
 }
@@ -0,0 +1,47 @@
+package org.intellij.sdk.codesync.database.queries;
+
+import org.intellij.sdk.codesync.database.tables.RepoBranchTable;
+
+public class FileStateQueries extends CommonQueries {
+    private final String tableName;
+
+    public FileStateQueries(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public String getCreateTableQuery() {
+        RepoBranchTable repoBranchTable = RepoBranchTable.getInstance();
+
+        return String.format("CREATE TABLE IF NOT EXISTS %s (", this.tableName) +
+                "path TEXT NOT NULL, repo_branch_id INTEGER NOT NULL, size BIGINT, modified_at BIGINT, " +
+                "content_hash TEXT, is_binary BOOLEAN, " +
+                "PRIMARY KEY(repo_branch_id, path), " +
+                String.format("FOREIGN KEY(repo_branch_id) REFERENCES %s(id))", repoBranchTable.getTableName());
+    }
+
+    /*
+    Get query to select state of all files of a given branch.
+    */
+    public String getSelectQuery() {
+        return String.format("SELECT * FROM %s WHERE repo_branch_id = ?;", this.tableName);
+    }
+
+    /*
+    Insert or replace the state of a file.
+    Parameters: path, repo_branch_id, size, modified_at, content_hash, is_binary.
+    */
+    public String getUpsertQuery() {
+        return String.format(
+            "INSERT OR REPLACE INTO %s (path, repo_branch_id, size, modified_at, content_hash, is_binary) " +
+            "VALUES (?, ?, ?, ?, ?, ?);",
+            this.tableName
+        );
+    }
+
+    /*
+    Parameters: repo_branch_id, path.
+    */
+    public String getDeleteQuery() {
+        return String.format("DELETE FROM %s WHERE repo_branch_id = ? AND path = ?;", this.tableName);
+    }
+}
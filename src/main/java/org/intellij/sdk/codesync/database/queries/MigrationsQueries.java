@@ -13,16 +13,25 @@ public class MigrationsQueries extends CommonQueries {
             ")";
     }
 
-    public String getFetchMigrationQuery(String tableName, String identifier) {
+    /*
+    Parameters: table_name, identifier.
+    */
+    public String getFetchMigrationQuery() {
         // Get the most recently applied migration for a table.
-        return String.format("SELECT * FROM %s  WHERE table_name='%s' AND identifier='%s' ORDER BY id DESC LIMIT 1;", this.tableName, tableName, identifier);
+        return String.format("SELECT * FROM %s  WHERE table_name=? AND identifier=? ORDER BY id DESC LIMIT 1;", this.tableName);
     }
 
-    public String getInsertMigrationQuery(String tableName, String identifier, String state) {
-        return String.format("INSERT INTO %s (table_name, state, identifier) VALUES ('%s', '%s', '%s');", this.tableName, tableName, state, identifier);
+    /*
+    Parameters: table_name, state, identifier.
+    */
+    public String getInsertMigrationQuery() {
+        return String.format("INSERT INTO %s (table_name, state, identifier) VALUES (?, ?, ?);", this.tableName);
     }
 
-    public String getUpdateMigrationQuery(String tableName, String identifier, String state) {
-        return String.format("UPDATE %s SET state='%s' WHERE table_name='%s' AND identifier='%s';", this.tableName, state, tableName, identifier);
+    /*
+    Parameters: state, table_name, identifier.
+    */
+    public String getUpdateMigrationQuery() {
+        return String.format("UPDATE %s SET state=? WHERE table_name=? AND identifier=?;", this.tableName);
     }
 }
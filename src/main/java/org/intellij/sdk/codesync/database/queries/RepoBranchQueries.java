@@ -1,10 +1,9 @@
 package org.intellij.sdk.codesync.database.queries;
 
-import org.intellij.sdk.codesync.database.models.RepoBranch;
+import org.intellij.sdk.codesync.database.tables.FileStateTable;
+import org.intellij.sdk.codesync.database.tables.RepoFileTable;
 import org.intellij.sdk.codesync.database.tables.RepoTable;
 
-import java.util.ArrayList;
-
 public class RepoBranchQueries extends CommonQueries {
     String tableName;
 
@@ -20,81 +19,83 @@ public class RepoBranchQueries extends CommonQueries {
                 String.format("FOREIGN KEY(repo_id) REFERENCES %s(id))", repoTable.getTableName());
     }
 
-    public String getInsertQuery(String name, Integer repoId) {
-        return String.format(
-                "INSERT INTO %s (name, repo_id) VALUES (%s, %s)",
-                this.tableName,
-                String.format("'%s'", name),
-                repoId
-        );
+    /*
+    Parameters: name, repo_id.
+    */
+    public String getInsertQuery() {
+        return String.format("INSERT INTO %s (name, repo_id) VALUES (?, ?)", this.tableName);
     }
 
-    public String getBulkInsertQuery(ArrayList<RepoBranch> repoBranches) {
-
-        // If there is only one element, return the insert query for that element.
-        if (repoBranches.size() == 1) {
-            RepoBranch repoBranch = repoBranches.get(0);
-            return getInsertQuery(repoBranch.getName(), repoBranch.getRepoId());
-        }
-        StringBuilder query = new StringBuilder(String.format(
-            "INSERT INTO %s (name, repo_id) VALUES ", tableName
-        ));
-
-        // Process n-1 elements
-        for (int i = 0; i < repoBranches.size() - 1; i++) {
-            query.append(String.format(
-                " (%s, %s),",
-                String.format("'%s'", repoBranches.get(i).getName()),
-                repoBranches.get(i).getRepoId()
-            ));
-        }
+    /*
+    Parameters: name, repo_id.
+    */
+    public String getSelectQuery() {
+        return String.format("SELECT * FROM %s WHERE name = ? AND repo_id = ?;", this.tableName);
+    }
 
-        int lastElement = repoBranches.size() - 1;
+    /*
+    Parameters: repo_id followed by `nameCount` branch names.
+    */
+    public String getSelectQuery(int nameCount) {
+        return String.format(
+            "SELECT * FROM %s WHERE repo_id = ? AND name IN (%s);", this.tableName, getPlaceholders(nameCount)
+        );
+    }
 
-        // Process the last element.
-        query.append(String.format(
-            " (%s, %s);",
-            String.format("'%s'", repoBranches.get(lastElement).getName()),
-            repoBranches.get(lastElement).getRepoId()
-        ));
+    /*
+    Get query to select all branches for a given repo.
+     */
+    public String getSelectByRepoQuery() {
+        return String.format("SELECT * FROM %s WHERE repo_id = ?;", this.tableName);
+    }
 
-        return query.toString();
+    /*
+    Get query to count all branches for a given repo.
+     */
+    public String getBranchCountQuery() {
+        return String.format("SELECT COUNT(*) FROM %s WHERE repo_id = ?;", this.tableName);
     }
 
-    public String getSelectQuery(String name, Integer repoId) {
-        return String.format("SELECT * FROM %s WHERE name = '%s' AND repo_id = %s;", this.tableName, name, repoId);
+    /*
+    Parameters: name, repo_id, id.
+    */
+    public String getUpdateQuery() {
+        return String.format("UPDATE %s SET name = ?, repo_id = ? WHERE id = ?", this.tableName);
     }
 
-    public String getSelectQuery(Integer repoId, ArrayList<String> branchNames) {
+    public String getCreateRepoNameIndexQuery() {
         return String.format(
-            "SELECT * FROM %s WHERE repo_id = %s AND name IN (%s);",
-            this.tableName,
-            repoId,
-            String.join(", ", branchNames.stream().map(name -> String.format("'%s'", name)).toArray(String[]::new))
+            "CREATE UNIQUE INDEX IF NOT EXISTS %s_repo_id_name ON %s (repo_id, name);", this.tableName, this.tableName
         );
     }
 
     /*
-    Get query to select all branches for a given repo.
-     */
-    public String getSelectQuery(Integer repoId) {
-        return String.format("SELECT * FROM %s WHERE repo_id = %s;", this.tableName, repoId);
+    Move the files of duplicate branches, i.e. branches of a repo with the same name, to the first of those branches.
+    */
+    public String getMoveFilesOfDuplicatesQuery() {
+        String repoFileTable = RepoFileTable.getInstance().getTableName();
+        return String.format(
+            "UPDATE %s SET repo_branch_id = (%s) WHERE repo_branch_id IN (%s);",
+            repoFileTable,
+            getOriginalIdQuery(this.tableName, repoFileTable + ".repo_branch_id", "repo_id", "name"),
+            getDuplicateIdsQuery(this.tableName, "repo_id", "name")
+        );
     }
 
     /*
-    Get query to select all branches for a given repo.
-     */
-    public String getBranchCountQuery(Integer repoId) {
-        return String.format("SELECT COUNT(*) FROM %s WHERE repo_id = %s;", this.tableName, repoId);
+    File states are only a cache of the files on disk, states of duplicate branches are dropped instead of merged.
+    */
+    public String getDeleteFileStatesOfDuplicatesQuery() {
+        return String.format(
+            "DELETE FROM %s WHERE repo_branch_id IN (%s);",
+            FileStateTable.getInstance().getTableName(),
+            getDuplicateIdsQuery(this.tableName, "repo_id", "name")
+        );
     }
 
-    public String getUpdateQuery(Integer id, String name, Integer repoId) {
+    public String getDeleteDuplicatesQuery() {
         return String.format(
-                "UPDATE %s SET name = %s, repo_id = %s WHERE id = %s",
-                this.tableName,
-                String.format("'%s'", name),
-                repoId,
-                id
+            "DELETE FROM %s WHERE id IN (%s);", this.tableName, getDuplicateIdsQuery(this.tableName, "repo_id", "name")
         );
     }
 }
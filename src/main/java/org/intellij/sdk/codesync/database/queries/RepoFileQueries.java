@@ -1,10 +1,9 @@
 package org.intellij.sdk.codesync.database.queries;
 
-import org.intellij.sdk.codesync.database.models.RepoFile;
 import org.intellij.sdk.codesync.database.tables.RepoBranchTable;
 import org.intellij.sdk.codesync.database.tables.RepoTable;
 
-import java.util.ArrayList;
+import java.util.Collections;
 
 public class RepoFileQueries extends CommonQueries {
     private final String tableName;
@@ -21,84 +20,100 @@ public class RepoFileQueries extends CommonQueries {
                 String.format("FOREIGN KEY(repo_branch_id) REFERENCES %s(id))", repoBranchTable.getTableName());
     }
 
-    public String getInsertQuery(String path, Integer repoBranchId, Integer serverFileId) {
+    /*
+    Parameters: path, repo_branch_id, server_file_id.
+    */
+    public String getInsertQuery() {
+        return String.format("INSERT INTO %s (path, repo_branch_id, server_file_id) VALUES (?, ?, ?)", this.tableName);
+    }
+
+    /*
+    Same as the insert query for `rowCount` files at once, except that files already present in the branch are replaced.
+    Parameters: path, repo_branch_id, server_file_id of each file.
+    */
+    public String getInsertOrReplaceQuery(int rowCount) {
         return String.format(
-                "INSERT INTO %s (path, repo_branch_id, server_file_id) VALUES (%s, %s, %s)",
-                this.tableName,
-                String.format("'%s'", path),
-                repoBranchId,
-                serverFileId
+            "INSERT OR REPLACE INTO %s (path, repo_branch_id, server_file_id) VALUES %s",
+            this.tableName,
+            String.join(", ", Collections.nCopies(rowCount, "(?, ?, ?)"))
         );
     }
 
-    public String getBulkInsertQuery(ArrayList<RepoFile> repoFiles) {
-
-        // If there is only one element, return the insert query for that element.
-        if (repoFiles.size() == 1) {
-            RepoFile repoFile = repoFiles.get(0);
-            return getInsertQuery(repoFile.getPath(), repoFile.getRepoBranchId(), repoFile.getServerFileId());
-        }
-        StringBuilder query = new StringBuilder(String.format(
-            "INSERT INTO %s (path, repo_branch_id, server_file_id) VALUES ", tableName
-        ));
-
-        // Process n-1 elements
-        for (int i = 0; i < repoFiles.size() - 1; i++) {
-            query.append(String.format(
-                " (%s, %s, %s),",
-                String.format("'%s'", repoFiles.get(i).getPath()),
-                repoFiles.get(i).getRepoBranchId(),
-                repoFiles.get(i).getServerFileId()
-            ));
-        }
-
-        int lastElement = repoFiles.size() - 1;
-
-        // Process the last element.
-        query.append(String.format(
-            " (%s, %s, %s);",
-            String.format("'%s'", repoFiles.get(lastElement).getPath()),
-            repoFiles.get(lastElement).getRepoBranchId(),
-            repoFiles.get(lastElement).getServerFileId()
-        ));
-
-        return query.toString();
+    /*
+    Parameters: path, repo_branch_id.
+    */
+    public String getSelectQuery() {
+        return String.format("SELECT * FROM %s WHERE path = ? AND repo_branch_id = ?;", this.tableName);
     }
 
-    public String getSelectQuery(String path, Integer repoBranchId) {
-        return String.format("SELECT * FROM %s WHERE path = '%s' AND repo_branch_id = %s;", this.tableName, path, repoBranchId);
+    /*
+    Parameters: repo_branch_id followed by `pathCount` file paths.
+    */
+    public String getSelectQuery(int pathCount) {
+        return String.format(
+            "SELECT * FROM %s WHERE repo_branch_id = ? AND path IN (%s);", this.tableName, getPlaceholders(pathCount)
+        );
     }
 
     /*
     Get query to select all files for a given branch.
     */
-    public String getSelectQuery(Integer repoBranchId) {
-        return String.format("SELECT * FROM %s WHERE repo_branch_id = %s;", this.tableName, repoBranchId);
+    public String getSelectByBranchQuery() {
+        return String.format("SELECT * FROM %s WHERE repo_branch_id = ?;", this.tableName);
     }
 
-    public String getSelectQuery(String repoPath, String repoBranchName, String filePath) {
+    /*
+    Parameters: repo path, branch name, file path.
+    */
+    public String getSelectByRepoPathQuery() {
         String repoBranchTable = RepoBranchTable.getInstance().getTableName();
         String repoTable = RepoTable.getInstance().getTableName();
-        return String.format("SELECT * FROM %s as rf ", this.tableName) +
+        return String.format("SELECT rf.* FROM %s as rf ", this.tableName) +
             String.format("INNER JOIN %s rb on rb.id = rf.repo_branch_id ", repoBranchTable) +
             String.format("INNER JOIN %s r on r.id = rb.repo_id ", repoTable) +
-            String.format("WHERE r.path = '%s' ", repoPath) +
-            String.format("AND rb.name = '%s' ", repoBranchName) +
-            String.format("AND rf.path = '%s'", filePath);
+            "WHERE r.path = ? AND rb.name = ? AND rf.path = ?";
+    }
+
+    /*
+    Parameters: path, repo_branch_id, server_file_id, id.
+    */
+    public String getUpdateQuery() {
+        return String.format(
+            "UPDATE %s SET path = ?, repo_branch_id = ?, server_file_id = ? WHERE id = ?", this.tableName
+        );
     }
 
-    public String getUpdateQuery(Integer id, String path, Integer repoBranchId, Integer serverFileId) {
+    /*
+    Parameters: server_file_id, repo_branch_id, path.
+    */
+    public String getUpdateByPathQuery() {
         return String.format(
-                "UPDATE %s SET path = %s, repo_branch_id = %s, server_file_id = %s WHERE id = %s",
-                this.tableName,
-                String.format("'%s'", path),
-                repoBranchId,
-                serverFileId,
-                id
+            "UPDATE %s SET server_file_id = ? WHERE repo_branch_id = ? AND path = ?", this.tableName
         );
     }
 
-    public String getDeleteQuery(Integer id) {
-        return String.format("DELETE FROM %s WHERE id = %s", this.tableName, id);
+    public String getDeleteQuery() {
+        return String.format("DELETE FROM %s WHERE id = ?", this.tableName);
+    }
+
+    /*
+    Parameters: repo_branch_id, path.
+    */
+    public String getDeleteByPathQuery() {
+        return String.format("DELETE FROM %s WHERE repo_branch_id = ? AND path = ?", this.tableName);
+    }
+
+    public String getCreateBranchPathIndexQuery() {
+        return String.format(
+            "CREATE UNIQUE INDEX IF NOT EXISTS %s_repo_branch_id_path ON %s (repo_branch_id, path);",
+            this.tableName,
+            this.tableName
+        );
+    }
+
+    public String getDeleteDuplicatesQuery() {
+        return String.format(
+            "DELETE FROM %s WHERE id IN (%s);", this.tableName, getDuplicateIdsQuery(this.tableName, "repo_branch_id", "path")
+        );
     }
 }
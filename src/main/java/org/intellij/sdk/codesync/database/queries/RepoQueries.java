@@ -1,11 +1,8 @@
-
 package org.intellij.sdk.codesync.database.queries;
 
-import org.intellij.sdk.codesync.database.models.Repo;
+import org.intellij.sdk.codesync.database.tables.RepoBranchTable;
 import org.intellij.sdk.codesync.database.tables.UserTable;
 
-import java.util.ArrayList;
-
 public class RepoQueries extends CommonQueries {
     String tableName;
 
@@ -23,87 +20,56 @@ public class RepoQueries extends CommonQueries {
 
     }
 
-    public String getInsertQuery(Integer serverRepoId, String name, String path, Integer userId, String state) {
+    /*
+    Parameters: server_repo_id, name, path, user_id, state.
+    */
+    public String getInsertQuery() {
         return String.format(
-            "INSERT INTO %s (server_repo_id, name, path, user_id, state) VALUES (%s, %s, %s, %s, %s)",
-                this.tableName,
-                serverRepoId,
-                String.format("'%s'", name),
-                String.format("'%s'", path),
-                userId,
-                String.format("'%s'", state)
+            "INSERT INTO %s (server_repo_id, name, path, user_id, state) VALUES (?, ?, ?, ?, ?)",
+            this.tableName
         );
     }
 
-    public String getBulkInsertQuery(ArrayList<Repo> repos) {
-        // If there is only one element, return the insert query for that element.
-        if (repos.size() == 1) {
-            Repo repo = repos.get(0);
-            return getInsertQuery(
-                repo.getServerRepoId(),
-                repo.getName(),
-                repo.getPath(),
-                repo.getUserId(),
-                repo.getState().toString()
-            );
-        }
-        StringBuilder query = new StringBuilder(String.format(
-            "INSERT INTO %s (server_repo_id, name, path, user_id, state) VALUES ", tableName
-        ));
-
-        // Process n-1 elements
-        for (int i = 0; i < repos.size() - 1; i++) {
-            query.append(String.format(
-                " (%s, %s, %s, %s, %s),",
-                repos.get(i).getServerRepoId(),
-                String.format("'%s'", repos.get(i).getName()),
-                String.format("'%s'", repos.get(i).getPath()),
-                repos.get(i).getUserId(),
-                String.format("'%s'", repos.get(i).getState().toString())
-            ));
-        }
-
-        int lastElement = repos.size() - 1;
+    public String getSelectQuery() {
+        return String.format("SELECT * FROM %s WHERE path = ?;", this.tableName);
+    }
 
-        // Process the last element.
-        query.append(String.format(
-            " (%s, %s, %s, %s, %s);",
-            repos.get(lastElement).getServerRepoId(),
-            String.format("'%s'", repos.get(lastElement).getName()),
-            String.format("'%s'", repos.get(lastElement).getPath()),
-            repos.get(lastElement).getUserId(),
-            String.format("'%s'", repos.get(lastElement).getState().toString())
-        ));
+    public String getSelectAllQuery() {
+        return String.format("SELECT * FROM %s;", this.tableName);
+    }
 
-        return query.toString();
+    /*
+    Get the query to fetch repos with given number of paths.
+     */
+    public String getSelectAllQuery(int pathCount) {
+        return String.format("SELECT * FROM %s WHERE path IN (%s);", this.tableName, getPlaceholders(pathCount));
     }
 
-    public String getSelectQuery(String repoPath) {
-        return String.format("SELECT * FROM %s WHERE path = '%s';", this.tableName, repoPath);
+    /*
+    Parameters: user_id, state, path.
+    */
+    public String getUpdateQuery() {
+        return String.format("UPDATE %s SET user_id = ?, state = ? WHERE path = ?", this.tableName);
     }
 
-    public String getSelectAllQuery() {
-        return String.format("SELECT * FROM %s;", this.tableName);
+    public String getCreatePathIndexQuery() {
+        return String.format("CREATE UNIQUE INDEX IF NOT EXISTS %s_path ON %s (path);", this.tableName, this.tableName);
     }
 
     /*
-    Get the query to fetch repos with given paths.
-     */
-    public String getSelectAllQuery(ArrayList<String> repoPaths) {
+    Move the branches of duplicate repos, i.e. repos with the same path, to the first of those repos.
+    */
+    public String getMoveBranchesOfDuplicatesQuery() {
+        String repoBranchTable = RepoBranchTable.getInstance().getTableName();
         return String.format(
-            "SELECT * FROM %s WHERE path IN (%s);",
-            this.tableName,
-            String.join(", ", repoPaths.stream().map(path -> String.format("'%s'", path)).toArray(String[]::new))
+            "UPDATE %s SET repo_id = (%s) WHERE repo_id IN (%s);",
+            repoBranchTable,
+            getOriginalIdQuery(this.tableName, repoBranchTable + ".repo_id", "path"),
+            getDuplicateIdsQuery(this.tableName, "path")
         );
     }
 
-    public String getUpdateQuery(String path, Integer userId, String state) {
-        return String.format(
-            "UPDATE %s SET user_id = %s, state = %s WHERE path = %s",
-            this.tableName,
-            userId,
-            String.format("'%s'", state),
-            String.format("'%s'", path)
-        );
+    public String getDeleteDuplicatesQuery() {
+        return String.format("DELETE FROM %s WHERE id IN (%s);", this.tableName, getDuplicateIdsQuery(this.tableName, "path"));
     }
 }
@@ -0,0 +1,88 @@
+package org.intellij.sdk.codesync.database.queries;
+
+public class S3UploadQueueQueries extends CommonQueries {
+    private final String tableName;
+
+    public S3UploadQueueQueries(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public String getCreateTableQuery() {
+        return String.format("CREATE TABLE IF NOT EXISTS %s (", this.tableName) +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, repo_path TEXT NOT NULL, branch TEXT NOT NULL, " +
+                "path TEXT NOT NULL, url TEXT, attempts INTEGER NOT NULL DEFAULT 0, next_attempt_at BIGINT NOT NULL, " +
+                "status TEXT NOT NULL, " +
+                "UNIQUE(repo_path, branch, path))";
+    }
+
+    /*
+    Index used to look up the items that are due for upload.
+    */
+    public String getCreateIndexQuery() {
+        return String.format(
+            "CREATE INDEX IF NOT EXISTS %s_status_next_attempt_at ON %s (status, next_attempt_at)",
+            this.tableName,
+            this.tableName
+        );
+    }
+
+    /*
+    Insert a file of a branch, a file already in the queue is replaced with the new URL data.
+    Parameters: repo_path, branch, path, url, next_attempt_at, status.
+    */
+    public String getUpsertQuery() {
+        return String.format(
+            "INSERT OR REPLACE INTO %s (repo_path, branch, path, url, attempts, next_attempt_at, status) " +
+            "VALUES (?, ?, ?, ?, 0, ?, ?);",
+            this.tableName
+        );
+    }
+
+    /*
+    Items still in progress after their claim expired belong to a run that was interrupted.
+    Parameters: pending status, in progress status, now, limit.
+    */
+    public String getSelectDueQuery() {
+        return String.format(
+            "SELECT * FROM %s WHERE status IN (?, ?) AND next_attempt_at <= ? ORDER BY next_attempt_at LIMIT ?;",
+            this.tableName
+        );
+    }
+
+    /*
+    Parameters: pending status, in progress status, now.
+    */
+    public String getCountDueQuery() {
+        return String.format(
+            "SELECT COUNT(*) AS count FROM %s WHERE status IN (?, ?) AND next_attempt_at <= ?;", this.tableName
+        );
+    }
+
+    /*
+    Get query to select all the items of a given branch.
+    */
+    public String getSelectQuery() {
+        return String.format("SELECT * FROM %s WHERE repo_path = ? AND branch = ?;", this.tableName);
+    }
+
+    /*
+    Parameters: attempts, next_attempt_at, status, id.
+    */
+    public String getUpdateQuery() {
+        return String.format(
+            "UPDATE %s SET attempts = ?, next_attempt_at = ?, status = ? WHERE id = ?;", this.tableName
+        );
+    }
+
+    /*
+    Mark an item as in progress until its claim expires.
+    Parameters: in progress status, next_attempt_at, id.
+    */
+    public String getClaimQuery() {
+        return String.format("UPDATE %s SET status = ?, next_attempt_at = ? WHERE id = ?;", this.tableName);
+    }
+
+    public String getDeleteQuery() {
+        return String.format("DELETE FROM %s WHERE id = ?;", this.tableName);
+    }
+}
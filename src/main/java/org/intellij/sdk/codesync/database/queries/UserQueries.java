@@ -15,42 +15,34 @@ public class UserQueries extends CommonQueries {
 
     /*
         This method returns the query to insert a new user into the database.
-        email must not be null. Others can be null.
+        Parameters: email, access_token, access_key, secret_key, is_active. email must not be null. Others can be null.
      */
-    public String getInsertQuery(String email, String accessToken, String accessKey, String secretKey, boolean isActive) {
+    public String getInsertQuery() {
         return String.format(
-            "INSERT INTO %s (email, access_token, access_key, secret_key, is_active) VALUES (%s, %s, %s, %s, %s)",
-                this.tableName,
-                String.format("'%s'", email),
-                accessToken == null ? "NULL" : String.format("'%s'", accessToken),
-                accessKey == null ? "NULL" : String.format("'%s'", accessKey),
-                secretKey == null ? "NULL" : String.format("'%s'", secretKey),
-                isActive ? "1" : "0"
+            "INSERT INTO %s (email, access_token, access_key, secret_key, is_active) VALUES (?, ?, ?, ?, ?)",
+            this.tableName
         );
     }
 
-    public String getSelectQuery(String email) {
-        return String.format("SELECT * FROM %s WHERE email = '%s';", this.tableName, email);
+    public String getSelectByEmailQuery() {
+        return String.format("SELECT * FROM %s WHERE email = ?;", this.tableName);
     }
 
-    public String getSelectQuery(Integer userId) {
-        return String.format("SELECT * FROM %s WHERE id = '%s';", this.tableName, userId);
+    public String getSelectByIdQuery() {
+        return String.format("SELECT * FROM %s WHERE id = ?;", this.tableName);
     }
 
     public String getSelectActiveQuery() {
         return String.format("SELECT * FROM %s WHERE is_active = 1;", this.tableName);
     }
 
-    public String getUpdateQuery(Integer id, String email, String accessToken, String accessKey, String secretKey, boolean isActive) {
+    /*
+    Parameters: email, access_token, access_key, secret_key, is_active, id.
+    */
+    public String getUpdateQuery() {
         return String.format(
-            "UPDATE %s SET email = %s, access_token = %s, access_key = %s, secret_key = %s, is_active = %s WHERE id = %s",
-            this.tableName,
-            String.format("'%s'", email),
-            accessToken == null ? "NULL" : String.format("'%s'", accessToken),
-            accessKey == null ? "NULL" : String.format("'%s'", accessKey),
-            secretKey == null ? "NULL" : String.format("'%s'", secretKey),
-            isActive ? "1" : "0",
-            id
+            "UPDATE %s SET email = ?, access_token = ?, access_key = ?, secret_key = ?, is_active = ? WHERE id = ?",
+            this.tableName
         );
     }
 
@@ -58,8 +50,8 @@ public class UserQueries extends CommonQueries {
     Get the query to mark the all users other than the given as in-active.
     This is needed because we want to make sure that only one user is active at a time.
     */
-    public String getMarkInActiveQuery(Integer id) {
-        return String.format("UPDATE %s SET is_active = 0 WHERE id != %s", this.tableName, id);
+    public String getMarkInActiveQuery() {
+        return String.format("UPDATE %s SET is_active = 0 WHERE id != ?", this.tableName);
     }
 
     /*
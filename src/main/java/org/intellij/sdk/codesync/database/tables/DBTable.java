@@ -1,17 +1,22 @@
 package org.intellij.sdk.codesync.database.tables;
 
 
+import org.intellij.sdk.codesync.CodeSyncLogger;
 import org.intellij.sdk.codesync.database.SQLiteConnection;
 import org.intellij.sdk.codesync.database.queries.CommonQueries;
 
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.intellij.sdk.codesync.Constants.SQLITE_ANALYZE_THRESHOLD;
 
 /*
     This is the base class for all tables in the database.
 */
 public abstract class DBTable {
+    // Bumped on every write to the table, see `EntityCache`.
+    private final AtomicLong version = new AtomicLong();
+
     public DBTable() {}
 
     public abstract String getTableName();
@@ -21,16 +26,56 @@ public abstract class DBTable {
         This method checks if the table exists in the database.
     */
     public Boolean exists() throws SQLException {
-        String query = new CommonQueries().getTableExistsQuery(getTableName());
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            ResultSet resultSet  = statement.executeQuery(query);
-            return resultSet.isBeforeFirst();
-        }
+        return SQLiteConnection.getInstance().executeQuery(
+            new CommonQueries().getTableExistsQuery(), resultSet -> resultSet.isBeforeFirst(), getTableName()
+        );
     }
 
     public void createTable() throws SQLException {
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            statement.executeUpdate(getCreateTableQuery());
+        SQLiteConnection.getInstance().execute(getCreateTableQuery());
+        this.invalidateCache();
+    }
+
+    /*
+        Version of the data of the table, changes on every write to it, including the writes of other processes.
+    */
+    public long getVersion() throws SQLException {
+        // Both only ever go up, so the sum changes whenever either of them does.
+        return version.get() + SQLiteConnection.getInstance().getExternalVersion();
+    }
+
+    /*
+        Make the cached lookups on this table stale, this must be called after every write to the table.
+    */
+    public void invalidateCache() {
+        this.version.incrementAndGet();
+    }
+
+    /*
+        Refresh the statistics SQLite uses to pick an index for queries on this table.
+    */
+    public void analyze() throws SQLException {
+        SQLiteConnection.getInstance().execute(new CommonQueries().getAnalyzeQuery(getTableName()));
+    }
+
+    /*
+        Statistics of a table are only refreshed by `ANALYZE`, so they are refreshed after loading a lot of rows.
+        Rows are already stored at this point, failing to refresh the statistics is not an error for the caller.
+    */
+    protected void analyzeAfterBulkLoad(int rowCount) {
+        if (rowCount < SQLITE_ANALYZE_THRESHOLD) {
+            return;
+        }
+        try {
+            this.analyze();
+        } catch (SQLException e) {
+            CodeSyncLogger.error(String.format(
+                "[DATABASE] Error while analyzing table '%s' after bulk load. Error: %s", getTableName(), e.getMessage()
+            ));
         }
     }
+
+    protected void runInTransaction(SQLiteConnection.TransactionBody body) throws SQLException {
+        SQLiteConnection.getInstance().runInTransaction(body);
+    }
 }
@@ -0,0 +1,102 @@
+package org.intellij.sdk.codesync.database.tables;
+
+import org.intellij.sdk.codesync.database.SQLiteConnection;
+import org.intellij.sdk.codesync.database.models.FileState;
+import org.intellij.sdk.codesync.database.queries.FileStateQueries;
+
+import java.sql.SQLException;
+import java.util.*;
+
+/*
+    Table holding the last known state of files of each branch, see `FileState` for details.
+*/
+public class FileStateTable extends DBTable {
+    private final String tableName = "file_state";
+    private static FileStateTable instance;
+    private final FileStateQueries fileStateQueries;
+
+    private FileStateTable() {
+        this.fileStateQueries = new FileStateQueries(tableName);
+    }
+
+    public static FileStateTable getInstance() {
+        if (instance == null) {
+            instance = new FileStateTable();
+        }
+        return instance;
+    }
+
+    @Override
+    public String getTableName() {
+        return tableName;
+    }
+
+    @Override
+    protected String getCreateTableQuery() {
+        return fileStateQueries.getCreateTableQuery();
+    }
+
+    /*
+    Get the state of all the files of the given branch, keyed by the relative file path.
+    */
+    public Map<String, FileState> findAll(Integer repoBranchId) throws SQLException {
+        return SQLiteConnection.getInstance().executeQuery(
+            this.fileStateQueries.getSelectQuery(),
+            resultSet -> {
+                Map<String, FileState> fileStates = new HashMap<>();
+                while (resultSet.next()) {
+                    FileState fileState = new FileState(
+                        resultSet.getString("path"),
+                        resultSet.getInt("repo_branch_id"),
+                        resultSet.getLong("size"),
+                        resultSet.getLong("modified_at"),
+                        resultSet.getString("content_hash"),
+                        resultSet.getBoolean("is_binary")
+                    );
+                    fileStates.put(fileState.getPath(), fileState);
+                }
+                return fileStates;
+            },
+            repoBranchId
+        );
+    }
+
+    /*
+    Insert or update the state of the given files, writes are batched and done in a single transaction.
+    */
+    public void bulkUpsert(Collection<FileState> fileStates) throws SQLException {
+        if (fileStates.isEmpty()) {
+            return;
+        }
+        List<Object[]> parameterRows = new ArrayList<>();
+        for (FileState fileState : fileStates) {
+            parameterRows.add(new Object[]{
+                fileState.getPath(),
+                fileState.getRepoBranchId(),
+                fileState.getSize(),
+                fileState.getModifiedAt(),
+                fileState.getContentHash(),
+                Boolean.TRUE.equals(fileState.isBinary())
+            });
+        }
+        this.runInTransaction(
+            () -> SQLiteConnection.getInstance().executeBatch(this.fileStateQueries.getUpsertQuery(), parameterRows)
+        );
+    }
+
+    /*
+    Remove the state of the given files.
+    */
+    public void delete(Integer repoBranchId, Collection<String> paths) throws SQLException {
+        if (paths.isEmpty()) {
+            return;
+        }
+        List<Object[]> parameterRows = new ArrayList<>();
+        for (String path : paths) {
+            parameterRows.add(new Object[]{repoBranchId, path});
+        }
+        this.runInTransaction(
+            () -> SQLiteConnection.getInstance().executeBatch(this.fileStateQueries.getDeleteQuery(), parameterRows)
+        );
+    }
+}
@@ -4,9 +4,7 @@ import org.intellij.sdk.codesync.database.SQLiteConnection;
 import org.intellij.sdk.codesync.database.enums.MigrationState;
 import org.intellij.sdk.codesync.database.queries.MigrationsQueries;
 
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 
 /*
     This class is used to interact with the Migrations table in the database.
@@ -15,7 +13,8 @@ public class MigrationsTable extends DBTable {
     private final String tableName = "migrations";
 
     // This is the identifier for the migration. It is used to identify the migration.
-    // This will be incremented manually each time we are adding a new migration.
+    // This will be incremented manually each time we are adding a new migration, migrations that must not re-run
+    // the existing ones pass their own identifier instead.
     private final String identifier = "1.0.0-feb-2024";
     private final MigrationsQueries migrationsQueries;
 
@@ -43,23 +42,31 @@ public class MigrationsTable extends DBTable {
     }
 
     public MigrationState getMigrationState(String tableName) throws SQLException {
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            ResultSet resultSet = statement.executeQuery(this.migrationsQueries.getFetchMigrationQuery(tableName, identifier));
-            if (resultSet.isBeforeFirst()) {
-                return MigrationState.fromString(resultSet.getString("state"));
-            }
-        }
-        return MigrationState.NOT_STARTED;
+        return this.getMigrationState(tableName, this.identifier);
+    }
+
+    public MigrationState getMigrationState(String tableName, String identifier) throws SQLException {
+        MigrationState migrationState = SQLiteConnection.getInstance().executeQuery(
+            this.migrationsQueries.getFetchMigrationQuery(),
+            resultSet -> resultSet.isBeforeFirst() ? MigrationState.fromString(resultSet.getString("state")) : null,
+            tableName, identifier
+        );
+        return migrationState != null ? migrationState : MigrationState.NOT_STARTED;
     }
 
     public void setMigrationState(String tableName, MigrationState state) throws SQLException {
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            ResultSet resultSet = statement.executeQuery(this.migrationsQueries.getFetchMigrationQuery(tableName, identifier));
-            if (!resultSet.isBeforeFirst()) {
-                statement.executeUpdate(this.migrationsQueries.getInsertMigrationQuery(tableName, identifier, state.toString()));
-            } else {
-                statement.executeUpdate(this.migrationsQueries.getUpdateMigrationQuery(tableName, identifier, state.toString()));
-            }
+        this.setMigrationState(tableName, state, this.identifier);
+    }
+
+    public void setMigrationState(String tableName, MigrationState state, String identifier) throws SQLException {
+        SQLiteConnection sqliteConnection = SQLiteConnection.getInstance();
+        boolean exists = sqliteConnection.executeQuery(
+            this.migrationsQueries.getFetchMigrationQuery(), resultSet -> resultSet.isBeforeFirst(), tableName, identifier
+        );
+        if (!exists) {
+            sqliteConnection.executeUpdate(this.migrationsQueries.getInsertMigrationQuery(), tableName, state.toString(), identifier);
+        } else {
+            sqliteConnection.executeUpdate(this.migrationsQueries.getUpdateMigrationQuery(), state.toString(), tableName, identifier);
         }
     }
 }
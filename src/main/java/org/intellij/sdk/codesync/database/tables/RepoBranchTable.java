@@ -1,5 +1,6 @@
 package org.intellij.sdk.codesync.database.tables;
 
+import org.intellij.sdk.codesync.database.EntityCache;
 import org.intellij.sdk.codesync.database.SQLiteConnection;
 import org.intellij.sdk.codesync.database.models.RepoBranch;
 import org.intellij.sdk.codesync.database.queries.RepoBranchQueries;
@@ -7,18 +8,24 @@ import org.intellij.sdk.codesync.exceptions.database.RepoBranchNotFound;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class RepoBranchTable extends DBTable {
     private final String tableName = "repo_branch";
     private static RepoBranchTable instance;
     private final RepoBranchQueries repoBranchQueries;
+    // Keyed by branch name and repo id.
+    private final EntityCache<List<Object>, RepoBranch> repoBranchCache;
+    private final EntityCache<Integer, Integer> branchCountCache;
 
     private RepoBranchTable() {
         this.repoBranchQueries = new RepoBranchQueries(tableName);
+        this.repoBranchCache = new EntityCache<>(tableName, RepoBranch::copy, this);
+        this.branchCountCache = new EntityCache<>("repo_branch_count", count -> count, this);
     }
 
     public static RepoBranchTable getInstance() {
@@ -38,18 +45,53 @@ public class RepoBranchTable extends DBTable {
         return repoBranchQueries.getCreateTableQuery();
     }
 
-    public RepoBranch get(String name, Integer repoId) throws SQLException, RepoBranchNotFound {
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            ResultSet resultSet = statement.executeQuery(this.repoBranchQueries.getSelectQuery(name, repoId));
-            if (resultSet.isBeforeFirst()) {
-                return new RepoBranch(
-                    resultSet.getInt("id"),
-                    resultSet.getString("name"),
-                    resultSet.getInt("repo_id")
-                );
+    /*
+    Create the unique index on branch names of a repo, duplicate branches are merged into the first of them before that.
+    */
+    public void createIndexes() throws SQLException {
+        boolean hasFileStates = FileStateTable.getInstance().exists();
+        this.runInTransaction(() -> {
+            SQLiteConnection sqliteConnection = SQLiteConnection.getInstance();
+            sqliteConnection.executeUpdate(this.repoBranchQueries.getMoveFilesOfDuplicatesQuery());
+            if (hasFileStates) {
+                sqliteConnection.executeUpdate(this.repoBranchQueries.getDeleteFileStatesOfDuplicatesQuery());
             }
+            sqliteConnection.executeUpdate(this.repoBranchQueries.getDeleteDuplicatesQuery());
+            sqliteConnection.executeUpdate(this.repoBranchQueries.getCreateRepoNameIndexQuery());
+        });
+        this.invalidateCache();
+        RepoFileTable.getInstance().invalidateCache();
+    }
+
+    private static RepoBranch readRepoBranch(ResultSet resultSet) throws SQLException {
+        return new RepoBranch(
+            resultSet.getInt("id"),
+            resultSet.getString("name"),
+            resultSet.getInt("repo_id")
+        );
+    }
+
+    private static ArrayList<RepoBranch> readRepoBranches(ResultSet resultSet) throws SQLException {
+        ArrayList<RepoBranch> repoBranches = new ArrayList<>();
+        while (resultSet.next()) {
+            repoBranches.add(readRepoBranch(resultSet));
         }
-        throw new RepoBranchNotFound(String.format("RepoBranch with name '%s' not found.", name));
+        return repoBranches;
+    }
+
+    public RepoBranch get(String name, Integer repoId) throws SQLException, RepoBranchNotFound {
+        RepoBranch repoBranch = this.repoBranchCache.get(
+            Arrays.asList(name, repoId),
+            key -> SQLiteConnection.getInstance().executeQuery(
+                this.repoBranchQueries.getSelectQuery(),
+                resultSet -> resultSet.isBeforeFirst() ? readRepoBranch(resultSet) : null,
+                name, repoId
+            )
+        );
+        if (repoBranch == null) {
+            throw new RepoBranchNotFound(String.format("RepoBranch with name '%s' not found.", name));
+        }
+        return repoBranch;
     }
 
     public RepoBranch find(String name, Integer repoId) throws SQLException {
@@ -61,53 +103,28 @@ public class RepoBranchTable extends DBTable {
     }
 
     public ArrayList<RepoBranch> findAll(Integer repoId) throws SQLException {
-        ArrayList<RepoBranch> repoBranches = new ArrayList<>();
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            ResultSet resultSet = statement.executeQuery(this.repoBranchQueries.getSelectQuery(repoId));
-            if (resultSet.isBeforeFirst()) {
-                while (resultSet.next()) {
-                    repoBranches.add(
-                        new RepoBranch(
-                            resultSet.getInt("id"),
-                            resultSet.getString("name"),
-                            resultSet.getInt("repo_id")
-                        )
-                    );
-                }
-                return repoBranches;
-            }
-        }
-        return repoBranches;
+        return SQLiteConnection.getInstance().executeQuery(
+            this.repoBranchQueries.getSelectByRepoQuery(), RepoBranchTable::readRepoBranches, repoId
+        );
     }
 
     public ArrayList<RepoBranch> findAll(Integer repoId, ArrayList<String> branchNames) throws SQLException {
-        ArrayList<RepoBranch> repoBranches = new ArrayList<>();
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            ResultSet resultSet = statement.executeQuery(this.repoBranchQueries.getSelectQuery(repoId, branchNames));
-            if (resultSet.isBeforeFirst()) {
-                while (resultSet.next()) {
-                    repoBranches.add(
-                        new RepoBranch(
-                            resultSet.getInt("id"),
-                            resultSet.getString("name"),
-                            resultSet.getInt("repo_id")
-                        )
-                    );
-                }
-                return repoBranches;
-            }
+        Object[] parameters = new Object[branchNames.size() + 1];
+        parameters[0] = repoId;
+        for (int i = 0; i < branchNames.size(); i++) {
+            parameters[i + 1] = branchNames.get(i);
         }
-        return repoBranches;
+        return SQLiteConnection.getInstance().executeQuery(
+            this.repoBranchQueries.getSelectQuery(branchNames.size()), RepoBranchTable::readRepoBranches, parameters
+        );
     }
 
     public Integer getBranchCount(Integer repoId) throws SQLException {
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            ResultSet resultSet = statement.executeQuery(this.repoBranchQueries.getBranchCountQuery(repoId));
-            if (resultSet.isBeforeFirst()) {
-                return resultSet.getInt(1);
-            }
-        }
-        return 0;
+        return this.branchCountCache.get(repoId, key -> SQLiteConnection.getInstance().executeQuery(
+            this.repoBranchQueries.getBranchCountQuery(),
+            resultSet -> resultSet.isBeforeFirst() ? resultSet.getInt(1) : 0,
+            key
+        ));
     }
 
     public RepoBranch getOrCreate(RepoBranch repoBranch) throws SQLException {
@@ -123,10 +140,11 @@ public class RepoBranchTable extends DBTable {
     }
 
     public RepoBranch insert(RepoBranch repoBranch) throws SQLException {
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            statement.executeUpdate(this.repoBranchQueries.getInsertQuery(repoBranch.getName(), repoBranch.getRepoId()));
-            return find(repoBranch.getName(), repoBranch.getRepoId());
-        }
+        SQLiteConnection.getInstance().executeUpdate(
+            this.repoBranchQueries.getInsertQuery(), repoBranch.getName(), repoBranch.getRepoId()
+        );
+        this.invalidateCache();
+        return find(repoBranch.getName(), repoBranch.getRepoId());
     }
 
     public ArrayList<RepoBranch> bulkInsert(ArrayList<RepoBranch> repoBranches) throws SQLException {
@@ -134,9 +152,14 @@ public class RepoBranchTable extends DBTable {
             return new ArrayList<>();
         }
         ArrayList<RepoBranch> insertedRepoBranches = new ArrayList<>();
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            statement.executeUpdate(this.repoBranchQueries.getBulkInsertQuery(repoBranches));
+        List<Object[]> parameterRows = new ArrayList<>();
+        for (RepoBranch repoBranch : repoBranches) {
+            parameterRows.add(new Object[]{repoBranch.getName(), repoBranch.getRepoId()});
         }
+        this.runInTransaction(
+            () -> SQLiteConnection.getInstance().executeBatch(this.repoBranchQueries.getInsertQuery(), parameterRows)
+        );
+        this.invalidateCache();
         Map<Integer, ArrayList<String>> insertedRepoBrancheMap = new HashMap<>();
         for (RepoBranch repoBranch : repoBranches) {
             if (!insertedRepoBrancheMap.containsKey(repoBranch.getRepoId())) {
@@ -154,8 +177,9 @@ public class RepoBranchTable extends DBTable {
     }
 
     public void update(RepoBranch repoBranch) throws SQLException {
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            statement.executeUpdate(this.repoBranchQueries.getUpdateQuery(repoBranch.getId(), repoBranch.getName(), repoBranch.getRepoId()));
-        }
+        SQLiteConnection.getInstance().executeUpdate(
+            this.repoBranchQueries.getUpdateQuery(), repoBranch.getName(), repoBranch.getRepoId(), repoBranch.getId()
+        );
+        this.invalidateCache();
     }
 }
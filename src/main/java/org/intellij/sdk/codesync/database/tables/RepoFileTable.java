@@ -1,5 +1,8 @@
 package org.intellij.sdk.codesync.database.tables;
 
+import org.intellij.sdk.codesync.database.EntityCache;
+import org.intellij.sdk.codesync.database.RepoFileWriteQueue;
+import org.intellij.sdk.codesync.database.RepoFileWriteQueue.PendingWrite;
 import org.intellij.sdk.codesync.database.SQLiteConnection;
 import org.intellij.sdk.codesync.database.models.RepoFile;
 import org.intellij.sdk.codesync.database.queries.RepoFileQueries;
@@ -7,16 +10,25 @@ import org.intellij.sdk.codesync.exceptions.database.RepoFileNotFound;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.ArrayList;
+import java.util.*;
+
+import static org.intellij.sdk.codesync.Constants.SQLITE_MAX_VARIABLES;
 
 public class RepoFileTable extends DBTable {
     private final String tableName = "repo_file";
     private static RepoFileTable instance;
     private final RepoFileQueries repoFileQueries;
+    // Keyed by file path and branch id.
+    private final EntityCache<List<Object>, RepoFile> repoFileCache;
+    // Keyed by repo path, branch name and file path.
+    private final EntityCache<List<Object>, RepoFile> repoFileByRepoPathCache;
 
     private RepoFileTable() {
         this.repoFileQueries = new RepoFileQueries(tableName);
+        this.repoFileCache = new EntityCache<>(tableName, RepoFile::copy, this);
+        this.repoFileByRepoPathCache = new EntityCache<>(
+            "repo_file_by_repo_path", RepoFile::copy, this, RepoBranchTable.getInstance(), RepoTable.getInstance()
+        );
     }
 
     public static RepoFileTable getInstance() {
@@ -36,19 +48,99 @@ public class RepoFileTable extends DBTable {
         return repoFileQueries.getCreateTableQuery();
     }
 
-    public RepoFile get(String path, Integer repoBranchId) throws SQLException, RepoFileNotFound {
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            ResultSet resultSet = statement.executeQuery(this.repoFileQueries.getSelectQuery(path, repoBranchId));
-            if (resultSet.isBeforeFirst()) {
-                return new RepoFile(
-                    resultSet.getInt("id"),
-                    resultSet.getString("path"),
-                    resultSet.getInt("repo_branch_id"),
-                    resultSet.getInt("server_file_id")
-                );
+    /*
+    Create the unique index on file paths of a branch, only the first of duplicate files is kept.
+    */
+    public void createIndexes() throws SQLException {
+        flushPendingWrites();
+        this.runInTransaction(() -> {
+            SQLiteConnection sqliteConnection = SQLiteConnection.getInstance();
+            sqliteConnection.executeUpdate(this.repoFileQueries.getDeleteDuplicatesQuery());
+            sqliteConnection.executeUpdate(this.repoFileQueries.getCreateBranchPathIndexQuery());
+        });
+        this.invalidateCache();
+    }
+
+    private static RepoFile readRepoFile(ResultSet resultSet) throws SQLException {
+        return new RepoFile(
+            resultSet.getInt("id"),
+            resultSet.getString("path"),
+            resultSet.getInt("repo_branch_id"),
+            resultSet.getInt("server_file_id")
+        );
+    }
+
+    private static ArrayList<RepoFile> readRepoFiles(ResultSet resultSet) throws SQLException {
+        ArrayList<RepoFile> repoFiles = new ArrayList<>();
+        while (resultSet.next()) {
+            repoFiles.add(readRepoFile(resultSet));
+        }
+        return repoFiles;
+    }
+
+    /*
+    Apply the queued changes to files, direct writes call this first so they are not overwritten by older changes.
+    */
+    private static void flushPendingWrites() throws SQLException {
+        RepoFileWriteQueue.getInstance().flush();
+    }
+
+    /*
+    Apply a queued change on top of the file read from the database, `null` means there is no such file.
+    */
+    private static RepoFile applyPendingWrite(RepoFile repoFile, PendingWrite pendingWrite) {
+        if (pendingWrite == null) {
+            return repoFile;
+        }
+        if (pendingWrite.isRemoved()) {
+            return null;
+        }
+        if (repoFile == null) {
+            // Not saved yet, so there is no id.
+            return new RepoFile(pendingWrite.getPath(), pendingWrite.getRepoBranchId(), pendingWrite.getServerFileId());
+        }
+        repoFile.setServerFileId(pendingWrite.getServerFileId());
+        return repoFile;
+    }
+
+    private static ArrayList<RepoFile> applyPendingWrites(ArrayList<RepoFile> repoFiles, List<PendingWrite> pendingWrites) {
+        if (pendingWrites.isEmpty()) {
+            return repoFiles;
+        }
+        Map<String, RepoFile> repoFilesByPath = new LinkedHashMap<>();
+        for (RepoFile repoFile : repoFiles) {
+            repoFilesByPath.put(repoFile.getPath(), repoFile);
+        }
+        for (PendingWrite pendingWrite : pendingWrites) {
+            RepoFile repoFile = applyPendingWrite(repoFilesByPath.get(pendingWrite.getPath()), pendingWrite);
+            if (repoFile == null) {
+                repoFilesByPath.remove(pendingWrite.getPath());
+            } else {
+                repoFilesByPath.put(pendingWrite.getPath(), repoFile);
             }
         }
-        throw new RepoFileNotFound(String.format("RepoFile with path '%s' and branch '%s' not found.", path, repoBranchId));
+        return new ArrayList<>(repoFilesByPath.values());
+    }
+
+    /*
+    Get the file with the given path in the branch, changes still queued in `RepoFileWriteQueue` are included.
+    */
+    public RepoFile get(String path, Integer repoBranchId) throws SQLException, RepoFileNotFound {
+        // Read before the database, a change applied in between is then already in the database.
+        PendingWrite pendingWrite = RepoFileWriteQueue.getInstance().getPendingWrite(repoBranchId, path);
+        RepoFile repoFile = this.repoFileCache.get(
+            Arrays.asList(path, repoBranchId),
+            key -> SQLiteConnection.getInstance().executeQuery(
+                this.repoFileQueries.getSelectQuery(),
+                resultSet -> resultSet.isBeforeFirst() ? readRepoFile(resultSet) : null,
+                path, repoBranchId
+            )
+        );
+        repoFile = applyPendingWrite(repoFile, pendingWrite);
+        if (repoFile == null) {
+            throw new RepoFileNotFound(String.format("RepoFile with path '%s' and branch '%s' not found.", path, repoBranchId));
+        }
+        return repoFile;
     }
 
     public RepoFile find(String path, Integer repoBranchId) throws SQLException {
@@ -62,45 +154,66 @@ public class RepoFileTable extends DBTable {
     /*
     Get RepoFile by path, repoBranchName and filePath.
 
-    This will join the related tables to get the RepoFile.
+    This will join the related tables to get the RepoFile. Queued changes to files are applied first, since they
+    can not be matched to the repo path and branch name without a lookup.
      */
     public RepoFile get(String repoPath, String repoBranchName, String filePath) throws SQLException, RepoFileNotFound {
+        flushPendingWrites();
         // TODO: Perform performance comparison between join and separate queries.
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            ResultSet resultSet = statement.executeQuery(this.repoFileQueries.getSelectQuery(repoPath, repoBranchName, filePath));
-            if (resultSet.isBeforeFirst()) {
-                return new RepoFile(
-                    resultSet.getInt("id"),
-                    resultSet.getString("path"),
-                    resultSet.getInt("repo_branch_id"),
-                    resultSet.getInt("server_file_id")
-                );
-            }
+        RepoFile repoFile = this.repoFileByRepoPathCache.get(
+            Arrays.asList(repoPath, repoBranchName, filePath),
+            key -> SQLiteConnection.getInstance().executeQuery(
+                this.repoFileQueries.getSelectByRepoPathQuery(),
+                resultSet -> resultSet.isBeforeFirst() ? readRepoFile(resultSet) : null,
+                repoPath, repoBranchName, filePath
+            )
+        );
+        if (repoFile == null) {
+            throw new RepoFileNotFound(String.format("RepoFile with repo path '%s', branch '%s' and path '%s' not found.", repoPath, repoBranchName, filePath));
         }
-        throw new RepoFileNotFound(String.format("RepoFile with repo path '%s', branch '%s' and path '%s' not found.", repoPath, repoBranchName, filePath));
+        return repoFile;
     }
 
     public ArrayList<RepoFile> findAll(Integer repoBranchId) throws SQLException {
+        List<PendingWrite> pendingWrites = RepoFileWriteQueue.getInstance().getPendingWrites(repoBranchId);
+        ArrayList<RepoFile> repoFiles = SQLiteConnection.getInstance().executeQuery(
+            this.repoFileQueries.getSelectByBranchQuery(), RepoFileTable::readRepoFiles, repoBranchId
+        );
+        return applyPendingWrites(repoFiles, pendingWrites);
+    }
+
+    /*
+    Get the files of the given branch having one of the given paths, paths without a file are left out.
+    Paths are looked up in chunks so that a query never has more than `SQLITE_MAX_VARIABLES` parameters.
+    */
+    public ArrayList<RepoFile> findAll(Integer repoBranchId, Collection<String> paths) throws SQLException {
+        List<PendingWrite> pendingWrites = new ArrayList<>();
+        for (PendingWrite pendingWrite : RepoFileWriteQueue.getInstance().getPendingWrites(repoBranchId)) {
+            if (paths.contains(pendingWrite.getPath())) {
+                pendingWrites.add(pendingWrite);
+            }
+        }
+
         ArrayList<RepoFile> repoFiles = new ArrayList<>();
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            ResultSet resultSet = statement.executeQuery(this.repoFileQueries.getSelectQuery(repoBranchId));
-            if (resultSet.isBeforeFirst()) {
-                while (resultSet.next()) {
-                    repoFiles.add(
-                        new RepoFile(
-                            resultSet.getInt("id"),
-                            resultSet.getString("path"),
-                            resultSet.getInt("repo_branch_id"),
-                            resultSet.getInt("server_file_id")
-                        )
-                    );
-                }
+        List<String> pathList = new ArrayList<>(paths);
+        int chunkSize = SQLITE_MAX_VARIABLES - 1;
+        for (int start = 0; start < pathList.size(); start += chunkSize) {
+            List<String> chunk = pathList.subList(start, Math.min(start + chunkSize, pathList.size()));
+            Object[] parameters = new Object[chunk.size() + 1];
+            parameters[0] = repoBranchId;
+            int i = 1;
+            for (String path : chunk) {
+                parameters[i++] = path;
             }
+            repoFiles.addAll(SQLiteConnection.getInstance().executeQuery(
+                this.repoFileQueries.getSelectQuery(chunk.size()), RepoFileTable::readRepoFiles, parameters
+            ));
         }
-        return repoFiles;
+        return applyPendingWrites(repoFiles, pendingWrites);
     }
 
     public RepoFile getOrCreate(RepoFile repoFile) throws SQLException {
+        flushPendingWrites();
         RepoFile existingRepoFile = find(repoFile.getPath(), repoFile.getRepoBranchId());
         if (existingRepoFile == null) {
             return insert(repoFile);
@@ -112,33 +225,99 @@ public class RepoFileTable extends DBTable {
     }
 
     public RepoFile insert(RepoFile repoFile) throws SQLException {
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            statement.executeUpdate(this.repoFileQueries.getInsertQuery(repoFile.getPath(), repoFile.getRepoBranchId(), repoFile.getServerFileId()));
-            return find(repoFile.getPath(), repoFile.getRepoBranchId());
-        }
+        flushPendingWrites();
+        SQLiteConnection.getInstance().executeUpdate(
+            this.repoFileQueries.getInsertQuery(), repoFile.getPath(), repoFile.getRepoBranchId(), repoFile.getServerFileId()
+        );
+        this.invalidateCache();
+        return find(repoFile.getPath(), repoFile.getRepoBranchId());
     }
 
     /*
-    Bulk insert repo files into the database.
+    Bulk insert repo files into the database, files already present in their branch are replaced.
+
+    Files are inserted with multi-row statements in a single transaction, each statement inserting as many files as
+    fit in `SQLITE_MAX_VARIABLES` parameters.
     */
     public void bulkInsert(ArrayList<RepoFile> repoFiles) throws SQLException {
         if (repoFiles.isEmpty()){
             return;
         }
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            statement.executeUpdate(this.repoFileQueries.getBulkInsertQuery(repoFiles));
+        flushPendingWrites();
+        // Each file takes 3 parameters: path, repo_branch_id and server_file_id.
+        int chunkSize = SQLITE_MAX_VARIABLES / 3;
+        this.runInTransaction(() -> {
+            SQLiteConnection sqliteConnection = SQLiteConnection.getInstance();
+            for (int start = 0; start < repoFiles.size(); start += chunkSize) {
+                List<RepoFile> chunk = repoFiles.subList(start, Math.min(start + chunkSize, repoFiles.size()));
+                Object[] parameters = new Object[chunk.size() * 3];
+                int i = 0;
+                for (RepoFile repoFile : chunk) {
+                    parameters[i++] = repoFile.getPath();
+                    parameters[i++] = repoFile.getRepoBranchId();
+                    parameters[i++] = repoFile.getServerFileId();
+                }
+                sqliteConnection.executeUpdate(this.repoFileQueries.getInsertOrReplaceQuery(chunk.size()), parameters);
+            }
+        });
+        this.invalidateCache();
+        this.analyzeAfterBulkLoad(repoFiles.size());
+    }
+
+    /*
+    Apply changes queued by `RepoFileWriteQueue` in a single transaction.
+
+    Files are matched by their branch and path, a saved file is inserted if there is no row to update.
+    */
+    public void applyWrites(List<PendingWrite> pendingWrites) throws SQLException {
+        List<Object[]> updateRows = new ArrayList<>();
+        List<Object[]> deleteRows = new ArrayList<>();
+        for (PendingWrite pendingWrite : pendingWrites) {
+            if (pendingWrite.isRemoved()) {
+                deleteRows.add(new Object[]{pendingWrite.getRepoBranchId(), pendingWrite.getPath()});
+            } else {
+                updateRows.add(new Object[]{
+                    pendingWrite.getServerFileId(), pendingWrite.getRepoBranchId(), pendingWrite.getPath()
+                });
+            }
         }
+
+        this.runInTransaction(() -> {
+            SQLiteConnection sqliteConnection = SQLiteConnection.getInstance();
+            sqliteConnection.executeBatch(this.repoFileQueries.getDeleteByPathQuery(), deleteRows);
+            int[] updateCounts = sqliteConnection.executeBatch(this.repoFileQueries.getUpdateByPathQuery(), updateRows);
+
+            List<Object[]> insertRows = new ArrayList<>();
+            for (int i = 0; i < updateRows.size(); i++) {
+                if (updateCounts[i] == 0) {
+                    Object[] updateRow = updateRows.get(i);
+                    insertRows.add(new Object[]{updateRow[2], updateRow[1], updateRow[0]});
+                }
+            }
+            sqliteConnection.executeBatch(this.repoFileQueries.getInsertQuery(), insertRows);
+        });
+        this.invalidateCache();
     }
 
     public void update(RepoFile repoFile) throws SQLException {
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            statement.executeUpdate(this.repoFileQueries.getUpdateQuery(repoFile.getId(), repoFile.getPath(), repoFile.getRepoBranchId(), repoFile.getServerFileId()));
-        }
+        flushPendingWrites();
+        SQLiteConnection.getInstance().executeUpdate(
+            this.repoFileQueries.getUpdateQuery(),
+            repoFile.getPath(), repoFile.getRepoBranchId(), repoFile.getServerFileId(), repoFile.getId()
+        );
+        this.invalidateCache();
     }
 
     public void delete(RepoFile repoFile) throws SQLException {
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            statement.executeUpdate(this.repoFileQueries.getDeleteQuery(repoFile.getId()));
+        flushPendingWrites();
+        if (repoFile.getId() == null) {
+            // Read while its change was still queued, see `applyPendingWrite`.
+            SQLiteConnection.getInstance().executeUpdate(
+                this.repoFileQueries.getDeleteByPathQuery(), repoFile.getRepoBranchId(), repoFile.getPath()
+            );
+        } else {
+            SQLiteConnection.getInstance().executeUpdate(this.repoFileQueries.getDeleteQuery(), repoFile.getId());
         }
+        this.invalidateCache();
     }
 }
@@ -1,16 +1,18 @@
 package org.intellij.sdk.codesync.database.tables;
 
+import org.intellij.sdk.codesync.database.EntityCache;
+import org.intellij.sdk.codesync.database.RepoPathTrie;
 import org.intellij.sdk.codesync.database.SQLiteConnection;
 import org.intellij.sdk.codesync.database.models.Repo;
 import org.intellij.sdk.codesync.database.queries.RepoQueries;
 import org.intellij.sdk.codesync.enums.RepoState;
 import org.intellij.sdk.codesync.exceptions.database.RepoNotFound;
-import org.intellij.sdk.codesync.utils.ProjectUtils;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /*
     This class is used to interact with the Repo table in the database.
@@ -18,11 +20,22 @@ import java.util.ArrayList;
 public class RepoTable extends DBTable {
     private final String tableName = "repo";
     private final RepoQueries repoQueries;
+    private final EntityCache<String, Repo> repoCache;
+    private final EntityCache<Boolean, ArrayList<Repo>> allReposCache;
+    // Paths of all the repos, built on first use and kept up to date by the writes below, see `getRepoPathTrie`.
+    private RepoPathTrie repoPathTrie;
+    private long repoPathTrieVersion;
 
     private static RepoTable instance;
 
     private RepoTable() {
         this.repoQueries = new RepoQueries(tableName);
+        this.repoCache = new EntityCache<>(tableName, Repo::copy, this);
+        this.allReposCache = new EntityCache<>(
+            "all_repos",
+            repos -> repos.stream().map(Repo::copy).collect(Collectors.toCollection(ArrayList::new)),
+            this
+        );
     }
 
     public static RepoTable getInstance() {
@@ -42,23 +55,49 @@ public class RepoTable extends DBTable {
         return this.repoQueries.getCreateTableQuery();
     }
 
-    public Repo get(String repoPath) throws SQLException, RepoNotFound {
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            ResultSet resultSet = statement.executeQuery(this.repoQueries.getSelectQuery(repoPath));
-
-            if (resultSet.isBeforeFirst()) {
-                return new Repo(
-                    resultSet.getInt("id"),
-                    resultSet.getInt("server_repo_id"),
-                    resultSet.getString("name"),
-                    resultSet.getString("path"),
-                    resultSet.getInt("user_id"),
-                    RepoState.fromString(resultSet.getString("state"))
-                );
-            }
+    /*
+    Create the unique index on repo paths, duplicate repos are merged into the first of them before that.
+    */
+    public void createIndexes() throws SQLException {
+        this.runInTransaction(() -> {
+            SQLiteConnection sqliteConnection = SQLiteConnection.getInstance();
+            sqliteConnection.executeUpdate(this.repoQueries.getMoveBranchesOfDuplicatesQuery());
+            sqliteConnection.executeUpdate(this.repoQueries.getDeleteDuplicatesQuery());
+            sqliteConnection.executeUpdate(this.repoQueries.getCreatePathIndexQuery());
+        });
+        this.invalidateCache();
+        RepoBranchTable.getInstance().invalidateCache();
+    }
+
+    private static Repo readRepo(ResultSet resultSet) throws SQLException {
+        return new Repo(
+            resultSet.getInt("id"),
+            resultSet.getInt("server_repo_id"),
+            resultSet.getString("name"),
+            resultSet.getString("path"),
+            resultSet.getInt("user_id"),
+            RepoState.fromString(resultSet.getString("state"))
+        );
+    }
+
+    private static ArrayList<Repo> readRepos(ResultSet resultSet) throws SQLException {
+        ArrayList<Repo> repos = new ArrayList<>();
+        while (resultSet.next()) {
+            repos.add(readRepo(resultSet));
         }
+        return repos;
+    }
 
-        throw new RepoNotFound(String.format("Repo with path '%s' not found.", repoPath));
+    public Repo get(String repoPath) throws SQLException, RepoNotFound {
+        Repo repo = this.repoCache.get(repoPath, path -> SQLiteConnection.getInstance().executeQuery(
+            this.repoQueries.getSelectQuery(),
+            resultSet -> resultSet.isBeforeFirst() ? readRepo(resultSet) : null,
+            path
+        ));
+        if (repo == null) {
+            throw new RepoNotFound(String.format("Repo with path '%s' not found.", repoPath));
+        }
+        return repo;
     }
 
     public Repo find(String repoPath) throws SQLException {
@@ -70,39 +109,16 @@ public class RepoTable extends DBTable {
     }
 
     public ArrayList<Repo> findAll() throws SQLException {
-        ArrayList<Repo> repos = new ArrayList<>();
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            ResultSet resultSet = statement.executeQuery(this.repoQueries.getSelectAllQuery());
-            while (resultSet.next()) {
-                repos.add(new Repo(
-                    resultSet.getInt("id"),
-                    resultSet.getInt("server_repo_id"),
-                    resultSet.getString("name"),
-                    resultSet.getString("path"),
-                    resultSet.getInt("user_id"),
-                    RepoState.fromString(resultSet.getString("state"))
-                ));
-            }
-        }
-        return repos;
+        return this.allReposCache.get(
+            true,
+            key -> SQLiteConnection.getInstance().executeQuery(this.repoQueries.getSelectAllQuery(), RepoTable::readRepos)
+        );
     }
 
     public ArrayList<Repo> findAll(ArrayList<String> repoPaths) throws SQLException {
-        ArrayList<Repo> repos = new ArrayList<>();
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            ResultSet resultSet = statement.executeQuery(this.repoQueries.getSelectAllQuery(repoPaths));
-            while (resultSet.next()) {
-                repos.add(new Repo(
-                    resultSet.getInt("id"),
-                    resultSet.getInt("server_repo_id"),
-                    resultSet.getString("name"),
-                    resultSet.getString("path"),
-                    resultSet.getInt("user_id"),
-                    RepoState.fromString(resultSet.getString("state"))
-                ));
-            }
-        }
-        return repos;
+        return SQLiteConnection.getInstance().executeQuery(
+            this.repoQueries.getSelectAllQuery(repoPaths.size()), RepoTable::readRepos, repoPaths.toArray()
+        );
     }
 
     public Repo getOrCreate(Repo repo) throws SQLException {
@@ -118,48 +134,103 @@ public class RepoTable extends DBTable {
     }
 
     public Repo insert(Repo repo) throws SQLException {
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            statement.executeUpdate(
-                this.repoQueries.getInsertQuery(repo.getServerRepoId(), repo.getName(), repo.getPath(), repo.getUserId(), repo.getState().toString())
-            );
-        }
+        long version = this.getVersion();
+        SQLiteConnection.getInstance().executeUpdate(
+            this.repoQueries.getInsertQuery(),
+            repo.getServerRepoId(), repo.getName(), repo.getPath(), repo.getUserId(), repo.getState().toString()
+        );
+        this.invalidateCache();
         // return the user object with the id
-        return find(repo.getPath());
+        Repo insertedRepo = find(repo.getPath());
+        if (insertedRepo != null) {
+            this.updateRepoPathTrie(version, insertedRepo);
+        }
+        return insertedRepo;
     }
 
     public ArrayList<Repo> bulkInsert(ArrayList<Repo> repos) throws SQLException {
         if (repos.isEmpty()) {
             return new ArrayList<>();
         }
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            statement.executeUpdate(this.repoQueries.getBulkInsertQuery(repos));
-        }
-
+        List<Object[]> parameterRows = new ArrayList<>();
         ArrayList<String> repoPaths = new ArrayList<>();
         for (Repo repo : repos) {
+            parameterRows.add(new Object[]{
+                repo.getServerRepoId(), repo.getName(), repo.getPath(), repo.getUserId(), repo.getState().toString()
+            });
             repoPaths.add(repo.getPath());
         }
-        return findAll(repoPaths);
+        long version = this.getVersion();
+        this.runInTransaction(
+            () -> SQLiteConnection.getInstance().executeBatch(this.repoQueries.getInsertQuery(), parameterRows)
+        );
+        this.invalidateCache();
+        ArrayList<Repo> insertedRepos = findAll(repoPaths);
+        this.updateRepoPathTrie(version, insertedRepos.toArray(new Repo[0]));
+        return insertedRepos;
     }
 
     public void update(Repo repo) throws SQLException {
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            statement.executeUpdate(
-                this.repoQueries.getUpdateQuery(repo.getPath(), repo.getUserId(), repo.getState().toString())
-            );
+        long version = this.getVersion();
+        int updatedCount = SQLiteConnection.getInstance().executeUpdate(
+            this.repoQueries.getUpdateQuery(), repo.getUserId(), repo.getState().toString(), repo.getPath()
+        );
+        this.invalidateCache();
+        if (updatedCount > 0) {
+            Repo updatedRepo = find(repo.getPath());
+            if (updatedRepo != null) {
+                this.updateRepoPathTrie(version, updatedRepo);
+            }
         }
-    }    /*
+    }
+
+    /*
+    Get the trie of repo paths, it is rebuilt from the table if it missed a write, e.g. one made by `createIndexes` or
+    by another process.
+    */
+    private synchronized RepoPathTrie getRepoPathTrie() throws SQLException {
+        long version = this.getVersion();
+        if (this.repoPathTrie == null || this.repoPathTrieVersion != version) {
+            RepoPathTrie trie = new RepoPathTrie();
+            for (Repo repo : findAll()) {
+                trie.put(repo);
+            }
+            this.repoPathTrie = trie;
+            this.repoPathTrieVersion = version;
+        }
+        return this.repoPathTrie;
+    }
+
+    /*
+    Add the written repos to the trie of repo paths instead of rebuilding it.
+
+    @param  version  version of the table before the write, the trie is only updated if it was up to date before the
+        write and no other write happened since then.
+    */
+    private synchronized void updateRepoPathTrie(long version, Repo... repos) throws SQLException {
+        if (this.repoPathTrie == null || this.repoPathTrieVersion != version || this.getVersion() != version + 1) {
+            return;
+        }
+        for (Repo repo : repos) {
+            this.repoPathTrie.put(repo);
+        }
+        this.repoPathTrieVersion = this.getVersion();
+    }
+
+    /*
+    Get the repo with the given path from the trie of repo paths, a lookup that does not need the database once the
+    trie is built.
+    */
+    public Repo findByPath(String repoPath) throws SQLException {
+        return this.getRepoPathTrie().get(repoPath);
+    }
+
+    /*
     Utility method to check if the given repo path is a subdirectory of some already synced repo.
-    It returns the parent repo with give repo path as a subdirectory.
+    It returns the closest parent repo with give repo path as a subdirectory.
      */
     public Repo getParentRepo(String repoPath) throws SQLException {
-        ArrayList<Repo> repos = findAll();
-        for (Repo repo : repos) {
-            if (ProjectUtils.isChild(repoPath, repo.getPath())) {
-                return repo;
-            }
-        }
-        return null;
+        return this.getRepoPathTrie().getParentRepo(repoPath);
     }
 
 
@@ -0,0 +1,167 @@
+package org.intellij.sdk.codesync.database.tables;
+
+import org.intellij.sdk.codesync.CodeSyncLogger;
+import org.intellij.sdk.codesync.database.SQLiteConnection;
+import org.intellij.sdk.codesync.database.enums.S3UploadStatus;
+import org.intellij.sdk.codesync.database.models.S3UploadQueueItem;
+import org.intellij.sdk.codesync.database.queries.S3UploadQueueQueries;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.intellij.sdk.codesync.Constants.S3_UPLOAD_TIMEOUT;
+
+/*
+    Table holding the files waiting to be uploaded to S3, see `S3UploadQueueItem` for details.
+
+    Items are claimed by an upload run for `S3_UPLOAD_TIMEOUT`, items of an interrupted run become due again once
+    their claim expires.
+*/
+public class S3UploadQueueTable extends DBTable {
+    private final String tableName = "s3_upload_queue";
+    private static S3UploadQueueTable instance;
+    private final S3UploadQueueQueries s3UploadQueueQueries;
+
+    private S3UploadQueueTable() {
+        this.s3UploadQueueQueries = new S3UploadQueueQueries(tableName);
+    }
+
+    public static S3UploadQueueTable getInstance() {
+        if (instance == null) {
+            instance = new S3UploadQueueTable();
+        }
+        return instance;
+    }
+
+    @Override
+    public String getTableName() {
+        return tableName;
+    }
+
+    @Override
+    protected String getCreateTableQuery() {
+        return s3UploadQueueQueries.getCreateTableQuery();
+    }
+
+    @Override
+    public void createTable() throws SQLException {
+        super.createTable();
+        SQLiteConnection.getInstance().execute(this.s3UploadQueueQueries.getCreateIndexQuery());
+    }
+
+    /*
+    Add the given files of a branch to the queue, files with empty URL data are empty and need no upload.
+
+    @param  filePathAndURLs  map of relative file paths and their pre-signed URL data.
+    */
+    public synchronized void enqueue(String repoPath, String branch, Map<String, Object> filePathAndURLs) throws SQLException {
+        long now = System.currentTimeMillis();
+        List<Object[]> parameterRows = filePathAndURLs.entrySet().stream()
+            .filter(filePathAndURL -> filePathAndURL.getValue() instanceof Map)
+            .map(filePathAndURL -> new Object[]{
+                repoPath,
+                branch,
+                filePathAndURL.getKey(),
+                JSONValue.toJSONString(filePathAndURL.getValue()),
+                now,
+                S3UploadStatus.PENDING.toString()
+            })
+            .collect(Collectors.toList());
+        if (parameterRows.isEmpty()) {
+            return;
+        }
+        this.runInTransaction(
+            () -> SQLiteConnection.getInstance().executeBatch(this.s3UploadQueueQueries.getUpsertQuery(), parameterRows)
+        );
+    }
+
+    /*
+    Claim up to `limit` items that are due for upload, claimed items are not returned again until their claim expires.
+    */
+    public synchronized List<S3UploadQueueItem> claimDueItems(int limit) throws SQLException {
+        long now = System.currentTimeMillis();
+        List<S3UploadQueueItem> items = new ArrayList<>();
+        this.runInTransaction(() -> {
+            SQLiteConnection sqliteConnection = SQLiteConnection.getInstance();
+            items.addAll(sqliteConnection.executeQuery(
+                this.s3UploadQueueQueries.getSelectDueQuery(),
+                this::readItems,
+                S3UploadStatus.PENDING.toString(), S3UploadStatus.IN_PROGRESS.toString(), now, limit
+            ));
+            List<Object[]> parameterRows = new ArrayList<>();
+            for (S3UploadQueueItem item : items) {
+                parameterRows.add(new Object[]{S3UploadStatus.IN_PROGRESS.toString(), now + S3_UPLOAD_TIMEOUT, item.getId()});
+            }
+            sqliteConnection.executeBatch(this.s3UploadQueueQueries.getClaimQuery(), parameterRows);
+        });
+        return items;
+    }
+
+    public synchronized int countDueItems() throws SQLException {
+        return SQLiteConnection.getInstance().executeQuery(
+            this.s3UploadQueueQueries.getCountDueQuery(),
+            resultSet -> resultSet.next() ? resultSet.getInt("count") : 0,
+            S3UploadStatus.PENDING.toString(), S3UploadStatus.IN_PROGRESS.toString(), System.currentTimeMillis()
+        );
+    }
+
+    /*
+    Get all the items of the given branch, keyed by the relative file path.
+    */
+    public synchronized Map<String, S3UploadQueueItem> findAll(String repoPath, String branch) throws SQLException {
+        Map<String, S3UploadQueueItem> items = new HashMap<>();
+        for (S3UploadQueueItem item : SQLiteConnection.getInstance().executeQuery(
+            this.s3UploadQueueQueries.getSelectQuery(), this::readItems, repoPath, branch
+        )) {
+            items.put(item.getPath(), item);
+        }
+        return items;
+    }
+
+    /*
+    Schedule the next attempt of a failed upload, or give up on the item if `status` is `FAILED`.
+    */
+    public synchronized void update(Integer id, Integer attempts, long nextAttemptAt, S3UploadStatus status) throws SQLException {
+        SQLiteConnection.getInstance().executeUpdate(
+            this.s3UploadQueueQueries.getUpdateQuery(), attempts, nextAttemptAt, status.toString(), id
+        );
+    }
+
+    public synchronized void delete(Integer id) throws SQLException {
+        SQLiteConnection.getInstance().executeUpdate(this.s3UploadQueueQueries.getDeleteQuery(), id);
+    }
+
+    private List<S3UploadQueueItem> readItems(ResultSet resultSet) throws SQLException {
+        List<S3UploadQueueItem> items = new ArrayList<>();
+        while (resultSet.next()) {
+            items.add(this.getItem(resultSet));
+        }
+        return items;
+    }
+
+    private S3UploadQueueItem getItem(ResultSet resultSet) throws SQLException {
+        Map<String, Object> url = null;
+        try {
+            url = (Map<String, Object>) new JSONParser().parse(resultSet.getString("url"));
+        } catch (ParseException | ClassCastException error) {
+            CodeSyncLogger.error(String.format(
+                "[S3_FILE_UPLOAD]: Invalid URL data for file '%s'.", resultSet.getString("path")
+            ));
+        }
+        return new S3UploadQueueItem(
+            resultSet.getInt("id"),
+            resultSet.getString("repo_path"),
+            resultSet.getString("branch"),
+            resultSet.getString("path"),
+            url,
+            resultSet.getInt("attempts"),
+            resultSet.getLong("next_attempt_at"),
+            S3UploadStatus.fromString(resultSet.getString("status"))
+        );
+    }
+}
@@ -1,6 +1,7 @@
 package org.intellij.sdk.codesync.database.tables;
 
 import org.intellij.sdk.codesync.CodeSyncLogger;
+import org.intellij.sdk.codesync.database.EntityCache;
 import org.intellij.sdk.codesync.database.SQLiteConnection;
 import org.intellij.sdk.codesync.database.models.User;
 import org.intellij.sdk.codesync.database.queries.UserQueries;
@@ -9,15 +10,20 @@ import org.intellij.sdk.codesync.utils.CommonUtils;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 
 public class UserTable extends DBTable {
     static String tableName = "user";
     private final UserQueries userQueries;
+    private final EntityCache<String, User> userByEmailCache;
+    private final EntityCache<Integer, User> userByIdCache;
+    private final EntityCache<Boolean, User> activeUserCache;
     private static UserTable instance;
 
     private UserTable() {
         this.userQueries = new UserQueries(tableName);
+        this.userByEmailCache = new EntityCache<>("user_by_email", User::copy, this);
+        this.userByIdCache = new EntityCache<>("user_by_id", User::copy, this);
+        this.activeUserCache = new EntityCache<>("active_user", User::copy, this);
     }
 
     public static UserTable getInstance() {
@@ -36,40 +42,38 @@ public class UserTable extends DBTable {
         return userQueries.getCreateTableQuery();
     }
 
-    public User get(String email) throws SQLException, UserNotFound {
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            ResultSet resultSet = statement.executeQuery(this.userQueries.getSelectQuery(email));
-            if (resultSet.isBeforeFirst()){
-                return new User(
-                    resultSet.getInt("id"),
-                    resultSet.getString("email"),
-                    resultSet.getString("access_token"),
-                    resultSet.getString("access_key"),
-                    resultSet.getString("secret_key"),
-                    resultSet.getBoolean("is_active")
-                );
-            }
+    private static User readUser(ResultSet resultSet) throws SQLException {
+        if (resultSet.isBeforeFirst()){
+            return new User(
+                resultSet.getInt("id"),
+                resultSet.getString("email"),
+                resultSet.getString("access_token"),
+                resultSet.getString("access_key"),
+                resultSet.getString("secret_key"),
+                resultSet.getBoolean("is_active")
+            );
+        }
+        return null;
+    }
 
+    public User get(String email) throws SQLException, UserNotFound {
+        User user = this.userByEmailCache.get(
+            email, key -> SQLiteConnection.getInstance().executeQuery(this.userQueries.getSelectByEmailQuery(), UserTable::readUser, key)
+        );
+        if (user == null) {
+            throw new UserNotFound(String.format("User with email '%s' not found.", email));
         }
-        throw new UserNotFound(String.format("User with email '%s' not found.", email));
+        return user;
     }
 
     public User get(Integer userId) throws SQLException, UserNotFound {
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            ResultSet resultSet = statement.executeQuery(this.userQueries.getSelectQuery(userId));
-            if (resultSet.isBeforeFirst()){
-                return new User(
-                    resultSet.getInt("id"),
-                    resultSet.getString("email"),
-                    resultSet.getString("access_token"),
-                    resultSet.getString("access_key"),
-                    resultSet.getString("secret_key"),
-                    resultSet.getBoolean("is_active")
-                );
-            }
-
+        User user = this.userByIdCache.get(
+            userId, key -> SQLiteConnection.getInstance().executeQuery(this.userQueries.getSelectByIdQuery(), UserTable::readUser, key)
+        );
+        if (user == null) {
+            throw new UserNotFound(String.format("User with id '%s' not found.", userId));
         }
-        throw new UserNotFound(String.format("User with id '%s' not found.", userId));
+        return user;
     }
 
     public User find(String email) throws SQLException {
@@ -100,21 +104,21 @@ public class UserTable extends DBTable {
     }
 
     public User insert(User user) throws SQLException {
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            statement.executeUpdate(
-                this.userQueries.getInsertQuery(user.getEmail(), user.getAccessToken(), user.getAccessKey(), user.getSecretKey(), user.isActive())
-            );
-        }
+        SQLiteConnection.getInstance().executeUpdate(
+            this.userQueries.getInsertQuery(),
+            user.getEmail(), user.getAccessToken(), user.getAccessKey(), user.getSecretKey(), user.isActive()
+        );
+        this.invalidateCache();
         // return the user object with the id
         return find(user.getEmail());
     }
 
     public void update(User user) throws SQLException {
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            statement.executeUpdate(
-                this.userQueries.getUpdateQuery(user.getId(), user.getEmail(), user.getAccessToken(), user.getAccessKey(), user.getSecretKey(), user.isActive())
-            );
-        }
+        SQLiteConnection.getInstance().executeUpdate(
+            this.userQueries.getUpdateQuery(),
+            user.getEmail(), user.getAccessToken(), user.getAccessKey(), user.getSecretKey(), user.isActive(), user.getId()
+        );
+        this.invalidateCache();
     }
 
     /*
@@ -122,35 +126,22 @@ public class UserTable extends DBTable {
     This is needed because we want to make sure that only one user is active at a time.
     */
     public void markOthersInActive(Integer id) throws SQLException {
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            statement.executeUpdate(this.userQueries.getMarkInActiveQuery(id));
-        }
+        SQLiteConnection.getInstance().executeUpdate(this.userQueries.getMarkInActiveQuery(), id);
+        this.invalidateCache();
     }
 
     /*
     Mark all users as in-active.
      */
     public void markAllInActive() throws SQLException {
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            statement.executeUpdate(this.userQueries.getMarkAllInActiveQuery());
-        }
+        SQLiteConnection.getInstance().executeUpdate(this.userQueries.getMarkAllInActiveQuery());
+        this.invalidateCache();
     }
 
     public User getActive() throws SQLException {
-        try (Statement statement = SQLiteConnection.getInstance().getConnection().createStatement()) {
-            ResultSet resultSet = statement.executeQuery(this.userQueries.getSelectActiveQuery());
-            if (resultSet.isBeforeFirst()){
-                return new User(
-                    resultSet.getInt("id"),
-                    resultSet.getString("email"),
-                    resultSet.getString("access_token"),
-                    resultSet.getString("access_key"),
-                    resultSet.getString("secret_key"),
-                    resultSet.getBoolean("is_active")
-                );
-            }
-        }
-        return null;
+        return this.activeUserCache.get(
+            true, key -> SQLiteConnection.getInstance().executeQuery(this.userQueries.getSelectActiveQuery(), UserTable::readUser)
+        );
     }
 
     /*
@@ -1,6 +1,6 @@
 package org.intellij.sdk.codesync.files;
 
-import java.io.File;
+import java.io.IOException;
 import java.util.Map;
 import java.util.Date;
 
@@ -8,7 +8,6 @@ import java.util.Date;
 import org.intellij.sdk.codesync.CodeSyncLogger;
 import org.intellij.sdk.codesync.utils.CommonUtils;
 import org.intellij.sdk.codesync.utils.CodeSyncDateUtils;
-import org.intellij.sdk.codesync.utils.FileUtils;
 import org.jetbrains.annotations.NotNull;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
@@ -19,25 +18,43 @@ import org.yaml.snakeyaml.error.YAMLException;
 import static org.intellij.sdk.codesync.Constants.DIFF_SIZE_LIMIT;
 
 
+/*
+    A diff buffered in the `DiffJournal`.
+
+    Only the metadata (header of the journal record) is parsed when the instance is created, diff itself is read
+    from the journal when `getDiff` is called, i.e. when the diff is actually being sent. This keeps the memory usage
+    flat when there is a large backlog of diffs.
+*/
 public class DiffFile {
-    public String diff, branch, fileRelativePath, repoPath, newRelativePath, oldRelativePath,
+    public String branch, fileRelativePath, repoPath, newRelativePath, oldRelativePath,
         newPath, oldPath, newAbsolutePath, oldAbsolutePath, commitHash;
     public Date createdAt, addedAt; // `addedAt` means the date file sync started. Only useful in case of new file diff.
     public Boolean isBinary, isDeleted, isNewFile, isRename, isDirRename;
-    public File originalDiffFile;
-
+    // Path identifying the journal record of this diff, see `DiffJournal.getRecordPath`.
+    public String path;
+    public long sequence;
+    private final boolean isStale;
+    private final DiffJournal.Record record;
+    private String diff;
+    private boolean isDiffLoaded = false;
+    private boolean isRemoved = false;
+
+    // Metadata of the diff.
     public String contents;
 
-    public DiffFile(@NotNull File originalDiffFile) {
-        this.originalDiffFile = originalDiffFile;
-        this.contents = FileUtils.readFileToString(originalDiffFile);
+    public DiffFile(@NotNull DiffJournal.Record record) {
+        this.record = record;
+        this.sequence = record.sequence;
+        this.path = record.getPath();
+        this.isStale = record.isStale();
+        this.contents = record.header;
         Map<String, Object> obj;
         Yaml yaml = new Yaml();
         try {
             obj = yaml.load(this.contents);
         } catch (YAMLException error) {
             CodeSyncLogger.debug(String.format(
-                "Invalid diff file '%s'. File contents: %s", this.originalDiffFile.getPath(), this.contents
+                "Invalid diff file '%s'. File contents: %s", this.path, this.contents
             ));
             return;
         }
@@ -47,7 +64,10 @@ public class DiffFile {
             return;
         }
 
-        this.diff = (String) obj.get("diff");
+        if (obj.containsKey("diff")) {
+            // Diffs imported from YAML files have the diff in the metadata.
+            this.setDiff((String) obj.get("diff"));
+        }
         this.branch = (String) obj.get("branch");
         try {
             this.createdAt = (Date) obj.get("created_at");
@@ -71,7 +91,7 @@ public class DiffFile {
 
         if (this.isDirRename) {
             try {
-                JSONObject diffJSON = (JSONObject) JSONValue.parseWithException(this.diff);
+                JSONObject diffJSON = (JSONObject) JSONValue.parseWithException(this.getDiff());
                 this.newPath = (String) diffJSON.get("new_path");
                 this.oldPath = (String) diffJSON.get("old_path");
             } catch (ParseException e) {
@@ -82,7 +102,7 @@ public class DiffFile {
         }
         if (this.isRename) {
             try {
-                JSONObject diffJSON = (JSONObject) JSONValue.parseWithException(this.diff);
+                JSONObject diffJSON = (JSONObject) JSONValue.parseWithException(this.getDiff());
                 this.newRelativePath = (String) diffJSON.get("new_rel_path");
                 this.oldRelativePath = (String) diffJSON.get("old_rel_path");
                 this.newAbsolutePath = (String) diffJSON.get("new_rel_path");
@@ -107,8 +127,9 @@ public class DiffFile {
             return false;
         }
 
-        // Make sure diff is of acceptable size.
-        if (this.diff != null && this.diff.length() > DIFF_SIZE_LIMIT) {
+        // Make sure diff is of acceptable size, size in bytes is an upper bound of the length so the diff
+        // only needs to be loaded for the (rare) large diffs.
+        if (this.getDiffSize() > DIFF_SIZE_LIMIT && this.getDiff().length() > DIFF_SIZE_LIMIT) {
             return false;
         }
 
@@ -138,25 +159,73 @@ public class DiffFile {
 
     }
 
+    /*
+    Check if the diff has been in the buffer for more than 5 days.
+    */
+    public boolean isStale() {
+        return this.isStale;
+    }
+
+    /*
+    Remove the diff from the buffer, i.e. ack its journal record.
+    */
     public boolean delete() {
-        return this.originalDiffFile.delete();
+        try {
+            this.record.ack();
+            this.isRemoved = true;
+        } catch (IOException e) {
+            CodeSyncLogger.error(String.format(
+                "Error while removing diff '%s' from the journal. Error: %s", this.path, CommonUtils.getStackTrace(e)
+            ));
+        }
+        return this.isRemoved;
     }
 
-    public static boolean delete(String diffFilePath) {
-        if (diffFilePath != null){
-            return new File(diffFilePath).delete();
+    /*
+    Check if the diff was removed from the buffer via `delete`.
+    */
+    public boolean isRemoved() {
+        return this.isRemoved;
+    }
+
+    /*
+    Get the diff, it is read from the journal on the first call.
+    */
+    public String getDiff() {
+        if (!this.isDiffLoaded) {
+            try {
+                String body = this.record.readBody();
+                this.diff = body.isEmpty() ? null : body;
+            } catch (IOException e) {
+                CodeSyncLogger.error(String.format(
+                    "Error while reading diff '%s' from the journal. Error: %s", this.path, CommonUtils.getStackTrace(e)
+                ));
+                this.diff = null;
+            }
+            this.isDiffLoaded = true;
         }
-        return false;
+        return this.diff;
     }
 
     public void setDiff(String diff)  {
         this.diff = diff;
+        this.isDiffLoaded = true;
+    }
+
+    /*
+    Size of the diff without loading it, this is the length of the diff if loaded otherwise its size in bytes.
+    */
+    public int getDiffSize() {
+        if (this.isDiffLoaded) {
+            return this.diff == null ? 0 : this.diff.length();
+        }
+        return this.record.bodyLength;
     }
 
     /*
     Helper method to check if diff content is empty or null.
      */
     public boolean isEmptyDiff() {
-        return this.diff == null || this.diff.length() == 0;
+        return this.getDiffSize() == 0;
     }
 }
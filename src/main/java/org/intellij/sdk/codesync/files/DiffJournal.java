@@ -0,0 +1,583 @@
+package org.intellij.sdk.codesync.files;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import static org.intellij.sdk.codesync.Constants.DIFFS_JOURNAL_DIR;
+import static org.intellij.sdk.codesync.Constants.DIFF_JOURNAL_SEGMENT_SIZE;
+import static org.intellij.sdk.codesync.Constants.FILE_MODIFIED_TIME_GRANULARITY;
+
+/*
+    Append-only journal of the diffs waiting to be sent to the server.
+
+    Diffs are appended as length-prefixed records to segment files, each record gets a monotonically increasing
+    sequence number. Layout of a record is,
+        [header length: int][body length: int][sequence: long][appended at: long][checksum: int][header][body]
+    where checksum is the CRC32 of the sequence, appended at, header and body. Header holds the (small) metadata of
+    the diff and body holds the diff itself, `read` only loads the headers and bodies are loaded on demand so that
+    a large backlog of diffs does not need to be kept in memory. Segment files are named after the
+    sequence of their first record, a new segment is started once the active (last) segment is larger than the
+    segment size or all of its records have been acked.
+
+    Acks are appended to a sidecar `.ack` file of the segment, acked sequences are folded into a per-segment
+    watermark (all records up to the watermark are acked). A segment and its ack file are deleted once the
+    watermark reaches the last record of the segment.
+
+    Multiple IDE processes share the journal, so all the operations are done while holding a file lock and the
+    in-memory index is refreshed from the disk (incrementally) before each operation. Segments are only listed
+    again when the directory changed, otherwise a refresh reads just the active segment and the ack files. Incomplete or corrupt
+    records at the end of the active segment, left by a crash during an append, are discarded on refresh.
+*/
+public class DiffJournal {
+    private static final String SEGMENT_EXTENSION = ".seg";
+    private static final String ACK_EXTENSION = ".ack";
+    private static final String LOCK_FILE_NAME = "journal.lock";
+    private static final String RECORD_PATH_SEPARATOR = "#";
+    private static final String IMPORTED_FROM_PREFIX = "# imported from: ";
+    // header length, body length, sequence, appended at and checksum.
+    private static final int RECORD_PREFIX_SIZE = 4 + 4 + 8 + 8 + 4;
+    private static final int CHECKSUM_CHUNK_SIZE = 64 * 1024;
+    private static final long STALE_RECORD_AGE = 5L * 24 * 60 * 60 * 1000; // 5 days.
+
+    private static DiffJournal instance;
+
+    private final File directory;
+    private final long segmentSize;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private long discardedBytes = 0;
+    // Modified time of the directory as of the last refresh, see `isChangedOnDisk`.
+    private long directoryModifiedAt = 0;
+    // When the segments were last listed, see `refresh`.
+    private long listedAt = 0;
+
+    public static class Record {
+        public final long sequence;
+        public final long appendedAt;
+        public final String header;
+        public final int bodyLength;
+        // Journal the record was read from, records of different journals have the same sequences.
+        private final DiffJournal journal;
+        private final File segmentFile;
+        private final long bodyOffset;
+
+        Record(
+            DiffJournal journal, long sequence, long appendedAt, String header, int bodyLength,
+            File segmentFile, long bodyOffset
+        ) {
+            this.journal = journal;
+            this.sequence = sequence;
+            this.appendedAt = appendedAt;
+            this.header = header;
+            this.bodyLength = bodyLength;
+            this.segmentFile = segmentFile;
+            this.bodyOffset = bodyOffset;
+        }
+
+        public boolean isStale() {
+            return this.appendedAt < System.currentTimeMillis() - STALE_RECORD_AGE;
+        }
+
+        /*
+        Path identifying the record, see `DiffJournal.getRecordPath`.
+        */
+        public String getPath() {
+            return this.journal.getRecordPath(this.sequence);
+        }
+
+        /*
+        Mark the record as processed in the journal it was read from, see `DiffJournal.ack`.
+        */
+        public void ack() throws IOException {
+            this.journal.ack(this.sequence);
+        }
+
+        /*
+        Read the body of the record from its segment, records are never modified once written so this does not
+        need the journal lock.
+
+        @throws IOException  if the segment was deleted, i.e. the record was acked in the meantime.
+        */
+        public String readBody() throws IOException {
+            if (this.bodyLength == 0) {
+                return "";
+            }
+            byte[] bodyBytes = new byte[this.bodyLength];
+            try (RandomAccessFile file = new RandomAccessFile(this.segmentFile, "r")) {
+                file.seek(this.bodyOffset);
+                file.readFully(bodyBytes);
+            }
+            return new String(bodyBytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static class Segment {
+        final long firstSequence;
+        final File file;
+        final File ackFile;
+        // Bytes of the segment (and ack) file that contain complete records and have been indexed.
+        long length = 0;
+        long ackLength = 0;
+        long lastSequence;
+        long watermark;
+        final Set<Long> ackedAboveWatermark = new HashSet<>();
+        // Offsets of the records that have not been acked yet.
+        final TreeMap<Long, Long> offsets = new TreeMap<>();
+
+        Segment(File directory, long firstSequence) {
+            this.firstSequence = firstSequence;
+            this.file = new File(directory, String.format("%020d%s", firstSequence, SEGMENT_EXTENSION));
+            this.ackFile = new File(directory, String.format("%020d%s", firstSequence, ACK_EXTENSION));
+            this.lastSequence = firstSequence - 1;
+            this.watermark = firstSequence - 1;
+        }
+
+        boolean isAcked(long sequence) {
+            return sequence <= this.watermark || this.ackedAboveWatermark.contains(sequence);
+        }
+
+        void applyAck(long sequence) {
+            if (this.isAcked(sequence)) {
+                return;
+            }
+            this.ackedAboveWatermark.add(sequence);
+            this.offsets.remove(sequence);
+            while (this.ackedAboveWatermark.remove(this.watermark + 1)) {
+                this.watermark++;
+            }
+        }
+
+        boolean isFullyAcked() {
+            return this.watermark >= this.lastSequence;
+        }
+    }
+
+    private interface JournalOperation<T> {
+        T run() throws IOException;
+    }
+
+    public DiffJournal(String directory, long segmentSize) {
+        this.directory = new File(directory);
+        this.segmentSize = segmentSize;
+    }
+
+    public static synchronized DiffJournal getInstance() {
+        if (instance == null) {
+            instance = new DiffJournal(DIFFS_JOURNAL_DIR, DIFF_JOURNAL_SEGMENT_SIZE);
+        }
+        return instance;
+    }
+
+    /*
+    Append a diff to the journal.
+
+    @param  header  metadata of the diff.
+    @param  body  the diff itself.
+    @return  sequence number of the new record.
+    */
+    public long append(String header, String body) throws IOException {
+        return this.withLock(() -> {
+            this.refresh();
+            return this.appendRecord(header, body, System.currentTimeMillis());
+        });
+    }
+
+    /*
+    Get all the records that have not been acked yet, in the order of their sequence numbers.
+    Only the headers are loaded, see `Record.readBody`.
+    */
+    public List<Record> read() throws IOException {
+        return this.withLock(() -> {
+            this.refresh();
+            List<Record> records = new ArrayList<>();
+            for (Segment segment: this.segments.values()) {
+                if (segment.offsets.isEmpty()) {
+                    continue;
+                }
+                try (RandomAccessFile segmentFile = new RandomAccessFile(segment.file, "r")) {
+                    for (Map.Entry<Long, Long> entry: segment.offsets.entrySet()) {
+                        records.add(this.readRecord(segment.file, segmentFile, entry.getValue()));
+                    }
+                }
+            }
+            return records;
+        });
+    }
+
+    /*
+    Check if there are any records that have not been acked yet, without reading the records.
+    */
+    public boolean hasPendingRecords() throws IOException {
+        return this.withLock(() -> {
+            this.refresh();
+            for (Segment segment: this.segments.values()) {
+                if (!segment.offsets.isEmpty()) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    /*
+    Cheap check for records appended since the last operation of this instance, e.g. by other IDE processes.
+
+    Only the metadata of the directory and the active segment are read and the lock is not taken, so this can be
+    called often. Segments started by other processes change the modified time of the directory, appends grow the
+    active segment. Changes made within the modified time resolution of the directory may be missed.
+    */
+    public synchronized boolean isChangedOnDisk() {
+        if (this.directory.lastModified() != this.directoryModifiedAt) {
+            return true;
+        }
+        if (this.segments.isEmpty()) {
+            return false;
+        }
+        Segment active = this.segments.lastEntry().getValue();
+        return active.file.length() != active.length;
+    }
+
+    /*
+    Mark the record with the given sequence as processed, it will not be returned by `read` anymore.
+    */
+    public void ack(long sequence) throws IOException {
+        this.withLock(() -> {
+            this.refresh();
+            Map.Entry<Long, Segment> entry = this.segments.floorEntry(sequence);
+            if (entry == null || sequence > entry.getValue().lastSequence || entry.getValue().isAcked(sequence)) {
+                return null;
+            }
+            Segment segment = entry.getValue();
+            try (FileChannel channel = FileChannel.open(
+                segment.ackFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE
+            )) {
+                ByteBuffer buffer = ByteBuffer.allocate(8).putLong(0, sequence);
+                channel.write(buffer, segment.ackLength);
+                channel.force(false);
+                segment.ackLength += 8;
+            }
+            segment.applyAck(sequence);
+            this.deleteAckedSegments();
+            return null;
+        });
+    }
+
+    /*
+    Recover the journal after a restart, this discards the records left incomplete by a crash and imports the
+    diffs written as YAML files by the earlier versions of the plugin.
+
+    @param  yamlDiffsDirectory  directory containing `.yml` diff files.
+    @return  number of bytes discarded from the journal.
+    */
+    public long recover(String yamlDiffsDirectory) throws IOException {
+        this.withLock(() -> {
+            this.segments.clear();
+            this.refresh();
+            return null;
+        });
+        this.importYamlDiffs(yamlDiffsDirectory);
+        return this.discardedBytes;
+    }
+
+    /*
+    Move the `.yml` diff files of the given directory into the journal, files are imported in the order they were
+    written (file names are the creation timestamp) and deleted after being imported.
+
+    Each imported record carries the name of its source file, so a file that was imported but could not be deleted
+    (e.g. because of a crash) is not imported twice.
+
+    @return  number of imported files.
+    */
+    public int importYamlDiffs(String yamlDiffsDirectory) throws IOException {
+        File[] yamlFiles = new File(yamlDiffsDirectory).listFiles(
+            (dir, name) -> name.toLowerCase().endsWith(".yml")
+        );
+        if (yamlFiles == null || yamlFiles.length == 0) {
+            return 0;
+        }
+        Arrays.sort(yamlFiles, Comparator.comparing(File::getName));
+
+        return this.withLock(() -> {
+            this.refresh();
+            Set<String> importedFiles = this.getImportedFileNames();
+            int importedCount = 0;
+            for (File yamlFile: yamlFiles) {
+                if (!importedFiles.contains(yamlFile.getName())) {
+                    String contents = new String(Files.readAllBytes(yamlFile.toPath()), StandardCharsets.UTF_8);
+                    // Diff stays inside the YAML header of imported records.
+                    this.appendRecord(
+                        String.format("%s%s\n%s", IMPORTED_FROM_PREFIX, yamlFile.getName(), contents),
+                        "",
+                        yamlFile.lastModified()
+                    );
+                    importedCount++;
+                }
+                yamlFile.delete();
+            }
+            return importedCount;
+        });
+    }
+
+    /*
+    Path used to identify a record, e.g. in logs and in the messages sent to the server.
+    */
+    public String getRecordPath(long sequence) {
+        return this.directory.getPath() + RECORD_PATH_SEPARATOR + sequence;
+    }
+
+    /*
+    @return  sequence of the record identified by the given path, `null` if the path is not a record path.
+    */
+    public static Long getSequence(String recordPath) {
+        if (recordPath == null) {
+            return null;
+        }
+        int index = recordPath.lastIndexOf(RECORD_PATH_SEPARATOR);
+        if (index < 0) {
+            return null;
+        }
+        try {
+            return Long.parseLong(recordPath.substring(index + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public int getSegmentCount() {
+        return this.segments.size();
+    }
+
+    private synchronized <T> T withLock(JournalOperation<T> operation) throws IOException {
+        this.directory.mkdirs();
+        try (
+            FileChannel channel = FileChannel.open(
+                new File(this.directory, LOCK_FILE_NAME).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE
+            );
+            FileLock ignored = channel.lock()
+        ) {
+            return operation.run();
+        }
+    }
+
+    private long appendRecord(String header, String body, long appendedAt) throws IOException {
+        Segment active = this.segments.isEmpty() ? null : this.segments.lastEntry().getValue();
+        if (active == null || active.length >= this.segmentSize || (active.length > 0 && active.isFullyAcked())) {
+            Segment segment = new Segment(this.directory, active == null ? 1 : active.lastSequence + 1);
+            segment.file.createNewFile();
+            this.segments.put(segment.firstSequence, segment);
+            this.deleteAckedSegments();
+            active = segment;
+        }
+
+        long sequence = active.lastSequence + 1;
+        byte[] headerBytes = header.getBytes(StandardCharsets.UTF_8);
+        byte[] bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_PREFIX_SIZE + headerBytes.length + bodyBytes.length);
+        buffer.putInt(headerBytes.length);
+        buffer.putInt(bodyBytes.length);
+        buffer.putLong(sequence);
+        buffer.putLong(appendedAt);
+        buffer.putInt(getChecksum(sequence, appendedAt, headerBytes, bodyBytes));
+        buffer.put(headerBytes);
+        buffer.put(bodyBytes);
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(active.file.toPath(), StandardOpenOption.WRITE)) {
+            long position = active.length;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(false);
+        }
+        active.offsets.put(sequence, active.length);
+        active.length += buffer.capacity();
+        active.lastSequence = sequence;
+        return sequence;
+    }
+
+    /*
+    Bring the in-memory index in sync with the files on the disk, only the bytes written since the last refresh
+    are read.
+    */
+    private void refresh() throws IOException {
+        // Taken before listing, so segments started while listing are seen by the next `isChangedOnDisk`.
+        long modifiedAt = this.directory.lastModified();
+        // Segments are started and deleted only by changing the directory. A directory modified within the time
+        // resolution of the last listing may have changed again without a new modified time, so it is listed again.
+        boolean isListingNeeded = this.segments.isEmpty() ||
+            modifiedAt != this.directoryModifiedAt ||
+            modifiedAt >= this.listedAt - FILE_MODIFIED_TIME_GRANULARITY;
+        this.directoryModifiedAt = modifiedAt;
+        if (isListingNeeded) {
+            this.listedAt = System.currentTimeMillis();
+            this.listSegments();
+        }
+
+        Segment active = this.segments.isEmpty() ? null : this.segments.lastEntry().getValue();
+        for (Segment segment: this.segments.values()) {
+            // Only the active segment is appended to, the others were fully read when they were listed.
+            if (isListingNeeded || segment == active) {
+                this.scanRecords(segment, segment == active);
+            }
+            this.scanAcks(segment);
+        }
+        this.deleteAckedSegments();
+    }
+
+    private void listSegments() {
+        File[] segmentFiles = this.directory.listFiles((dir, name) -> name.endsWith(SEGMENT_EXTENSION));
+        Set<Long> firstSequences = new HashSet<>();
+        if (segmentFiles != null) {
+            for (File segmentFile: segmentFiles) {
+                String name = segmentFile.getName();
+                try {
+                    firstSequences.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_EXTENSION.length())));
+                } catch (NumberFormatException e) {
+                    // Not a segment file.
+                }
+            }
+        }
+        // Segments deleted by other processes.
+        this.segments.keySet().retainAll(firstSequences);
+        for (Long firstSequence: firstSequences) {
+            this.segments.computeIfAbsent(firstSequence, sequence -> new Segment(this.directory, sequence));
+        }
+    }
+
+    private void scanRecords(Segment segment, boolean isActive) throws IOException {
+        try (RandomAccessFile segmentFile = new RandomAccessFile(segment.file, isActive ? "rw" : "r")) {
+            long fileLength = segmentFile.length();
+            long position = segment.length;
+
+            while (position + RECORD_PREFIX_SIZE <= fileLength) {
+                segmentFile.seek(position);
+                int headerLength = segmentFile.readInt();
+                int bodyLength = segmentFile.readInt();
+                long sequence = segmentFile.readLong();
+                long appendedAt = segmentFile.readLong();
+                int checksum = segmentFile.readInt();
+                if (
+                    headerLength < 0 || bodyLength < 0 ||
+                    position + RECORD_PREFIX_SIZE + headerLength + bodyLength > fileLength ||
+                    sequence != segment.lastSequence + 1
+                ) {
+                    break;
+                }
+                // Checksum is computed in chunks so that large diffs are not loaded in memory.
+                CRC32 crc32 = newChecksum(sequence, appendedAt);
+                byte[] chunk = new byte[CHECKSUM_CHUNK_SIZE];
+                long remaining = (long) headerLength + bodyLength;
+                while (remaining > 0) {
+                    int chunkLength = (int) Math.min(chunk.length, remaining);
+                    segmentFile.readFully(chunk, 0, chunkLength);
+                    crc32.update(chunk, 0, chunkLength);
+                    remaining -= chunkLength;
+                }
+                if (checksum != (int) crc32.getValue()) {
+                    break;
+                }
+
+                if (!segment.isAcked(sequence)) {
+                    segment.offsets.put(sequence, position);
+                }
+                segment.lastSequence = sequence;
+                position += RECORD_PREFIX_SIZE + headerLength + bodyLength;
+            }
+            segment.length = position;
+
+            // Anything after the last valid record of the active segment was left by an interrupted append,
+            // it must be removed before the next append.
+            if (isActive && fileLength > position) {
+                segmentFile.setLength(position);
+                this.discardedBytes += fileLength - position;
+            }
+        }
+    }
+
+    private void scanAcks(Segment segment) throws IOException {
+        if (!segment.ackFile.exists() || segment.ackFile.length() < segment.ackLength + 8) {
+            return;
+        }
+        try (RandomAccessFile ackFile = new RandomAccessFile(segment.ackFile, "r")) {
+            long fileLength = ackFile.length();
+            ackFile.seek(segment.ackLength);
+            while (segment.ackLength + 8 <= fileLength) {
+                segment.applyAck(ackFile.readLong());
+                segment.ackLength += 8;
+            }
+        }
+    }
+
+    /*
+    Delete the segments whose records have all been acked, active segment is kept as it is still being written to.
+    */
+    private void deleteAckedSegments() {
+        Iterator<Segment> iterator = this.segments.values().iterator();
+        while (iterator.hasNext()) {
+            Segment segment = iterator.next();
+            if (segment == this.segments.lastEntry().getValue()) {
+                break;
+            }
+            if (segment.isFullyAcked()) {
+                segment.file.delete();
+                segment.ackFile.delete();
+                iterator.remove();
+            }
+        }
+    }
+
+    private Set<String> getImportedFileNames() throws IOException {
+        Set<String> importedFileNames = new HashSet<>();
+        for (Segment segment: this.segments.values()) {
+            if (segment.offsets.isEmpty()) {
+                continue;
+            }
+            try (RandomAccessFile segmentFile = new RandomAccessFile(segment.file, "r")) {
+                for (Long offset: segment.offsets.values()) {
+                    String header = this.readRecord(segment.file, segmentFile, offset).header;
+                    if (header.startsWith(IMPORTED_FROM_PREFIX)) {
+                        int index = header.indexOf('\n');
+                        importedFileNames.add(header.substring(IMPORTED_FROM_PREFIX.length(), index < 0 ? header.length() : index));
+                    }
+                }
+            }
+        }
+        return importedFileNames;
+    }
+
+    private Record readRecord(File file, RandomAccessFile segmentFile, long offset) throws IOException {
+        segmentFile.seek(offset);
+        int headerLength = segmentFile.readInt();
+        int bodyLength = segmentFile.readInt();
+        long sequence = segmentFile.readLong();
+        long appendedAt = segmentFile.readLong();
+        segmentFile.readInt();
+        byte[] headerBytes = new byte[headerLength];
+        segmentFile.readFully(headerBytes);
+        return new Record(
+            this, sequence, appendedAt, new String(headerBytes, StandardCharsets.UTF_8), bodyLength,
+            file, offset + RECORD_PREFIX_SIZE + headerLength
+        );
+    }
+
+    private static CRC32 newChecksum(long sequence, long appendedAt) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(ByteBuffer.allocate(16).putLong(sequence).putLong(appendedAt).array());
+        return crc32;
+    }
+
+    private static int getChecksum(long sequence, long appendedAt, byte[] headerBytes, byte[] bodyBytes) {
+        CRC32 crc32 = newChecksum(sequence, appendedAt);
+        crc32.update(headerBytes);
+        crc32.update(bodyBytes);
+        return (int) crc32.getValue();
+    }
+}
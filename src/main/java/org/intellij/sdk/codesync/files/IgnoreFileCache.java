@@ -0,0 +1,104 @@
+package org.intellij.sdk.codesync.files;
+
+import org.intellij.sdk.codesync.exceptions.FileNotFoundError;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+Per repo cache of `IgnoreFile` instances.
+
+Building an `IgnoreFile` reads and parses the ignore files of the repo, caching it lets the parsed (and indexed)
+patterns be reused across events. Cached instance is dropped when the root ignore file changes on the disk
+or when `handleFileChange` is called for any ignore file inside the repo (e.g. from a VFS event).
+*/
+public class IgnoreFileCache {
+    private static IgnoreFileCache instance;
+
+    private final Map<String, CachedIgnoreFile> cache = new ConcurrentHashMap<>();
+
+    private static class CachedIgnoreFile {
+        // `null` if the repo does not have any ignore file.
+        final IgnoreFile ignoreFile;
+        final String signature;
+
+        CachedIgnoreFile(IgnoreFile ignoreFile, String signature) {
+            this.ignoreFile = ignoreFile;
+            this.signature = signature;
+        }
+    }
+
+    public IgnoreFileCache() {
+    }
+
+    public static synchronized IgnoreFileCache getInstance() {
+        if (instance == null) {
+            instance = new IgnoreFileCache();
+        }
+        return instance;
+    }
+
+    /*
+    Get the ignore file of the repo.
+
+    @throws FileNotFoundError  if none of the ignore files exist in the repo.
+    */
+    public IgnoreFile getIgnoreFile(String repoPath) throws FileNotFoundError {
+        String signature = getSignature(repoPath);
+        CachedIgnoreFile cachedIgnoreFile = this.cache.get(repoPath);
+
+        if (cachedIgnoreFile == null || !cachedIgnoreFile.signature.equals(signature)) {
+            IgnoreFile ignoreFile;
+            try {
+                ignoreFile = new IgnoreFile(repoPath);
+            } catch (FileNotFoundError error) {
+                ignoreFile = null;
+            }
+            cachedIgnoreFile = new CachedIgnoreFile(ignoreFile, signature);
+            this.cache.put(repoPath, cachedIgnoreFile);
+        }
+
+        if (cachedIgnoreFile.ignoreFile == null) {
+            throw new FileNotFoundError(String.format("None of the ignore files exists in %s.", repoPath));
+        }
+        return cachedIgnoreFile.ignoreFile;
+    }
+
+    public void invalidate(String repoPath) {
+        this.cache.remove(repoPath);
+    }
+
+    /*
+    Invalidate cached ignore files of all the repos containing the given file if it is an ignore file.
+
+    @param  filePath  path of the file that was changed, normally coming from a VFS event.
+    */
+    public void handleFileChange(String filePath) {
+        if (filePath == null) {
+            return;
+        }
+        String fileName = new File(filePath).getName();
+        if (
+            !fileName.equals(IgnoreFile.IgnoreFileType.GITIGNORE.getFileName()) &&
+            !fileName.equals(IgnoreFile.IgnoreFileType.SYNCIGNORE.getFileName())
+        ) {
+            return;
+        }
+        String normalizedPath = new File(filePath).getPath();
+        this.cache.keySet().removeIf(repoPath -> normalizedPath.startsWith(new File(repoPath).getPath()));
+    }
+
+    /*
+    Signature of the root ignore files, `.syncignore` takes priority over `.gitignore` so both are considered.
+    */
+    private static String getSignature(String repoPath) {
+        StringBuilder signature = new StringBuilder();
+        for (IgnoreFile.IgnoreFileType ignoreFileType: IgnoreFile.IgnoreFileType.values()) {
+            File file = Paths.get(repoPath, ignoreFileType.getFileName()).toFile();
+            signature.append(file.lastModified()).append(':').append(file.length()).append(';');
+        }
+        return signature.toString();
+    }
+}
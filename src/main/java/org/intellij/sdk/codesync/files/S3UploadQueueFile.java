@@ -4,35 +4,19 @@ import org.intellij.sdk.codesync.exceptions.InvalidYmlFileError;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 
-import static org.intellij.sdk.codesync.Constants.S3_UPLOAD_QUEUE_DIR;
-
+/*
+    S3 upload queue file written by the previous versions of the plugin, these are only read to move their files to
+    the S3 upload queue table.
+*/
 public class S3UploadQueueFile extends CodeSyncYmlFile {
     File ymlFile;
     String repoPath, branch;
     Integer runCount=0;
     Map<String, Object> filePathAndURLs = new HashMap<>();
 
-    /*
-    Constructor to create a new file.
-     */
-    public S3UploadQueueFile(String repoPath, String branch, Map<String, Object> filePathAndURLs, Integer runCount) {
-        this.repoPath = repoPath;
-        this.branch = branch;
-        this.filePathAndURLs = filePathAndURLs;
-        this.runCount = runCount;
-
-        this.ymlFile = Paths.get(
-            S3_UPLOAD_QUEUE_DIR, String.format("%s.yml", System.currentTimeMillis())
-        ).toFile();
-
-        // Create empty file.
-        createFile(this.ymlFile.getPath());
-    }
-
     /*
     Constructor to load an existing file.
      */
@@ -79,9 +63,6 @@ public class S3UploadQueueFile extends CodeSyncYmlFile {
     public Integer getRunCount () {
         return this.runCount;
     }
-    public void setRunCount(Integer runCount) {
-        this.runCount = runCount;
-    }
     public String getRepoPath () {
         return this.repoPath;
     }
@@ -91,7 +72,4 @@ public class S3UploadQueueFile extends CodeSyncYmlFile {
     public Map<String, Object> getFilePathAndURLs () {
         return this.filePathAndURLs;
     }
-    public void setFilePathAndURLs (Map<String, Object> filePathAndURLs) {
-        this.filePathAndURLs = filePathAndURLs;
-    }
 }
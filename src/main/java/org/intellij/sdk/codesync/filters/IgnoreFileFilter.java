@@ -13,6 +13,7 @@ import java.nio.file.Paths;
 
 public class IgnoreFileFilter extends AbstractFileFilter {
     private final GitIgnore gitIgnore;
+    private final PathMatcher gitFileMatcher = new GitFileMatcher();
 
     public IgnoreFileFilter(File repoPath) {
         if (repoPath == null) {
@@ -35,9 +36,7 @@ public class IgnoreFileFilter extends AbstractFileFilter {
     }
 
     public boolean accept(File file) {
-        PathMatcher gitFileMatcher = new GitFileMatcher();
-
-        return !this.gitIgnore.isExcluded(file) && !gitFileMatcher.matches(Paths.get(file.getPath()));
+        return !this.gitIgnore.isExcluded(file) && !this.gitFileMatcher.matches(Paths.get(file.getPath()));
     }
 
     public boolean accept(Path path) {
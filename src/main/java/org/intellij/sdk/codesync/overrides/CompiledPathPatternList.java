@@ -0,0 +1,152 @@
+package org.intellij.sdk.codesync.overrides;
+
+import com.neva.commons.gitignore.PathPattern;
+
+import java.util.*;
+
+/*
+Drop-in replacement of com.neva.commons.gitignore.PathPatternList that indexes the patterns so that only a handful
+of them need to be evaluated against a path instead of all the patterns of the ignore file.
+
+Patterns are parsed once and put in one of the following buckets,
+    1. literal file names (e.g. `.DS_Store`, `node_modules`), indexed by the file name.
+    2. file name patterns with only a leading `*` (e.g. `*.class`, `*.min.js`), indexed by the file extension.
+    3. path patterns starting with a literal directory (e.g. `/build/`, `docs/*.md`), indexed by the first path segment.
+    4. everything else, evaluated for every path.
+
+Indexed buckets are only used to select the candidate patterns, the actual matching is still done by `PathPattern`,
+so matching behaviour is exactly the same as PathPatternList: negated (`!`) patterns take precedence over
+exclude patterns.
+*/
+public class CompiledPathPatternList {
+    private final String basePath;
+    private final PatternIndex negatedPatterns = new PatternIndex();
+    private final PatternIndex excludePatterns = new PatternIndex();
+    private int size = 0;
+
+    public CompiledPathPatternList(String basePath) {
+        this.basePath = basePath;
+    }
+
+    public void add(String line) {
+        PathPattern pathPattern = PathPattern.create(line);
+        if (pathPattern.isExclude()) {
+            this.excludePatterns.add(line, pathPattern);
+        } else {
+            this.negatedPatterns.add(line.substring(1), pathPattern);
+        }
+        this.size++;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public PathPattern findPattern(String path, boolean isDirectory) {
+        PathPattern pattern = this.negatedPatterns.find(path, isDirectory, this.basePath);
+        if (pattern != null) {
+            return pattern;
+        }
+        return this.excludePatterns.find(path, isDirectory, this.basePath);
+    }
+
+    private static class PatternIndex {
+        private final Map<String, List<PathPattern>> fileNamePatterns = new HashMap<>();
+        private final Map<String, List<PathPattern>> extensionPatterns = new HashMap<>();
+        private final Map<String, List<PathPattern>> prefixPatterns = new HashMap<>();
+        private final List<PathPattern> otherPatterns = new ArrayList<>();
+
+        /*
+        @param  pattern  pattern text without the leading `!`.
+        @param  pathPattern  parsed pattern.
+        */
+        void add(String pattern, PathPattern pathPattern) {
+            if (pattern.endsWith("/")) {
+                pattern = pattern.substring(0, pattern.length() - 1);
+            }
+            boolean isPathPattern = pattern.startsWith("/") || pattern.contains("/");
+            if (pattern.startsWith("/")) {
+                pattern = pattern.substring(1);
+            }
+            if (pattern.isEmpty()) {
+                this.otherPatterns.add(pathPattern);
+                return;
+            }
+
+            if (!isPathPattern) {
+                if (!hasWildcards(pattern)) {
+                    addToIndex(this.fileNamePatterns, pattern, pathPattern);
+                    return;
+                }
+                String suffix = pattern.substring(1);
+                if (pattern.charAt(0) == '*' && !hasWildcards(suffix) && suffix.contains(".")) {
+                    addToIndex(this.extensionPatterns, getExtension(suffix), pathPattern);
+                    return;
+                }
+                this.otherPatterns.add(pathPattern);
+                return;
+            }
+
+            String firstSegment = getFirstSegment(pattern);
+            if (!firstSegment.isEmpty() && !hasWildcards(firstSegment)) {
+                addToIndex(this.prefixPatterns, firstSegment, pathPattern);
+                return;
+            }
+            this.otherPatterns.add(pathPattern);
+        }
+
+        PathPattern find(String path, boolean isDirectory, String basePath) {
+            String fileName = path.substring(path.lastIndexOf('/') + 1);
+            PathPattern pattern = findMatch(this.fileNamePatterns.get(fileName), path, isDirectory, basePath);
+            if (pattern == null && fileName.contains(".")) {
+                pattern = findMatch(this.extensionPatterns.get(getExtension(fileName)), path, isDirectory, basePath);
+            }
+            if (pattern == null && !this.prefixPatterns.isEmpty()) {
+                int offset = basePath.length() > 0 ? basePath.length() + 1 : 0;
+                if (path.startsWith(basePath) && offset <= path.length()) {
+                    String firstSegment = getFirstSegment(path.substring(offset));
+                    pattern = findMatch(this.prefixPatterns.get(firstSegment), path, isDirectory, basePath);
+                }
+            }
+            if (pattern == null) {
+                pattern = findMatch(this.otherPatterns, path, isDirectory, basePath);
+            }
+            return pattern;
+        }
+
+        private static PathPattern findMatch(List<PathPattern> patterns, String path, boolean isDirectory, String basePath) {
+            if (patterns == null) {
+                return null;
+            }
+            for (PathPattern pattern: patterns) {
+                if (pattern.matches(path, isDirectory, basePath)) {
+                    return pattern;
+                }
+            }
+            return null;
+        }
+
+        private static void addToIndex(Map<String, List<PathPattern>> index, String key, PathPattern pathPattern) {
+            index.computeIfAbsent(key, k -> new ArrayList<>()).add(pathPattern);
+        }
+
+        private static boolean hasWildcards(String pattern) {
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c == '*' || c == '?' || c == '[' || c == '\\') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static String getExtension(String fileName) {
+            return fileName.substring(fileName.lastIndexOf('.') + 1);
+        }
+
+        private static String getFirstSegment(String path) {
+            int index = path.indexOf('/');
+            return index < 0 ? path : path.substring(0, index);
+        }
+    }
+}
@@ -1,17 +1,15 @@
 package org.intellij.sdk.codesync.overrides;
 
-import com.neva.commons.gitignore.PathPatternList;
-
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 
 public class ExcludeUtils {
-    static PathPatternList readExcludeFile(File file, String basePath) {
+    static CompiledPathPatternList readExcludeFile(File file, String basePath) {
         if (file.exists() && file.canRead()) {
             BufferedReader reader = null;
-            PathPatternList list = null;
+            CompiledPathPatternList list = null;
 
             Object var5;
             try {
@@ -21,7 +19,7 @@ public class ExcludeUtils {
                 while((line = reader.readLine()) != null) {
                     if (line.length() > 0 && line.charAt(0) != '#') {
                         if (list == null) {
-                            list = new PathPatternList(basePath);
+                            list = new CompiledPathPatternList(basePath);
                         }
 
                         list.add(line);
@@ -41,7 +39,7 @@ public class ExcludeUtils {
 
             }
 
-            return (PathPatternList)var5;
+            return (CompiledPathPatternList)var5;
         } else {
             return null;
         }
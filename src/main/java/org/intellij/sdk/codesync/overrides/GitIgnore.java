@@ -5,19 +5,22 @@ be overridden in child classes.
 package org.intellij.sdk.codesync.overrides;
 
 import com.neva.commons.gitignore.PathPattern;
-import com.neva.commons.gitignore.PathPatternList;
 
 import java.io.File;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class GitIgnore {
     public final File rootDir;
-    public Map<File, PathPatternList> patternListCache = new HashMap();
-    public List<PathPatternList> patternDefaults = new LinkedList();
+    // Instances are cached and shared across threads (see IgnoreFileCache), hence the concurrent collections.
+    public Map<File, CompiledPathPatternList> patternListCache = new ConcurrentHashMap<>();
+    public List<CompiledPathPatternList> patternDefaults = new CopyOnWriteArrayList<>();
+    // Ignore files known to be missing, so that directories without an ignore file are not checked again and again.
+    public Set<File> missingPatternFiles = ConcurrentHashMap.newKeySet();
 
     public String getFileName() {
         return ".gitignore";
@@ -33,7 +36,7 @@ public class GitIgnore {
     }
 
     public GitIgnore addPatterns(File dir, String basePath) {
-        PathPatternList patterns = this.getDirectoryPattern(dir, basePath);
+        CompiledPathPatternList patterns = this.getDirectoryPattern(dir, basePath);
         if (patterns != null) {
             this.patternDefaults.add(patterns);
         }
@@ -44,7 +47,7 @@ public class GitIgnore {
     public boolean isExcluded(File file) {
         File curDir = this.rootDir;
         String filePath = ExcludeUtils.getRelativePath(curDir, file);
-        Vector<PathPatternList> stack = new Vector(10);
+        Vector<CompiledPathPatternList> stack = new Vector(10);
         StringBuilder pathBuilder = new StringBuilder(filePath.length());
         stack.addAll(this.patternDefaults);
 
@@ -61,7 +64,7 @@ public class GitIgnore {
             String currentPath = pathBuilder.toString();
 
             for(int i = stack.size() - 1; i >= 0; --i) {
-                PathPatternList patterns = (PathPatternList)stack.get(i);
+                CompiledPathPatternList patterns = stack.get(i);
                 PathPattern pattern = patterns.findPattern(currentPath, isDirectory);
                 if (pattern != null) {
                     return pattern.isExclude();
@@ -73,22 +76,26 @@ public class GitIgnore {
             }
 
             curDir = new File(curDir, pathBuilder.substring(length, offset));
-            PathPatternList patterns = this.getDirectoryPattern(curDir, currentPath);
+            CompiledPathPatternList patterns = this.getDirectoryPattern(curDir, currentPath);
             if (patterns != null) {
                 stack.add(patterns);
             }
         }
     }
 
-    private PathPatternList getDirectoryPattern(File dir, String dirPath) {
+    private CompiledPathPatternList getDirectoryPattern(File dir, String dirPath) {
         return this.getPatternList(new File(dir, this.getFileName()), dirPath);
     }
 
-    private PathPatternList getPatternList(File file, String basePath) {
-        PathPatternList list = (PathPatternList)this.patternListCache.get(file);
+    private CompiledPathPatternList getPatternList(File file, String basePath) {
+        CompiledPathPatternList list = this.patternListCache.get(file);
         if (list == null) {
+            if (this.missingPatternFiles.contains(file)) {
+                return null;
+            }
             list = ExcludeUtils.readExcludeFile(file, basePath);
             if (list == null) {
+                this.missingPatternFiles.add(file);
                 return null;
             }
 
@@ -0,0 +1,267 @@
+package org.intellij.sdk.codesync.repoManagers;
+
+import org.intellij.sdk.codesync.CodeSyncLogger;
+import org.intellij.sdk.codesync.utils.CommonUtils;
+import org.intellij.sdk.codesync.utils.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.intellij.sdk.codesync.Constants.SHADOW_CACHE_BYTE_BUDGET;
+import static org.intellij.sdk.codesync.Constants.SHADOW_CACHE_FLUSH_DELAY;
+
+/*
+    In-memory, size bounded LRU cache for the contents of the files inside the shadow repo.
+
+    Reads are served from memory and writes are kept in memory and flushed to the disk after
+    SHADOW_CACHE_FLUSH_DELAY milliseconds (write-behind), on eviction or when `flush*` methods are called.
+    Any code that reads the shadow file contents should read them via this cache, and any code that touches
+    shadow files on the disk directly (copy, rename, delete) should flush or invalidate the affected entries first.
+*/
+public class ShadowCache {
+    private static ShadowCache instance;
+
+    private final long byteBudget;
+    private final long flushDelay;
+    private long totalBytes = 0;
+
+    // Access ordered map, eldest entry is the least recently used one.
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "CodeSyncShadowCacheFlusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean isFlushScheduled = false;
+
+    private static class Entry {
+        String content;
+        long bytes;
+        long modifiedAt;
+        boolean isDirty;
+
+        Entry(String content, long modifiedAt, boolean isDirty) {
+            this.content = content;
+            this.bytes = estimateSize(content);
+            this.modifiedAt = modifiedAt;
+            this.isDirty = isDirty;
+        }
+    }
+
+    public static synchronized ShadowCache getInstance() {
+        if (instance == null) {
+            instance = new ShadowCache(SHADOW_CACHE_BYTE_BUDGET, SHADOW_CACHE_FLUSH_DELAY);
+        }
+        return instance;
+    }
+
+    public ShadowCache(long byteBudget, long flushDelay) {
+        this.byteBudget = byteBudget;
+        this.flushDelay = flushDelay;
+    }
+
+    private static long estimateSize(String content) {
+        // Java strings take (roughly) 2 bytes per character.
+        return content.length() * 2L;
+    }
+
+    private boolean isTooLarge(String content) {
+        return estimateSize(content) > this.byteBudget / 4;
+    }
+
+    private static String getKey(Path shadowPath) {
+        return shadowPath.toAbsolutePath().normalize().toString();
+    }
+
+    /*
+    Read the contents of the shadow file, `null` is returned if the file could not be read.
+    */
+    public String read(Path shadowPath) {
+        String key = getKey(shadowPath);
+        synchronized (this) {
+            Entry entry = this.entries.get(key);
+            if (entry != null) {
+                return entry.content;
+            }
+        }
+
+        String content = FileUtils.readFileToString(shadowPath.toFile());
+        if (content == null || isTooLarge(content)) {
+            return content;
+        }
+        synchronized (this) {
+            // Another thread might have written newer content while we were reading from the disk.
+            Entry entry = this.entries.get(key);
+            if (entry != null) {
+                return entry.content;
+            }
+            this.put(key, new Entry(content, shadowPath.toFile().lastModified(), false));
+        }
+        return content;
+    }
+
+    /*
+    Update the contents of the shadow file, contents are written to the disk asynchronously.
+    */
+    public void write(Path shadowPath, String content) {
+        String key = getKey(shadowPath);
+
+        if (isTooLarge(content)) {
+            // Large files would evict everything else, write those directly.
+            synchronized (this) {
+                this.remove(key);
+            }
+            writeToDisk(key, content);
+            return;
+        }
+
+        synchronized (this) {
+            this.put(key, new Entry(content, System.currentTimeMillis(), true));
+            if (!this.isFlushScheduled) {
+                this.isFlushScheduled = true;
+                this.flushScheduler.schedule(this::flushScheduled, this.flushDelay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /*
+    Get the last modified time of the shadow file, taking pending (not yet flushed) writes into account.
+    */
+    public long getModifiedTime(Path shadowPath) {
+        synchronized (this) {
+            Entry entry = this.entries.get(getKey(shadowPath));
+            if (entry != null && entry.isDirty) {
+                return entry.modifiedAt;
+            }
+        }
+        return shadowPath.toFile().lastModified();
+    }
+
+    /*
+    Write the pending contents of the given shadow file to the disk.
+    */
+    public void flush(Path shadowPath) {
+        this.flushMatching(getKey(shadowPath), false);
+    }
+
+    /*
+    Write the pending contents of all the shadow files under the given directory to the disk.
+    */
+    public void flushDirectory(Path directory) {
+        this.flushMatching(getKey(directory), true);
+    }
+
+    /*
+    Write all the pending contents to the disk.
+    */
+    public void flushAll() {
+        this.flushMatching(null, true);
+    }
+
+    /*
+    Drop the cached contents of the given shadow file without writing them to the disk,
+    should be called when the file on the disk is replaced or deleted.
+    */
+    public synchronized void invalidate(Path shadowPath) {
+        this.remove(getKey(shadowPath));
+    }
+
+    /*
+    Drop the cached contents of all the shadow files under the given directory without writing them to the disk.
+    */
+    public synchronized void invalidateDirectory(Path directory) {
+        String prefix = getKey(directory);
+        List<String> keys = new ArrayList<>();
+        for (String key: this.entries.keySet()) {
+            if (isUnder(key, prefix)) {
+                keys.add(key);
+            }
+        }
+        keys.forEach(this::remove);
+    }
+
+    public synchronized long getSize() {
+        return this.totalBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return this.entries.size();
+    }
+
+    private static boolean isUnder(String key, String prefix) {
+        return key.equals(prefix) || key.startsWith(prefix + File.separator);
+    }
+
+    private void flushScheduled() {
+        synchronized (this) {
+            this.isFlushScheduled = false;
+        }
+        this.flushAll();
+    }
+
+    /*
+    Disk writes happen while holding the lock, so a concurrent invalidate (e.g. for a deleted file)
+    can never be followed by a stale write that brings the file back.
+    */
+    private synchronized void flushMatching(String keyOrPrefix, boolean isPrefix) {
+        for (Map.Entry<String, Entry> mapEntry: this.entries.entrySet()) {
+            String key = mapEntry.getKey();
+            Entry entry = mapEntry.getValue();
+            boolean matches = keyOrPrefix == null || (isPrefix ? isUnder(key, keyOrPrefix) : key.equals(keyOrPrefix));
+            if (matches && entry.isDirty && writeToDisk(key, entry.content)) {
+                entry.isDirty = false;
+            }
+        }
+    }
+
+    private static boolean writeToDisk(String key, String content) {
+        File file = new File(key);
+        try {
+            if (!file.getParentFile().exists()) {
+                file.getParentFile().mkdirs();
+            }
+            Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+            return true;
+        } catch (IOException e) {
+            CodeSyncLogger.error(
+                String.format("Error updating the shadow file. Error: %s", CommonUtils.getStackTrace(e))
+            );
+            return false;
+        }
+    }
+
+    private void put(String key, Entry entry) {
+        this.remove(key);
+        this.entries.put(key, entry);
+        this.totalBytes += entry.bytes;
+        this.evict();
+    }
+
+    private void remove(String key) {
+        Entry entry = this.entries.remove(key);
+        if (entry != null) {
+            this.totalBytes -= entry.bytes;
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> iterator = this.entries.entrySet().iterator();
+        while (this.totalBytes > this.byteBudget && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            Entry entry = eldest.getValue();
+            if (entry.isDirty) {
+                // Make sure pending writes are not lost.
+                writeToDisk(eldest.getKey(), entry.content);
+            }
+            iterator.remove();
+            this.totalBytes -= entry.bytes;
+        }
+    }
+}
@@ -52,6 +52,68 @@ public class ShadowRepoManager extends BaseRepoManager {
         return this.shadowRepoDir;
     }
 
+    /*
+    Read the contents of a shadow file, contents are served from `ShadowCache` whenever possible.
+
+    @param  relativeFilePath  relative path of the file whose shadow contents are needed.
+    */
+    public String readFile(String relativeFilePath) {
+        return ShadowCache.getInstance().read(this.getFilePath(relativeFilePath));
+    }
+
+    /*
+    Update the contents of a shadow file, contents are written to the disk asynchronously by `ShadowCache`.
+
+    @param  relativeFilePath  relative path of the file whose shadow contents need to be updated.
+    @param  content  new contents of the shadow file.
+    */
+    public void writeFile(String relativeFilePath, String content) {
+        ShadowCache.getInstance().write(this.getFilePath(relativeFilePath), content);
+    }
+
+    /*
+    Last modified time of the shadow file, this includes the writes that are not yet flushed to the disk.
+    */
+    public long getLastModified(String relativeFilePath) {
+        return ShadowCache.getInstance().getModifiedTime(this.getFilePath(relativeFilePath));
+    }
+
+    /*
+    Flush the pending writes of the given file or directory, should be called before reading shadow files
+    directly from the disk.
+    */
+    public void flush(String relativePath) {
+        ShadowCache.getInstance().flushDirectory(this.getFilePath(relativePath));
+    }
+
+    @Override
+    public void copyFile(String srcFilePath, String destFilePath) throws IOException {
+        ShadowCache.getInstance().invalidate(Paths.get(destFilePath));
+        super.copyFile(srcFilePath, destFilePath);
+    }
+
+    @Override
+    public void delete() {
+        ShadowCache.getInstance().invalidateDirectory(Paths.get(this.shadowRepoDir));
+        super.delete();
+    }
+
+    @Override
+    public boolean deleteFile(String fileRelativePath) {
+        ShadowCache.getInstance().invalidate(this.getFilePath(fileRelativePath));
+        return super.deleteFile(fileRelativePath);
+    }
+
+    @Override
+    public boolean renameFile(String oldRelativePath, String newRelativePath) {
+        // Path could be a file or a directory, directory methods handle both.
+        ShadowCache shadowCache = ShadowCache.getInstance();
+        shadowCache.flushDirectory(this.getFilePath(oldRelativePath));
+        shadowCache.invalidateDirectory(this.getFilePath(oldRelativePath));
+        shadowCache.invalidateDirectory(this.getFilePath(newRelativePath));
+        return super.renameFile(oldRelativePath, newRelativePath);
+    }
+
 
     /*
     Copy all the files provided in the argument to shadow repo.
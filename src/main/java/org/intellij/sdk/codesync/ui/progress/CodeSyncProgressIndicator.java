@@ -13,4 +13,9 @@ public class CodeSyncProgressIndicator {
         this.progressIndicator.setFraction(mileStone.mileage);
         this.progressIndicator.setText(mileStone.message);
     }
+
+    public void setProgress(int completed, int total, String message) {
+        this.progressIndicator.setFraction(total == 0 ? 1 : (double) completed / total);
+        this.progressIndicator.setText(String.format("%s (%d/%d)", message, completed, total));
+    }
 }
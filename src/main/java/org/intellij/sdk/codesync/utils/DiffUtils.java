@@ -1,24 +1,23 @@
 package org.intellij.sdk.codesync.utils;
 
 import org.intellij.sdk.codesync.CodeSyncLogger;
+import org.intellij.sdk.codesync.HandleBuffer;
+import org.intellij.sdk.codesync.files.DiffJournal;
 import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.Yaml;
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 
 import static org.intellij.sdk.codesync.Constants.*;
 
 public class DiffUtils {
-    public static void writeDiffToYml(
+    public static void appendDiffToJournal(
             String repoPath, String branchName, String relPath, String diff, Boolean isNewFile,
             Boolean isDeleted, Boolean isRename, Boolean isDirRename
     ) {
-        writeDiffToYml(
+        appendDiffToJournal(
                 repoPath, branchName, relPath, diff, isNewFile, isDeleted, isRename, isDirRename,
 
                 // Pass the current time as createdAt if it is not passed in the argument.
@@ -27,7 +26,7 @@ public class DiffUtils {
 
     }
 
-    public static void writeDiffToYml(
+    public static void appendDiffToJournal(
             String repoPath, String branchName, String relPath, String diff, Boolean isNewFile,
             Boolean isDeleted, Boolean isRename, Boolean isDirRename, String createdAt
     ) {
@@ -36,9 +35,6 @@ public class DiffUtils {
         data.put("repo_path", repoPath);
         data.put("branch", branchName);
         data.put("file_relative_path", relPath);
-        if (!diff.isEmpty()) {
-            data.put("diff", diff);
-        }
         if (isNewFile) {
             data.put("is_new_file", true);
             data.put("added_at", CodeSyncDateUtils.getCurrentDatetime());
@@ -56,24 +52,25 @@ public class DiffUtils {
         data.put("created_at", createdAt);
         data.put("commit_hash", GitUtils.getCommitHash(repoPath));
 
-        writeToYML(data);
+        appendToJournal(data, diff);
     }
 
-    private static void writeToYML(Map<String, Object> data) {
+    /*
+    Append the diff to the journal, `data` (metadata of the diff) is stored as YAML in the record header and
+    the diff in the record body so that the metadata can be read without loading the diff.
+    */
+    private static void appendToJournal(Map<String, Object> data, String diff) {
         final DumperOptions options = new DumperOptions();
         options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
         options.setPrettyFlow(true);
 
         Yaml yaml = new Yaml(options);
-        Path diffFilePath = Paths.get(DIFFS_REPO, String.format("%s.yml", System.currentTimeMillis()));
         try {
-            // Write diff file
-            FileWriter writer = new FileWriter(diffFilePath.toFile());
-            yaml.dump(data, writer);
-            writer.flush();
-            writer.close();
+            // Append diff to the journal
+            DiffJournal.getInstance().append(yaml.dump(data), diff);
+            HandleBuffer.notifyDiffsAvailable();
         } catch (IOException e) {
-            CodeSyncLogger.error(String.format("Error writing to diff file. Error: %s", CommonUtils.getStackTrace(e)));
+            CodeSyncLogger.error(String.format("Error writing to diff journal. Error: %s", CommonUtils.getStackTrace(e)));
         }
     }
 }
@@ -6,6 +6,7 @@ import org.intellij.sdk.codesync.CodeSyncLogger;
 import org.intellij.sdk.codesync.exceptions.FileInfoError;
 import org.intellij.sdk.codesync.exceptions.FileNotFoundError;
 import org.intellij.sdk.codesync.files.IgnoreFile;
+import org.intellij.sdk.codesync.files.IgnoreFileCache;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
 import org.json.simple.parser.ParseException;
@@ -13,16 +14,21 @@ import org.json.simple.parser.ParseException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
-import java.util.stream.Stream;
 
 import static org.intellij.sdk.codesync.Constants.GIT_REPO;
 import static org.intellij.sdk.codesync.Constants.IGNORABLE_DIRECTORIES;
@@ -78,28 +84,102 @@ public class FileUtils
     This is recursively list all the files containing in the given directory and all its subdirectories.
     */
     public static String[] listFiles(String directory) {
-        String[] filePaths = {};
-        IgnoreFile ignoreFile;
+        List<String> filePaths = new ArrayList<>();
+        walkFiles(directory, filePath -> filePaths.add(filePath.toString()));
+        return filePaths.toArray(new String[0]);
+    }
 
-        try {
-            Stream<Path> filePathStream = Files.walk(Paths.get(directory))
-                    .filter(Files::isRegularFile)
-                    .filter(path -> !FileUtils.isIgnorableFile(path.toString(), directory));
+    /*
+    Walk the given directory and pass absolute paths of all the files that are not ignored to the consumer.
 
-            try {
-                ignoreFile = new IgnoreFile(Paths.get(directory).toString());
-                filePathStream = filePathStream.filter(path -> !ignoreFile.shouldIgnore(path.toFile()));
-            } catch (FileNotFoundError error) {
-                // Do not filter anything if ignore file is not present.
-            }
+    Directories matching `IGNORABLE_DIRECTORIES` or the ignore rules of the directory (.syncignore/.gitignore)
+    are skipped entirely, so nothing under e.g. `node_modules` is ever visited.
+    */
+    public static void walkFiles(String directory, Consumer<Path> consumer) {
+        Path rootPath = Paths.get(directory);
+        IgnoreFile ignoreFile;
+        try {
+            ignoreFile = IgnoreFileCache.getInstance().getIgnoreFile(rootPath.toString());
+        } catch (FileNotFoundError error) {
+            // Do not filter anything if ignore file is not present.
+            ignoreFile = null;
+        }
+        final IgnoreFile finalIgnoreFile = ignoreFile;
 
-            filePaths = filePathStream.map(Path::toString).toArray(String[]::new);
+        try {
+            Files.walkFileTree(rootPath, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (dir.equals(rootPath)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    if (isIgnorableFile(dir.toString(), directory) || isIgnored(dir)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    // `Files.isRegularFile` follows symbolic links, same as the earlier `Files.walk` based listing.
+                    if (Files.isRegularFile(file) && !isIgnorableFile(file.toString(), directory) && !isIgnored(file)) {
+                        consumer.accept(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    // Files that can not be read (e.g. permission denied) are skipped.
+                    return FileVisitResult.CONTINUE;
+                }
+
+                private boolean isIgnored(Path path) {
+                    return finalIgnoreFile != null && finalIgnoreFile.shouldIgnore(path.toFile());
+                }
+            });
         }
         catch (IOException e) {
             e.printStackTrace();
         }
+    }
+
+    /*
+    Compute SHA-1 hash of the file contents, `null` is returned if the file could not be read.
+    */
+    public static String computeHash(File file) {
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
+            byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+                messageDigest.update(buffer, 0, bytesRead);
+            }
+            return toHex(messageDigest.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
 
-       return filePaths;
+    /*
+    Compute SHA-1 hash of the given contents, matches the hash of a file with the same contents.
+    */
+    public static String computeHash(String content) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
+            return toHex(messageDigest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-1 is always available, fallback to the content itself just in case.
+            return content;
+        }
+    }
+
+    private static String toHex(byte[] digest) {
+        StringBuilder hash = new StringBuilder();
+        for (byte b: digest) {
+            hash.append(String.format("%02x", b));
+        }
+        return hash.toString();
     }
 
     public static boolean isBinaryFile(String filePath){
@@ -176,7 +256,8 @@ public class FileUtils
     public static boolean shouldIgnoreFile(String relPath, String repoPath) {
         if (relPath.startsWith("/") || isIgnorableFile(relPath)) {  return true; }
         try {
-            IgnoreFile ignoreFile = new IgnoreFile(repoPath);
+            // Parsed ignore rules are cached per repo, see IgnoreFileCache.
+            IgnoreFile ignoreFile = IgnoreFileCache.getInstance().getIgnoreFile(repoPath);
             return ignoreFile.shouldIgnore(Paths.get(repoPath, relPath).toFile());
         } catch (FileNotFoundError fileNotFoundError) {
             fileNotFoundError.printStackTrace();
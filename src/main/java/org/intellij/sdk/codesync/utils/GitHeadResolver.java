@@ -0,0 +1,189 @@
+package org.intellij.sdk.codesync.utils;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.intellij.sdk.codesync.Constants.DEFAULT_BRANCH;
+import static org.intellij.sdk.codesync.Constants.GIT_REPO;
+
+/*
+    Resolves (and caches) the branch name and HEAD commit of git repos.
+
+    Opening a repo with JGit is expensive and branch name is needed for every document and file event,
+    so resolved values are cached per repo and only refreshed when `.git/HEAD`, the current ref file or
+    `packed-refs` change on the disk (detected via cheap file stats), or when `invalidate` is called
+    from a VFS event.
+*/
+public class GitHeadResolver {
+    private static GitHeadResolver instance;
+
+    private final Map<String, CachedHead> cache = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private static class CachedHead {
+        final String branchName;
+        final String commitHash;
+        final String refName;
+        final String signature;
+
+        CachedHead(String branchName, String commitHash, String refName, String signature) {
+            this.branchName = branchName;
+            this.commitHash = commitHash;
+            this.refName = refName;
+            this.signature = signature;
+        }
+    }
+
+    public GitHeadResolver() {
+    }
+
+    public static synchronized GitHeadResolver getInstance() {
+        if (instance == null) {
+            instance = new GitHeadResolver();
+        }
+        return instance;
+    }
+
+    public String getBranchName(String repoPath) {
+        CachedHead head = this.resolve(repoPath);
+        return head != null ? head.branchName : DEFAULT_BRANCH;
+    }
+
+    public String getCommitHash(String repoPath) {
+        CachedHead head = this.resolve(repoPath);
+        return head != null ? head.commitHash : null;
+    }
+
+    /*
+    Drop the cached values of the given repo, next call will resolve the values from the repo.
+    */
+    public void invalidate(String repoPath) {
+        this.cache.remove(repoPath);
+    }
+
+    /*
+    Invalidate the cached values of the repo if the given path belongs to its git metadata (e.g. `.git/HEAD`).
+
+    @param  filePath  path of the file that was changed, normally coming from a VFS event.
+    */
+    public void handleFileChange(String filePath) {
+        if (filePath == null) {
+            return;
+        }
+        String normalizedPath = filePath.replace('\\', '/');
+        int index = normalizedPath.indexOf("/" + GIT_REPO + "/");
+        if (index < 0) {
+            return;
+        }
+        String repoPath = new File(filePath.substring(0, index)).getPath();
+        this.invalidate(repoPath);
+    }
+
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    public double getHitRate() {
+        long total = this.hits.get() + this.misses.get();
+        return total == 0 ? 0 : (double) this.hits.get() / total;
+    }
+
+    public void resetStats() {
+        this.hits.set(0);
+        this.misses.set(0);
+    }
+
+    public String getStats() {
+        return String.format(
+            "GitHeadResolver hits: %d, misses: %d, hit rate: %.2f", this.getHitCount(), this.getMissCount(), this.getHitRate()
+        );
+    }
+
+    private CachedHead resolve(String repoPath) {
+        File gitDir = getGitDir(repoPath);
+        CachedHead cachedHead = this.cache.get(repoPath);
+
+        if (cachedHead != null && gitDir != null && cachedHead.signature.equals(getSignature(gitDir, cachedHead.refName))) {
+            this.hits.incrementAndGet();
+            return cachedHead;
+        }
+        this.misses.incrementAndGet();
+
+        try (Git git = Git.open(new File(repoPath))) {
+            Repository repository = git.getRepository();
+            Ref head = repository.exactRef(Constants.HEAD);
+            String refName = head != null && head.isSymbolic() ? head.getTarget().getName() : null;
+            ObjectId objectId = head != null ? head.getObjectId() : null;
+
+            CachedHead resolvedHead = new CachedHead(
+                repository.getBranch(),
+                objectId != null ? objectId.name() : null,
+                refName,
+                gitDir != null ? getSignature(gitDir, refName) : ""
+            );
+            if (gitDir != null) {
+                this.cache.put(repoPath, resolvedHead);
+            }
+            return resolvedHead;
+        } catch (IOException e) {
+            this.cache.remove(repoPath);
+            return null;
+        }
+    }
+
+    /*
+    Get the git directory of the repo, this also handles worktrees and submodules where `.git` is a file
+    pointing to the actual git directory.
+    */
+    private static File getGitDir(String repoPath) {
+        File dotGit = new File(repoPath, GIT_REPO);
+        if (dotGit.isDirectory()) {
+            return dotGit;
+        }
+        if (dotGit.isFile()) {
+            try {
+                String content = new String(Files.readAllBytes(dotGit.toPath()), StandardCharsets.UTF_8).trim();
+                if (content.startsWith("gitdir:")) {
+                    File gitDir = new File(content.substring("gitdir:".length()).trim());
+                    return gitDir.isAbsolute() ? gitDir : new File(repoPath, gitDir.getPath());
+                }
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /*
+    Signature changes whenever HEAD is moved to another branch/commit or the current branch gets a new commit.
+    */
+    private static String getSignature(File gitDir, String refName) {
+        StringBuilder signature = new StringBuilder();
+        appendFileStat(signature, new File(gitDir, Constants.HEAD));
+        if (refName != null) {
+            appendFileStat(signature, new File(gitDir, refName));
+        }
+        appendFileStat(signature, new File(gitDir, Constants.PACKED_REFS));
+        return signature.toString();
+    }
+
+    private static void appendFileStat(StringBuilder signature, File file) {
+        signature.append(file.lastModified()).append(':').append(file.length()).append(';');
+    }
+}
@@ -0,0 +1,187 @@
+package org.intellij.sdk.codesync.utils;
+
+import org.intellij.sdk.codesync.repoManagers.ShadowRepoManager;
+
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.intellij.sdk.codesync.Constants.*;
+
+/*
+    Detects if a new file in the repo is a result of renaming (moving) an existing file.
+
+    Candidates for a rename are the "orphaned" shadow files, i.e. shadow files that do not have a corresponding file
+    in the project repo anymore. Orphans are indexed once per scan by their content hash, so a renamed file with
+    unchanged content is matched with a single lookup. Only if there is no exact match, new file is compared with the
+    orphans of similar size using line-set Jaccard similarity, these comparisons are bounded by a time budget per scan.
+*/
+public class RenameDetector {
+    private final String repoPath;
+    private final ShadowRepoManager shadowRepoManager;
+    private final long timeBudget;
+    private long timeSpent = 0;
+
+    // Lazily built when the first rename check is made.
+    private Map<String, Orphan> orphans = null;
+    private Map<String, List<Orphan>> orphansByHash = null;
+
+    private static class Orphan {
+        final String relativePath;
+        final String content;
+        final String hash;
+        Set<String> lines = null;
+
+        Orphan(String relativePath, String content) {
+            this.relativePath = relativePath;
+            this.content = content;
+            this.hash = FileUtils.computeHash(content);
+        }
+
+        Set<String> getLines() {
+            if (this.lines == null) {
+                this.lines = getLineSet(this.content);
+            }
+            return this.lines;
+        }
+    }
+
+    public RenameDetector(String repoPath, ShadowRepoManager shadowRepoManager) {
+        this(repoPath, shadowRepoManager, RENAME_DETECTION_TIME_BUDGET);
+    }
+
+    public RenameDetector(String repoPath, ShadowRepoManager shadowRepoManager, long timeBudget) {
+        this.repoPath = repoPath;
+        this.shadowRepoManager = shadowRepoManager;
+        this.timeBudget = timeBudget;
+    }
+
+    /*
+    Find the orphaned shadow file the given file was renamed from.
+
+    @param  fileContents  contents of the new file.
+    @return  relative path of the old file, `null` if the file is not a result of a rename.
+    */
+    public String findRenamedFrom(String fileContents) {
+        if (fileContents == null || fileContents.isEmpty()) {
+            return null;
+        }
+        this.buildIndex();
+
+        // Exact content match, file was moved without changes.
+        List<Orphan> exactMatches = this.orphansByHash.getOrDefault(
+            FileUtils.computeHash(fileContents), Collections.emptyList()
+        );
+        if (exactMatches.size() == 1) {
+            return this.claim(exactMatches.get(0));
+        }
+        if (exactMatches.size() > 1) {
+            // Ambiguous, multiple deleted files had the same content.
+            return null;
+        }
+
+        return this.findSimilar(fileContents);
+    }
+
+    /*
+    Fallback for files that were changed as well as moved, bounded by the time budget of the scan.
+    */
+    private String findSimilar(String fileContents) {
+        if (this.timeSpent >= this.timeBudget) {
+            return null;
+        }
+        long startedAt = System.currentTimeMillis();
+        try {
+            Set<String> lines = null;
+            Orphan match = null;
+            int matchCount = 0;
+
+            for (Orphan orphan: this.orphans.values()) {
+                if (!hasSimilarSize(fileContents.length(), orphan.content.length())) {
+                    continue;
+                }
+                if (System.currentTimeMillis() - startedAt + this.timeSpent >= this.timeBudget) {
+                    // Out of time, treating the file as a new file is always safe.
+                    return null;
+                }
+                if (lines == null) {
+                    lines = getLineSet(fileContents);
+                }
+                if (getJaccardSimilarity(lines, orphan.getLines()) > RENAME_SIMILARITY_RATIO) {
+                    match = orphan;
+                    matchCount++;
+                }
+            }
+            return matchCount == 1 ? this.claim(match) : null;
+        } finally {
+            this.timeSpent += System.currentTimeMillis() - startedAt;
+        }
+    }
+
+    private String claim(Orphan orphan) {
+        // Same orphan can not be the source of two different renames.
+        this.orphans.remove(orphan.relativePath);
+        List<Orphan> sameHashOrphans = this.orphansByHash.get(orphan.hash);
+        if (sameHashOrphans != null) {
+            sameHashOrphans.remove(orphan);
+        }
+        return orphan.relativePath;
+    }
+
+    private void buildIndex() {
+        if (this.orphans != null) {
+            return;
+        }
+        this.orphans = new HashMap<>();
+        this.orphansByHash = new HashMap<>();
+
+        FileUtils.walkFiles(this.shadowRepoManager.getBaseRepoBranchDir(), shadowFilePath -> {
+            String relativePath = this.shadowRepoManager.getRelativeFilePath(shadowFilePath.toString());
+            if (Paths.get(this.repoPath, relativePath).toFile().exists()) {
+                // Skip the shadow files that have corresponding files in the project repo.
+                return;
+            }
+            if (FileUtils.isBinaryFile(shadowFilePath.toFile())) {
+                return;
+            }
+            // Read from the disk instead of the shadow cache, so a scan does not evict the files being edited.
+            String content = FileUtils.readFileToString(shadowFilePath.toFile());
+            if (content == null || content.isEmpty()) {
+                return;
+            }
+            Orphan orphan = new Orphan(relativePath, content);
+            this.orphans.put(relativePath, orphan);
+            this.orphansByHash.computeIfAbsent(orphan.hash, hash -> new ArrayList<>()).add(orphan);
+        });
+    }
+
+    private static boolean hasSimilarSize(int first, int second) {
+        int max = Math.max(first, second);
+        return max == 0 || (double) Math.min(first, second) / max >= RENAME_SIZE_RATIO;
+    }
+
+    private static Set<String> getLineSet(String content) {
+        Set<String> lines = new HashSet<>();
+        for (String line: content.split("\n")) {
+            String trimmedLine = line.trim();
+            if (!trimmedLine.isEmpty()) {
+                lines.add(trimmedLine);
+            }
+        }
+        return lines;
+    }
+
+    public static double getJaccardSimilarity(Set<String> first, Set<String> second) {
+        if (first.isEmpty() && second.isEmpty()) {
+            return 1;
+        }
+        Set<String> smaller = first.size() <= second.size() ? first : second;
+        Set<String> larger = smaller == first ? second : first;
+        int intersection = 0;
+        for (String line: smaller) {
+            if (larger.contains(line)) {
+                intersection++;
+            }
+        }
+        return (double) intersection / (first.size() + second.size() - intersection);
+    }
+}
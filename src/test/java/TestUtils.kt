@@ -1,11 +1,14 @@
 import com.intellij.openapi.application.PathManager
 import com.intellij.openapi.util.io.FileUtil
+import org.intellij.sdk.codesync.database.RepoFileWriteQueue
 import org.intellij.sdk.codesync.database.SQLiteConnection
+import org.intellij.sdk.codesync.database.models.FileState
 import org.intellij.sdk.codesync.database.models.Repo
 import org.intellij.sdk.codesync.database.models.RepoBranch
 import org.intellij.sdk.codesync.database.models.RepoFile
 import org.intellij.sdk.codesync.database.models.User
 import org.intellij.sdk.codesync.database.tables.MigrationsTable
+import org.intellij.sdk.codesync.database.tables.S3UploadQueueTable
 import java.nio.file.Path
 import java.nio.file.Paths
 
@@ -36,16 +39,20 @@ object CodeSyncTestUtils {
 
     fun deleteTables() {
         val tables = arrayOf(
-            User.getTable().tableName,
-            Repo.getTable().tableName,
-            RepoBranch.getTable().tableName,
-            RepoFile.getTable().tableName,
-            MigrationsTable.getInstance().tableName,
+            User.getTable(),
+            Repo.getTable(),
+            RepoBranch.getTable(),
+            RepoFile.getTable(),
+            FileState.getTable(),
+            S3UploadQueueTable.getInstance(),
+            MigrationsTable.getInstance(),
         )
-        SQLiteConnection.getInstance().connection.createStatement().use { statement ->
-            for (table in tables) {
-                statement.execute("DROP TABLE IF EXISTS $table;")
-            }
+        // Changes queued by earlier tests would otherwise be applied to the new tables.
+        runCatching { RepoFileWriteQueue.getInstance().flush() }
+        for (table in tables) {
+            SQLiteConnection.getInstance().execute("DROP TABLE IF EXISTS ${table.tableName};")
         }
+        // Tables are dropped behind the back of the entity caches.
+        tables.forEach { it.invalidateCache() }
     }
 }
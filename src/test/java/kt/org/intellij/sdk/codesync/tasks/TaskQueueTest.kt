@@ -0,0 +1,78 @@
+package kt.org.intellij.sdk.codesync.tasks
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class TaskQueueTest {
+
+    @Test
+    fun testCoalescingTaskKeepsLatestTaskPerKey() {
+        val taskQueue = TaskQueue(100, 1000)
+        val executed: MutableList<String> = Collections.synchronizedList(ArrayList())
+        val latch = CountDownLatch(2)
+        taskQueue.start()
+
+        for (i in 1..20) {
+            taskQueue.addCoalescingTask("file-a", Runnable { executed.add("a-$i"); if (i == 20) latch.countDown() })
+        }
+        taskQueue.addCoalescingTask("file-b", Runnable { executed.add("b"); latch.countDown() })
+
+        assert(latch.await(5, TimeUnit.SECONDS))
+        assertEquals(2, executed.size)
+        assert(executed.contains("a-20"))
+        assert(executed.contains("b"))
+        assertEquals(0, taskQueue.getPendingTaskCount())
+    }
+
+    @Test
+    fun testMaxWaitFlushesContinuouslyUpdatedKey() {
+        val taskQueue = TaskQueue(200, 300)
+        val latch = CountDownLatch(1)
+        taskQueue.start()
+
+        // Keep updating the key faster than the quiet window, max wait must still flush it.
+        val start = System.currentTimeMillis()
+        while (latch.count > 0 && System.currentTimeMillis() - start < 3000) {
+            taskQueue.addCoalescingTask("file-a", Runnable { latch.countDown() })
+            Thread.sleep(20)
+        }
+        assertEquals(0, latch.count)
+    }
+
+    @Test
+    fun testFlushPendingTasks() {
+        val taskQueue = TaskQueue(60 * 1000, 60 * 1000)
+        val latch = CountDownLatch(1)
+        taskQueue.start()
+
+        taskQueue.addCoalescingTask("file-a", Runnable { latch.countDown() })
+        assertEquals(1, taskQueue.getPendingTaskCount())
+
+        taskQueue.flushPendingTasks()
+        assert(latch.await(5, TimeUnit.SECONDS))
+        assertEquals(0, taskQueue.getPendingTaskCount())
+    }
+
+    @Test
+    fun testRunPendingTasks() {
+        val taskQueue = TaskQueue(60 * 1000, 60 * 1000)
+        val executed: MutableList<String> = Collections.synchronizedList(ArrayList())
+        taskQueue.start()
+
+        taskQueue.addCoalescingTask("repo:/dir/file-a", Runnable { executed.add("a") })
+        taskQueue.addCoalescingTask("repo:/dir/nested/file-b", Runnable { executed.add("b") })
+        taskQueue.addCoalescingTask("repo:/dir-2/file-c", Runnable { executed.add("c") })
+
+        // Tasks of the directory run on the calling thread before this returns, sibling paths are left pending.
+        taskQueue.runPendingTasks("repo:/dir")
+        assertEquals(setOf("a", "b"), executed.toSet())
+        assertEquals(1, taskQueue.getPendingTaskCount())
+
+        taskQueue.runPendingTasks("repo:/dir-2/file-c")
+        assertEquals(listOf("a", "b", "c"), executed.sorted())
+        assertEquals(0, taskQueue.getPendingTaskCount())
+    }
+}
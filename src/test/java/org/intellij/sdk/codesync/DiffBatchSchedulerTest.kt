@@ -0,0 +1,75 @@
+package org.intellij.sdk.codesync
+
+import org.intellij.sdk.codesync.files.DiffFile
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.mockito.Mockito
+
+class DiffBatchSchedulerTest {
+
+    private fun createDiffFile(diffSize: Int): DiffFile {
+        val diffFile = Mockito.mock(DiffFile::class.java)
+        Mockito.`when`(diffFile.diffSize).thenReturn(diffSize)
+        return diffFile
+    }
+
+    private fun createDiffFiles(count: Int, diffSize: Int): List<DiffFile> {
+        return (1..count).map { createDiffFile(diffSize) }
+    }
+
+    @Test
+    fun validateOrderWithinRepo() {
+        val diffFiles = createDiffFiles(5, 10)
+        val scheduler = DiffBatchScheduler(4, 3, 1000, 1000)
+
+        val batches = scheduler.schedule(mapOf("repo" to diffFiles))
+        assertEquals(diffFiles.subList(0, 3), batches["repo"])
+    }
+
+    @Test
+    fun validateRoundRobin() {
+        val diffsByRepo = linkedMapOf(
+            "repo-1" to createDiffFiles(10, 10),
+            "repo-2" to createDiffFiles(10, 10),
+            "repo-3" to createDiffFiles(10, 10)
+        )
+        val scheduler = DiffBatchScheduler(2, 10, 1000, 1000)
+
+        // Only two repos are served per call, the repo left out is served first in the next call.
+        assertEquals(listOf("repo-1", "repo-2"), scheduler.schedule(diffsByRepo).keys.toList())
+        assertEquals(listOf("repo-3", "repo-1"), scheduler.schedule(diffsByRepo).keys.toList())
+        assertEquals(listOf("repo-2", "repo-3"), scheduler.schedule(diffsByRepo).keys.toList())
+    }
+
+    @Test
+    fun validateLargeBacklogDoesNotStarveOthers() {
+        val largeRepo = createDiffFiles(1000, 100)
+        val smallRepo = createDiffFiles(2, 100)
+        val scheduler = DiffBatchScheduler(4, 50, 1000, 1000)
+
+        val batches = scheduler.schedule(linkedMapOf("large" to largeRepo, "small" to smallRepo))
+        // Each repo gets at most a quantum worth of diffs.
+        assertEquals(10, batches["large"]!!.size)
+        assertEquals(2, batches["small"]!!.size)
+    }
+
+    @Test
+    fun validateDeficitCarriesOver() {
+        // Diff is larger than the quantum, it is sent once enough deficit is accumulated.
+        val diffFiles = listOf(createDiffFile(250))
+        val scheduler = DiffBatchScheduler(4, 50, 1000, 100)
+
+        assertTrue(scheduler.schedule(mapOf("repo" to diffFiles)).isEmpty())
+        assertTrue(scheduler.schedule(mapOf("repo" to diffFiles)).isEmpty())
+        assertEquals(diffFiles, scheduler.schedule(mapOf("repo" to diffFiles))["repo"])
+    }
+
+    @Test
+    fun validateBatchSizeLimit() {
+        val diffFiles = createDiffFiles(5, 400)
+        val scheduler = DiffBatchScheduler(4, 50, 1000, 10000)
+
+        assertEquals(2, scheduler.schedule(mapOf("repo" to diffFiles))["repo"]!!.size)
+    }
+}
@@ -0,0 +1,98 @@
+package org.intellij.sdk.codesync
+
+import org.intellij.sdk.codesync.codeSyncSetup.CodeSyncSetup
+import org.intellij.sdk.codesync.database.migrations.MigrationManager
+import org.intellij.sdk.codesync.database.models.Repo
+import org.intellij.sdk.codesync.database.models.RepoBranch
+import org.intellij.sdk.codesync.database.models.RepoFile
+import org.intellij.sdk.codesync.database.models.User
+import org.intellij.sdk.codesync.database.tables.RepoFileTable
+import org.intellij.sdk.codesync.enums.RepoState
+import org.intellij.sdk.codesync.files.DiffFile
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.BeforeAll
+import org.junit.jupiter.api.Test
+import org.mockito.Mockito
+import java.util.UUID
+
+class RepoDiffContextTest {
+
+    private fun createDiffFile(repoPath: String, branch: String, path: String, oldPath: String? = null): DiffFile {
+        val diffFile = Mockito.mock(DiffFile::class.java)
+        diffFile.repoPath = repoPath
+        diffFile.branch = branch
+        diffFile.fileRelativePath = path
+        diffFile.oldRelativePath = oldPath
+        diffFile.isRename = oldPath != null
+        return diffFile
+    }
+
+    private fun createRepo(): Repo {
+        val user = User("test@codesync.com", "access-token", "access-key", "secret-key", true)
+        user.save()
+        val repo = Repo(1, "test-repo", "/Users/codesync/dev/repo-${UUID.randomUUID()}", user.id, RepoState.SYNCED)
+        repo.save()
+
+        val mainBranch = RepoBranch("main", repo.id)
+        mainBranch.save()
+        val devBranch = RepoBranch("dev", repo.id)
+        devBranch.save()
+        RepoFileTable.getInstance().bulkInsert(arrayListOf(
+            RepoFile("file-1.txt", mainBranch.id, 1),
+            RepoFile("file-2.txt", mainBranch.id, 2),
+            RepoFile("file-1.txt", devBranch.id, 3),
+        ))
+        return repo
+    }
+
+    /*
+    Validate that the user, branches and files of the diffs are resolved.
+    */
+    @Test
+    fun validateResolve() {
+        val repo = createRepo()
+        val context = RepoDiffContext.resolve(repo, listOf(
+            createDiffFile(repo.path, "main", "file-1.txt"),
+            createDiffFile(repo.path, "main", "renamed.txt", "file-2.txt"),
+            createDiffFile(repo.path, "dev", "file-1.txt"),
+            createDiffFile(repo.path, "not-synced", "file-1.txt"),
+        ))
+
+        assertEquals("test@codesync.com", context.user.email)
+        assertEquals(setOf("main", "dev"), setOf(context.getBranch("main").name, context.getBranch("dev").name))
+        assertNull(context.getBranch("not-synced"))
+
+        assertEquals(1, context.getFile("main", "file-1.txt").serverFileId)
+        assertEquals(2, context.getFile("main", "file-2.txt").serverFileId)
+        assertNull(context.getFile("main", "renamed.txt"))
+        assertEquals(3, context.getFile("dev", "file-1.txt").serverFileId)
+        assertNull(context.getFile("not-synced", "file-1.txt"))
+    }
+
+    /*
+    Validate that changes to the files are visible to later diffs of the batch and are saved in the database.
+    */
+    @Test
+    fun validateFileChanges() {
+        val repo = createRepo()
+        val context = RepoDiffContext.resolve(repo, listOf(createDiffFile(repo.path, "main", "file-1.txt")))
+        val mainBranch = context.getBranch("main")
+
+        context.updateFileId(mainBranch, "new-file.txt", 4)
+        assertEquals(4, context.getFile("main", "new-file.txt").serverFileId)
+        assertEquals(4, mainBranch.getFile("new-file.txt").serverFileId)
+
+        context.removeFile(mainBranch, "file-1.txt")
+        assertNull(context.getFile("main", "file-1.txt"))
+        assertNull(RepoFileTable.getInstance().find("file-1.txt", mainBranch.id))
+    }
+
+    companion object {
+        @JvmStatic
+        @BeforeAll
+        fun setup(): Unit {
+            CodeSyncSetup.createSystemDirectories()
+            MigrationManager.getInstance().runMigrations()
+        }
+    }
+}
@@ -1,12 +1,12 @@
 package org.intellij.sdk.codesync.clients
 
+import com.sun.net.httpserver.HttpServer
 import org.apache.http.HttpEntity
 import org.apache.http.ProtocolVersion
 import org.apache.http.StatusLine
 import org.apache.http.client.methods.CloseableHttpResponse
 import org.apache.http.entity.StringEntity
 import org.apache.http.impl.client.CloseableHttpClient
-import org.apache.http.impl.client.HttpClientBuilder
 import org.apache.http.message.BasicHttpResponse
 import org.apache.http.message.BasicStatusLine
 import org.intellij.sdk.codesync.exceptions.response.StatusCodeError
@@ -16,13 +16,13 @@ import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.assertThrows
 import org.mockito.Answers
 import org.mockito.Mockito.*
+import java.net.InetSocketAddress
 
 class ClientUtilsTest {
 
     @Test
     fun testSendPost(){
         
-        val httpClientBuilder : HttpClientBuilder = mock(HttpClientBuilder::class.java)
         val httpClient : CloseableHttpClient = mock(CloseableHttpClient::class.java)
 
         val successfullyHttpResponse: CloseableHttpResponse = getHttpResponse(200)
@@ -33,8 +33,7 @@ class ClientUtilsTest {
         mockStatic(ClientUtils::class.java, Answers.CALLS_REAL_METHODS).use { mocked -> mocked.
 
             //Mocking for multiple calls of same methods.
-            `when`<Any>{ClientUtils.getHttpClientBuilder()}.thenReturn(httpClientBuilder).thenReturn(httpClientBuilder)
-            `when`(httpClientBuilder.build()).thenReturn(httpClient).thenReturn(httpClient)
+            `when`<Any>{ClientUtils.getHttpClient()}.thenReturn(httpClient)
             `when`(httpClient.execute(any())).thenReturn(successfullyHttpResponse).thenReturn(failedHttpResponse)
 
             val API = String.format("%s/users?&source=%s&v=%s", "https://api.example.com/v1", "intellij", "unknown")
@@ -88,5 +87,38 @@ class ClientUtilsTest {
         return httpResponse
     }
 
-}
+    @Test
+    fun testConnectionReuse() {
+        // Local server recording the client port of each request, requests over the same connection share the port.
+        val clientPorts = mutableSetOf<Int>()
+        val server = HttpServer.create(InetSocketAddress("localhost", 0), 0)
+        server.createContext("/healthcheck") { exchange ->
+            synchronized(clientPorts) { clientPorts.add(exchange.remoteAddress.port) }
+            val response = "{\"status\": true}".toByteArray()
+            exchange.sendResponseHeaders(200, response.size.toLong())
+            exchange.responseBody.use { it.write(response) }
+        }
+        server.start()
 
+        try {
+            val url = "http://localhost:${server.address.port}/healthcheck"
+            for (i in 1..5) {
+                Assertions.assertEquals(200, ClientUtils.sendGet(url).statusCode)
+            }
+            Assertions.assertEquals(1, clientPorts.size)
+
+            val poolStats = ClientUtils.getPoolStats()
+            Assertions.assertEquals(0, poolStats.leased)
+            Assertions.assertEquals(1, poolStats.available)
+
+            // Pool is created again if a request is made after it is closed.
+            ClientUtils.closeHttpClient()
+            Assertions.assertNull(ClientUtils.getPoolStats())
+            Assertions.assertEquals(200, ClientUtils.sendGet(url).statusCode)
+            Assertions.assertEquals(2, clientPorts.size)
+        } finally {
+            ClientUtils.closeHttpClient()
+            server.stop(0)
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package org.intellij.sdk.codesync.clients
+
+import org.intellij.sdk.codesync.alerts.PricingAlerts
+import org.intellij.sdk.codesync.files.DiffFile
+import org.intellij.sdk.codesync.files.DiffJournal
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.mockito.Mockito.mockStatic
+import java.nio.file.Path
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class CodeSyncWebSocketClientTest {
+
+    @TempDir
+    lateinit var tempDir: Path
+
+    private fun createDiffFiles(journalName: String, count: Int): List<DiffFile> {
+        val diffJournal = DiffJournal(tempDir.resolve(journalName).toString(), 1024 * 1024)
+        for (i in 1..count) {
+            diffJournal.append(
+                """
+                    repo_path: /home/user/repo
+                    branch: main
+                    file_relative_path: src/file-$i.py
+                    source: intellij
+                    created_at: '2024-01-01 10:00:00.000 UTC'
+                """.trimIndent(),
+                "@@ -1 +1 @@\n-a\n+b\n"
+            )
+        }
+        return diffJournal.read().map { DiffFile(it) }
+    }
+
+    private fun createClient(
+        server: StandInWebSocketServer, windowSize: Int, ackTimeout: Long, heartbeatInterval: Long = 30_000
+    ): CodeSyncWebSocketClient {
+        val client = CodeSyncWebSocketClient("token", server.uri, windowSize, ackTimeout, heartbeatInterval)
+        connect(client)
+        return client
+    }
+
+    private fun connect(client: CodeSyncWebSocketClient) {
+        assertTrue(startConnecting(client).get(10, TimeUnit.SECONDS))
+    }
+
+    private fun startConnecting(client: CodeSyncWebSocketClient): CompletableFuture<Boolean> {
+        val isConnected = CompletableFuture<Boolean>()
+        mockStatic(PricingAlerts::class.java).use { pricingAlertsMocked ->
+            pricingAlertsMocked.`when`<Any> { PricingAlerts.getPlanLimitReached() }.thenReturn(false)
+            client.connect { isConnected.complete(it) }
+        }
+        return isConnected
+    }
+
+    /*
+    Send each diff in its own batch and return the time taken until all of them are acked.
+    */
+    private fun sendBatches(windowSize: Int, batchCount: Int): Long {
+        StandInWebSocketServer(100).use { server ->
+            val client = createClient(server, windowSize, 10_000)
+            val diffFiles = createDiffFiles("journal-$windowSize", batchCount)
+            val acks = CountDownLatch(batchCount)
+            val ackedPaths = ConcurrentHashMap.newKeySet<String>()
+
+            val start = System.nanoTime()
+            for ((index, diffFile) in diffFiles.withIndex()) {
+                client.sendDiffs(arrayListOf(Pair(index, diffFile))) { successfullyTransferred, diffFilePath ->
+                    if (successfullyTransferred) {
+                        ackedPaths.add(diffFilePath)
+                    }
+                    acks.countDown()
+                }
+            }
+            assertTrue(acks.await(30, TimeUnit.SECONDS))
+            val elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+
+            assertEquals(diffFiles.map { it.path }.toSet(), ackedPaths)
+            assertEquals(0, client.pendingBatchCount)
+            return elapsed
+        }
+    }
+
+    @Test
+    fun validateThroughputScalesWithWindowSize() {
+        // Server acks each batch after 100ms, so a single batch in flight can not do better than 10 batches a second.
+        val sequentialTime = sendBatches(1, 20)
+        val pipelinedTime = sendBatches(4, 20)
+
+        assertTrue(sequentialTime >= 20 * 100, "Sequential sends took $sequentialTime ms.")
+        assertTrue(pipelinedTime * 2 < sequentialTime, "Pipelined sends took $pipelinedTime ms.")
+    }
+
+    @Test
+    fun validateAckTimeout() {
+        StandInWebSocketServer(0, ackDiffs = false).use { server ->
+            val client = createClient(server, 1, 200)
+            val diffFiles = createDiffFiles("journal", 2)
+            val result = CompletableFuture<Pair<Boolean, String>>()
+
+            client.sendDiffs(arrayListOf(Pair(1, diffFiles[0]))) { successfullyTransferred, diffFilePath ->
+                result.complete(Pair(successfullyTransferred, diffFilePath))
+            }
+            val (successfullyTransferred, diffFilePath) = result.get(10, TimeUnit.SECONDS)
+            assertFalse(successfullyTransferred)
+            assertEquals(diffFiles[0].path, diffFilePath)
+
+            // Diff is only failed once its session is closed, so a late ack can not arrive for it.
+            assertFalse(client.isConnected())
+            Thread.sleep(200)
+            assertEquals(0, server.openConnectionCount)
+
+            // Window is released once the batch times out.
+            assertEquals(0, client.pendingBatchCount)
+            connect(client)
+            client.sendDiffs(arrayListOf(Pair(2, diffFiles[1]))) { _, _ -> }
+            assertEquals(1, client.pendingBatchCount)
+        }
+    }
+
+    @Test
+    fun validateLateAck() {
+        // Server acks after the ack timeout.
+        StandInWebSocketServer(500).use { server ->
+            val client = createClient(server, 1, 200)
+            val diffFiles = createDiffFiles("journal", 1)
+            val results = ConcurrentHashMap.newKeySet<Boolean>()
+            val callbacks = AtomicInteger()
+
+            client.sendDiffs(arrayListOf(Pair(1, diffFiles[0]))) { successfullyTransferred, _ ->
+                results.add(successfullyTransferred)
+                callbacks.incrementAndGet()
+            }
+            Thread.sleep(1000)
+
+            // Diff is failed exactly once, the late ack never reaches the closed session.
+            assertEquals(1, callbacks.get())
+            assertEquals(setOf(false), results)
+            assertEquals(0, client.pendingBatchCount)
+        }
+    }
+
+    @Test
+    fun validateReconnectOncePerBatch() {
+        StandInWebSocketServer(0).use { server ->
+            val client = createClient(server, 4, 10_000)
+
+            // Several new files uploaded in the same batch.
+            client.disconnect()
+            client.disconnect()
+            client.disconnect()
+            connect(client)
+
+            assertEquals(2, server.connectionCount)
+            // Previous session is closed since it has no pending batches.
+            Thread.sleep(500)
+            assertEquals(1, server.openConnectionCount)
+            assertTrue(client.isConnected())
+        }
+    }
+
+    @Test
+    fun validateHeartbeat() {
+        StandInWebSocketServer(0).use { server ->
+            val client = createClient(server, 4, 10_000, 100)
+            Thread.sleep(1000)
+            assertTrue(client.isConnected())
+        }
+
+        // Session is considered dead once pongs stop arriving, even though it is not closed.
+        StandInWebSocketServer(0, answerPings = false).use { server ->
+            val client = createClient(server, 4, 10_000, 100)
+            Thread.sleep(1000)
+            assertFalse(client.isConnected())
+        }
+    }
+
+    @Test
+    fun validateAuthTimeout() {
+        StandInWebSocketServer(0, answerAuth = false).use { server ->
+            val client = CodeSyncWebSocketClient("token", server.uri, 4, 10_000, 30_000)
+            client.authTimeout = 200
+
+            assertFalse(startConnecting(client).get(10, TimeUnit.SECONDS))
+            assertFalse(client.isConnecting)
+            // Session is closed and the next attempt opens a new one.
+            Thread.sleep(500)
+            assertEquals(0, server.openConnectionCount)
+            assertFalse(startConnecting(client).get(10, TimeUnit.SECONDS))
+            assertEquals(2, server.connectionCount)
+        }
+    }
+
+    @Test
+    fun validateCloseBeforeAuth() {
+        val isConnected: CompletableFuture<Boolean>
+        val client: CodeSyncWebSocketClient
+        StandInWebSocketServer(0, answerAuth = false).use { server ->
+            client = CodeSyncWebSocketClient("token", server.uri, 4, 10_000, 30_000)
+            isConnected = startConnecting(client)
+            Thread.sleep(200)
+            assertFalse(isConnected.isDone)
+        }
+
+        // Waiting handlers are notified once the session closes, well before the auth timeout.
+        assertFalse(isConnected.get(10, TimeUnit.SECONDS))
+        assertFalse(client.isConnecting)
+    }
+}
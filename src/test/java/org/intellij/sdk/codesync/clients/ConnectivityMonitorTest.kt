@@ -0,0 +1,92 @@
+package org.intellij.sdk.codesync.clients
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class ConnectivityMonitorTest {
+    private var now = 0L
+    private var probeCount = 0
+    private var isServerUp = false
+
+    private fun createMonitor(): ConnectivityMonitor {
+        return ConnectivityMonitor({ probeCount++; isServerUp }, { now }, 3, 1000, 4000)
+    }
+
+    @Test
+    fun validateNoRequestsWhileOnline() {
+        val monitor = createMonitor()
+        for (i in 1..10) {
+            assertTrue(monitor.isServerReachable())
+            monitor.recordSuccess()
+        }
+        assertEquals(0, probeCount)
+        assertEquals(ConnectivityMonitor.State.CLOSED, monitor.state)
+    }
+
+    @Test
+    fun validateCircuitOpensAfterConsecutiveFailures() {
+        val monitor = createMonitor()
+        monitor.recordFailure()
+        monitor.recordFailure()
+        monitor.recordSuccess()
+        monitor.recordFailure()
+        monitor.recordFailure()
+        assertEquals(ConnectivityMonitor.State.CLOSED, monitor.state)
+
+        monitor.recordFailure()
+        assertEquals(ConnectivityMonitor.State.OPEN, monitor.state)
+
+        // No requests are made until the probe is due.
+        now += 999
+        for (i in 1..10) {
+            assertFalse(monitor.isServerReachable())
+        }
+        assertEquals(0, probeCount)
+    }
+
+    @Test
+    fun validateProbeBackoff() {
+        val monitor = createMonitor()
+        repeat(3) { monitor.recordFailure() }
+
+        // Probe delay doubles after each failed probe, up to the max delay.
+        for (delay in listOf(1000L, 2000L, 4000L, 4000L)) {
+            now += delay - 1
+            assertFalse(monitor.isServerReachable())
+            now += 1
+            val probesBefore = probeCount
+            assertFalse(monitor.isServerReachable())
+            assertEquals(probesBefore + 1, probeCount)
+            assertEquals(ConnectivityMonitor.State.OPEN, monitor.state)
+        }
+
+        now += 4000
+        isServerUp = true
+        assertTrue(monitor.isServerReachable())
+        assertEquals(ConnectivityMonitor.State.CLOSED, monitor.state)
+
+        // Backoff starts over the next time the server goes down.
+        isServerUp = false
+        repeat(3) { monitor.recordFailure() }
+        now += 999
+        assertFalse(monitor.isServerReachable())
+        assertEquals(5, probeCount)
+        now += 1
+        assertFalse(monitor.isServerReachable())
+        assertEquals(6, probeCount)
+    }
+
+    @Test
+    fun validateRealCallsCloseTheCircuit() {
+        val monitor = createMonitor()
+        repeat(3) { monitor.recordFailure() }
+        assertFalse(monitor.isServerReachable())
+
+        // A successful call made by the user (e.g. during repo setup) closes the circuit without waiting for a probe.
+        monitor.recordSuccess()
+        assertTrue(monitor.isServerReachable())
+        assertEquals(0, probeCount)
+    }
+}
@@ -0,0 +1,106 @@
+package org.intellij.sdk.codesync.clients
+
+import com.sun.net.httpserver.HttpServer
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.io.RandomAccessFile
+import java.lang.management.ManagementFactory
+import java.lang.management.MemoryType
+import java.net.HttpURLConnection
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.nio.file.Path
+
+class MultipartUtilityTest {
+
+    @TempDir
+    lateinit var tempDir: Path
+
+    private lateinit var server: HttpServer
+
+    // Content-Length header and the number of bytes actually received for the last request.
+    @Volatile
+    private var declaredLength = -1L
+    @Volatile
+    private var receivedLength = -1L
+
+    @BeforeEach
+    fun startServer() {
+        server = HttpServer.create(InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0)
+        server.createContext("/") { exchange ->
+            declaredLength = exchange.requestHeaders.getFirst("Content-Length")?.toLong() ?: -1
+            var received = 0L
+            val buffer = ByteArray(64 * 1024)
+            exchange.requestBody.use { body ->
+                while (true) {
+                    val read = body.read(buffer)
+                    if (read == -1) break
+                    received += read
+                }
+            }
+            receivedLength = received
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_NO_CONTENT, -1)
+            exchange.close()
+        }
+        server.start()
+    }
+
+    @AfterEach
+    fun stopServer() {
+        server.stop(0)
+    }
+
+    private fun createFile(name: String, size: Long): File {
+        val file = tempDir.resolve(name).toFile()
+        RandomAccessFile(file, "rw").use { it.setLength(size) }
+        return file
+    }
+
+    /*
+    Upload the file and return the peak heap usage during the upload.
+    */
+    private fun upload(file: File): Long {
+        val heapPools = ManagementFactory.getMemoryPoolMXBeans().filter { it.type == MemoryType.HEAP }
+        System.gc()
+        heapPools.forEach { it.resetPeakUsage() }
+
+        val multipartUtility = MultipartUtility("http://localhost:${server.address.port}/", "UTF-8")
+        multipartUtility.addHeaderField("User-Agent", "IntelliJ Plugin")
+        multipartUtility.addFormField("key", "originals/${file.name}")
+        multipartUtility.addFilePart("file", file)
+        multipartUtility.finish(HttpURLConnection.HTTP_NO_CONTENT)
+
+        return heapPools.sumOf { it.peakUsage.used }
+    }
+
+    @Test
+    fun validateContentLength() {
+        val file = createFile("small.py", 1024 * 1024)
+        upload(file)
+
+        assertTrue(declaredLength > file.length())
+        assertEquals(declaredLength, receivedLength)
+    }
+
+    @Test
+    fun validatePeakHeapIsFlat() {
+        val smallFile = createFile("small.py", 1024 * 1024)
+        val largeFile = createFile("large.py", 128L * 1024 * 1024)
+
+        val smallFilePeak = upload(smallFile)
+        val largeFilePeak = upload(largeFile)
+
+        assertEquals(declaredLength, receivedLength)
+        assertTrue(receivedLength > largeFile.length())
+        // Buffering the request body would need at least the size of the file on the heap.
+        assertTrue(
+            largeFilePeak < smallFilePeak + 32 * 1024 * 1024,
+            "Peak heap usage grew from $smallFilePeak to $largeFilePeak bytes."
+        )
+    }
+}
@@ -0,0 +1,207 @@
+package org.intellij.sdk.codesync.clients
+
+import org.json.simple.JSONArray
+import org.json.simple.JSONObject
+import org.json.simple.JSONValue
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.EOFException
+import java.io.IOException
+import java.io.OutputStream
+import java.net.InetAddress
+import java.net.ServerSocket
+import java.net.Socket
+import java.security.MessageDigest
+import java.util.Base64
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
+
+/*
+Minimal websocket server standing in for the CodeSync server in tests.
+
+Every connection is authenticated right away unless `answerAuth` is false, each diff of a request is acked after `latency` milliseconds unless
+`ackDiffs` is false. Requests are handled concurrently, like the actual server does. Pings are answered unless
+`answerPings` is false.
+*/
+class StandInWebSocketServer(
+    private val latency: Long,
+    private val ackDiffs: Boolean = true,
+    private val answerPings: Boolean = true,
+    private val answerAuth: Boolean = true
+) : AutoCloseable {
+    private val serverSocket = ServerSocket(0, 50, InetAddress.getLoopbackAddress())
+    private val scheduler = Executors.newScheduledThreadPool(8)
+    private val sockets = mutableListOf<Socket>()
+    private val openConnections = AtomicInteger()
+
+    val connectionCount: Int
+        get() = synchronized(sockets) { sockets.size }
+
+    // Number of connections not closed by the client yet.
+    val openConnectionCount: Int
+        get() = openConnections.get()
+
+    val uri: String
+        get() = "ws://localhost:${serverSocket.localPort}"
+
+    init {
+        thread(isDaemon = true) {
+            while (!serverSocket.isClosed) {
+                val socket = try {
+                    serverSocket.accept()
+                } catch (e: IOException) {
+                    break
+                }
+                synchronized(sockets) { sockets.add(socket) }
+                thread(isDaemon = true) { handleConnection(socket) }
+            }
+        }
+    }
+
+    private fun handleConnection(socket: Socket) {
+        openConnections.incrementAndGet()
+        try {
+            val input = DataInputStream(socket.getInputStream())
+            val output = socket.getOutputStream()
+            handshake(input, output)
+            if (answerAuth) {
+                sendText(output, """{"status": 200}""")
+            }
+
+            while (true) {
+                val message = readText(input, output) ?: break
+                val payload = JSONValue.parse(message) as JSONObject
+                if (!ackDiffs) {
+                    continue
+                }
+                scheduler.schedule({
+                    for (diff in payload["diffs"] as JSONArray) {
+                        val response = JSONObject()
+                        response["status"] = 200
+                        response["request_id"] = payload["request_id"]
+                        response["diff_file_path"] = (diff as JSONObject)["diff_file_path"]
+                        sendText(output, response.toJSONString())
+                    }
+                }, latency, TimeUnit.MILLISECONDS)
+            }
+        } catch (e: IOException) {
+            // Connection closed.
+        } finally {
+            openConnections.decrementAndGet()
+            socket.close()
+        }
+    }
+
+    private fun handshake(input: DataInputStream, output: OutputStream) {
+        var key: String? = null
+        while (true) {
+            val line = readLine(input)
+            if (line.isEmpty()) {
+                break
+            }
+            if (line.lowercase().startsWith("sec-websocket-key:")) {
+                key = line.substring(line.indexOf(':') + 1).trim()
+            }
+        }
+        val accept = Base64.getEncoder().encodeToString(
+            MessageDigest.getInstance("SHA-1").digest("${key}258EAFA5-E914-47DA-95CA-C5AB0DC85B11".toByteArray())
+        )
+        output.write(
+            ("HTTP/1.1 101 Switching Protocols\r\n" +
+                "Upgrade: websocket\r\n" +
+                "Connection: Upgrade\r\n" +
+                "Sec-WebSocket-Accept: $accept\r\n\r\n").toByteArray()
+        )
+        output.flush()
+    }
+
+    private fun readLine(input: DataInputStream): String {
+        val line = ByteArrayOutputStream()
+        while (true) {
+            val byte = input.read()
+            if (byte == -1) {
+                throw EOFException()
+            }
+            if (byte == '\n'.code) {
+                return line.toString("UTF-8").trimEnd('\r')
+            }
+            line.write(byte)
+        }
+    }
+
+    /*
+    Read a text message sent by the client, returns null once the client closes the connection.
+    */
+    private fun readText(input: DataInputStream, output: OutputStream): String? {
+        val message = ByteArrayOutputStream()
+        while (true) {
+            val first = input.readUnsignedByte()
+            val second = input.readUnsignedByte()
+            val opcode = first and 0x0F
+            var length = (second and 0x7F).toLong()
+            if (length == 126L) {
+                length = input.readUnsignedShort().toLong()
+            } else if (length == 127L) {
+                length = input.readLong()
+            }
+            val mask = ByteArray(4)
+            if (second and 0x80 != 0) {
+                input.readFully(mask)
+            }
+            val payload = ByteArray(length.toInt())
+            input.readFully(payload)
+            for (i in payload.indices) {
+                payload[i] = (payload[i].toInt() xor mask[i % 4].toInt()).toByte()
+            }
+
+            when (opcode) {
+                0x8 -> return null
+                0x9 -> {
+                    if (answerPings) {
+                        sendFrame(output, 0xA, payload)
+                    }
+                    continue
+                }
+                0xA -> continue
+            }
+            message.write(payload)
+            if (first and 0x80 != 0) {
+                return message.toString("UTF-8")
+            }
+        }
+    }
+
+    private fun sendText(output: OutputStream, message: String) {
+        sendFrame(output, 0x1, message.toByteArray())
+    }
+
+    private fun sendFrame(output: OutputStream, opcode: Int, payload: ByteArray) {
+        synchronized(output) {
+            output.write(0x80 or opcode)
+            when {
+                payload.size < 126 -> output.write(payload.size)
+                payload.size < 65536 -> {
+                    output.write(126)
+                    output.write(payload.size shr 8)
+                    output.write(payload.size and 0xFF)
+                }
+                else -> {
+                    output.write(127)
+                    for (shift in 56 downTo 0 step 8) {
+                        output.write((payload.size.toLong() shr shift).toInt() and 0xFF)
+                    }
+                }
+            }
+            output.write(payload)
+            output.flush()
+        }
+    }
+
+    override fun close() {
+        serverSocket.close()
+        synchronized(sockets) { sockets.forEach { it.close() } }
+        scheduler.shutdownNow()
+    }
+}
@@ -0,0 +1,140 @@
+package org.intellij.sdk.codesync.codeSyncSetup
+
+import org.intellij.sdk.codesync.Constants.S3_UPLOAD_CONCURRENCY
+import org.intellij.sdk.codesync.Constants.S3_UPLOAD_RETRY_BASE_DELAY
+import org.intellij.sdk.codesync.database.SQLiteConnection
+import org.intellij.sdk.codesync.database.enums.S3UploadStatus
+import org.intellij.sdk.codesync.database.migrations.MigrationManager
+import org.intellij.sdk.codesync.database.tables.S3UploadQueueTable
+import org.intellij.sdk.codesync.exceptions.RequestError
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.BeforeAll
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import java.io.File
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+class S3FileUploaderTest {
+
+    /*
+    Add files to the queue for a new repo and return the repo path.
+    */
+    private fun enqueueFiles(fileCount: Int): String {
+        val repoPath = "/home/user/repo-${UUID.randomUUID()}"
+        S3FileUploader.enqueue(
+            repoPath,
+            "main",
+            (1..fileCount).associate { "file-$it.py" to mapOf("url" to "https://s3.example.com", "fields" to mapOf<String, Any>()) }
+        )
+        return repoPath
+    }
+
+    private fun createUploader(upload: (File) -> Unit): S3FileUploader {
+        return object : S3FileUploader() {
+            override fun uploadFile(originalsFile: File, preSignedURLData: Map<String, Any>) {
+                upload(originalsFile)
+            }
+        }
+    }
+
+    /*
+    Start and end each test with an empty queue, so the uploader only sees the items queued by the test.
+    */
+    @BeforeEach
+    @AfterEach
+    fun clearQueue() {
+        SQLiteConnection.getInstance().execute("DELETE FROM ${S3UploadQueueTable.getInstance().tableName};")
+    }
+
+    @Test
+    fun validateParallelUpload() {
+        val repoPath = enqueueFiles(20)
+        val activeUploads = AtomicInteger()
+        val maxActiveUploads = AtomicInteger()
+        val uploadedFiles = ConcurrentHashMap.newKeySet<String>()
+
+        val s3FileUploader = createUploader { originalsFile ->
+            maxActiveUploads.accumulateAndGet(activeUploads.incrementAndGet(), Math::max)
+            Thread.sleep(50)
+            activeUploads.decrementAndGet()
+            uploadedFiles.add(originalsFile.name)
+        }
+
+        s3FileUploader.processFiles(null)
+
+        assertEquals(20, uploadedFiles.size)
+        assertEquals(S3_UPLOAD_CONCURRENCY, maxActiveUploads.get())
+        // Uploaded files are removed from the queue.
+        assertTrue(S3UploadQueueTable.getInstance().findAll(repoPath, "main").isEmpty())
+    }
+
+    @Test
+    fun validateRetries() {
+        val repoPath = enqueueFiles(3)
+        val attempts = ConcurrentHashMap<String, AtomicInteger>()
+
+        val s3FileUploader = createUploader { originalsFile ->
+            val attempt = attempts.computeIfAbsent(originalsFile.name) { AtomicInteger() }.incrementAndGet()
+            when (originalsFile.name) {
+                // Transient error, upload succeeds on retry.
+                "file-2.py" -> if (attempt == 1) throw RequestError("Connection reset.")
+                "file-3.py" -> throw RequestError("Access denied.")
+            }
+        }
+
+        s3FileUploader.processFiles(null)
+
+        assertEquals(1, attempts["file-1.py"]!!.get())
+        assertEquals(2, attempts["file-2.py"]!!.get())
+        assertEquals(3, attempts["file-3.py"]!!.get())
+
+        // Only the failed file is left in the queue for a later run.
+        val items = S3UploadQueueTable.getInstance().findAll(repoPath, "main")
+        assertEquals(setOf("file-3.py"), items.keys)
+        assertEquals(1, items["file-3.py"]!!.attempts)
+        assertEquals(S3UploadStatus.PENDING, items["file-3.py"]!!.status)
+        assertTrue(items["file-3.py"]!!.nextAttemptAt > System.currentTimeMillis())
+
+        // Failed file is not due yet.
+        s3FileUploader.processFiles(null)
+        assertEquals(3, attempts["file-3.py"]!!.get())
+    }
+
+    @Test
+    fun validateClaims() {
+        val repoPath = enqueueFiles(2)
+        val s3UploadQueueTable = S3UploadQueueTable.getInstance()
+
+        val claimedItems = s3UploadQueueTable.claimDueItems(1000)
+        assertEquals(setOf("file-1.py", "file-2.py"), claimedItems.map { it.path }.toSet())
+
+        // Claimed items are not handed out again until the claim expires.
+        assertTrue(s3UploadQueueTable.claimDueItems(1000).isEmpty())
+        val items = s3UploadQueueTable.findAll(repoPath, "main")
+        assertTrue(items.values.all { it.status == S3UploadStatus.IN_PROGRESS })
+    }
+
+    @Test
+    fun validateRetryDelay() {
+        for (attempt in 1..3) {
+            val maxDelay = S3_UPLOAD_RETRY_BASE_DELAY * (1L shl (attempt - 1))
+            repeat(100) {
+                val delay = S3FileUploader.getRetryDelay(attempt)
+                assertTrue(delay in 0..maxDelay)
+            }
+        }
+    }
+
+    companion object {
+        @JvmStatic
+        @BeforeAll
+        fun setup(): Unit {
+            CodeSyncSetup.createSystemDirectories()
+            MigrationManager.getInstance().runMigrations()
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.intellij.sdk.codesync.database
+
+import org.intellij.sdk.codesync.Constants.CONNECTION_STRING
+import org.intellij.sdk.codesync.Constants.SQLITE_EXTERNAL_CHANGE_CHECK_INTERVAL
+import org.intellij.sdk.codesync.codeSyncSetup.CodeSyncSetup
+import org.intellij.sdk.codesync.database.migrations.MigrationManager
+import org.intellij.sdk.codesync.database.models.Repo
+import org.intellij.sdk.codesync.database.models.User
+import org.intellij.sdk.codesync.database.tables.DBTable
+import org.intellij.sdk.codesync.database.tables.RepoTable
+import org.intellij.sdk.codesync.enums.RepoState
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.BeforeAll
+import org.junit.jupiter.api.Test
+import java.sql.DriverManager
+import java.util.UUID
+import java.util.concurrent.atomic.AtomicInteger
+
+class EntityCacheTest {
+
+    private fun createTable(): DBTable {
+        return object : DBTable() {
+            override fun getTableName(): String = "test_table"
+            override fun getCreateTableQuery(): String = ""
+        }
+    }
+
+    /*
+    Validate that values are loaded once and served from memory afterwards.
+    */
+    @Test
+    fun validateHitsAndMisses() {
+        val table = createTable()
+        val cache = EntityCache<String, String>("test", { it }, table)
+        val loadCount = AtomicInteger()
+
+        repeat(3) {
+            assertEquals("value-key", cache.get("key") { "value-$it".also { loadCount.incrementAndGet() } })
+        }
+        // Missing entities are cached as well.
+        repeat(2) {
+            assertNull(cache.get("missing") { null.also { loadCount.incrementAndGet() } })
+        }
+
+        assertEquals(2, loadCount.get())
+        assertEquals(2L, cache.missCount)
+        assertEquals(3L, cache.hitCount)
+        assertTrue(EntityCache.getStats().contains("test: 3 hits, 2 misses"))
+    }
+
+    /*
+    Validate that a write to any of the tables of the cache makes the cached values stale.
+    */
+    @Test
+    fun validateInvalidation() {
+        val table = createTable()
+        val otherTable = createTable()
+        val cache = EntityCache<String, String>("test", { it }, table, otherTable)
+        val loadCount = AtomicInteger()
+        val load = { _: String -> "value-${loadCount.incrementAndGet()}" }
+
+        assertEquals("value-1", cache.get("key", load))
+        assertEquals("value-1", cache.get("key", load))
+
+        table.invalidateCache()
+        assertEquals("value-2", cache.get("key", load))
+
+        otherTable.invalidateCache()
+        assertEquals("value-3", cache.get("key", load))
+        assertEquals("value-3", cache.get("key", load))
+    }
+
+    /*
+    Validate that a commit made by another process, i.e. on a connection of its own, makes the cached values stale.
+    */
+    @Test
+    fun validateExternalWrites() {
+        val cache = EntityCache<String, String>("test", { it }, createTable())
+        val loadCount = AtomicInteger()
+        val load = { _: String -> "value-${loadCount.incrementAndGet()}" }
+        assertEquals("value-1", cache.get("key", load))
+
+        DriverManager.getConnection(CONNECTION_STRING).use { connection ->
+            connection.createStatement().use { statement ->
+                statement.execute("CREATE TABLE IF NOT EXISTS test_external_writes (id INTEGER);")
+                statement.execute("INSERT INTO test_external_writes (id) VALUES (1);")
+            }
+        }
+
+        val deadline = System.currentTimeMillis() + 5L * SQLITE_EXTERNAL_CHANGE_CHECK_INTERVAL
+        while (cache.get("key", load) == "value-1" && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50)
+        }
+        assertEquals("value-2", cache.get("key", load))
+    }
+
+    /*
+    Validate that entities read from the cache reflect saved changes and can be changed without affecting the cache.
+    */
+    @Test
+    fun validateRepoCache() {
+        val user = User("test@codesync.com", "access-token", "access-key", "secret-key", true)
+        user.save()
+        val repoPath = "/Users/codesync/dev/repo-${UUID.randomUUID()}"
+        Repo(1, "test-repo", repoPath, user.id, RepoState.SYNCED).save()
+
+        val repo = RepoTable.getInstance().get(repoPath)
+        repo.state = RepoState.DISCONNECTED
+        // Not saved yet, so the cached repo is unchanged.
+        assertNotSame(repo, RepoTable.getInstance().get(repoPath))
+        assertEquals(RepoState.SYNCED, RepoTable.getInstance().get(repoPath).state)
+
+        repo.save()
+        assertEquals(RepoState.DISCONNECTED, RepoTable.getInstance().get(repoPath).state)
+        assertTrue(RepoTable.getInstance().findAll().any { it.path == repoPath && it.state == RepoState.DISCONNECTED })
+    }
+
+    companion object {
+        @JvmStatic
+        @BeforeAll
+        fun setup(): Unit {
+            CodeSyncSetup.createSystemDirectories()
+            MigrationManager.getInstance().runMigrations()
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.intellij.sdk.codesync.database
+
+import org.intellij.sdk.codesync.Constants.REPO_FILE_FLUSH_DELAY
+import org.intellij.sdk.codesync.Constants.SQLITE_MAX_VARIABLES
+import org.intellij.sdk.codesync.codeSyncSetup.CodeSyncSetup
+import org.intellij.sdk.codesync.database.migrations.MigrationManager
+import org.intellij.sdk.codesync.database.models.Repo
+import org.intellij.sdk.codesync.database.models.RepoBranch
+import org.intellij.sdk.codesync.database.models.RepoFile
+import org.intellij.sdk.codesync.database.models.User
+import org.intellij.sdk.codesync.database.tables.RepoFileTable
+import org.intellij.sdk.codesync.enums.RepoState
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.BeforeAll
+import org.junit.jupiter.api.Test
+import java.util.UUID
+
+class RepoFileWriteQueueTest {
+
+    private fun createBranch(): RepoBranch {
+        val user = User("test@codesync.com", "access-token", "access-key", "secret-key", true)
+        user.save()
+        val repo = Repo(1, "test-repo", "/Users/codesync/dev/repo-${UUID.randomUUID()}", user.id, RepoState.SYNCED)
+        repo.save()
+        val repoBranch = RepoBranch("main", repo.id)
+        repoBranch.save()
+        return repoBranch
+    }
+
+    private fun countRows(repoBranch: RepoBranch, path: String): Int {
+        return SQLiteConnection.getInstance().executeQuery(
+            "SELECT COUNT(*) FROM repo_file WHERE repo_branch_id = ? AND path = ?;",
+            { resultSet -> resultSet.getInt(1) },
+            repoBranch.id, path
+        )
+    }
+
+    /*
+    Validate that queued changes are visible to lookups before and after they are saved.
+    */
+    @Test
+    fun validateReadYourWrites() {
+        val repoBranch = createBranch()
+        RepoFileTable.getInstance().bulkInsert(arrayListOf(RepoFile("file-1.txt", repoBranch.id, 1)))
+        val queue = RepoFileWriteQueue.getInstance()
+
+        repoBranch.updateFileId("file-1.txt", 11)
+        repoBranch.updateFileId("file-2.txt", 2)
+        repoBranch.updateFileId("file-2.txt", 12)
+        repoBranch.updateFileId("file-3.txt", 3)
+        repoBranch.removeFile("file-3.txt")
+
+        // Only the last change to a file is kept.
+        assertEquals(3, queue.getPendingWrites(repoBranch.id).size)
+        assertEquals(11, repoBranch.getFile("file-1.txt").serverFileId)
+        assertNotNull(repoBranch.getFile("file-1.txt").id)
+        assertEquals(12, repoBranch.getFile("file-2.txt").serverFileId)
+        assertNull(RepoFileTable.getInstance().find("file-3.txt", repoBranch.id))
+        assertEquals(
+            listOf("file-1.txt" to 11, "file-2.txt" to 12),
+            repoBranch.files.map { it.path to it.serverFileId }.sortedBy { it.first }
+        )
+        assertEquals(
+            listOf("file-2.txt"),
+            RepoFileTable.getInstance().findAll(repoBranch.id, listOf("file-2.txt", "file-3.txt")).map { it.path }
+        )
+
+        queue.flush()
+
+        assertTrue(queue.getPendingWrites(repoBranch.id).isEmpty())
+        assertEquals(1, countRows(repoBranch, "file-1.txt"))
+        assertEquals(1, countRows(repoBranch, "file-2.txt"))
+        assertEquals(0, countRows(repoBranch, "file-3.txt"))
+        assertEquals(12, repoBranch.getFile("file-2.txt").serverFileId)
+    }
+
+    /*
+    Validate that direct writes apply the queued changes first, so they are not overwritten by older changes.
+    */
+    @Test
+    fun validateDirectWrites() {
+        val repoBranch = createBranch()
+        repoBranch.updateFileId("file.txt", 1)
+
+        val repoFile = repoBranch.getFile("file.txt")
+        repoFile.serverFileId = 2
+        repoFile.save()
+
+        assertTrue(RepoFileWriteQueue.getInstance().getPendingWrites(repoBranch.id).isEmpty())
+        assertEquals(1, countRows(repoBranch, "file.txt"))
+        assertEquals(2, repoBranch.getFile("file.txt").serverFileId)
+
+        repoBranch.updateFileId("file.txt", 3)
+        repoBranch.getFile("file.txt").delete()
+        assertNull(RepoFileTable.getInstance().find("file.txt", repoBranch.id))
+        assertEquals(0, countRows(repoBranch, "file.txt"))
+    }
+
+    /*
+    Validate that queued changes are saved in the background.
+    */
+    @Test
+    fun validateBackgroundFlush() {
+        val repoBranch = createBranch()
+        repoBranch.updateFileId("file.txt", 1)
+
+        val deadline = System.currentTimeMillis() + 5L * REPO_FILE_FLUSH_DELAY
+        while (countRows(repoBranch, "file.txt") == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50)
+        }
+        assertEquals(1, countRows(repoBranch, "file.txt"))
+        assertTrue(RepoFileWriteQueue.getInstance().getPendingWrites(repoBranch.id).isEmpty())
+    }
+
+    /*
+    Validate that inserts and lookups of more files than fit in the parameters of a single statement are split.
+    */
+    @Test
+    fun validateLargeBulkInsert() {
+        val repoBranch = createBranch()
+        val fileCount = 2 * SQLITE_MAX_VARIABLES + 1
+        val repoFiles = ArrayList((1..fileCount).map { RepoFile("file-$it.txt", repoBranch.id, it) })
+
+        RepoFileTable.getInstance().bulkInsert(repoFiles)
+
+        assertEquals(fileCount, repoBranch.files.size)
+        val paths = repoFiles.map { it.path } + "missing.txt"
+        assertEquals(fileCount, RepoFileTable.getInstance().findAll(repoBranch.id, paths).size)
+    }
+
+    companion object {
+        @JvmStatic
+        @BeforeAll
+        fun setup(): Unit {
+            CodeSyncSetup.createSystemDirectories()
+            MigrationManager.getInstance().runMigrations()
+        }
+    }
+}
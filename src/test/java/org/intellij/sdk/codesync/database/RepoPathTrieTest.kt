@@ -0,0 +1,89 @@
+package org.intellij.sdk.codesync.database
+
+import org.intellij.sdk.codesync.codeSyncSetup.CodeSyncSetup
+import org.intellij.sdk.codesync.database.migrations.MigrationManager
+import org.intellij.sdk.codesync.database.models.Repo
+import org.intellij.sdk.codesync.database.models.User
+import org.intellij.sdk.codesync.database.tables.RepoTable
+import org.intellij.sdk.codesync.enums.RepoState
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.BeforeAll
+import org.junit.jupiter.api.Test
+import java.util.UUID
+
+class RepoPathTrieTest {
+
+    private fun createRepo(path: String, state: RepoState = RepoState.SYNCED): Repo {
+        return Repo(1, path.substringAfterLast("/"), path, 1, state)
+    }
+
+    /*
+    Validate that paths are matched component wise and the closest parent repo is returned.
+    */
+    @Test
+    fun validateLookups() {
+        val trie = RepoPathTrie()
+        trie.put(createRepo("/Users/codesync/dev/repo"))
+        trie.put(createRepo("/Users/codesync/dev/repo/nested"))
+
+        assertEquals("/Users/codesync/dev/repo", trie.get("/Users/codesync/dev/repo").path)
+        assertNull(trie.get("/Users/codesync/dev"))
+        assertNull(trie.get("/Users/codesync/dev/repo/src"))
+
+        assertEquals("/Users/codesync/dev/repo", trie.getParentRepo("/Users/codesync/dev/repo/src").path)
+        assertEquals("/Users/codesync/dev/repo", trie.getParentRepo("/Users/codesync/dev/repo/nested").path)
+        assertEquals("/Users/codesync/dev/repo/nested", trie.getParentRepo("/Users/codesync/dev/repo/nested/src").path)
+        // A repo is not its own parent and sibling paths sharing a prefix are not children.
+        assertNull(trie.getParentRepo("/Users/codesync/dev/repo"))
+        assertNull(trie.getParentRepo("/Users/codesync/dev/repo-2/src"))
+        assertNull(trie.getParentRepo("/"))
+    }
+
+    /*
+    Validate that repos are copied on their way in and out of the trie.
+    */
+    @Test
+    fun validateCopies() {
+        val trie = RepoPathTrie()
+        val repo = createRepo("/Users/codesync/dev/repo")
+        trie.put(repo)
+
+        repo.state = RepoState.DISCONNECTED
+        trie.get("/Users/codesync/dev/repo").state = RepoState.DELETED
+        assertEquals(RepoState.SYNCED, trie.get("/Users/codesync/dev/repo").state)
+    }
+
+    /*
+    Validate that parent repo lookups on the table see repos inserted and updated after the trie is built.
+    */
+    @Test
+    fun validateRepoTable() {
+        val user = User("test@codesync.com", "access-token", "access-key", "secret-key", true)
+        user.save()
+        val repoPath = "/Users/codesync/dev/repo-${UUID.randomUUID()}"
+        val childPath = "$repoPath/module"
+        assertNull(RepoTable.getInstance().getParentRepo(childPath))
+
+        val repo = Repo(1, "test-repo", repoPath, user.id, RepoState.SYNCED)
+        repo.save()
+        assertEquals(repo.id, RepoTable.getInstance().getParentRepo(childPath).id)
+        assertEquals(repo.id, RepoTable.getInstance().findByPath(repoPath).id)
+
+        repo.state = RepoState.DISCONNECTED
+        repo.save()
+        assertEquals(RepoState.DISCONNECTED, RepoTable.getInstance().getParentRepo(childPath).state)
+
+        // Writes the trie does not see directly make it rebuild.
+        RepoTable.getInstance().invalidateCache()
+        assertEquals(RepoState.DISCONNECTED, RepoTable.getInstance().findByPath(repoPath).state)
+    }
+
+    companion object {
+        @JvmStatic
+        @BeforeAll
+        fun setup(): Unit {
+            CodeSyncSetup.createSystemDirectories()
+            MigrationManager.getInstance().runMigrations()
+        }
+    }
+}
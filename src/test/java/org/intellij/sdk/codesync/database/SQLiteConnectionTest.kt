@@ -2,10 +2,23 @@ package org.intellij.sdk.codesync.database
 
 import org.intellij.sdk.codesync.codeSyncSetup.CodeSyncSetup
 import org.intellij.sdk.codesync.database.migrations.MigrationManager
+import org.intellij.sdk.codesync.database.models.Repo
+import org.intellij.sdk.codesync.database.models.RepoBranch
+import org.intellij.sdk.codesync.database.models.RepoFile
+import org.intellij.sdk.codesync.database.models.User
+import org.intellij.sdk.codesync.database.tables.RepoFileTable
+import org.intellij.sdk.codesync.enums.RepoState
 import org.junit.jupiter.api.AfterEach
 import org.junit.jupiter.api.Assertions
 import org.junit.jupiter.api.BeforeAll
+import org.junit.jupiter.api.Tag
 import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.TestReporter
+import java.util.UUID
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
 
 class SQLiteConnectionTest {
     @AfterEach
@@ -35,7 +48,200 @@ class SQLiteConnectionTest {
         SQLiteConnection.getInstance().disconnect()
     }
 
+    @Test
+    fun validateStatementCache() {
+        val sqliteConnection = SQLiteConnection.getInstance()
+        val query = "SELECT ? AS value;"
+
+        Assertions.assertEquals("it's", sqliteConnection.executeQuery(query, { it.getString("value") }, "it's"))
+        // Parameters of the previous call are not carried over.
+        Assertions.assertNull(sqliteConnection.executeQuery(query, { it.getString("value") }, null))
+
+        // Cached statements are closed along with the connection.
+        SQLiteConnection.getInstance().disconnect()
+        Assertions.assertEquals(1, SQLiteConnection.getInstance().executeQuery(query, { it.getInt("value") }, 1))
+    }
+
+    /*
+    Compare the file lookups done for each diff, using the cached prepared statement against the previous lookup that
+    built the query with `String.format` and parsed it on every call.
+
+    Timings depend on the machine so they are only reported, run with `./gradlew benchmark`.
+    */
+    @Test
+    @Tag("benchmark")
+    fun compareRepoFileLookups(testReporter: TestReporter) {
+        val user = User("test@codesync.com", "access-token", "access-key", "secrete-key", true)
+        user.save()
+        val repo = Repo(1, "test-repo", "/Users/codesync/dev/lookup-repo", user.id, RepoState.SYNCED)
+        repo.save()
+        val repoBranch = RepoBranch("lookup-branch", repo.id)
+        repoBranch.save()
+        val paths = (1..500).map { "src/module-${it % 10}/file-$it.py" }
+        RepoFileTable.getInstance().bulkInsert(ArrayList(paths.map { RepoFile(it, repoBranch.id, it.length) }))
+
+        val connection = SQLiteConnection.getInstance().connection
+        val statementLookup = { path: String ->
+            connection.createStatement().use { statement ->
+                statement.executeQuery(
+                    String.format("SELECT * FROM repo_file WHERE path = '%s' AND repo_branch_id = %s;", path, repoBranch.id)
+                ).use { resultSet -> resultSet.getInt("id") }
+            }
+        }
+        val preparedStatementLookup = { path: String -> RepoFileTable.getInstance().get(path, repoBranch.id).id }
+
+        fun measure(lookup: (String) -> Int, iterations: Int): Long {
+            val start = System.nanoTime()
+            for (i in 0 until iterations) {
+                lookup(paths[i % paths.size])
+            }
+            return System.nanoTime() - start
+        }
+
+        // Both lookups find the same files.
+        for (path in paths) {
+            Assertions.assertEquals(statementLookup(path), preparedStatementLookup(path))
+        }
+
+        // Warm up both paths before measuring.
+        measure(statementLookup, 5_000)
+        measure(preparedStatementLookup, 5_000)
+        val statementTime = measure(statementLookup, 20_000)
+        val preparedStatementTime = measure(preparedStatementLookup, 20_000)
+
+        testReporter.publishEntry(
+            "Repo file lookups",
+            String.format(
+                "Statement %.2f us/op, PreparedStatement %.2f us/op",
+                statementTime / 20_000 / 1000.0,
+                preparedStatementTime / 20_000 / 1000.0
+            )
+        )
+    }
+
+    /*
+    Validate that reads are served by their own connections and see writes once they are committed.
+    */
+    @Test
+    fun validateReadersAndWriter() {
+        val sqliteConnection = SQLiteConnection.getInstance()
+        sqliteConnection.execute("CREATE TABLE IF NOT EXISTS connection_test (value INTEGER);")
+        sqliteConnection.execute("DELETE FROM connection_test;")
+
+        // Reads inside a transaction see its changes, reads outside of it only see them once it is committed.
+        val executor = Executors.newSingleThreadExecutor()
+        sqliteConnection.runInTransaction {
+            sqliteConnection.executeUpdate("INSERT INTO connection_test (value) VALUES (?);", 1)
+            Assertions.assertEquals(
+                1, sqliteConnection.executeQuery("SELECT COUNT(*) FROM connection_test;", { it.getInt(1) })
+            )
+            val outsideCount = executor.submit(Callable {
+                sqliteConnection.executeQuery("SELECT COUNT(*) FROM connection_test;", { it.getInt(1) })
+            }).get()
+            Assertions.assertEquals(0, outsideCount)
+        }
+        executor.shutdown()
+        Assertions.assertEquals(1, sqliteConnection.executeQuery("SELECT COUNT(*) FROM connection_test;", { it.getInt(1) }))
+
+        // Failed transactions are rolled back.
+        Assertions.assertThrows(IllegalStateException::class.java) {
+            sqliteConnection.runInTransaction {
+                sqliteConnection.executeUpdate("INSERT INTO connection_test (value) VALUES (?);", 2)
+                throw IllegalStateException("Failed transaction.")
+            }
+        }
+        Assertions.assertEquals(1, sqliteConnection.executeQuery("SELECT COUNT(*) FROM connection_test;", { it.getInt(1) }))
+
+        // Reads outside of a transaction run on a read-only connection.
+        Assertions.assertEquals(1, sqliteConnection.executeQuery("PRAGMA query_only;", { it.getInt(1) }))
+        sqliteConnection.execute("DROP TABLE connection_test;")
+    }
+
+    /*
+    Simulate several projects using the database at once. Each of them saves the files of its repo in bulk, like a
+    repo being set up or migrated, and one at a time, like diffs being processed, while it keeps looking files up.
+    Reads must keep going while the writes are running. Their exact latency depends on the machine so it is reported,
+    the target is only a bound that a read blocked behind a write transaction (waiting for the busy timeout) misses.
+    */
+    @Test
+    fun validateReadLatencyUnderLoad(testReporter: TestReporter) {
+        val user = User("test@codesync.com", "access-token", "access-key", "secrete-key", true)
+        user.save()
+        val paths = (1..2_000).map { "src/module-${it % 20}/file-$it.py" }
+        val repoBranches = (1..PROJECT_COUNT).map {
+            val repo = Repo(it, "stress-repo-$it", "/Users/codesync/dev/stress-repo-${UUID.randomUUID()}", user.id, RepoState.SYNCED)
+            repo.save()
+            val repoBranch = RepoBranch("main", repo.id)
+            repoBranch.save()
+            repoBranch
+        }
+
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(STRESS_TEST_DURATION)
+        val readLatencies = ConcurrentLinkedQueue<Long>()
+        val tasks = mutableListOf<Callable<Int>>()
+        for (repoBranch in repoBranches) {
+            tasks.add(Callable {
+                var round = 0
+                while (System.nanoTime() < deadline) {
+                    round++
+                    RepoFileTable.getInstance().bulkInsert(ArrayList(paths.map { RepoFile(it, repoBranch.id, round) }))
+                    for (path in paths.subList(0, 50)) {
+                        repoBranch.updateFileId(path, -round)
+                    }
+                    val repoFile = RepoFileTable.getInstance().get(paths[round % paths.size], repoBranch.id)
+                    repoFile.serverFileId = round
+                    repoFile.save()
+                }
+                round
+            })
+            tasks.add(Callable {
+                var lookups = 0
+                while (System.nanoTime() < deadline) {
+                    val start = (lookups * 97) % (paths.size - 100)
+                    val startTime = System.nanoTime()
+                    RepoFileTable.getInstance().findAll(repoBranch.id, paths.subList(start, start + 100))
+                    readLatencies.add(System.nanoTime() - startTime)
+                    lookups++
+                }
+                lookups
+            })
+        }
+
+        val executor = Executors.newFixedThreadPool(tasks.size)
+        try {
+            // Fails the test if any of the simulated projects failed.
+            executor.invokeAll(tasks).forEach { it.get() }
+        } finally {
+            executor.shutdown()
+        }
+        RepoFileWriteQueue.getInstance().flush()
+
+        val sortedLatencies = readLatencies.sorted()
+        val p99 = sortedLatencies[minOf(sortedLatencies.size - 1, sortedLatencies.size * 99 / 100)]
+        testReporter.publishEntry(
+            "Reads under load",
+            String.format(
+                "%d reads, median %.2f ms, p99 %.2f ms",
+                sortedLatencies.size,
+                sortedLatencies[sortedLatencies.size / 2] / 1_000_000.0,
+                p99 / 1_000_000.0
+            )
+        )
+        Assertions.assertTrue(sortedLatencies.size >= PROJECT_COUNT)
+        Assertions.assertTrue(
+            p99 < TimeUnit.MILLISECONDS.toNanos(READ_LATENCY_TARGET),
+            String.format("p99 read latency %.2f ms is over the target", p99 / 1_000_000.0)
+        )
+        for (repoBranch in repoBranches) {
+            Assertions.assertEquals(paths.size, repoBranch.files.size)
+        }
+    }
+
     companion object {
+        private const val PROJECT_COUNT = 4
+        private const val STRESS_TEST_DURATION = 5L // in seconds
+        private const val READ_LATENCY_TARGET = 1000L // in ms, well under SQLITE_BUSY_TIMEOUT
+
         @JvmStatic
         @BeforeAll
         fun setup(): Unit {
@@ -0,0 +1,112 @@
+package org.intellij.sdk.codesync.database.migration
+
+import CodeSyncTestUtils.deleteTables
+import org.intellij.sdk.codesync.codeSyncSetup.CodeSyncSetup
+import org.intellij.sdk.codesync.database.SQLiteConnection
+import org.intellij.sdk.codesync.database.enums.MigrationState
+import org.intellij.sdk.codesync.database.migrations.MigrateIndexes
+import org.intellij.sdk.codesync.database.tables.RepoBranchTable
+import org.intellij.sdk.codesync.database.tables.RepoFileTable
+import org.intellij.sdk.codesync.database.tables.RepoTable
+import org.junit.jupiter.api.*
+import java.sql.SQLException
+
+class MigrateIndexesTest {
+
+    private fun execute(vararg queries: String) {
+        for (query in queries) {
+            SQLiteConnection.getInstance().execute(query)
+        }
+    }
+
+    private fun <T> query(query: String, reader: (java.sql.ResultSet) -> T): T {
+        return SQLiteConnection.getInstance().executeQuery(query, { resultSet -> reader(resultSet) })
+    }
+
+    private fun getIndexes(): Set<String> {
+        return query("SELECT name FROM sqlite_master WHERE type = 'index' AND name NOT LIKE 'sqlite_%';") { resultSet ->
+            val names = mutableSetOf<String>()
+            while (resultSet.next()) {
+                names.add(resultSet.getString("name"))
+            }
+            names
+        }
+    }
+
+    /*
+    Validate that duplicates are merged into the first row and the unique indexes are created.
+    */
+    @Test
+    fun validateMigration() {
+        RepoTable.getInstance().createTable()
+        RepoBranchTable.getInstance().createTable()
+        RepoFileTable.getInstance().createTable()
+
+        // Duplicate repos, each with a `main` branch holding a copy of the same file.
+        execute(
+            "INSERT INTO repo (id, server_repo_id, name, path, user_id, state) VALUES " +
+                "(1, 1, 'repo', '/Users/codesync/dev/repo', 1, 'SYNCED'), " +
+                "(2, 1, 'repo', '/Users/codesync/dev/repo', 1, 'SYNCED'), " +
+                "(3, 3, 'other-repo', '/Users/codesync/dev/other-repo', 1, 'SYNCED');",
+            "INSERT INTO repo_branch (id, name, repo_id) VALUES (1, 'main', 1), (2, 'main', 2), (3, 'dev', 2), (4, 'main', 3);",
+            "INSERT INTO repo_file (id, path, repo_branch_id, server_file_id) VALUES " +
+                "(1, 'file.txt', 1, 11), (2, 'file.txt', 2, 12), (3, 'other.txt', 2, 13), (4, 'file.txt', 4, 14);",
+        )
+
+        MigrateIndexes.getInstance().migrate()
+
+        Assertions.assertEquals(MigrationState.DONE, MigrateIndexes.getInstance().checkMigrationState())
+        Assertions.assertTrue(
+            getIndexes().containsAll(
+                setOf("repo_path", "repo_branch_repo_id_name", "repo_file_repo_branch_id_path")
+            )
+        )
+
+        val repo = RepoTable.getInstance().get("/Users/codesync/dev/repo")
+        Assertions.assertEquals(1, repo.id)
+        Assertions.assertEquals(listOf("dev", "main"), repo.branches.map { it.name }.sorted())
+
+        val mainBranch = RepoBranchTable.getInstance().get("main", repo.id)
+        Assertions.assertEquals(1, mainBranch.id)
+        Assertions.assertEquals(
+            listOf("file.txt" to 11, "other.txt" to 13),
+            mainBranch.files.map { it.path to it.serverFileId }.sortedBy { it.first }
+        )
+
+        // Rows of other repos are left alone.
+        val otherRepo = RepoTable.getInstance().get("/Users/codesync/dev/other-repo")
+        Assertions.assertEquals(listOf("file.txt"), otherRepo.branches.single().files.map { it.path })
+
+        // Duplicates can not be added anymore.
+        Assertions.assertThrows(SQLException::class.java) {
+            execute("INSERT INTO repo_file (path, repo_branch_id, server_file_id) VALUES ('file.txt', 1, 15);")
+        }
+
+        // Running the migration again is a no-op.
+        MigrateIndexes.getInstance().migrate()
+        Assertions.assertEquals(MigrationState.DONE, MigrateIndexes.getInstance().checkMigrationState())
+    }
+
+    /*
+    Validate that the connection uses WAL journaling.
+    */
+    @Test
+    fun validateJournalMode() {
+        Assertions.assertEquals("wal", query("PRAGMA journal_mode;") { resultSet -> resultSet.getString(1) })
+    }
+
+    companion object {
+        @JvmStatic
+        @BeforeAll
+        fun setup(): Unit {
+            CodeSyncSetup.createSystemDirectories()
+            deleteTables()
+        }
+
+        @JvmStatic
+        @AfterAll
+        fun cleanup(): Unit {
+            deleteTables()
+        }
+    }
+}
@@ -5,11 +5,15 @@ import CodeSyncTestUtils.getTestFilePath
 import org.intellij.sdk.codesync.Constants
 import org.intellij.sdk.codesync.codeSyncSetup.CodeSyncSetup
 import org.intellij.sdk.codesync.database.enums.MigrationState
+import org.intellij.sdk.codesync.database.migrations.MigrateIndexes
+import org.intellij.sdk.codesync.database.migrations.MigrateTables
 import org.intellij.sdk.codesync.database.migrations.MigrationManager
+import org.intellij.sdk.codesync.database.tables.FileStateTable
 import org.intellij.sdk.codesync.database.tables.MigrationsTable
 import org.intellij.sdk.codesync.database.tables.RepoBranchTable
 import org.intellij.sdk.codesync.database.tables.RepoFileTable
 import org.intellij.sdk.codesync.database.tables.RepoTable
+import org.intellij.sdk.codesync.database.tables.S3UploadQueueTable
 import org.intellij.sdk.codesync.database.tables.UserTable
 import org.intellij.sdk.codesync.enums.RepoState
 import org.junit.jupiter.api.*
@@ -47,6 +51,8 @@ class MigrationManagerTest {
         assert(!RepoBranchTable.getInstance().exists())
         assert(!RepoFileTable.getInstance().exists())
         assert(!UserTable.getInstance().exists())
+        assert(!FileStateTable.getInstance().exists())
+        assert(!S3UploadQueueTable.getInstance().exists())
 
         // Run the migration.
         MigrationManager.getInstance().runMigrations()
@@ -59,6 +65,8 @@ class MigrationManagerTest {
         assert(RepoBranchTable.getInstance().exists())
         assert(RepoFileTable.getInstance().exists())
         assert(UserTable.getInstance().exists())
+        assert(FileStateTable.getInstance().exists())
+        assert(S3UploadQueueTable.getInstance().exists())
 
         // Make sure there are 2 entries in the migration table.
         Assertions.assertEquals(
@@ -69,6 +77,8 @@ class MigrationManagerTest {
             MigrationsTable.getInstance().getMigrationState(RepoTable.getInstance().tableName),
             MigrationState.DONE
         )
+        Assertions.assertEquals(MigrateIndexes.getInstance().checkMigrationState(), MigrationState.DONE)
+        Assertions.assertEquals(MigrateTables.getInstance().checkMigrationState(), MigrationState.DONE)
 
         val expectedRepos = listOf(
             "/Users/codesync/dev/test-repo-1",
@@ -0,0 +1,64 @@
+package org.intellij.sdk.codesync.database.models
+
+import org.intellij.sdk.codesync.codeSyncSetup.CodeSyncSetup
+import org.intellij.sdk.codesync.database.migrations.MigrationManager
+import org.intellij.sdk.codesync.database.tables.FileStateTable
+import org.intellij.sdk.codesync.enums.RepoState
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.BeforeAll
+import org.junit.jupiter.api.Test
+
+
+class FileStateTest {
+    private fun createRepoBranch(branchName: String): RepoBranch {
+        val user = User(
+            "test@codesync.com", "access-token", "access-key", "secrete-key", true
+        )
+        user.save()
+        val repo = Repo(1, "test-repo", "/Users/codesync/dev/test-repo", user.id, RepoState.SYNCED)
+        repo.save()
+        val repoBranch = RepoBranch(branchName, repo.id)
+        repoBranch.save()
+        return repoBranch
+    }
+
+    /*
+    Make sure file states can be inserted, updated and deleted in bulk.
+     */
+    @Test
+    fun validateBulkUpsertAndDelete() {
+        val repoBranch = createRepoBranch("file-state-branch")
+        val fileStateTable = FileStateTable.getInstance()
+
+        fileStateTable.bulkUpsert(
+            (1..1200).map { FileState("src/file-$it.txt", repoBranch.id, 10L, 1000L, "hash-$it", false) }
+        )
+        fileStateTable.bulkUpsert(
+            listOf(FileState("src/it's-a-file.txt", repoBranch.id, 20L, 2000L, null, true))
+        )
+        var fileStates = fileStateTable.findAll(repoBranch.id)
+        assertEquals(1201, fileStates.size)
+        assert(fileStates["src/file-1.txt"]!!.hasSameMetadata(10L, 1000L))
+        assert(fileStates["src/it's-a-file.txt"]!!.isBinary)
+
+        // Update existing state.
+        fileStateTable.bulkUpsert(listOf(FileState("src/file-1.txt", repoBranch.id, 11L, 1001L, "new-hash", false)))
+        fileStates = fileStateTable.findAll(repoBranch.id)
+        assertEquals(1201, fileStates.size)
+        assertEquals("new-hash", fileStates["src/file-1.txt"]!!.contentHash)
+        assert(!fileStates["src/file-1.txt"]!!.hasSameMetadata(10L, 1000L))
+
+        fileStateTable.delete(repoBranch.id, (1..1200).map { "src/file-$it.txt" })
+        fileStates = fileStateTable.findAll(repoBranch.id)
+        assertEquals(setOf("src/it's-a-file.txt"), fileStates.keys)
+    }
+
+    companion object {
+        @JvmStatic
+        @BeforeAll
+        fun setup(): Unit {
+            CodeSyncSetup.createSystemDirectories()
+            MigrationManager.getInstance().runMigrations()
+        }
+    }
+}
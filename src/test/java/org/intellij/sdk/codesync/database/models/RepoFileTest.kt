@@ -52,6 +52,28 @@ class RepoFileTest {
         assert(repoBranchFileFromDb.serverFileId == 123)
     }
 
+    /*
+    Make sure paths with quotes are stored and looked up as is.
+     */
+    @Test
+    fun validateQuotedPath() {
+        val user = User(
+            "test@codesync.com", "access-token", "access-key", "secrete-key", true
+        )
+        user.save()
+        val repo = Repo(1, "test-repo", "/Users/codesync/dev/it's-a-repo", user.id, RepoState.SYNCED)
+        repo.save()
+        val repoBranch = RepoBranch("it's-a-branch", repo.id)
+        repoBranch.save()
+
+        val repoFile = RepoFile("src/it's-a-file'); DROP TABLE repo_file; --", repoBranch.id, 123)
+        repoFile.save()
+
+        val repoFileFromDb = RepoFileTable.getInstance().get(repo.path, repoBranch.name, repoFile.path)
+        Assertions.assertEquals(repoFile.id, repoFileFromDb.id)
+        Assertions.assertEquals(repoFile.path, repoFileFromDb.path)
+    }
+
     @Test
     fun validateUpdate() {
         // Save a user
@@ -0,0 +1,70 @@
+package org.intellij.sdk.codesync.files
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Files
+import java.nio.file.Path
+
+class DiffFileTest {
+
+    @TempDir
+    lateinit var tempDir: Path
+
+    private val header = """
+        repo_path: /home/user/repo
+        branch: main
+        file_relative_path: src/main.py
+        source: intellij
+        created_at: '2024-01-01 10:00:00.000 UTC'
+    """.trimIndent()
+
+    @Test
+    fun validateLazyDiff() {
+        val diffJournal = DiffJournal(tempDir.resolve("journal").toString(), 1024 * 1024)
+        diffJournal.append(header, "@@ -1 +1 @@\n-a\n+b\n")
+        val diffFile = DiffFile(diffJournal.read()[0])
+
+        assertEquals("/home/user/repo", diffFile.repoPath)
+        assertEquals("main", diffFile.branch)
+        assertEquals("src/main.py", diffFile.fileRelativePath)
+        assertTrue(diffFile.isValid)
+        assertFalse(diffFile.isEmptyDiff)
+
+        // Diff is only read from the journal when needed.
+        assertEquals(18, diffFile.diffSize)
+        assertEquals("@@ -1 +1 @@\n-a\n+b\n", diffFile.diff)
+    }
+
+    @Test
+    fun validateDelete() {
+        val journalDir = tempDir.resolve("journal").toString()
+        val diffJournal = DiffJournal(journalDir, 1024 * 1024)
+        diffJournal.append(header, "")
+        diffJournal.append(header, "")
+        val diffFile = DiffFile(diffJournal.read()[0])
+
+        // Diffs are identified by and removed from the journal they were read from.
+        assertEquals(diffJournal.getRecordPath(1), diffFile.path)
+        assertTrue(diffFile.delete())
+        assertTrue(diffFile.isRemoved)
+        assertEquals(listOf(2L), diffJournal.read().map { it.sequence })
+    }
+
+    @Test
+    fun validateImportedDiff() {
+        val diffsDir = Files.createDirectories(tempDir.resolve("diffs"))
+        Files.write(diffsDir.resolve("1000.yml"), "$header\ndiff: some diff".toByteArray())
+
+        val diffJournal = DiffJournal(tempDir.resolve("journal").toString(), 1024 * 1024)
+        diffJournal.importYamlDiffs(diffsDir.toString())
+        val diffFile = DiffFile(diffJournal.read()[0])
+
+        // Imported diffs keep the diff in the metadata.
+        assertEquals("src/main.py", diffFile.fileRelativePath)
+        assertEquals("some diff", diffFile.diff)
+        assertEquals(9, diffFile.diffSize)
+    }
+}
@@ -0,0 +1,157 @@
+package org.intellij.sdk.codesync.files
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.io.FileOutputStream
+import java.nio.file.Files
+import java.nio.file.Path
+
+class DiffJournalTest {
+
+    @TempDir
+    lateinit var tempDir: Path
+
+    private fun getJournalDir(): String {
+        return tempDir.resolve("journal").toString()
+    }
+
+    @Test
+    fun validateAppendAndAck() {
+        val diffJournal = DiffJournal(getJournalDir(), 1024 * 1024)
+        assertFalse(diffJournal.hasPendingRecords())
+        assertEquals(1, diffJournal.append("first", ""))
+        assertEquals(2, diffJournal.append("second", ""))
+        assertEquals(3, diffJournal.append("third", ""))
+
+        diffJournal.ack(2)
+        val records = diffJournal.read()
+        assertEquals(listOf(1L, 3L), records.map { it.sequence })
+        assertEquals(listOf("first", "third"), records.map { it.header })
+
+        // Other instances (e.g. other IDE processes) see the same records and acks.
+        assertEquals(listOf(1L, 3L), DiffJournal(getJournalDir(), 1024 * 1024).read().map { it.sequence })
+
+        diffJournal.ack(1)
+        diffJournal.ack(3)
+        assertFalse(diffJournal.hasPendingRecords())
+    }
+
+    @Test
+    fun validateChangedOnDisk() {
+        val diffJournal = DiffJournal(getJournalDir(), 1024 * 1024)
+        diffJournal.append("first", "")
+        diffJournal.read()
+        assertFalse(diffJournal.isChangedOnDisk)
+
+        // Appends of other instances (e.g. other IDE processes) are noticed without reading the journal.
+        DiffJournal(getJournalDir(), 1024 * 1024).append("second", "")
+        assertTrue(diffJournal.isChangedOnDisk)
+        assertEquals(listOf("first", "second"), diffJournal.read().map { it.header })
+        assertFalse(diffJournal.isChangedOnDisk)
+    }
+
+    @Test
+    fun validateRefreshWithoutListing() {
+        val diffJournal = DiffJournal(getJournalDir(), 1024 * 1024)
+        val otherJournal = DiffJournal(getJournalDir(), 1024 * 1024)
+        diffJournal.append("first", "")
+        // Directory was not modified recently, so the segments are not listed again until it changes.
+        File(getJournalDir()).setLastModified(System.currentTimeMillis() - 60 * 1000)
+        assertEquals(listOf("first"), diffJournal.read().map { it.header })
+
+        // Appends of other instances go to the active segment, which is read without listing.
+        otherJournal.append("second", "")
+        assertEquals(listOf("first", "second"), diffJournal.read().map { it.header })
+
+        // Acks of other instances are seen as well.
+        otherJournal.ack(1)
+        assertEquals(listOf("second"), diffJournal.read().map { it.header })
+    }
+
+    @Test
+    fun validateSegmentDeletion() {
+        // Each record is larger than the segment size, so every record gets its own segment.
+        val diffJournal = DiffJournal(getJournalDir(), 10)
+        for (i in 1..5) {
+            diffJournal.append("payload-$i", "")
+        }
+        assertEquals(5, diffJournal.segmentCount)
+
+        // Acks out of order, segments are only deleted once all their records are acked.
+        diffJournal.ack(3)
+        diffJournal.ack(1)
+        diffJournal.ack(2)
+        assertEquals(2, diffJournal.segmentCount)
+        assertEquals(listOf(4L, 5L), diffJournal.read().map { it.sequence })
+
+        // Active segment is kept even if fully acked so that sequence numbers keep increasing.
+        diffJournal.ack(4)
+        diffJournal.ack(5)
+        assertEquals(1, diffJournal.segmentCount)
+        assertEquals(6, diffJournal.append("payload-6", ""))
+        assertEquals(1, diffJournal.segmentCount)
+    }
+
+    @Test
+    fun validateRecoveryFromIncompleteRecord() {
+        val diffJournal = DiffJournal(getJournalDir(), 1024 * 1024)
+        diffJournal.append("first", "")
+        diffJournal.append("second", "")
+
+        // Simulate a crash in the middle of an append.
+        val segmentFile = Files.list(tempDir.resolve("journal")).filter { it.toString().endsWith(".seg") }.findFirst().get()
+        FileOutputStream(segmentFile.toFile(), true).use { it.write(byteArrayOf(0, 0, 0, 50, 1, 2, 3)) }
+
+        val recoveredJournal = DiffJournal(getJournalDir(), 1024 * 1024)
+        assertEquals(7, recoveredJournal.recover(tempDir.resolve("diffs").toString()))
+        assertEquals(listOf("first", "second"), recoveredJournal.read().map { it.header })
+        assertEquals(3, recoveredJournal.append("third", ""))
+        assertEquals(listOf("first", "second", "third"), recoveredJournal.read().map { it.header })
+    }
+
+    @Test
+    fun validateYamlImport() {
+        val diffsDir = Files.createDirectories(tempDir.resolve("diffs"))
+        Files.write(diffsDir.resolve("2000.yml"), "diff: second".toByteArray())
+        Files.write(diffsDir.resolve("1000.yml"), "diff: first".toByteArray())
+
+        val diffJournal = DiffJournal(getJournalDir(), 1024 * 1024)
+        diffJournal.recover(diffsDir.toString())
+
+        val records = diffJournal.read()
+        assertEquals(2, records.size)
+        assertTrue(records[0].header.endsWith("diff: first"))
+        assertTrue(records[1].header.endsWith("diff: second"))
+        assertEquals(0, diffsDir.toFile().list { _, name -> name.endsWith(".yml") }!!.size)
+
+        // A file that was imported but not deleted is not imported again.
+        Files.write(diffsDir.resolve("1000.yml"), "diff: first".toByteArray())
+        assertEquals(0, diffJournal.importYamlDiffs(diffsDir.toString()))
+        assertEquals(2, diffJournal.read().size)
+    }
+
+    @Test
+    fun validateLazyBody() {
+        val diffJournal = DiffJournal(getJournalDir(), 1024 * 1024)
+        diffJournal.append("repo_path: /repo", "x".repeat(100 * 1024))
+        diffJournal.append("repo_path: /other-repo", "")
+
+        val records = diffJournal.read()
+        assertEquals(listOf("repo_path: /repo", "repo_path: /other-repo"), records.map { it.header })
+        assertEquals(listOf(100 * 1024, 0), records.map { it.bodyLength })
+        assertEquals("x".repeat(100 * 1024), records[0].readBody())
+        assertEquals("", records[1].readBody())
+    }
+
+    @Test
+    fun validateRecordPath() {
+        val diffJournal = DiffJournal(getJournalDir(), 1024 * 1024)
+        assertEquals(42L, DiffJournal.getSequence(diffJournal.getRecordPath(42)))
+        assertNull(DiffJournal.getSequence(tempDir.resolve("1000.yml").toString()))
+    }
+}
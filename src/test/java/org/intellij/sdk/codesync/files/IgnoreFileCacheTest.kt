@@ -0,0 +1,39 @@
+package org.intellij.sdk.codesync.files
+
+import org.intellij.sdk.codesync.exceptions.FileNotFoundError
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Files
+import java.nio.file.Path
+
+class IgnoreFileCacheTest {
+
+    @TempDir
+    lateinit var tempDir: Path
+
+    @Test
+    fun testIgnoreFileIsReusedUntilChanged() {
+        val repoPath = tempDir.toString()
+        val ignoreFileCache = IgnoreFileCache()
+        assertThrows(FileNotFoundError::class.java) { ignoreFileCache.getIgnoreFile(repoPath) }
+
+        Files.write(tempDir.resolve(".gitignore"), "*.log\n".toByteArray())
+        val ignoreFile = ignoreFileCache.getIgnoreFile(repoPath)
+        assertSame(ignoreFile, ignoreFileCache.getIgnoreFile(repoPath))
+        assert(ignoreFile.shouldIgnore(tempDir.resolve("debug.log").toFile()))
+        assert(!ignoreFile.shouldIgnore(tempDir.resolve("debug.txt").toFile()))
+
+        // .syncignore takes priority over .gitignore
+        Files.write(tempDir.resolve(".syncignore"), "*.txt\n".toByteArray())
+        val syncIgnoreFile = ignoreFileCache.getIgnoreFile(repoPath)
+        assertNotSame(ignoreFile, syncIgnoreFile)
+        assert(syncIgnoreFile.shouldIgnore(tempDir.resolve("debug.txt").toFile()))
+
+        // Nested ignore file changes are picked up via file change events.
+        ignoreFileCache.handleFileChange(tempDir.resolve("src").resolve(".gitignore").toString())
+        assertNotSame(syncIgnoreFile, ignoreFileCache.getIgnoreFile(repoPath))
+    }
+}
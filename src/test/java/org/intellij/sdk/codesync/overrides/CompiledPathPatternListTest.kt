@@ -0,0 +1,47 @@
+package org.intellij.sdk.codesync.overrides
+
+import com.neva.commons.gitignore.PathPatternList
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+
+class CompiledPathPatternListTest {
+    private val patterns = listOf(
+        "*.class", "*.min.js", ".DS_Store", "node_modules", "build/", "/dist", "docs/*.md", "!docs/README.md",
+        "**/generated/**", "!important.class", "temp?", "src/main/resources/secret.properties", "*~", "[Bb]in/",
+    )
+
+    private val paths = listOf(
+        "Main.java", "Main.class", "out/Main.class", "important.class", "lib/app.min.js", "lib/app.js",
+        ".DS_Store", "src/.DS_Store", "node_modules", "web/node_modules", "build", "app/build", "dist",
+        "app/dist", "docs/guide.md", "docs/README.md", "docs/nested/guide.md", "src/generated/File.java",
+        "temp1", "temp12", "src/main/resources/secret.properties", "src/main/resources/other.properties",
+        "notes.txt~", "bin", "Bin", "src/bin",
+    )
+
+    private fun assertSameResults(basePath: String, pathPrefix: String) {
+        val expected = PathPatternList(basePath)
+        val compiled = CompiledPathPatternList(basePath)
+        patterns.forEach { expected.add(it); compiled.add(it) }
+
+        for (path in paths) {
+            for (isDirectory in listOf(true, false)) {
+                val fullPath = pathPrefix + path
+                assertEquals(
+                    expected.findPattern(fullPath, isDirectory)?.isExclude,
+                    compiled.findPattern(fullPath, isDirectory)?.isExclude,
+                    "Result mismatch for '$fullPath' (isDirectory: $isDirectory)"
+                )
+            }
+        }
+    }
+
+    @Test
+    fun testMatchesPathPatternListForRootIgnoreFile() {
+        assertSameResults("", "")
+    }
+
+    @Test
+    fun testMatchesPathPatternListForNestedIgnoreFile() {
+        assertSameResults("module", "module/")
+    }
+}
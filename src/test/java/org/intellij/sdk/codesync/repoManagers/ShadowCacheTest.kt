@@ -0,0 +1,65 @@
+package org.intellij.sdk.codesync.repoManagers
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Files
+import java.nio.file.Path
+
+class ShadowCacheTest {
+
+    @TempDir
+    lateinit var tempDir: Path
+
+    @Test
+    fun testWriteBehind() {
+        val shadowCache = ShadowCache(1024 * 1024, 60 * 1000)
+        val shadowPath = tempDir.resolve("file.txt")
+        Files.write(shadowPath, "old".toByteArray())
+
+        assertEquals("old", shadowCache.read(shadowPath))
+        shadowCache.write(shadowPath, "new")
+
+        // Reads are served from memory while the disk still has the old contents.
+        assertEquals("new", shadowCache.read(shadowPath))
+        assertEquals("old", String(Files.readAllBytes(shadowPath)))
+
+        shadowCache.flush(shadowPath)
+        assertEquals("new", String(Files.readAllBytes(shadowPath)))
+    }
+
+    @Test
+    fun testEvictionByByteBudget() {
+        // Each entry takes 20 bytes (10 chars), budget allows 3 entries.
+        val shadowCache = ShadowCache(60, 60 * 1000)
+        for (i in 1..5) {
+            shadowCache.write(tempDir.resolve("file-$i.txt"), "0123456789")
+        }
+
+        assertEquals(3, shadowCache.entryCount)
+        assertEquals(60, shadowCache.size)
+        // Evicted dirty entries must be written to the disk.
+        assertEquals("0123456789", String(Files.readAllBytes(tempDir.resolve("file-1.txt"))))
+        assertEquals("0123456789", String(Files.readAllBytes(tempDir.resolve("file-2.txt"))))
+    }
+
+    @Test
+    fun testDirectoryFlushAndInvalidate() {
+        val shadowCache = ShadowCache(1024 * 1024, 60 * 1000)
+        val directory = tempDir.resolve("dir")
+        shadowCache.write(directory.resolve("a.txt"), "a")
+        shadowCache.write(directory.resolve("nested").resolve("b.txt"), "b")
+        shadowCache.write(tempDir.resolve("dir-other.txt"), "c")
+
+        shadowCache.flushDirectory(directory)
+        assertEquals("a", String(Files.readAllBytes(directory.resolve("a.txt"))))
+        assertEquals("b", String(Files.readAllBytes(directory.resolve("nested").resolve("b.txt"))))
+        assert(!Files.exists(tempDir.resolve("dir-other.txt")))
+
+        shadowCache.invalidateDirectory(directory)
+        assertEquals(1, shadowCache.entryCount)
+
+        shadowCache.invalidate(tempDir.resolve("dir-other.txt"))
+        assertEquals(0, shadowCache.entryCount)
+    }
+}
@@ -0,0 +1,50 @@
+package org.intellij.sdk.codesync.utils
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+
+class FileUtilsTest {
+
+    @TempDir
+    lateinit var tempDir: Path
+
+    private fun createFile(relativePath: String, content: String = "content") {
+        val path = tempDir.resolve(relativePath)
+        Files.createDirectories(path.parent)
+        Files.write(path, content.toByteArray())
+    }
+
+    @Test
+    fun testListFilesSkipsIgnoredDirectories() {
+        createFile(".gitignore", "build/\n*.log\n")
+        createFile("src/Main.java")
+        createFile("src/debug.log")
+        createFile("build/Main.class")
+        createFile("build/nested/Other.class")
+        createFile("node_modules/lib/index.js")
+        createFile(".idea/workspace.xml")
+        createFile(".git/HEAD")
+
+        val relativePaths = FileUtils.listFiles(tempDir.toString())
+            .map { tempDir.relativize(Paths.get(it)).toString().replace('\\', '/') }
+            .sorted()
+
+        assertEquals(listOf(".gitignore", "src/Main.java"), relativePaths)
+    }
+
+    @Test
+    fun testWalkFilesWithoutIgnoreFile() {
+        createFile("a.txt")
+        createFile("dir/b.txt")
+        createFile("node_modules/c.txt")
+
+        val visited = mutableListOf<String>()
+        FileUtils.walkFiles(tempDir.toString()) { visited.add(tempDir.relativize(it).toString().replace('\\', '/')) }
+
+        assertEquals(listOf("a.txt", "dir/b.txt"), visited.sorted())
+    }
+}
@@ -0,0 +1,65 @@
+package org.intellij.sdk.codesync.utils
+
+import org.eclipse.jgit.api.Git
+import org.intellij.sdk.codesync.Constants.DEFAULT_BRANCH
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Path
+
+class GitHeadResolverTest {
+
+    @TempDir
+    lateinit var tempDir: Path
+
+    @Test
+    fun testBranchAndCommitAreCachedUntilHeadChanges() {
+        val repoPath = tempDir.toString()
+        Git.init().setDirectory(tempDir.toFile()).setInitialBranch("main").call().use { git ->
+            git.commit().setMessage("first").setAllowEmpty(true).call()
+            val resolver = GitHeadResolver()
+
+            assertEquals("main", resolver.getBranchName(repoPath))
+            val firstCommit = resolver.getCommitHash(repoPath)
+            assertEquals(git.repository.resolve("HEAD").name, firstCommit)
+            assertEquals(1, resolver.missCount)
+            assertEquals(1, resolver.hitCount)
+
+            // Ensure file modification times differ on file systems with coarse timestamps.
+            Thread.sleep(1100)
+            git.commit().setMessage("second").setAllowEmpty(true).call()
+            assertNotEquals(firstCommit, resolver.getCommitHash(repoPath))
+            assertEquals(2, resolver.missCount)
+
+            Thread.sleep(1100)
+            git.checkout().setCreateBranch(true).setName("feature").call()
+            assertEquals("feature", resolver.getBranchName(repoPath))
+            assertEquals("feature", resolver.getBranchName(repoPath))
+            assertEquals(3, resolver.missCount)
+            assertEquals(2, resolver.hitCount)
+        }
+    }
+
+    @Test
+    fun testInvalidateFromGitMetadataChange() {
+        val repoPath = tempDir.toString()
+        Git.init().setDirectory(tempDir.toFile()).setInitialBranch("main").call().use {
+            val resolver = GitHeadResolver()
+            resolver.getBranchName(repoPath)
+
+            resolver.handleFileChange(tempDir.resolve("src").resolve("Main.java").toString())
+            resolver.getBranchName(repoPath)
+            assertEquals(1, resolver.hitCount)
+
+            resolver.handleFileChange(tempDir.resolve(".git").resolve("HEAD").toString())
+            resolver.getBranchName(repoPath)
+            assertEquals(2, resolver.missCount)
+        }
+    }
+
+    @Test
+    fun testNonGitDirectory() {
+        assertEquals(DEFAULT_BRANCH, GitHeadResolver().getBranchName(tempDir.toString()))
+    }
+}
@@ -0,0 +1,104 @@
+package org.intellij.sdk.codesync.utils
+
+import org.intellij.sdk.codesync.repoManagers.ShadowRepoManager
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.mockito.ArgumentMatchers.anyString
+import org.mockito.Mockito
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.Path
+
+class RenameDetectorTest {
+
+    @TempDir
+    lateinit var tempDir: Path
+
+    private lateinit var repoPath: Path
+    private lateinit var shadowPath: Path
+    private lateinit var shadowRepoManager: ShadowRepoManager
+
+    @BeforeEach
+    fun setUp() {
+        repoPath = Files.createDirectories(tempDir.resolve("repo"))
+        shadowPath = Files.createDirectories(tempDir.resolve("shadow"))
+
+        shadowRepoManager = Mockito.mock(ShadowRepoManager::class.java)
+        Mockito.`when`(shadowRepoManager.baseRepoBranchDir).thenReturn(shadowPath.toString())
+        Mockito.`when`(shadowRepoManager.getRelativeFilePath(anyString())).thenAnswer {
+            shadowPath.relativize(File(it.getArgument<String>(0)).toPath()).toString()
+        }
+        Mockito.`when`(shadowRepoManager.readFile(anyString())).thenAnswer {
+            String(Files.readAllBytes(shadowPath.resolve(it.getArgument<String>(0))))
+        }
+    }
+
+    private fun writeFile(root: Path, relativePath: String, content: String) {
+        val path = root.resolve(relativePath)
+        Files.createDirectories(path.parent)
+        Files.write(path, content.toByteArray())
+    }
+
+    private fun lines(vararg values: String): String {
+        return values.joinToString("\n")
+    }
+
+    @Test
+    fun validateExactMatch() {
+        val content = lines("class A {", "    int a = 1;", "}")
+        writeFile(shadowPath, "old/A.java", content)
+        // Shadow file with a corresponding file in the repo is not a rename candidate.
+        writeFile(shadowPath, "B.java", content + "\n")
+        writeFile(repoPath, "B.java", content + "\n")
+
+        val renameDetector = RenameDetector(repoPath.toString(), shadowRepoManager)
+        assertEquals(File("old/A.java").path, renameDetector.findRenamedFrom(content))
+
+        // Same orphan can not be matched twice.
+        assertNull(renameDetector.findRenamedFrom(content))
+    }
+
+    @Test
+    fun validateAmbiguousExactMatch() {
+        val content = lines("line 1", "line 2", "line 3")
+        writeFile(shadowPath, "first.txt", content)
+        writeFile(shadowPath, "second.txt", content)
+
+        val renameDetector = RenameDetector(repoPath.toString(), shadowRepoManager)
+        assertNull(renameDetector.findRenamedFrom(content))
+    }
+
+    @Test
+    fun validateSimilarityMatch() {
+        writeFile(shadowPath, "old.txt", lines("line 1", "line 2", "line 3", "line 4", "line 5"))
+        writeFile(shadowPath, "other.txt", lines("alpha", "beta", "gamma", "delta", "epsilon"))
+
+        val renameDetector = RenameDetector(repoPath.toString(), shadowRepoManager)
+        assertEquals("old.txt", renameDetector.findRenamedFrom(lines("line 1", "line 2", "line 3", "line 4", "line 6")))
+        assertNull(renameDetector.findRenamedFrom(lines("one", "two", "three", "four", "five")))
+    }
+
+    @Test
+    fun validateSizeRatioAndTimeBudget() {
+        writeFile(shadowPath, "old.txt", lines("line 1", "line 2", "line 3", "line 4", "line 5"))
+
+        // File too large compared to the orphan is never compared.
+        val largeContent = lines("line 1", "line 2", "line 3", "line 4", "line 5", "x".repeat(200))
+        assertNull(RenameDetector(repoPath.toString(), shadowRepoManager).findRenamedFrom(largeContent))
+
+        // Similarity checks are skipped once the time budget is used up, exact matches still work.
+        val renameDetector = RenameDetector(repoPath.toString(), shadowRepoManager, 0)
+        assertNull(renameDetector.findRenamedFrom(lines("line 1", "line 2", "line 3", "line 4", "line 6")))
+        assertEquals("old.txt", renameDetector.findRenamedFrom(lines("line 1", "line 2", "line 3", "line 4", "line 5")))
+    }
+
+    @Test
+    fun validateJaccardSimilarity() {
+        assertEquals(1.0, RenameDetector.getJaccardSimilarity(setOf("a", "b"), setOf("b", "a")))
+        assertEquals(0.5, RenameDetector.getJaccardSimilarity(setOf("a", "b", "c"), setOf("b", "c", "d")))
+        assertEquals(0.0, RenameDetector.getJaccardSimilarity(setOf("a"), setOf("b")))
+    }
+}